@@ -0,0 +1,320 @@
+import benchmarks.BenchmarkTarget;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Adapter from the JMH benchmarks to {@link SqliteDB} and {@link PostgresqlDB}, see {@link BenchmarkTarget}.
+ *
+ * SQLite databases are created in the directory given by the system property <code>benchmark.dir</code>,
+ * using the given {@link SqlitePragmaProfile}.
+ * PostgreSQL needs a locally started server, configured with the system properties
+ * <code>benchmark.postgres.host</code>, <code>.port</code>, <code>.db</code>, <code>.user</code> and <code>.password</code>.
+ */
+public class LinkBenchmarkTarget implements BenchmarkTarget {
+
+	private final SqliteDB sqliteDB;
+	private final PostgresqlDB postgresqlDB;
+	private final Closeable db;
+	private List<LinkDAO> linkDAOs = new ArrayList<>();
+	private LinkBatch linkBatch = null;
+	private long firstLinkId = -1;
+	private LinkCache linkCache = null;
+	private BulkLoad<?> bulkLoad = null;
+
+	public LinkBenchmarkTarget(String database, String connectionMode, String pragmaProfile) throws IOException {
+		if (database.equals("sqlite")) {
+			File dbFile = sqliteFile(connectionMode);
+			if (dbFile.exists()) {
+				dbFile.delete();
+			}
+			this.sqliteDB = openSqlite(dbFile, connectionMode, pragmaProfile);
+			this.postgresqlDB = null;
+			this.db = this.sqliteDB;
+		} else if (database.equals("postgresql")) {
+			this.postgresqlDB = openPostgresql(connectionMode);
+			this.sqliteDB = null;
+			this.db = this.postgresqlDB;
+		} else {
+			throw new IllegalArgumentException("Unsupported database: " + database);
+		}
+	}
+
+	/**
+	 * Opens the database of the connection mode as it is, e.g. as created by the constructor, and closes it again.
+	 *
+	 * @return the time of the schema check in nanoseconds
+	 */
+	public static long openAndClose(String database, String connectionMode) throws IOException {
+		if (database.equals("sqlite")) {
+			try (SqliteDB db = openSqlite(sqliteFile(connectionMode), connectionMode, SqlitePragmaProfile.DEFAULT.name())) {
+				return db.getSchemaCheck().getTotalNanos();
+			}
+		}
+		try (PostgresqlDB db = openPostgresql(connectionMode)) {
+			return db.getSchemaCheck().getTotalNanos();
+		}
+	}
+
+	public static void setStartupMode(String startupMode) {
+		DBUtils.setStartupMode(DBUtils.StartupMode.valueOf(startupMode));
+	}
+
+	static File sqliteFile(String connectionMode) throws IOException {
+		File dir = new File(System.getProperty("benchmark.dir", "target/benchmark"));
+		if (!dir.exists() && !dir.mkdirs()) {
+			throw new IOException("Could not create benchmark directory " + dir);
+		}
+		return new File(dir, "benchmark-" + connectionMode + ".db");
+	}
+
+	static SqliteDB openSqlite(File dbFile, String connectionMode, String pragmaProfile) {
+		return switch (connectionMode) {
+			case "datasource" -> SqliteDB.createSqliteWithDataSource(dbFile, SqlitePragmaProfile.valueOf(pragmaProfile));
+			case "hikari" -> SqliteDB.createSqliteWithHikari(dbFile, SqlitePragmaProfile.valueOf(pragmaProfile));
+			case "connection" -> SqliteDB.createSqliteWithConnection(dbFile, SqlitePragmaProfile.valueOf(pragmaProfile));
+			case "writer-readers" -> SqliteDB.createSqliteWithWriterAndReaders(dbFile, 4);
+			// loads the file if it exists, changes are not written back
+			case "memory" -> SqliteDB.createSqliteInMemory(dbFile.exists() ? dbFile : null);
+			case "memory-hikari" -> SqliteDB.createSqliteInMemoryWithHikari(dbFile.exists() ? dbFile : null, 10);
+			default -> throw new IllegalArgumentException("Unsupported connection mode for SQLite: " + connectionMode);
+		};
+	}
+
+	static PostgresqlDB openPostgresql(String connectionMode) {
+		String host = System.getProperty("benchmark.postgres.host", "localhost");
+		int port = Integer.parseInt(System.getProperty("benchmark.postgres.port", "5432"));
+		String dbName = System.getProperty("benchmark.postgres.db", "benchmark");
+		String username = System.getProperty("benchmark.postgres.user", "postgres");
+		String password = System.getProperty("benchmark.postgres.password", "");
+		return switch (connectionMode) {
+			case "hikari" -> PostgresqlDB.createPostgreWithHikari(host, port, dbName, username, password);
+			case "connection" -> PostgresqlDB.createPostgreWithConnection(host, port, dbName, username, password);
+			default -> throw new IllegalArgumentException("Unsupported connection mode for PostgreSQL: " + connectionMode);
+		};
+	}
+
+	@Override
+	public void generateLinks(int linkCount, int vertexCount) {
+		Random random = new Random(4711);
+		this.linkDAOs = new ArrayList<>(linkCount);
+		for (int i = 0; i < linkCount; i++) {
+			StringBuilder geometry = new StringBuilder("LINESTRING (");
+			double x = EXTENT_MIN_X + random.nextDouble() * EXTENT_WIDTH;
+			double y = EXTENT_MIN_Y + random.nextDouble() * EXTENT_HEIGHT;
+			for (int v = 0; v < vertexCount; v++) {
+				if (v > 0) {
+					geometry.append(", ");
+				}
+				x += random.nextDouble() * 100 - 50;
+				y += random.nextDouble() * 100 - 50;
+				geometry.append(x).append(' ').append(y);
+			}
+			geometry.append(')');
+			this.linkDAOs.add(new LinkDAO(i, Integer.toString(i), geometry.toString()));
+		}
+	}
+
+	@Override
+	public void replaceLinks() {
+		if (this.sqliteDB != null) {
+			this.sqliteDB.replaceLinks(this.linkDAOs);
+		} else {
+			this.postgresqlDB.replaceLinks(this.linkDAOs);
+		}
+	}
+
+	@Override
+	public void replaceLinksConnectionFromDataSource() {
+		if (this.sqliteDB != null) {
+			this.sqliteDB.replaceLinks_ConnectionFromDataSource(this.linkDAOs);
+		} else {
+			this.postgresqlDB.replaceLinks2(this.linkDAOs);
+		}
+	}
+
+	@Override
+	public void setMetrics(boolean enabled) {
+		MetricsRegistry metrics = enabled ? new LinkMetrics() : MetricsRegistry.NONE;
+		if (this.sqliteDB != null) {
+			this.sqliteDB.setMetrics(metrics);
+		} else {
+			this.postgresqlDB.setMetrics(metrics);
+		}
+	}
+
+	@Override
+	public void setGeometryEncoding(String geometryEncoding) {
+		GeometryEncoding encoding = GeometryEncoding.valueOf(geometryEncoding);
+		if (this.sqliteDB != null) {
+			this.sqliteDB.setGeometryEncoding(encoding);
+		} else {
+			this.postgresqlDB.setGeometryEncoding(encoding);
+		}
+		if (encoding == GeometryEncoding.WKB) {
+			// measure storing WKB, not converting from WKT
+			for (LinkDAO linkDAO : this.linkDAOs) {
+				linkDAO.geometryWkb = linkDAO.getGeometryWkb();
+				linkDAO.geometry = null;
+			}
+		}
+	}
+
+	@Override
+	public void replaceLinksStreaming(int batchSize, String insertStrategy) {
+		if (this.sqliteDB != null) {
+			this.sqliteDB.setInsertStrategy(InsertStrategy.valueOf(insertStrategy));
+			this.sqliteDB.replaceLinks(this.linkDAOs.iterator(), batchSize);
+		} else {
+			this.postgresqlDB.setInsertStrategy(InsertStrategy.valueOf(insertStrategy));
+			this.postgresqlDB.replaceLinks(this.linkDAOs.iterator(), batchSize);
+		}
+	}
+
+	@Override
+	public void replaceLinksShadowTable(int batchSize) {
+		if (this.sqliteDB != null) {
+			this.sqliteDB.replaceLinks_ShadowTable(this.linkDAOs.iterator(), batchSize);
+		} else {
+			this.postgresqlDB.replaceLinks_ShadowTable(this.linkDAOs.iterator(), batchSize);
+		}
+	}
+
+	@Override
+	public void replaceLinksJdbc() throws SQLException {
+		if (this.sqliteDB != null) {
+			this.sqliteDB.replaceLinks_JDBC(this.linkDAOs);
+		} else {
+			this.postgresqlDB.replaceLinks_JDBC(this.linkDAOs);
+		}
+	}
+
+	@Override
+	public void replaceLinksJdbcStreaming(int batchSize) throws SQLException {
+		if (this.sqliteDB != null) {
+			this.sqliteDB.replaceLinks_JDBC(this.linkDAOs.iterator(), batchSize);
+		} else {
+			this.postgresqlDB.replaceLinks_JDBC(this.linkDAOs.iterator(), batchSize);
+		}
+	}
+
+	@Override
+	public void replaceLinksBatch() {
+		if (this.linkBatch == null) {
+			this.linkBatch = LinkBatch.of(this.linkDAOs);
+		}
+		if (this.sqliteDB != null) {
+			this.sqliteDB.replaceLinks(this.linkBatch);
+		} else {
+			this.postgresqlDB.replaceLinks(this.linkBatch);
+		}
+	}
+
+	@Override
+	public void prepareBulkLoad(String table, String loadStrategy, int rowCount) {
+		this.bulkLoad = switch (table) {
+			case "Link" -> {
+				generateLinks(rowCount, 20);
+				yield new BulkLoad<>(TableMapping.of(jooq.Tables.LINK, GeometryEncoding.insertFields(jooq.Tables.LINK), GeometryEncoding.WKT::insertValues), this.linkDAOs, loadStrategy);
+			}
+			default -> throw new IllegalArgumentException("Unsupported table: " + table);
+		};
+	}
+
+	@Override
+	public void bulkLoad(int batchSize) {
+		this.bulkLoad.run(batchSize);
+	}
+
+	/** A loader and the rows it loads, see {@link #prepareBulkLoad(String, String, int)}. */
+	private class BulkLoad<T> {
+
+		private final BulkLoader<T> loader;
+		private final List<T> rows;
+		private final boolean viaStagingTable;
+
+		BulkLoad(TableMapping<T> mapping, List<T> rows, String loadStrategy) {
+			this.loader = database().bulkLoader(mapping);
+			this.rows = rows;
+			this.viaStagingTable = loadStrategy.equals("SHADOW_TABLE");
+			if (!this.viaStagingTable) {
+				this.loader.setInsertStrategy(InsertStrategy.valueOf(loadStrategy));
+			}
+		}
+
+		void run(int batchSize) {
+			if (this.viaStagingTable) {
+				database().replaceRows_ShadowTable(this.loader, this.rows.iterator(), batchSize);
+			} else {
+				database().replaceRows(this.loader, this.rows.iterator(), batchSize);
+			}
+		}
+	}
+
+	private LinkDatabase database() {
+		return this.sqliteDB != null ? this.sqliteDB : this.postgresqlDB;
+	}
+
+	@Override
+	public int getLinks() {
+		if (this.sqliteDB != null) {
+			return this.sqliteDB.getLinks().size();
+		}
+		return this.postgresqlDB.getLinks().size();
+	}
+
+	@Override
+	public int getLinkBatch() {
+		if (this.sqliteDB != null) {
+			return this.sqliteDB.getLinkBatch().size();
+		}
+		return this.postgresqlDB.getLinkBatch().size();
+	}
+
+	@Override
+	public int getLinksInEnvelope(double minX, double minY, double maxX, double maxY) {
+		if (this.sqliteDB != null) {
+			return this.sqliteDB.getLinksInEnvelope(minX, minY, maxX, maxY).size();
+		}
+		return this.postgresqlDB.getLinksInEnvelope(minX, minY, maxX, maxY).size();
+	}
+
+	@Override
+	public String getLinkById(int index) {
+		long id = firstLinkId() + index;
+		return this.sqliteDB != null ? this.sqliteDB.getLinkById(id).linkId : this.postgresqlDB.getLinkById(id).linkId;
+	}
+
+	@Override
+	public String getLinkByIdJooq(int index) {
+		long id = firstLinkId() + index;
+		return this.sqliteDB != null ? this.sqliteDB.getLinkById_jooq(id).linkId : this.postgresqlDB.getLinkById_jooq(id).linkId;
+	}
+
+	@Override
+	public String getLinkByIdCached(int index) {
+		if (this.linkCache == null) {
+			this.linkCache = new LinkCache(this.sqliteDB != null ? this.sqliteDB : this.postgresqlDB, 1L << 30);
+		}
+		return this.linkCache.getLinkById(firstLinkId() + index).linkId;
+	}
+
+	/** The ids are assigned by the database, and consecutive within one replace. */
+	private long firstLinkId() {
+		if (this.firstLinkId < 0) {
+			this.firstLinkId = (this.sqliteDB != null ? this.sqliteDB.getLinks() : this.postgresqlDB.getLinks()).get(0).id;
+		}
+		return this.firstLinkId;
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.db.close();
+	}
+
+}
@@ -0,0 +1,121 @@
+import benchmarks.BenchmarkTarget;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+
+/**
+ * Generates a synthetic road network, reproducibly from a seed: every link is a polyline that wanders from a random
+ * start in the extent of {@link BenchmarkTarget}, with segments of 5 to 100 meters and a slowly turning heading.
+ * The number of vertices per link follows a {@link VertexDistribution}, so there are many short and few long links.
+ *
+ * Link <code>i</code> only depends on the seed, the round and <code>i</code>, so links are generated lazily and in
+ * any order, and a network of tens of millions of links is never held in memory. Every round moves the geometries,
+ * but keeps the linkIds, as a new version of the same network.
+ */
+public class NetworkGenerator {
+
+	public final long seed;
+	public final int linkCount;
+	private final VertexDistribution vertices;
+
+	public NetworkGenerator(long seed, int linkCount, VertexDistribution vertices) {
+		this.seed = seed;
+		this.linkCount = linkCount;
+		this.vertices = vertices;
+	}
+
+	/**
+	 * The link with the index in the given round, with the index as id and <code>"link" + index</code> as linkId.
+	 */
+	public LinkDAO link(int index, int round) {
+		SplittableRandom random = new SplittableRandom(this.seed * 0x9e3779b97f4a7c15L + (long) round * 0xc2b2ae3d27d4eb4fL + index);
+		int vertexCount = this.vertices.sample(random);
+		StringBuilder geometry = new StringBuilder(16 + vertexCount * 36).append("LINESTRING (");
+		double x = BenchmarkTarget.EXTENT_MIN_X + random.nextDouble() * BenchmarkTarget.EXTENT_WIDTH;
+		double y = BenchmarkTarget.EXTENT_MIN_Y + random.nextDouble() * BenchmarkTarget.EXTENT_HEIGHT;
+		double heading = random.nextDouble() * 2 * Math.PI;
+		for (int v = 0; v < vertexCount; v++) {
+			if (v > 0) {
+				double length = 5 + random.nextDouble() * 95;
+				heading += (random.nextDouble() - 0.5) * Math.PI / 3;
+				x += Math.cos(heading) * length;
+				y += Math.sin(heading) * length;
+				geometry.append(", ");
+			}
+			// millimeters, as surveyed coordinates
+			geometry.append(Math.round(x * 1000) / 1000.0).append(' ').append(Math.round(y * 1000) / 1000.0);
+		}
+		return new LinkDAO(index, "link" + index, geometry.append(')').toString());
+	}
+
+	/** All links of the round, generated while iterating. */
+	public Iterator<LinkDAO> links(int round) {
+		return new Iterator<>() {
+			private int index = 0;
+
+			@Override
+			public boolean hasNext() {
+				return this.index < NetworkGenerator.this.linkCount;
+			}
+
+			@Override
+			public LinkDAO next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return link(this.index++, round);
+			}
+		};
+	}
+
+	/**
+	 * How many vertices a link has, at least 2 and at most {@value #MAX_VERTICES}.
+	 */
+	public interface VertexDistribution {
+
+		int MAX_VERTICES = 10_000;
+
+		int sample(SplittableRandom random);
+
+		/**
+		 * Parses <code>fixed:N</code>, <code>uniform:MIN:MAX</code> or <code>lognormal:MEDIAN:SIGMA</code>.
+		 * A log-normal distribution resembles real networks, e.g. <code>lognormal:8:0.9</code> has a median of 8
+		 * vertices, and one link in a hundred has more than 60.
+		 */
+		static VertexDistribution parse(String spec) {
+			String[] parts = spec.split(":");
+			try {
+				switch (parts[0]) {
+					case "fixed" -> {
+						int count = clamp(Integer.parseInt(parts[1]));
+						return random -> count;
+					}
+					case "uniform" -> {
+						int min = clamp(Integer.parseInt(parts[1]));
+						int max = clamp(Integer.parseInt(parts[2]));
+						if (min > max) {
+							throw new IllegalArgumentException("Invalid vertex distribution, the minimum is larger than the maximum: " + spec);
+						}
+						return random -> random.nextInt(min, max + 1);
+					}
+					case "lognormal" -> {
+						double median = Double.parseDouble(parts[1]);
+						double sigma = Double.parseDouble(parts[2]);
+						return random -> clamp((int) Math.round(median * Math.exp(sigma * random.nextGaussian())));
+					}
+					default -> {
+					}
+				}
+			} catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid vertex distribution: " + spec, e);
+			}
+			throw new IllegalArgumentException("Unknown vertex distribution: " + spec);
+		}
+
+		private static int clamp(int vertexCount) {
+			return Math.max(2, Math.min(MAX_VERTICES, vertexCount));
+		}
+	}
+
+}
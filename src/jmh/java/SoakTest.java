@@ -0,0 +1,370 @@
+import benchmarks.BenchmarkTarget;
+import org.HdrHistogram.Histogram;
+import org.jooq.impl.DSL;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static jooq.Tables.LINK;
+
+/**
+ * A soak test with concurrent, mixed traffic: reader threads run a weighted mix of reads, while writer threads write
+ * all links again and again, against every connection mode of a database. The links come from a {@link NetworkGenerator}.
+ * Reports the throughput and the latency percentiles of every operation, recorded with HdrHistogram after a warmup.
+ *
+ * Run with <code>mvn -Pbenchmark test-compile exec:exec@soak -Dsoak.args="--links=1000000 --duration=120"</code>.
+ * Options, with their defaults:
+ * <ul>
+ * <li><code>--database=sqlite</code>, or <code>postgresql</code>, configured as for <code>LinkBenchmarkTarget</code></li>
+ * <li><code>--modes=</code> all connection modes of the database, separated by commas</li>
+ * <li><code>--links=100000 --vertices=lognormal:8:0.9 --seed=4711</code>, see {@link NetworkGenerator}</li>
+ * <li><code>--readers=4 --writers=1</code> threads</li>
+ * <li><code>--mix=getLinkById:90,getLinksInEnvelope:9,getLinks:1</code>, the weights of the reads;
+ *   <code>--envelope=1000</code> is the side of the envelopes in meters</li>
+ * <li><code>--write=replaceLinks</code>, or <code>syncLinks</code>; <code>--write-pause=1000</code> milliseconds
+ *   between the writes of a writer; <code>--batch=10000</code> links per batch</li>
+ * <li><code>--warmup=10 --duration=60</code> seconds per mode</li>
+ * <li><code>--save-baseline=FILE</code> saves the results; <code>--baseline=FILE</code> compares with saved results, and
+ *   exits with status 1 if a throughput dropped or a p99 latency rose by more than <code>--tolerance=0.2</code></li>
+ * </ul>
+ */
+public class SoakTest {
+
+	private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+	static {
+		DEFAULTS.put("database", "sqlite");
+		DEFAULTS.put("modes", "");
+		DEFAULTS.put("links", "100000");
+		DEFAULTS.put("vertices", "lognormal:8:0.9");
+		DEFAULTS.put("seed", "4711");
+		DEFAULTS.put("readers", "4");
+		DEFAULTS.put("writers", "1");
+		DEFAULTS.put("mix", "getLinkById:90,getLinksInEnvelope:9,getLinks:1");
+		DEFAULTS.put("envelope", "1000");
+		DEFAULTS.put("write", "replaceLinks");
+		DEFAULTS.put("write-pause", "1000");
+		DEFAULTS.put("batch", "10000");
+		DEFAULTS.put("warmup", "10");
+		DEFAULTS.put("duration", "60");
+		DEFAULTS.put("baseline", "");
+		DEFAULTS.put("save-baseline", "");
+		DEFAULTS.put("tolerance", "0.2");
+	}
+
+	enum Operation {
+		getLinks, getLinkById, getLinksInEnvelope, replaceLinks, syncLinks
+	}
+
+	private final Map<String, String> options;
+	private final NetworkGenerator generator;
+	private final Map<Operation, Integer> readMix = new EnumMap<>(Operation.class);
+	private final int readWeightSum;
+	private final Operation writeOperation;
+
+	SoakTest(Map<String, String> options) {
+		this.options = options;
+		this.generator = new NetworkGenerator(Long.parseLong(options.get("seed")), Integer.parseInt(options.get("links")),
+				NetworkGenerator.VertexDistribution.parse(options.get("vertices")));
+		for (String entry : options.get("mix").split(",")) {
+			String[] parts = entry.split(":");
+			Operation operation = Operation.valueOf(parts[0]);
+			if (operation == Operation.replaceLinks || operation == Operation.syncLinks) {
+				throw new IllegalArgumentException("Not a read: " + operation);
+			}
+			this.readMix.put(operation, Integer.parseInt(parts[1]));
+		}
+		this.readWeightSum = this.readMix.values().stream().mapToInt(Integer::intValue).sum();
+		this.writeOperation = Operation.valueOf(options.get("write"));
+		if (this.writeOperation != Operation.replaceLinks && this.writeOperation != Operation.syncLinks) {
+			throw new IllegalArgumentException("Not a write: " + this.writeOperation);
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = parseOptions(args);
+		SoakTest soakTest = new SoakTest(options);
+		String database = options.get("database");
+		List<String> modes = options.get("modes").isEmpty()
+				? database.equals("postgresql") ? List.of("hikari", "connection") : List.of("datasource", "hikari", "connection", "writer-readers", "memory", "memory-hikari")
+				: List.of(options.get("modes").split(","));
+
+		Map<String, Double> results = new TreeMap<>();
+		for (String mode : modes) {
+			for (Result result : soakTest.run(database, mode)) {
+				System.out.println(result);
+				results.put(database + "." + mode + "." + result.operation + ".throughput", result.throughput);
+				results.put(database + "." + mode + "." + result.operation + ".p99", result.p99Millis);
+			}
+		}
+
+		if (!options.get("save-baseline").isEmpty()) {
+			saveBaseline(new File(options.get("save-baseline")), results);
+		}
+		if (!options.get("baseline").isEmpty()) {
+			List<String> regressions = compareWithBaseline(loadBaseline(new File(options.get("baseline"))), results, Double.parseDouble(options.get("tolerance")));
+			regressions.forEach(regression -> System.out.println("REGRESSION " + regression));
+			if (!regressions.isEmpty()) {
+				System.exit(1);
+			}
+			System.out.println("No regressions against " + options.get("baseline"));
+		}
+	}
+
+	static Map<String, String> parseOptions(String[] args) {
+		Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+		for (String arg : args) {
+			int separator = arg.indexOf('=');
+			String key = arg.startsWith("--") && separator > 2 ? arg.substring(2, separator) : null;
+			if (key == null || !DEFAULTS.containsKey(key)) {
+				throw new IllegalArgumentException("Unknown option " + arg + ", options are --" + String.join("=, --", DEFAULTS.keySet()) + "=");
+			}
+			options.put(key, arg.substring(separator + 1));
+		}
+		return options;
+	}
+
+	/**
+	 * Loads the network into a new database of the connection mode, runs the readers and writers for the warmup and
+	 * the duration, and returns the results of the initial load and of every operation measured after the warmup.
+	 */
+	List<Result> run(String database, String mode) throws Exception {
+		System.out.println("# " + database + " " + mode + ": loading " + this.generator.linkCount + " links");
+		LinkDatabase db;
+		if (database.equals("sqlite")) {
+			File dbFile = LinkBenchmarkTarget.sqliteFile("soak-" + mode);
+			if (dbFile.exists() && !dbFile.delete()) {
+				throw new IOException("Could not delete " + dbFile);
+			}
+			db = LinkBenchmarkTarget.openSqlite(dbFile, mode, SqlitePragmaProfile.DEFAULT.name());
+		} else {
+			db = LinkBenchmarkTarget.openPostgresql(mode);
+		}
+
+		try (db) {
+			int batchSize = Integer.parseInt(this.options.get("batch"));
+			long loadStart = System.nanoTime();
+			db.replaceLinks(this.generator.links(0), batchSize);
+			long loadNanos = System.nanoTime() - loadStart;
+			Histogram loadHistogram = new Histogram(3);
+			loadHistogram.recordValue(loadNanos / 1_000);
+			AtomicLong firstLinkId = new AtomicLong(firstLinkId(db));
+
+			int readers = Integer.parseInt(this.options.get("readers"));
+			int writers = Integer.parseInt(this.options.get("writers"));
+			long warmupNanos = Long.parseLong(this.options.get("warmup")) * 1_000_000_000L;
+			long durationNanos = Long.parseLong(this.options.get("duration")) * 1_000_000_000L;
+			long writePauseMillis = Long.parseLong(this.options.get("write-pause"));
+			double envelopeSize = Double.parseDouble(this.options.get("envelope"));
+			System.out.println("# " + database + " " + mode + ": running " + readers + " readers and " + writers + " writers");
+
+			long start = System.nanoTime();
+			long measureStart = start + warmupNanos;
+			long end = measureStart + durationNanos;
+			List<Worker> workers = new ArrayList<>();
+			CountDownLatch done = new CountDownLatch(readers + writers);
+			for (int i = 0; i < readers + writers; i++) {
+				boolean writer = i >= readers;
+				SplittableRandom random = new SplittableRandom(this.generator.seed + i);
+				Worker worker = new Worker(measureStart, end, writer ? writePauseMillis : 0,
+						() -> writer ? this.writeOperation : chooseRead(random),
+						operation -> execute(db, operation, random, firstLinkId, batchSize, envelopeSize));
+				workers.add(worker);
+				Thread thread = new Thread(() -> {
+					try {
+						worker.run();
+					} finally {
+						done.countDown();
+					}
+				}, (writer ? "soak-writer-" : "soak-reader-") + i);
+				thread.setDaemon(true);
+				thread.start();
+			}
+			done.await();
+			double measuredSeconds = (Math.max(end, System.nanoTime()) - measureStart) / 1e9;
+
+			List<Result> results = new ArrayList<>();
+			results.add(new Result(mode, "initialLoad", loadHistogram, 0, 1 / (loadNanos / 1e9)));
+			for (Operation operation : Operation.values()) {
+				Histogram merged = new Histogram(3);
+				long errors = 0;
+				for (Worker worker : workers) {
+					Histogram histogram = worker.histograms.get(operation);
+					if (histogram != null) {
+						merged.add(histogram);
+					}
+					errors += worker.errors.getOrDefault(operation, 0L);
+				}
+				if (merged.getTotalCount() > 0 || errors > 0) {
+					results.add(new Result(mode, operation.name(), merged, errors, merged.getTotalCount() / measuredSeconds));
+				}
+			}
+			return results;
+		}
+	}
+
+	private Operation chooseRead(SplittableRandom random) {
+		int pick = random.nextInt(this.readWeightSum);
+		for (Map.Entry<Operation, Integer> entry : this.readMix.entrySet()) {
+			pick -= entry.getValue();
+			if (pick < 0) {
+				return entry.getKey();
+			}
+		}
+		throw new IllegalStateException("No read in the mix");
+	}
+
+	private void execute(LinkDatabase db, Operation operation, SplittableRandom random, AtomicLong firstLinkId, int batchSize, double envelopeSize) {
+		switch (operation) {
+			case getLinks -> db.getLinks();
+			case getLinkById -> db.getLinkById(firstLinkId.get() + random.nextInt(this.generator.linkCount));
+			case getLinksInEnvelope -> {
+				double minX = BenchmarkTarget.EXTENT_MIN_X + random.nextDouble() * (BenchmarkTarget.EXTENT_WIDTH - envelopeSize);
+				double minY = BenchmarkTarget.EXTENT_MIN_Y + random.nextDouble() * (BenchmarkTarget.EXTENT_HEIGHT - envelopeSize);
+				db.getLinksInEnvelope(minX, minY, minX + envelopeSize, minY + envelopeSize);
+			}
+			case replaceLinks, syncLinks -> {
+				// a new version of the network every time
+				int round = random.nextInt(1, Integer.MAX_VALUE);
+				if (operation == Operation.syncLinks) {
+					db.syncLinks(this.generator.links(round), batchSize);
+				} else {
+					db.replaceLinks(this.generator.links(round), batchSize);
+				}
+				firstLinkId.set(firstLinkId(db));
+			}
+		}
+	}
+
+	/** The ids are assigned by the database, and consecutive within one write of all links. */
+	private static long firstLinkId(LinkDatabase db) {
+		Long id = db.inUnitOfWork(tx -> tx.select(DSL.min(LINK.ID)).from(LINK).fetchOne(0, Long.class));
+		return id == null ? 0 : id;
+	}
+
+	static void saveBaseline(File file, Map<String, Double> results) throws IOException {
+		Properties properties = new Properties();
+		results.forEach((key, value) -> properties.setProperty(key, Double.toString(value)));
+		try (Writer writer = Files.newBufferedWriter(file.toPath())) {
+			properties.store(writer, "SoakTest baseline");
+		}
+	}
+
+	static Map<String, Double> loadBaseline(File file) throws IOException {
+		Properties properties = new Properties();
+		try (Reader reader = Files.newBufferedReader(file.toPath())) {
+			properties.load(reader);
+		}
+		Map<String, Double> baseline = new TreeMap<>();
+		properties.stringPropertyNames().forEach(key -> baseline.put(key, Double.parseDouble(properties.getProperty(key))));
+		return baseline;
+	}
+
+	/**
+	 * @return a description of every throughput that is lower, and every p99 latency that is higher than in the
+	 * baseline, by more than the tolerance, e.g. 0.2 for 20%. Results without a baseline are not compared.
+	 */
+	static List<String> compareWithBaseline(Map<String, Double> baseline, Map<String, Double> results, double tolerance) {
+		List<String> regressions = new ArrayList<>();
+		results.forEach((key, value) -> {
+			Double base = baseline.get(key);
+			if (base == null) {
+				return;
+			}
+			boolean regressed = key.endsWith(".throughput") ? value < base * (1 - tolerance) : value > base * (1 + tolerance);
+			if (regressed) {
+				regressions.add(String.format(Locale.ROOT, "%s: %.3f, baseline %.3f (%+.1f%%)", key, value, base, (value / base - 1) * 100));
+			}
+		});
+		return regressions;
+	}
+
+	/**
+	 * Runs operations again and again until the end, pausing in between, and records their latencies in microseconds
+	 * and their errors, per operation, from the start of the measurement.
+	 */
+	private static class Worker implements Runnable {
+
+		private final long measureStart;
+		private final long end;
+		private final long pauseMillis;
+		private final Supplier<Operation> choose;
+		private final Consumer<Operation> execute;
+		final Map<Operation, Histogram> histograms = new EnumMap<>(Operation.class);
+		final Map<Operation, Long> errors = new EnumMap<>(Operation.class);
+		private boolean failed = false;
+
+		Worker(long measureStart, long end, long pauseMillis, Supplier<Operation> choose, Consumer<Operation> execute) {
+			this.measureStart = measureStart;
+			this.end = end;
+			this.pauseMillis = pauseMillis;
+			this.choose = choose;
+			this.execute = execute;
+		}
+
+		@Override
+		public void run() {
+			long now;
+			while ((now = System.nanoTime()) < this.end) {
+				Operation operation = this.choose.get();
+				try {
+					this.execute.accept(operation);
+					long finished = System.nanoTime();
+					if (now >= this.measureStart) {
+						this.histograms.computeIfAbsent(operation, o -> new Histogram(3)).recordValue((finished - now) / 1_000);
+					}
+				} catch (RuntimeException e) {
+					if (!this.failed) {
+						System.err.println(Thread.currentThread().getName() + ": " + operation + " failed, further errors are only counted: " + e);
+						this.failed = true;
+					}
+					if (now >= this.measureStart) {
+						this.errors.merge(operation, 1L, Long::sum);
+					}
+				}
+				if (this.pauseMillis > 0) {
+					try {
+						Thread.sleep(this.pauseMillis);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						return;
+					}
+				}
+			}
+		}
+	}
+
+	/** The throughput in operations per second and the latency percentiles of one operation. */
+	record Result(String mode, String operation, Histogram histogram, long errors, double throughput, double p50Millis, double p99Millis, double p999Millis, double maxMillis) {
+
+		Result(String mode, String operation, Histogram histogram, long errors, double throughput) {
+			this(mode, operation, histogram, errors, throughput,
+					histogram.getValueAtPercentile(50) / 1000.0, histogram.getValueAtPercentile(99) / 1000.0,
+					histogram.getValueAtPercentile(99.9) / 1000.0, histogram.getMaxValue() / 1000.0);
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.ROOT, "%-15s %-20s %10d ops %12.2f ops/s   p50 %10.3f ms   p99 %10.3f ms   p999 %10.3f ms   max %10.3f ms%s",
+					this.mode, this.operation, this.histogram.getTotalCount(), this.throughput, this.p50Millis, this.p99Millis, this.p999Millis, this.maxMillis,
+					this.errors > 0 ? "   " + this.errors + " errors" : "");
+		}
+	}
+
+}
@@ -0,0 +1,86 @@
+package benchmarks;
+
+import java.io.IOException;
+
+/**
+ * JMH does not accept benchmarks in the default package, and classes in a named package cannot import
+ * the database classes from the default package. The benchmarks thus talk to the databases through this
+ * interface, which is implemented by <code>LinkBenchmarkTarget</code> in the default package.
+ */
+public interface BenchmarkTarget extends AutoCloseable {
+
+	/** The area covered by the links of {@link #generateLinks(int, int)}. */
+	double EXTENT_MIN_X = 2_480_000;
+	double EXTENT_MIN_Y = 1_070_000;
+	double EXTENT_WIDTH = 350_000;
+	double EXTENT_HEIGHT = 230_000;
+
+	static BenchmarkTarget create(String database, String connectionMode, String pragmaProfile) throws ReflectiveOperationException {
+		return (BenchmarkTarget) Class.forName("LinkBenchmarkTarget")
+				.getConstructor(String.class, String.class, String.class)
+				.newInstance(database, connectionMode, pragmaProfile);
+	}
+
+	/** Sets the <code>DBUtils.StartupMode</code> of the databases opened afterwards. */
+	static void setStartupMode(String startupMode) throws ReflectiveOperationException {
+		Class.forName("LinkBenchmarkTarget").getMethod("setStartupMode", String.class).invoke(null, startupMode);
+	}
+
+	/** Opens the existing database of the connection mode and closes it again, returning the time of the schema check in nanoseconds. */
+	static long openAndClose(String database, String connectionMode) throws ReflectiveOperationException {
+		return (Long) Class.forName("LinkBenchmarkTarget").getMethod("openAndClose", String.class, String.class).invoke(null, database, connectionMode);
+	}
+
+	void generateLinks(int linkCount, int vertexCount);
+
+	/** Sets the geometry encoding of the database, and converts the generated links to it. */
+	void setGeometryEncoding(String geometryEncoding);
+
+	/** Records into a <code>LinkMetrics</code> if <code>enabled</code>, to measure the overhead of the metrics. */
+	void setMetrics(boolean enabled);
+
+	void replaceLinks();
+
+	void replaceLinksConnectionFromDataSource();
+
+	void replaceLinksStreaming(int batchSize, String insertStrategy);
+
+	void replaceLinksShadowTable(int batchSize);
+
+	void replaceLinksJdbc() throws Exception;
+
+	void replaceLinksJdbcStreaming(int batchSize) throws Exception;
+
+	/** Replaces the links from a <code>LinkBatch</code> holding the generated links. */
+	void replaceLinksBatch();
+
+	/**
+	 * Sets up {@link #bulkLoad(int)}: a <code>BulkLoader</code> for <code>table</code> with <code>loadStrategy</code>, an
+	 * <code>InsertStrategy</code> or <code>SHADOW_TABLE</code> for a replace through a staging table, and <code>rowCount</code> generated rows.
+	 */
+	void prepareBulkLoad(String table, String loadStrategy, int rowCount);
+
+	/** Replaces all rows of the prepared table with the generated rows. */
+	void bulkLoad(int batchSize);
+
+	int getLinks();
+
+	/** Same as {@link #getLinks()}, reading into a <code>LinkBatch</code>. */
+	int getLinkBatch();
+
+	int getLinksInEnvelope(double minX, double minY, double maxX, double maxY);
+
+	/** Looks up the <code>index</code>-th stored link by its id, with SQL rendered once. */
+	String getLinkById(int index);
+
+	/** Same as {@link #getLinkById(int)}, with the query built by jOOQ on every call. */
+	String getLinkByIdJooq(int index);
+
+	/** Same as {@link #getLinkById(int)}, through a <code>LinkCache</code> big enough for all links. */
+	String getLinkByIdCached(int index);
+
+	/** Closes the database. Narrower than <code>AutoCloseable</code>, which may throw <code>InterruptedException</code>. */
+	@Override
+	void close() throws IOException;
+
+}
@@ -0,0 +1,73 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the load strategies of the generic <code>BulkLoader</code>, for every table it is configured for.
+ * A new table only needs its rows generated in <code>LinkBenchmarkTarget.prepareBulkLoad</code> to be measured here.
+ *
+ * <code>COPY</code> is PostgreSQL only, run it with <code>-p database=postgresql -p loadStrategy=BATCH,MULTI_ROW_VALUES,COPY,SHADOW_TABLE</code>,
+ * see {@link LinkBenchmark} for the connection settings.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class BulkLoadBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class Load {
+
+		@Param({"sqlite"})
+		public String database;
+
+		@Param({"hikari"})
+		public String connectionMode;
+
+		@Param({"Link"})
+		public String table;
+
+		@Param({"BATCH", "MULTI_ROW_VALUES", "SHADOW_TABLE"})
+		public String loadStrategy;
+
+		@Param({"50000"})
+		public int rowCount;
+
+		@Param({"10000"})
+		public int batchSize;
+
+		BenchmarkTarget target;
+
+		@Setup(Level.Trial)
+		public void setup() throws Exception {
+			this.target = BenchmarkTarget.create(this.database, this.connectionMode, "DEFAULT");
+			this.target.prepareBulkLoad(this.table, this.loadStrategy, this.rowCount);
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() throws Exception {
+			this.target.close();
+		}
+	}
+
+	@Benchmark
+	public void replaceRows(Load load) {
+		load.target.bulkLoad(load.batchSize);
+	}
+
+}
@@ -0,0 +1,182 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the write and read paths of the link tables.
+ *
+ * Run with <code>mvn -Pbenchmark test-compile exec:exec</code>. JMH options can be passed with
+ * <code>-Djmh.args="..."</code>, e.g. <code>-Djmh.args="LinkBenchmark.getLinks -p linkCount=1000000 -prof gc"</code>.
+ * PostgreSQL is only measured when selected with <code>-p database=postgresql -p connectionMode=hikari,connection</code>,
+ * see <code>LinkBenchmarkTarget</code> for the connection settings.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class LinkBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class Links {
+
+		@Param({"sqlite"})
+		public String database;
+
+		@Param({"datasource", "hikari", "connection", "writer-readers", "memory"})
+		public String connectionMode;
+
+		@Param({"DEFAULT"})
+		public String pragmaProfile;
+
+		@Param({"50000"})
+		public int linkCount;
+
+		@Param({"2", "20"})
+		public int vertexCount;
+
+		@Param({"WKT", "WKB"})
+		public String geometryEncoding;
+
+		@Param({"false"})
+		public boolean metrics;
+
+		BenchmarkTarget target;
+
+		@Setup(Level.Trial)
+		public void setup() throws Exception {
+			this.target = BenchmarkTarget.create(this.database, this.connectionMode, this.pragmaProfile);
+			this.target.generateLinks(this.linkCount, this.vertexCount);
+			this.target.setGeometryEncoding(this.geometryEncoding);
+			this.target.setMetrics(this.metrics);
+			this.target.replaceLinks();
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() throws Exception {
+			this.target.close();
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Batch {
+
+		@Param({"1000", "10000"})
+		public int batchSize;
+	}
+
+	@State(Scope.Benchmark)
+	public static class Insert {
+
+		@Param({"BATCH", "MULTI_ROW_VALUES"})
+		public String insertStrategy;
+	}
+
+	@State(Scope.Thread)
+	public static class Envelopes {
+
+		/** Width and height of the queried envelopes, in the units of the generated coordinates. */
+		@Param({"1000", "10000"})
+		public double envelopeSize;
+
+		private final Random random = new Random(4711);
+
+		double nextMinX() {
+			return BenchmarkTarget.EXTENT_MIN_X + this.random.nextDouble() * (BenchmarkTarget.EXTENT_WIDTH - this.envelopeSize);
+		}
+
+		double nextMinY() {
+			return BenchmarkTarget.EXTENT_MIN_Y + this.random.nextDouble() * (BenchmarkTarget.EXTENT_HEIGHT - this.envelopeSize);
+		}
+	}
+
+	@Benchmark
+	public void replaceLinks(Links links) {
+		links.target.replaceLinks();
+	}
+
+	@Benchmark
+	public void replaceLinks_ConnectionFromDataSource(Links links) {
+		links.target.replaceLinksConnectionFromDataSource();
+	}
+
+	@Benchmark
+	public void replaceLinks_Streaming(Links links, Batch batch, Insert insert) {
+		links.target.replaceLinksStreaming(batch.batchSize, insert.insertStrategy);
+	}
+
+	@Benchmark
+	public void replaceLinks_ShadowTable(Links links, Batch batch) {
+		links.target.replaceLinksShadowTable(batch.batchSize);
+	}
+
+	@Benchmark
+	public void replaceLinks_JDBC(Links links) throws Exception {
+		links.target.replaceLinksJdbc();
+	}
+
+	@Benchmark
+	public void replaceLinks_JDBC_Streaming(Links links, Batch batch) throws Exception {
+		links.target.replaceLinksJdbcStreaming(batch.batchSize);
+	}
+
+	@Benchmark
+	public void replaceLinks_LinkBatch(Links links) {
+		links.target.replaceLinksBatch();
+	}
+
+	@Benchmark
+	public int getLinks(Links links) {
+		return links.target.getLinks();
+	}
+
+	@Benchmark
+	public int getLinkBatch(Links links) {
+		return links.target.getLinkBatch();
+	}
+
+	@State(Scope.Thread)
+	public static class Lookups {
+
+		private final Random random = new Random(4711);
+	}
+
+	/** A high rate of small calls, where the per-call setup matters; see <code>gc.alloc.rate.norm</code> of <code>-prof gc</code>. */
+	@Benchmark
+	public String getLinkById(Links links, Lookups lookups) {
+		return links.target.getLinkById(lookups.random.nextInt(links.linkCount));
+	}
+
+	@Benchmark
+	public String getLinkById_jooq(Links links, Lookups lookups) {
+		return links.target.getLinkByIdJooq(lookups.random.nextInt(links.linkCount));
+	}
+
+	@Benchmark
+	public String getLinkById_cached(Links links, Lookups lookups) {
+		return links.target.getLinkByIdCached(lookups.random.nextInt(links.linkCount));
+	}
+
+	@Benchmark
+	public int getLinksInEnvelope(Links links, Envelopes envelopes) {
+		double minX = envelopes.nextMinX();
+		double minY = envelopes.nextMinY();
+		return links.target.getLinksInEnvelope(minX, minY, minX + envelopes.envelopeSize, minY + envelopes.envelopeSize);
+	}
+
+}
@@ -0,0 +1,62 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures opening and closing an up-to-date database, i.e. the startup cost of a short-lived process,
+ * with Flyway on every start compared to the fast-start schema check.
+ *
+ * Run with <code>-Djmh.args="StartupBenchmark -prof gc"</code>, see {@link LinkBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class StartupBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class Database {
+
+		@Param({"sqlite"})
+		public String database;
+
+		@Param({"hikari", "connection"})
+		public String connectionMode;
+
+		@Param({"MIGRATE", "FAST_START"})
+		public String startupMode;
+
+		@Setup(Level.Trial)
+		public void setup() throws Exception {
+			// creates and migrates the database
+			BenchmarkTarget.create(this.database, this.connectionMode, "DEFAULT").close();
+			BenchmarkTarget.setStartupMode(this.startupMode);
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() throws Exception {
+			BenchmarkTarget.setStartupMode("MIGRATE");
+		}
+	}
+
+	@Benchmark
+	public long openAndClose(Database database) throws Exception {
+		return BenchmarkTarget.openAndClose(database.database, database.connectionMode);
+	}
+
+}
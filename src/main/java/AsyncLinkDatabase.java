@@ -0,0 +1,198 @@
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Non-blocking facade for a {@link LinkDatabase}: every method returns a {@link CompletableFuture} right away and runs
+ * the blocking call in the background, so callers do not park their own threads on database locks.
+ *
+ * Reads run concurrently, but at most <code>readConcurrency</code> at a time, which should match the number of read
+ * connections, e.g. the readers of {@link SqliteDB#createSqliteWithWriterAndReaders(java.io.File, int)} or the Hikari pool size.
+ * On Java 21 and later every read gets its own virtual thread, waiting for a permit costs no platform thread then.
+ * A read inside the SQLite driver pins its carrier thread, the permits also bound how many carriers are pinned.
+ * On Java 17 reads are queued for a pool of <code>readConcurrency</code> platform threads instead.
+ *
+ * Writes are queued for one write thread, in the order they arrive, so SQLite never sees two writers (and never
+ * returns SQLITE_BUSY); in PostgreSQL concurrent replaces of all links would wait for each other's locks anyway.
+ * The queue holds at most <code>writeQueueCapacity</code> writes; further writes fail right away with a
+ * {@link RejectedExecutionException}, so an overloaded writer pushes back instead of piling up work.
+ *
+ * Closing the facade completes the queued writes, but does not close the database.
+ */
+public class AsyncLinkDatabase implements AutoCloseable {
+
+	/** <code>Executors.newVirtualThreadPerTaskExecutor()</code>, or <code>null</code> before Java 21. */
+	private static final MethodHandle NEW_VIRTUAL_THREAD_EXECUTOR = findVirtualThreadExecutor();
+
+	private final LinkDatabase db;
+	private final ExecutorService readExecutor;
+	private final Semaphore readPermits;
+	private final ThreadPoolExecutor writeExecutor;
+
+	public AsyncLinkDatabase(LinkDatabase db, int readConcurrency, int writeQueueCapacity) {
+		this.db = db;
+		if (NEW_VIRTUAL_THREAD_EXECUTOR != null) {
+			this.readExecutor = newVirtualThreadExecutor();
+			this.readPermits = new Semaphore(readConcurrency, true);
+		} else {
+			this.readExecutor = Executors.newFixedThreadPool(readConcurrency, daemonThreads("link-reader"));
+			this.readPermits = null;
+		}
+		this.writeExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(writeQueueCapacity), daemonThreads("link-writer"), new ThreadPoolExecutor.AbortPolicy());
+	}
+
+	/** Whether reads run on virtual threads, i.e. whether this runs on Java 21 or later. */
+	public static boolean usesVirtualThreads() {
+		return NEW_VIRTUAL_THREAD_EXECUTOR != null;
+	}
+
+	public CompletableFuture<List<LinkDAO>> getLinksAsync() {
+		return read(LinkDatabase::getLinks);
+	}
+
+	public CompletableFuture<LinkBatch> getLinkBatchAsync() {
+		return read(LinkDatabase::getLinkBatch);
+	}
+
+	public CompletableFuture<LinkDAO> getLinkByIdAsync(long id) {
+		return read(db -> db.getLinkById(id));
+	}
+
+	public CompletableFuture<List<LinkDAO>> getLinksInEnvelopeAsync(double minX, double minY, double maxX, double maxY) {
+		return read(db -> db.getLinksInEnvelope(minX, minY, maxX, maxY));
+	}
+
+	public CompletableFuture<Void> replaceLinksAsync(List<LinkDAO> linkDAOs) {
+		return write(db -> {
+			db.replaceLinks(linkDAOs);
+			return null;
+		});
+	}
+
+	/**
+	 * The iterator is consumed on the write thread, once the write is dequeued.
+	 */
+	public CompletableFuture<Void> replaceLinksAsync(Iterator<LinkDAO> linkDAOs, int batchSize) {
+		return write(db -> {
+			db.replaceLinks(linkDAOs, batchSize);
+			return null;
+		});
+	}
+
+	public CompletableFuture<Void> replaceLinksAsync(LinkBatch links) {
+		return write(db -> {
+			db.replaceLinks(links);
+			return null;
+		});
+	}
+
+	public CompletableFuture<SyncResult> syncLinksAsync(Iterator<LinkDAO> linkDAOs, int batchSize) {
+		return write(db -> db.syncLinks(linkDAOs, batchSize));
+	}
+
+	/**
+	 * Runs any read on the database, e.g. a method not covered by this facade.
+	 */
+	public <T> CompletableFuture<T> read(Function<? super LinkDatabase, T> function) {
+		Semaphore permits = this.readPermits;
+		return submit(this.readExecutor, () -> {
+			if (permits == null) {
+				return function.apply(this.db);
+			}
+			permits.acquireUninterruptibly();
+			try {
+				return function.apply(this.db);
+			} finally {
+				permits.release();
+			}
+		});
+	}
+
+	/**
+	 * Queues any write on the database, e.g. a method not covered by this facade.
+	 * The future fails with a {@link RejectedExecutionException} if the write queue is full or the facade is closed.
+	 */
+	public <T> CompletableFuture<T> write(Function<? super LinkDatabase, T> function) {
+		return submit(this.writeExecutor, () -> function.apply(this.db));
+	}
+
+	/** The number of writes waiting for the write thread, not counting the running one. */
+	public int getQueuedWriteCount() {
+		return this.writeExecutor.getQueue().size();
+	}
+
+	/**
+	 * Stops accepting reads and writes, and waits until the already queued ones are done.
+	 */
+	@Override
+	public void close() throws IOException {
+		this.writeExecutor.shutdown();
+		this.readExecutor.shutdown();
+		try {
+			while (!this.writeExecutor.awaitTermination(1, TimeUnit.MINUTES) || !this.readExecutor.awaitTermination(1, TimeUnit.MINUTES)) {
+				// long writes, keep waiting
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for queued writes.", e);
+		}
+	}
+
+	private static <T> CompletableFuture<T> submit(ExecutorService executor, Supplier<T> task) {
+		try {
+			return CompletableFuture.supplyAsync(task, executor);
+		} catch (RejectedExecutionException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+	}
+
+	private static ThreadFactory daemonThreads(String name) {
+		AtomicInteger counter = new AtomicInteger();
+		return runnable -> {
+			Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	/*
+	 * Looked up reflectively, so the project still compiles for Java 17. Once it targets Java 21,
+	 * this becomes a plain call of Executors.newVirtualThreadPerTaskExecutor().
+	 */
+	private static MethodHandle findVirtualThreadExecutor() {
+		if (Runtime.version().feature() < 21) {
+			// a preview feature before
+			return null;
+		}
+		try {
+			return MethodHandles.publicLookup().findStatic(Executors.class, "newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class));
+		} catch (NoSuchMethodException | IllegalAccessException e) {
+			return null;
+		}
+	}
+
+	private static ExecutorService newVirtualThreadExecutor() {
+		try {
+			return (ExecutorService) NEW_VIRTUAL_THREAD_EXECUTOR.invokeExact();
+		} catch (Throwable e) {
+			throw new IllegalStateException("Could not create virtual thread executor.", e);
+		}
+	}
+
+}
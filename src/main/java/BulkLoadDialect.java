@@ -0,0 +1,171 @@
+import org.jooq.DSLContext;
+import org.jooq.Record;
+import org.jooq.Result;
+import org.jooq.SQLDialect;
+import org.jooq.Table;
+import org.sqlite.SQLiteConnection;
+import org.sqlite.SQLiteLimits;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * What a {@link BulkLoader} does differently per database: the supported {@link InsertStrategy}s, the limit of bound
+ * variables, and how a staging table is created, indexed and swapped in place of the loaded table.
+ */
+enum BulkLoadDialect {
+
+	SQLITE {
+		@Override
+		boolean supports(InsertStrategy insertStrategy) {
+			return insertStrategy != InsertStrategy.COPY;
+		}
+
+		@Override
+		String tableName(Table<?> table) {
+			return table.getName();
+		}
+
+		/** SQLITE_MAX_VARIABLE_NUMBER, as the native library was compiled. */
+		@Override
+		int maxBindVariables(Connection conn) throws SQLException {
+			return conn.unwrap(SQLiteConnection.class).getDatabase().limit(SQLiteLimits.SQLITE_LIMIT_VARIABLE_NUMBER.getId(), -1);
+		}
+
+		/** Same columns as the table, but without its indexes and triggers. */
+		@Override
+		void createStagingTable(DSLContext ctx, String tableName, String stagingTable) {
+			String tableSql = (String) ctx.fetchValue("SELECT sql FROM sqlite_master WHERE type = 'table' AND name = ?", tableName);
+			String stagingTableSql = tableSql.replaceFirst("(?i)^CREATE TABLE\\s+\"?" + Pattern.quote(tableName) + "\"?", "CREATE TABLE " + Matcher.quoteReplacement(stagingTable));
+			ctx.dropTableIfExists(stagingTable).execute();
+			ctx.execute(stagingTableSql);
+		}
+
+		@Override
+		void indexStagingTable(DSLContext ctx, String tableName, String stagingTable) {
+			// SQLite cannot rename indexes, they are built by the swap
+		}
+
+		/** Re-creates all indexes and triggers of the table after the rename, within the swap transaction. */
+		@Override
+		void swapStagingTable(DSLContext tx, String tableName, String stagingTable) {
+			List<String> dependentSql = tx.fetchValues("SELECT sql FROM sqlite_master WHERE tbl_name = ? AND type IN ('index', 'trigger') AND sql IS NOT NULL", tableName)
+				.stream().map(String.class::cast).toList();
+			tx.dropTable(tableName).execute();
+			tx.alterTable(stagingTable).renameTo(tableName).execute();
+			for (String sql : dependentSql) {
+				tx.execute(sql);
+			}
+		}
+	},
+
+	POSTGRES {
+		@Override
+		boolean supports(InsertStrategy insertStrategy) {
+			return true;
+		}
+
+		/** Lower case, as the tables are created with unquoted names. */
+		@Override
+		String tableName(Table<?> table) {
+			return table.getName().toLowerCase(Locale.ROOT);
+		}
+
+		@Override
+		int maxBindVariables(Connection conn) {
+			return PostgresqlDB.MAX_BIND_VARIABLES;
+		}
+
+		/** Same columns, defaults and check constraints as the table, but without its keys and indexes. */
+		@Override
+		void createStagingTable(DSLContext ctx, String tableName, String stagingTable) {
+			ctx.dropTableIfExists(stagingTable).execute();
+			ctx.execute("CREATE TABLE " + stagingTable + " (LIKE " + tableName + " INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+		}
+
+		/**
+		 * Builds the primary key, the unique constraints and the indexes of the table on the staging table, with the suffix
+		 * {@value BulkLoader#STAGING_SUFFIX}, once all rows are loaded.
+		 */
+		@Override
+		void indexStagingTable(DSLContext ctx, String tableName, String stagingTable) {
+			for (Record constraint : fetchKeyConstraints(ctx, tableName)) {
+				ctx.execute("ALTER TABLE " + stagingTable + " ADD CONSTRAINT " + constraint.get(0) + BulkLoader.STAGING_SUFFIX + " " + constraint.get(1));
+			}
+			for (Record index : fetchSecondaryIndexes(ctx, tableName)) {
+				String indexName = (String) index.get(0);
+				ctx.execute(((String) index.get(1)).replaceFirst(
+					"INDEX " + Pattern.quote(indexName) + " ON (\\S+\\.)?" + Pattern.quote(tableName) + " ",
+					Matcher.quoteReplacement("INDEX " + indexName + BulkLoader.STAGING_SUFFIX + " ON " + stagingTable + " ")));
+			}
+		}
+
+		/**
+		 * The sequences of serial columns are handed over to the staging table, and its constraints and indexes are
+		 * renamed to the original names. Triggers are re-created.
+		 */
+		@Override
+		void swapStagingTable(DSLContext tx, String tableName, String stagingTable) {
+			List<String> constraintNames = fetchKeyConstraints(tx, tableName).getValues(0, String.class);
+			List<String> indexNames = fetchSecondaryIndexes(tx, tableName).getValues(0, String.class);
+			List<String> triggerSql = tx.fetchValues("SELECT pg_get_triggerdef(oid) FROM pg_trigger WHERE tgrelid = ?::regclass AND NOT tgisinternal", tableName)
+				.stream().map(String.class::cast).toList();
+			for (Record sequence : tx.fetch("SELECT attname, pg_get_serial_sequence(?, attname) FROM pg_attribute WHERE attrelid = ?::regclass AND attnum > 0 AND NOT attisdropped", tableName, tableName)) {
+				if (sequence.get(1) != null) {
+					tx.execute("ALTER SEQUENCE " + sequence.get(1) + " OWNED BY " + stagingTable + "." + sequence.get(0));
+				}
+			}
+			tx.execute("DROP TABLE " + tableName);
+			tx.execute("ALTER TABLE " + stagingTable + " RENAME TO " + tableName);
+			for (String constraintName : constraintNames) {
+				tx.execute("ALTER TABLE " + tableName + " RENAME CONSTRAINT " + constraintName + BulkLoader.STAGING_SUFFIX + " TO " + constraintName);
+			}
+			for (String indexName : indexNames) {
+				tx.execute("ALTER INDEX " + indexName + BulkLoader.STAGING_SUFFIX + " RENAME TO " + indexName);
+			}
+			for (String sql : triggerSql) {
+				tx.execute(sql);
+			}
+		}
+
+		/** The name and definition of the primary key and the unique constraints. */
+		private static Result<Record> fetchKeyConstraints(DSLContext ctx, String tableName) {
+			return ctx.fetch("SELECT conname, pg_get_constraintdef(oid) FROM pg_constraint WHERE conrelid = ?::regclass AND contype IN ('p', 'u') ORDER BY conname", tableName);
+		}
+
+		/** The name and definition of the indexes that do not belong to a constraint. */
+		private static Result<Record> fetchSecondaryIndexes(DSLContext ctx, String tableName) {
+			return ctx.fetch("SELECT indexname, indexdef FROM pg_indexes WHERE schemaname = current_schema() AND tablename = ? "
+				+ "AND indexname NOT IN (SELECT conname FROM pg_constraint WHERE conrelid = ?::regclass) ORDER BY indexname", tableName, tableName);
+		}
+	};
+
+	static BulkLoadDialect of(SQLDialect dialect) {
+		return switch (dialect.family()) {
+			case SQLITE -> SQLITE;
+			case POSTGRES -> POSTGRES;
+			default -> throw new IllegalArgumentException("Bulk loading is not supported for " + dialect);
+		};
+	}
+
+	abstract boolean supports(InsertStrategy insertStrategy);
+
+	/** The name of the table as used in plain SQL and in the system catalog. */
+	abstract String tableName(Table<?> table);
+
+	abstract int maxBindVariables(Connection conn) throws SQLException;
+
+	/** Creates the empty staging table, replacing a left-over one. */
+	abstract void createStagingTable(DSLContext ctx, String tableName, String stagingTable);
+
+	/** Builds what the loaded staging table needs before the swap. */
+	abstract void indexStagingTable(DSLContext ctx, String tableName, String stagingTable);
+
+	/** Replaces the table with the staging table, in the transaction of <code>tx</code>. */
+	abstract void swapStagingTable(DSLContext tx, String tableName, String stagingTable);
+
+}
@@ -0,0 +1,169 @@
+import org.jooq.BatchBindStep;
+import org.jooq.ConnectionRunnable;
+import org.jooq.DSLContext;
+import org.jooq.SQLDialect;
+import org.jooq.Table;
+import org.jooq.impl.DSL;
+
+import java.util.Iterator;
+import java.util.function.Supplier;
+
+/**
+ * Loads many rows into one table, with the fastest way the database offers: the rows are inserted with the
+ * configured {@link InsertStrategy}, and a replace can load into a staging table that is swapped in place of the table.
+ * The table and how the rows map to its columns are given by a {@link TableMapping}, the rest is the same for every table.
+ *
+ * Get a loader from <code>bulkLoader</code> of {@link SqliteDB} or {@link PostgresqlDB}, which also run it with
+ * their <code>replaceRows</code> methods. All methods of the loader run on the connection of the given context.
+ *
+ * @param <T> the type of the loaded objects
+ */
+public class BulkLoader<T> {
+
+	static final String STAGING_SUFFIX = "_staging";
+
+	private final TableMapping<T> mapping;
+	private final BulkLoadDialect dialect;
+	private final Supplier<MetricsRegistry> metrics;
+	private final String tableName;
+	private volatile InsertStrategy insertStrategy = InsertStrategy.BATCH;
+	private volatile ConnectionRunnable beforeReplace = null;
+	private volatile ConnectionRunnable afterReplace = null;
+
+	BulkLoader(TableMapping<T> mapping, SQLDialect dialect, Supplier<MetricsRegistry> metrics) {
+		this.mapping = mapping;
+		this.dialect = BulkLoadDialect.of(dialect);
+		this.metrics = metrics;
+		this.tableName = this.dialect.tableName(mapping.table);
+	}
+
+	public TableMapping<T> getMapping() {
+		return this.mapping;
+	}
+
+	public InsertStrategy getInsertStrategy() {
+		return this.insertStrategy;
+	}
+
+	/**
+	 * Sets how rows are inserted, {@link InsertStrategy#BATCH} by default.
+	 *
+	 * @throws IllegalArgumentException if the database does not support the strategy
+	 */
+	public void setInsertStrategy(InsertStrategy insertStrategy) {
+		checkSupported(insertStrategy);
+		this.insertStrategy = insertStrategy;
+	}
+
+	/**
+	 * Sets work that runs before the rows are deleted by {@link #replace(DSLContext, Iterator, int)}, within its transaction,
+	 * e.g. to suspend triggers. A replace through a staging table does not delete rows, and does not run it.
+	 */
+	public void setBeforeReplace(ConnectionRunnable beforeReplace) {
+		this.beforeReplace = beforeReplace;
+	}
+
+	/**
+	 * Sets work that runs after every replace, within its transaction, e.g. to rebuild a table derived from the loaded one.
+	 */
+	public void setAfterReplace(ConnectionRunnable afterReplace) {
+		this.afterReplace = afterReplace;
+	}
+
+	/** The table a replace through a staging table loads into: the name of the table with the suffix {@value #STAGING_SUFFIX}. */
+	public String getStagingTableName() {
+		return this.tableName + STAGING_SUFFIX;
+	}
+
+	/**
+	 * Inserts the rows with the configured strategy, in the transaction of <code>tx</code>.
+	 * At most <code>batchSize</code> rows are bound at once, or as many as the limit of bound variables allows.
+	 */
+	public void insert(DSLContext tx, Iterator<? extends T> rows, int batchSize) {
+		insert(tx, rows, batchSize, this.insertStrategy);
+	}
+
+	public void insert(DSLContext tx, Iterator<? extends T> rows, int batchSize, InsertStrategy insertStrategy) {
+		checkSupported(insertStrategy);
+		insertInto(tx, this.mapping.table, this.tableName, rows, batchSize, insertStrategy);
+	}
+
+	/**
+	 * Deletes all rows of the table and inserts the new ones, in the transaction of <code>tx</code>.
+	 */
+	public void replace(DSLContext tx, Iterator<? extends T> rows, int batchSize) {
+		replace(tx, rows, batchSize, this.insertStrategy);
+	}
+
+	public void replace(DSLContext tx, Iterator<? extends T> rows, int batchSize, InsertStrategy insertStrategy) {
+		ConnectionRunnable beforeReplace = this.beforeReplace;
+		if (beforeReplace != null) {
+			tx.connection(beforeReplace);
+		}
+		tx
+				.truncate(this.mapping.table)
+				.cascade()
+				.execute();
+		insert(tx, rows, batchSize, insertStrategy);
+		afterReplace(tx);
+	}
+
+	/**
+	 * Replaces all rows by loading them into a staging table without indexes, building the indexes once after the load,
+	 * and then swapping the staging table in place of the table. The load and the swap run in transactions of their own,
+	 * so <code>ctx</code> must not be in a transaction; readers see the old rows until the swap is committed.
+	 * If the load fails, the staging table is dropped again.
+	 */
+	public void replaceViaStagingTable(DSLContext ctx, Iterator<? extends T> rows, int batchSize) {
+		String stagingTable = getStagingTableName();
+		this.dialect.createStagingTable(ctx, this.tableName, stagingTable);
+		try {
+			ctx.transaction(c -> insertInto(c.dsl(), DSL.table(DSL.name(stagingTable)), stagingTable, rows, batchSize, this.insertStrategy));
+			this.dialect.indexStagingTable(ctx, this.tableName, stagingTable);
+		} catch (RuntimeException e) {
+			ctx.dropTableIfExists(stagingTable).execute();
+			throw e;
+		}
+		ctx.transaction(c -> {
+			this.dialect.swapStagingTable(c.dsl(), this.tableName, stagingTable);
+			afterReplace(c.dsl());
+		});
+	}
+
+	private void insertInto(DSLContext tx, Table<?> table, String tableName, Iterator<? extends T> rows, int batchSize, InsertStrategy insertStrategy) {
+		MetricsRegistry metrics = this.metrics.get();
+		switch (insertStrategy) {
+			case MULTI_ROW_VALUES -> tx.connection(conn -> MultiRowInsert.insert(conn, tableName, this.mapping, rows,
+					Math.max(1, Math.min(batchSize, this.dialect.maxBindVariables(conn) / this.mapping.size())), metrics));
+			case COPY -> tx.connection(conn -> CopyInsert.insert(conn, tableName, this.mapping, rows, metrics));
+			default -> {
+				while (rows.hasNext()) {
+					BatchBindStep batchInsert = tx.batch(
+							tx
+									.insertInto(table)
+									.columns(this.mapping.fields)
+									.values(new Object[this.mapping.size()])
+					);
+					for (int i = 0; i < batchSize && rows.hasNext(); i++) {
+						batchInsert.bind(this.mapping.values(rows.next()));
+					}
+					batchInsert.execute();
+				}
+			}
+		}
+	}
+
+	private void checkSupported(InsertStrategy insertStrategy) {
+		if (!this.dialect.supports(insertStrategy)) {
+			throw new IllegalArgumentException(this.dialect + " does not support " + insertStrategy);
+		}
+	}
+
+	private void afterReplace(DSLContext tx) {
+		ConnectionRunnable afterReplace = this.afterReplace;
+		if (afterReplace != null) {
+			tx.connection(afterReplace);
+		}
+	}
+
+}
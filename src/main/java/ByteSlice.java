@@ -0,0 +1,62 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A range of a byte array, seen as a {@link CharSequence} with one char per byte.
+ *
+ * Meant for ASCII text like WKT, so the geometries of a {@link LinkBatch} can be parsed in place instead of decoding
+ * each one to a <code>String</code>. A slice is mutable, so one instance can be reused for all rows of a batch.
+ */
+final class ByteSlice implements CharSequence {
+
+	private byte[] bytes;
+	private int offset;
+	private int length;
+
+	ByteSlice() {
+		this(new byte[0], 0, 0);
+	}
+
+	ByteSlice(byte[] bytes, int offset, int length) {
+		set(bytes, offset, length);
+	}
+
+	ByteSlice set(byte[] bytes, int offset, int length) {
+		this.bytes = bytes;
+		this.offset = offset;
+		this.length = length;
+		return this;
+	}
+
+	/** A copy of the bytes of the slice. */
+	byte[] toByteArray() {
+		return Arrays.copyOfRange(this.bytes, this.offset, this.offset + this.length);
+	}
+
+	@Override
+	public int length() {
+		return this.length;
+	}
+
+	@Override
+	public char charAt(int index) {
+		if (index < 0 || index >= this.length) {
+			throw new IndexOutOfBoundsException(index);
+		}
+		return (char) (this.bytes[this.offset + index] & 0xff);
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		if (start < 0 || end > this.length || start > end) {
+			throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + this.length);
+		}
+		return new ByteSlice(this.bytes, this.offset + start, end - start);
+	}
+
+	@Override
+	public String toString() {
+		return new String(this.bytes, this.offset, this.length, StandardCharsets.UTF_8);
+	}
+
+}
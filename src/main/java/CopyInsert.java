@@ -0,0 +1,151 @@
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Iterator;
+
+/**
+ * Implementation of {@link InsertStrategy#COPY} for any {@link TableMapping}: one <code>COPY ... FROM STDIN</code> in text format through
+ * the pgjdbc <code>CopyManager</code>. Rows are encoded into a fixed buffer while iterating the rows, which is sent
+ * whenever it is full, so nothing but the buffer is held in memory.
+ * Values are written with <code>toString()</code>, except for strings and bytes, so only simple types are supported.
+ */
+class CopyInsert {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	/** Room for the longest value that is not a string or bytes, e.g. a double. */
+	private static final int MAX_SCALAR_LENGTH = 32;
+	private static final byte[] NULL = "\\N".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+	private final CopyIn copyIn;
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	private int pos = 0;
+
+	private CopyInsert(CopyIn copyIn) {
+		this.copyIn = copyIn;
+	}
+
+	static String copySql(String tableName, TableMapping<?> mapping) {
+		return "COPY " + tableName + " (" + mapping.columns() + ") FROM STDIN";
+	}
+
+	/**
+	 * Copies the rows into the table. Runs in the transaction of <code>conn</code>, if any.
+	 * The whole copy is recorded as one statement of kind <code>COPY</code>.
+	 *
+	 * @return the number of rows copied
+	 */
+	static <T> long insert(Connection conn, String tableName, TableMapping<T> mapping, Iterator<? extends T> rows, MetricsRegistry metrics) throws SQLException {
+		long start = System.nanoTime();
+		CopyIn copyIn = conn.unwrap(PGConnection.class).getCopyAPI().copyIn(copySql(tableName, mapping));
+		try {
+			CopyInsert copy = new CopyInsert(copyIn);
+			while (rows.hasNext()) {
+				copy.writeRow(mapping.values(rows.next()));
+			}
+			copy.flush();
+			long copied = copyIn.endCopy();
+			metrics.recordStatement("COPY", System.nanoTime() - start, copied);
+			return copied;
+		} finally {
+			if (copyIn.isActive()) {
+				copyIn.cancelCopy();
+			}
+		}
+	}
+
+	private void writeRow(Object[] values) throws SQLException {
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0) {
+				write((byte) '\t');
+			}
+			Object value = values[i];
+			if (value == null) {
+				ensureSpace(NULL.length);
+				System.arraycopy(NULL, 0, this.buffer, this.pos, NULL.length);
+				this.pos += NULL.length;
+			} else if (value instanceof CharSequence) {
+				writeText((CharSequence) value);
+			} else if (value instanceof byte[]) {
+				writeBytea((byte[]) value);
+			} else {
+				writeText(value.toString());
+			}
+		}
+		write((byte) '\n');
+	}
+
+	/** UTF-8, with backslash and the delimiters escaped as the text format requires. */
+	private void writeText(CharSequence value) throws SQLException {
+		for (int i = 0, n = value.length(); i < n; i++) {
+			char c = value.charAt(i);
+			ensureSpace(MAX_SCALAR_LENGTH);
+			switch (c) {
+				case '\\' -> writeEscaped('\\');
+				case '\t' -> writeEscaped('t');
+				case '\n' -> writeEscaped('n');
+				case '\r' -> writeEscaped('r');
+				default -> {
+					if (c < 0x80) {
+						this.buffer[this.pos++] = (byte) c;
+					} else if (c < 0x800) {
+						this.buffer[this.pos++] = (byte) (0xc0 | (c >> 6));
+						this.buffer[this.pos++] = (byte) (0x80 | (c & 0x3f));
+					} else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(value.charAt(i + 1))) {
+						int codePoint = Character.toCodePoint(c, value.charAt(++i));
+						this.buffer[this.pos++] = (byte) (0xf0 | (codePoint >> 18));
+						this.buffer[this.pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+						this.buffer[this.pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+						this.buffer[this.pos++] = (byte) (0x80 | (codePoint & 0x3f));
+					} else if (Character.isSurrogate(c)) {
+						this.buffer[this.pos++] = '?';
+					} else {
+						this.buffer[this.pos++] = (byte) (0xe0 | (c >> 12));
+						this.buffer[this.pos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+						this.buffer[this.pos++] = (byte) (0x80 | (c & 0x3f));
+					}
+				}
+			}
+		}
+	}
+
+	/** The hex format of <code>bytea</code>, <code>\x0102...</code>, with the backslash escaped. */
+	private void writeBytea(byte[] value) throws SQLException {
+		ensureSpace(3);
+		this.buffer[this.pos++] = '\\';
+		this.buffer[this.pos++] = '\\';
+		this.buffer[this.pos++] = 'x';
+		for (byte b : value) {
+			ensureSpace(2);
+			this.buffer[this.pos++] = HEX_DIGITS[(b >> 4) & 0xf];
+			this.buffer[this.pos++] = HEX_DIGITS[b & 0xf];
+		}
+	}
+
+	private void writeEscaped(char c) {
+		this.buffer[this.pos++] = '\\';
+		this.buffer[this.pos++] = (byte) c;
+	}
+
+	private void write(byte b) throws SQLException {
+		ensureSpace(1);
+		this.buffer[this.pos++] = b;
+	}
+
+	private void ensureSpace(int length) throws SQLException {
+		if (this.pos + length > this.buffer.length) {
+			flush();
+		}
+	}
+
+	private void flush() throws SQLException {
+		if (this.pos > 0) {
+			this.copyIn.writeToCopy(this.buffer, 0, this.pos);
+			this.pos = 0;
+		}
+	}
+
+}
@@ -1,14 +1,49 @@
 import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.MigrationInfo;
+import org.flywaydb.core.api.MigrationVersion;
 import org.flywaydb.core.api.output.MigrateResult;
+import org.jooq.DSLContext;
 
 import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
 import java.util.Map;
+import java.util.Properties;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 public class DBUtils {
 
 	public enum DatabaseType { SQLITE, POSTGRESQL }
 
+	/**
+	 * How a database checks its schema when it is opened.
+	 */
+	public enum StartupMode {
+		/** Runs Flyway, which scans the migrations and validates them against the schema history. */
+		MIGRATE,
+		/**
+		 * Compares the schema history with a precomputed manifest of the migrations and only runs Flyway if they differ,
+		 * for short-lived processes that open an up-to-date database. Changed migrations are not detected unless the manifest
+		 * is updated with them; repeatable migrations are not checked.
+		 */
+		FAST_START,
+	}
+
+	/** Next to the migrations, as Flyway would report any file within them that is not a migration. */
+	static final String MANIFEST_NAME = "migration-manifest.properties";
+	private static final String SCHEMA_HISTORY_TABLE = "flyway_schema_history";
+	private static final Map<String, SortedMap<MigrationVersion, Integer>> MANIFESTS = new ConcurrentHashMap<>();
+	private static volatile StartupMode startupMode = Boolean.getBoolean("db.fastStart") ? StartupMode.FAST_START : StartupMode.MIGRATE;
+
 	public static final Map<DatabaseType, Map<String, String>> MIGRATION_PLACEHOLDERS;
 
 	static {
@@ -20,38 +55,253 @@ public class DBUtils {
 
 		sqlitePlaceholders.put("identityColumnType", "INTEGER PRIMARY KEY");
 		postgresqlPlaceholders.put("identityColumnType", "BIGSERIAL PRIMARY KEY");
+
+		sqlitePlaceholders.put("binaryColumnType", "BLOB");
+		postgresqlPlaceholders.put("binaryColumnType", "BYTEA");
+
+		// V2 rebuilds the Link table. In PostgreSQL, the id sequence has to continue after the copied ids,
+		// and the sequence and primary key get their original names back.
+		sqlitePlaceholders.put("afterLinkRebuild", "-- nothing to do in SQLite");
+		postgresqlPlaceholders.put("afterLinkRebuild", "SELECT setval(pg_get_serial_sequence('link', 'id'), COALESCE((SELECT MAX(id) FROM link), 0) + 1, false);\n"
+			+ "ALTER SEQUENCE link_v2_id_seq RENAME TO link_id_seq;\n"
+			+ "ALTER TABLE link RENAME CONSTRAINT link_v2_pkey TO link_pkey;");
+
+		// SQLite keeps the bounding boxes in a separate R*Tree table, PostgreSQL indexes them in place
+		sqlitePlaceholders.put("linkEnvelopeIndex", "CREATE VIRTUAL TABLE Link_bbox USING rtree(id, minX, maxX, minY, maxY);");
+		postgresqlPlaceholders.put("linkEnvelopeIndex", "CREATE INDEX link_bbox ON link USING gist (box(point(minX, minY), point(maxX, maxY)));");
+
+		// V4 logs the changes of links. Without AUTOINCREMENT, SQLite would hand out the sequence numbers of deleted changes again.
+		sqlitePlaceholders.put("sequenceColumnType", "INTEGER PRIMARY KEY AUTOINCREMENT");
+		postgresqlPlaceholders.put("sequenceColumnType", "BIGSERIAL PRIMARY KEY");
+
+		// SQLite has row triggers only, which a replace drops and re-creates within its transaction.
+		// PostgreSQL logs each statement at once from its transition table, a replace suspends the triggers with a setting
+		// local to its transaction.
+		sqlitePlaceholders.put("linkChangeTriggers", sqliteLinkChangeTrigger("insert", "INSERT", "'I', NEW.id, NEW.linkId")
+			+ sqliteLinkChangeTrigger("update", "UPDATE", "'U', NEW.id, NEW.linkId")
+			+ sqliteLinkChangeTrigger("delete", "DELETE", "'D', OLD.id, OLD.linkId"));
+		postgresqlPlaceholders.put("linkChangeTriggers", postgresqlLinkChangeLog()
+			+ "CREATE TRIGGER link_change_insert AFTER INSERT ON link REFERENCING NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE FUNCTION link_change_log();\n"
+			+ "CREATE TRIGGER link_change_update AFTER UPDATE ON link REFERENCING NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE FUNCTION link_change_log();\n"
+			+ "CREATE TRIGGER link_change_delete AFTER DELETE ON link REFERENCING OLD TABLE AS old_rows FOR EACH STATEMENT EXECUTE FUNCTION link_change_log();\n"
+			+ "CREATE TRIGGER link_change_truncate AFTER TRUNCATE ON link FOR EACH STATEMENT EXECUTE FUNCTION link_change_log();");
+
+		// V6: SQLite has one writer at a time, so its sequence follows the commit order. PostgreSQL writers log their changes
+		// concurrently with provisional numbers, a deferred trigger renumbers them when their transaction commits. Only that
+		// renumbering is serialized, by a lock held from then until the commit.
+		sqlitePlaceholders.put("linkChangeCommitOrder", "-- nothing to do in SQLite");
+		postgresqlPlaceholders.put("linkChangeCommitOrder", "ALTER TABLE link_change ADD COLUMN txid xid8;\n"
+			+ "ALTER TABLE link_change ALTER COLUMN txid SET DEFAULT pg_current_xact_id();\n"
+			+ postgresqlLinkChangeLog()
+			+ "CREATE FUNCTION link_change_order() RETURNS trigger LANGUAGE plpgsql AS $$\n"
+			+ "BEGIN\n"
+			+ "\tIF current_setting('link_change.ordered', true) = 'on' THEN\n"
+			+ "\t\tRETURN NULL;\n"
+			+ "\tEND IF;\n"
+			+ "\tPERFORM set_config('link_change.ordered', 'on', true);\n"
+			+ "\tPERFORM pg_advisory_xact_lock(hashtext('link_change'));\n"
+			// deferred triggers fire in the order of the inserts, so the first one has the lowest number of the transaction
+			+ "\tUPDATE link_change c SET seq = n.seq\n"
+			+ "\tFROM (SELECT provisional, nextval(pg_get_serial_sequence('link_change', 'seq')) AS seq\n"
+			+ "\t\tFROM (SELECT seq AS provisional FROM link_change WHERE seq >= NEW.seq AND txid = pg_current_xact_id() ORDER BY seq) t) n\n"
+			+ "\tWHERE c.seq = n.provisional;\n"
+			+ "\tRETURN NULL;\n"
+			+ "END\n"
+			+ "$$;\n"
+			+ "CREATE CONSTRAINT TRIGGER link_change_order AFTER INSERT ON link_change DEFERRABLE INITIALLY DEFERRED FOR EACH ROW EXECUTE FUNCTION link_change_order();");
+	}
+
+	/** The function of the PostgreSQL change log triggers, replaced by V6 on databases migrated before. */
+	private static String postgresqlLinkChangeLog() {
+		return "CREATE OR REPLACE FUNCTION link_change_log() RETURNS trigger LANGUAGE plpgsql AS $$\n"
+			+ "BEGIN\n"
+			+ "\tIF current_setting('link_change.suspended', true) = 'on' THEN\n"
+			+ "\t\tRETURN NULL;\n"
+			+ "\tEND IF;\n"
+			+ "\tIF TG_OP = 'INSERT' THEN\n"
+			+ "\t\tINSERT INTO link_change (kind, id, linkId) SELECT 'I', id, linkId FROM new_rows ORDER BY id;\n"
+			+ "\tELSIF TG_OP = 'UPDATE' THEN\n"
+			+ "\t\tINSERT INTO link_change (kind, id, linkId) SELECT 'U', id, linkId FROM new_rows ORDER BY id;\n"
+			+ "\tELSIF TG_OP = 'DELETE' THEN\n"
+			+ "\t\tINSERT INTO link_change (kind, id, linkId) SELECT 'D', id, linkId FROM old_rows ORDER BY id;\n"
+			+ "\tELSE\n"
+			+ "\t\tINSERT INTO link_change (kind) VALUES ('R');\n"
+			+ "\tEND IF;\n"
+			+ "\tRETURN NULL;\n"
+			+ "END\n"
+			+ "$$;\n";
+	}
+
+	private static String sqliteLinkChangeTrigger(String name, String event, String values) {
+		return "CREATE TRIGGER Link_change_" + name + " AFTER " + event + " ON Link\n"
+			+ "BEGIN\n"
+			+ "\tINSERT INTO Link_change (kind, id, linkId) VALUES (" + values + ");\n"
+			+ "END;\n";
 	}
 
-	public static void runFlyway(final String dbName, final String connectionString, final String username, final String password, String migrationsPath, DatabaseType dbType) {
+	public static SchemaCheck runFlyway(final String dbName, final String connectionString, final String username, final String password, String migrationsPath, DatabaseType dbType) {
 		Flyway flyway = Flyway.configure()
 			.locations("classpath:" + migrationsPath)
 			.dataSource(connectionString, username, password)
 			.placeholders(MIGRATION_PLACEHOLDERS.get(dbType))
 			.load();
-		runFlyway(dbName, flyway);
+		return runFlyway(dbName, flyway);
 	}
 
-	public static void runFlyway(String dbName, DataSource dataSource, String migrationsPath, DatabaseType dbType) {
+	public static SchemaCheck runFlyway(String dbName, DataSource dataSource, String migrationsPath, DatabaseType dbType) {
 		Flyway flyway = Flyway.configure()
 			.locations("classpath:" + migrationsPath)
 			.dataSource(dataSource)
 			.placeholders(MIGRATION_PLACEHOLDERS.get(dbType))
 			.load();
-		runFlyway(dbName, flyway);
+		return runFlyway(dbName, flyway);
 	}
 
-	private static void runFlyway(String dbName, Flyway flyway) {
-		String oldVersion = (flyway.info().current() == null ? "clean state" : flyway.info().current().getVersion().toString());
+	/**
+	 * Runs only <code>migrate()</code>: its result has the versions before and after, so <code>info()</code>,
+	 * which scans the migrations and reads the schema history once more, is not needed.
+	 */
+	private static SchemaCheck runFlyway(String dbName, Flyway flyway) {
+		long start = System.nanoTime();
 		MigrateResult result = flyway.migrate();
+		long flywayNanos = System.nanoTime() - start;
+		String oldVersion = (result.initialSchemaVersion == null ? "clean state" : result.initialSchemaVersion);
 		if (result.migrationsExecuted > 0) {
-			String message = "database " + dbName + " updated to version " + flyway.info().current().getVersion().toString() + " from version " + oldVersion;
+			String message = "database " + dbName + " updated to version " + result.targetSchemaVersion + " from version " + oldVersion;
 			System.out.println(message);
-		} else if (flyway.info().current() != null) {
-			String message = "database " + dbName + " left unchanged at version " + flyway.info().current().getVersion().toString();
+			return new SchemaCheck(SchemaCheck.Outcome.MIGRATED, result.targetSchemaVersion, 0, 0, flywayNanos);
+		} else if (result.initialSchemaVersion != null) {
+			String message = "database " + dbName + " left unchanged at version " + result.initialSchemaVersion;
 			System.out.println(message);
 		} else {
 			System.out.println("database could not be initialized.");
 		}
+		return new SchemaCheck(SchemaCheck.Outcome.UNCHANGED, result.initialSchemaVersion, 0, 0, flywayNanos);
+	}
+
+	public static StartupMode getStartupMode() {
+		return startupMode;
+	}
+
+	/**
+	 * Sets how databases opened from now on check their schema. The default is {@link StartupMode#FAST_START}
+	 * if the system property <code>db.fastStart</code> is <code>true</code>, otherwise {@link StartupMode#MIGRATE}.
+	 */
+	public static void setStartupMode(StartupMode mode) {
+		startupMode = mode;
+	}
+
+	/**
+	 * Fast start, see {@link StartupMode#FAST_START}: reads the schema history once with <code>ctx</code> and compares it with
+	 * the manifest <code>migration-manifest.properties</code> next to <code>migrationsPath</code>. Only if they differ, <code>migrate</code> runs Flyway.
+	 * Skipping Flyway is not logged, as fast start is meant for frequent starts; the returned {@link SchemaCheck} reports it.
+	 */
+	public static SchemaCheck fastStart(DSLContext ctx, String migrationsPath, Supplier<SchemaCheck> migrate) {
+		long start = System.nanoTime();
+		SortedMap<MigrationVersion, Integer> manifest = loadManifest(migrationsPath);
+		long manifestLoaded = System.nanoTime();
+		SortedMap<MigrationVersion, Integer> applied = ctx.connectionResult(DBUtils::fetchAppliedMigrations);
+		long historyRead = System.nanoTime();
+		if (applied.equals(manifest)) {
+			String version = manifest.isEmpty() ? null : manifest.lastKey().getVersion();
+			return new SchemaCheck(SchemaCheck.Outcome.UP_TO_DATE, version, manifestLoaded - start, historyRead - manifestLoaded, 0);
+		}
+		SchemaCheck migrated = migrate.get();
+		return new SchemaCheck(migrated.outcome, migrated.version, manifestLoaded - start, historyRead - manifestLoaded, migrated.flywayNanos);
+	}
+
+	/**
+	 * The checksums of the manifest, by version. Loaded once per path.
+	 */
+	static SortedMap<MigrationVersion, Integer> loadManifest(String migrationsPath) {
+		return MANIFESTS.computeIfAbsent(migrationsPath, path -> {
+			String resource = path.substring(0, path.lastIndexOf('/') + 1) + MANIFEST_NAME;
+			Properties properties = new Properties();
+			try (InputStream in = DBUtils.class.getResourceAsStream(resource)) {
+				if (in == null) {
+					throw new IllegalStateException("Migration manifest " + resource + " not found.");
+				}
+				properties.load(in);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			SortedMap<MigrationVersion, Integer> checksums = new TreeMap<>();
+			for (String version : properties.stringPropertyNames()) {
+				checksums.put(MigrationVersion.fromVersion(version), Integer.valueOf(properties.getProperty(version).trim()));
+			}
+			return Collections.unmodifiableSortedMap(checksums);
+		});
+	}
+
+	/**
+	 * The checksums of the versioned migrations applied successfully, by version; empty if there is no schema history yet.
+	 * A failed migration is returned with a <code>null</code> checksum, so it never matches the manifest.
+	 */
+	static SortedMap<MigrationVersion, Integer> fetchAppliedMigrations(Connection conn) throws SQLException {
+		SortedMap<MigrationVersion, Integer> applied = new TreeMap<>();
+		try (Statement stmt = conn.createStatement();
+				 ResultSet rs = stmt.executeQuery("SELECT \"version\", \"checksum\", \"success\" FROM \"" + SCHEMA_HISTORY_TABLE + "\" WHERE \"version\" IS NOT NULL")) {
+			while (rs.next()) {
+				int checksum = rs.getInt(2);
+				boolean known = !rs.wasNull() && rs.getBoolean(3);
+				applied.put(MigrationVersion.fromVersion(rs.getString(1)), known ? checksum : null);
+			}
+		} catch (SQLException e) {
+			if (historyTableExists(conn)) {
+				throw e;
+			}
+			// a new database, Flyway creates the table
+		}
+		return applied;
+	}
+
+	/**
+	 * The checksums Flyway computes for the versioned migrations in <code>migrationsPath</code>, to create or verify the manifest.
+	 * Scans the migrations, with an empty in-memory SQLite database as target.
+	 */
+	static SortedMap<MigrationVersion, Integer> scanMigrationChecksums(String migrationsPath) {
+		Flyway flyway = Flyway.configure()
+			.locations("classpath:" + migrationsPath)
+			.dataSource("jdbc:sqlite::memory:", null, null)
+			.placeholders(MIGRATION_PLACEHOLDERS.get(DatabaseType.SQLITE))
+			.load();
+		SortedMap<MigrationVersion, Integer> checksums = new TreeMap<>();
+		for (MigrationInfo info : flyway.info().all()) {
+			if (info.getVersion() != null) {
+				checksums.put(info.getVersion(), info.getChecksum());
+			}
+		}
+		return checksums;
+	}
+
+	private static boolean historyTableExists(Connection conn) throws SQLException {
+		try (ResultSet rs = conn.getMetaData().getTables(null, null, SCHEMA_HISTORY_TABLE, null)) {
+			return rs.next();
+		}
+	}
+
+	/**
+	 * A 64-bit FNV-1a hash of the characters, cheap enough to compare large numbers of strings for changes.
+	 */
+	public static long contentHash(CharSequence value) {
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0, n = value.length(); i < n; i++) {
+			hash ^= value.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	/**
+	 * Same as {@link #contentHash(CharSequence)}, for binary values.
+	 */
+	public static long contentHash(byte[] value) {
+		long hash = 0xcbf29ce484222325L;
+		for (byte b : value) {
+			hash ^= b & 0xff;
+			hash *= 0x100000001b3L;
+		}
+		return hash;
 	}
 
 }
@@ -0,0 +1,109 @@
+/**
+ * Axis-aligned bounding box of a geometry.
+ */
+public class Envelope {
+
+	public final double minX;
+	public final double minY;
+	public final double maxX;
+	public final double maxY;
+
+	public Envelope(double minX, double minY, double maxX, double maxY) {
+		this.minX = minX;
+		this.minY = minY;
+		this.maxX = maxX;
+		this.maxY = maxY;
+	}
+
+	/** Whether the envelopes have at least one point in common. */
+	public boolean intersects(double minX, double minY, double maxX, double maxY) {
+		return this.minX <= maxX && this.maxX >= minX && this.minY <= maxY && this.maxY >= minY;
+	}
+
+	/**
+	 * The bounding box of all coordinates in the WKT, or <code>null</code> if it has none (e.g. <code>LINESTRING EMPTY</code>).
+	 * Only the numbers are looked at, alternating between x and y, so the WKT is not validated.
+	 */
+	public static Envelope ofWkt(CharSequence wkt) {
+		double minX = Double.POSITIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		boolean isX = true;
+		int length = wkt.length();
+		int pos = 0;
+		while (pos < length) {
+			char c = wkt.charAt(pos);
+			if ((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.') {
+				int start = pos;
+				while (pos < length && isNumberChar(wkt.charAt(pos))) {
+					pos++;
+				}
+				double value = parseNumber(wkt, start, pos);
+				if (isX) {
+					minX = Math.min(minX, value);
+					maxX = Math.max(maxX, value);
+				} else {
+					minY = Math.min(minY, value);
+					maxY = Math.max(maxY, value);
+				}
+				isX = !isX;
+			} else {
+				pos++;
+			}
+		}
+		return minY <= maxY ? new Envelope(minX, minY, maxX, maxY) : null;
+	}
+
+	private static final double[] POWERS_OF_TEN = {
+			1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+	/**
+	 * Parses the number between <code>start</code> and <code>end</code> like {@link Double#parseDouble(String)}, without
+	 * creating a <code>String</code> for plain decimals: if their digits fit into the 53 bits of a double, and there are
+	 * at most 22 fractional digits, digits and power of ten are exact doubles, so one division rounds correctly.
+	 */
+	static double parseNumber(CharSequence s, int start, int end) {
+		int pos = start;
+		boolean negative = false;
+		if (pos < end && (s.charAt(pos) == '-' || s.charAt(pos) == '+')) {
+			negative = s.charAt(pos) == '-';
+			pos++;
+		}
+		long digits = 0;
+		int digitCount = 0;
+		int fractionDigits = -1;
+		for (; pos < end; pos++) {
+			char c = s.charAt(pos);
+			if (c >= '0' && c <= '9') {
+				if (++digitCount > 18) {
+					break;
+				}
+				digits = digits * 10 + (c - '0');
+				if (fractionDigits >= 0) {
+					fractionDigits++;
+				}
+			} else if (c == '.' && fractionDigits < 0) {
+				fractionDigits = 0;
+			} else {
+				break;
+			}
+		}
+		if (pos < end || digitCount == 0 || digits >= 1L << 53 || fractionDigits >= POWERS_OF_TEN.length) {
+			return Double.parseDouble(s.subSequence(start, end).toString());
+		}
+		double value = fractionDigits > 0 ? digits / POWERS_OF_TEN[fractionDigits] : digits;
+		return negative ? -value : value;
+	}
+
+	private static boolean isNumberChar(char c) {
+		return (c >= '0' && c <= '9') || c == '.' || c == '-' || c == '+' || c == 'e' || c == 'E';
+	}
+
+	@Override
+	public String toString() {
+		return "Envelope[" + this.minX + " " + this.minY + ", " + this.maxX + " " + this.maxY + "]";
+	}
+
+}
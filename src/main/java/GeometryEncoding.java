@@ -0,0 +1,141 @@
+import jooq.tables.Link;
+import org.jooq.Field;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * How the geometry of a link is stored in the Link table.
+ *
+ * Links read from the database keep the representation they were stored with, see {@link LinkDAO#getGeometryWkt()}
+ * and {@link LinkDAO#getGeometryWkb()} to get a specific one. Both encodings also write the bounding box of the geometry.
+ */
+public enum GeometryEncoding {
+
+	/** WKT text in the <code>geometry</code> column. */
+	WKT,
+
+	/** WKB bytes in the <code>geometryWkb</code> column, <code>geometry</code> is <code>null</code>. */
+	WKB;
+
+	/**
+	 * The columns written for the geometry of a link, in the order {@link #bind(PreparedStatement, int, LinkDAO)} binds them:
+	 * the geometry, its bounding box, and the {@link #contentHash(LinkDAO)} of the stored representation.
+	 */
+	static final String COLUMNS = "geometry, geometryWkb, minX, minY, maxX, maxY, geometryHash";
+	static final int COLUMN_COUNT = 7;
+
+	/** <code>linkId</code> and the geometry columns, in the order of {@link #insertValues(LinkDAO)}. */
+	static List<Field<?>> insertFields(Link table) {
+		return List.of(table.LINKID, table.GEOMETRY, table.GEOMETRYWKB, table.MINX, table.MINY, table.MAXX, table.MAXY, table.GEOMETRYHASH);
+	}
+
+	Object[] insertValues(LinkDAO linkDAO) {
+		Object[] values = new Object[1 + COLUMN_COUNT];
+		values[0] = linkDAO.linkId;
+		Envelope envelope;
+		if (this == WKT) {
+			String wkt = linkDAO.getGeometryWkt();
+			values[1] = wkt;
+			envelope = wkt == null ? null : Envelope.ofWkt(wkt);
+			values[7] = wkt == null ? null : DBUtils.contentHash(wkt);
+		} else {
+			byte[] wkb = linkDAO.getGeometryWkb();
+			values[2] = wkb;
+			envelope = wkb == null ? null : Wkb.envelope(wkb);
+			values[7] = wkb == null ? null : DBUtils.contentHash(wkb);
+		}
+		if (envelope != null) {
+			values[3] = envelope.minX;
+			values[4] = envelope.minY;
+			values[5] = envelope.maxX;
+			values[6] = envelope.maxY;
+		}
+		return values;
+	}
+
+	/**
+	 * Binds the {@link #COLUMNS} starting at <code>index</code>.
+	 */
+	void bind(PreparedStatement stmt, int index, LinkDAO linkDAO) throws SQLException {
+		Object[] values = insertValues(linkDAO);
+		stmt.setString(index, (String) values[1]);
+		if (values[2] == null) {
+			stmt.setNull(index + 1, Types.BINARY);
+		} else {
+			stmt.setBytes(index + 1, (byte[]) values[2]);
+		}
+		for (int i = 3; i < 7; i++) {
+			if (values[i] == null) {
+				stmt.setNull(index + i - 1, Types.DOUBLE);
+			} else {
+				stmt.setDouble(index + i - 1, (Double) values[i]);
+			}
+		}
+		if (values[7] == null) {
+			stmt.setNull(index + 6, Types.BIGINT);
+		} else {
+			stmt.setLong(index + 6, (Long) values[7]);
+		}
+	}
+
+	/**
+	 * Same as {@link #bind(PreparedStatement, int, LinkDAO)}, for a WKT geometry given as bytes, e.g. from a {@link LinkBatch}.
+	 * The WKT is bound as bytes as well, so the SQL has to convert the <code>geometry</code> parameter to text.
+	 */
+	void bindUtf8(PreparedStatement stmt, int index, ByteSlice wkt) throws SQLException {
+		Envelope envelope = null;
+		Long hash = null;
+		if (wkt == null) {
+			stmt.setNull(index, Types.BINARY);
+			stmt.setNull(index + 1, Types.BINARY);
+		} else if (this == WKT) {
+			stmt.setBytes(index, wkt.toByteArray());
+			stmt.setNull(index + 1, Types.BINARY);
+			envelope = Envelope.ofWkt(wkt);
+			hash = utf8ContentHash(wkt);
+		} else {
+			byte[] wkb = Wkb.fromWkt(wkt);
+			stmt.setNull(index, Types.BINARY);
+			stmt.setBytes(index + 1, wkb);
+			envelope = Wkb.envelope(wkb);
+			hash = DBUtils.contentHash(wkb);
+		}
+		if (envelope == null) {
+			for (int i = 2; i < 6; i++) {
+				stmt.setNull(index + i, Types.DOUBLE);
+			}
+		} else {
+			stmt.setDouble(index + 2, envelope.minX);
+			stmt.setDouble(index + 3, envelope.minY);
+			stmt.setDouble(index + 4, envelope.maxX);
+			stmt.setDouble(index + 5, envelope.maxY);
+		}
+		if (hash == null) {
+			stmt.setNull(index + 6, Types.BIGINT);
+		} else {
+			stmt.setLong(index + 6, hash);
+		}
+	}
+
+	/**
+	 * The {@link DBUtils#contentHash(CharSequence)} of the text the UTF-8 bytes decode to. ASCII bytes are hashed in place,
+	 * as each byte is one char.
+	 */
+	private static long utf8ContentHash(ByteSlice text) {
+		for (int i = 0, n = text.length(); i < n; i++) {
+			if (text.charAt(i) >= 0x80) {
+				return DBUtils.contentHash(text.toString());
+			}
+		}
+		return DBUtils.contentHash(text);
+	}
+
+	/** Hash of the stored representation, used to detect changed geometries. */
+	long contentHash(LinkDAO linkDAO) {
+		return this == WKT ? DBUtils.contentHash(linkDAO.getGeometryWkt()) : DBUtils.contentHash(linkDAO.getGeometryWkb());
+	}
+
+}
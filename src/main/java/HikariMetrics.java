@@ -0,0 +1,76 @@
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import javax.sql.DataSource;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Forwards the connection-acquire and usage times of a Hikari pool to the current {@link MetricsRegistry} of a database,
+ * and provides the pool statistics as gauges.
+ *
+ * Hikari accepts a tracker factory only before the pool starts, so it is installed when the database is created,
+ * and reads the registry on every acquire, which lets metrics be set or replaced later.
+ */
+class HikariMetrics implements MetricsTrackerFactory {
+
+	private final Supplier<MetricsRegistry> metrics;
+	private volatile PoolStats poolStats;
+
+	private HikariMetrics(Supplier<MetricsRegistry> metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * @return the installed factory, or <code>null</code> if <code>dataSource</code> is no Hikari pool
+	 */
+	static HikariMetrics install(DataSource dataSource, Supplier<MetricsRegistry> metrics) {
+		if (!(dataSource instanceof HikariDataSource)) {
+			return null;
+		}
+		HikariMetrics hikariMetrics = new HikariMetrics(metrics);
+		((HikariDataSource) dataSource).setMetricsTrackerFactory(hikariMetrics);
+		return hikariMetrics;
+	}
+
+	@Override
+	public IMetricsTracker create(String poolName, PoolStats poolStats) {
+		this.poolStats = poolStats;
+		return new IMetricsTracker() {
+			@Override
+			public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+				HikariMetrics.this.metrics.get().recordConnectionAcquire(elapsedAcquiredNanos);
+			}
+
+			@Override
+			public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+				HikariMetrics.this.metrics.get().recordConnectionUsage(elapsedBorrowedMillis);
+			}
+		};
+	}
+
+	/**
+	 * Registers the connections of the pool as gauges <code>pool.active</code>, <code>pool.idle</code>,
+	 * <code>pool.total</code> and <code>pool.max</code>, and the threads waiting for a connection as <code>pool.pending</code>.
+	 * The pool is saturated when <code>pool.active</code> reaches <code>pool.max</code> and <code>pool.pending</code> grows.
+	 * Hikari refreshes the values at most once per second.
+	 */
+	void registerGauges(MetricsRegistry registry) {
+		registry.registerGauge("pool.active", gauge(PoolStats::getActiveConnections));
+		registry.registerGauge("pool.idle", gauge(PoolStats::getIdleConnections));
+		registry.registerGauge("pool.pending", gauge(PoolStats::getPendingThreads));
+		registry.registerGauge("pool.total", gauge(PoolStats::getTotalConnections));
+		registry.registerGauge("pool.max", gauge(PoolStats::getMaxConnections));
+	}
+
+	private LongSupplier gauge(ToIntFunction<PoolStats> value) {
+		return () -> {
+			PoolStats stats = this.poolStats;
+			return stats == null ? 0 : value.applyAsInt(stats);
+		};
+	}
+
+}
@@ -0,0 +1,21 @@
+/**
+ * How {@link SqliteDB} and {@link PostgresqlDB} send new links to the database.
+ */
+public enum InsertStrategy {
+
+	/** One single-row <code>INSERT</code> per link, sent to the driver as JDBC batch. */
+	BATCH,
+
+	/**
+	 * Multi-row <code>INSERT ... VALUES (...),(...),...</code> statements, each with as many rows as the
+	 * database's limit of bound variables (and the batch size) allows. The prepared statement is reused for all full chunks.
+	 */
+	MULTI_ROW_VALUES,
+
+	/**
+	 * PostgreSQL only: one <code>COPY Link FROM STDIN</code>, streamed row by row while reading the links,
+	 * so the batch size does not matter.
+	 */
+	COPY
+
+}
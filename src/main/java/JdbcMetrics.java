@@ -0,0 +1,53 @@
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Executes plain JDBC statements like jOOQ would with a {@link JooqMetricsListener}, for the write paths that bypass jOOQ.
+ */
+class JdbcMetrics {
+
+	private JdbcMetrics() {
+	}
+
+	/**
+	 * Executes the batch of <code>stmt</code> and records it as statement of kind <code>BATCH</code>.
+	 * An empty batch is not recorded.
+	 */
+	static int[] executeBatch(PreparedStatement stmt, MetricsRegistry metrics) throws SQLException {
+		long start = System.nanoTime();
+		int[] counts = stmt.executeBatch();
+		if (counts.length > 0) {
+			long nanos = System.nanoTime() - start;
+			long rows = 0;
+			for (int count : counts) {
+				// Statement.SUCCESS_NO_INFO is negative
+				rows += Math.max(count, 0);
+			}
+			metrics.recordBatch(counts.length);
+			metrics.recordStatement("BATCH", nanos, rows);
+		}
+		return counts;
+	}
+
+	/**
+	 * Executes the query and records it as statement of kind <code>READ</code>, without the time for fetching the rows.
+	 */
+	static ResultSet executeQuery(PreparedStatement stmt, MetricsRegistry metrics) throws SQLException {
+		long start = System.nanoTime();
+		ResultSet rs = stmt.executeQuery();
+		metrics.recordStatement("READ", System.nanoTime() - start, 0);
+		return rs;
+	}
+
+	/**
+	 * Executes <code>stmt</code> and records it as statement of kind <code>WRITE</code>.
+	 */
+	static int executeUpdate(PreparedStatement stmt, MetricsRegistry metrics) throws SQLException {
+		long start = System.nanoTime();
+		int rows = stmt.executeUpdate();
+		metrics.recordStatement("WRITE", System.nanoTime() - start, rows);
+		return rows;
+	}
+
+}
@@ -0,0 +1,81 @@
+import org.jooq.ExecuteContext;
+import org.jooq.ExecuteListener;
+import org.jooq.ExecuteListenerProvider;
+import org.jooq.ExecuteType;
+import org.jooq.tools.jdbc.DefaultPreparedStatement;
+
+import java.sql.SQLException;
+import java.util.function.Supplier;
+
+/**
+ * Records the execution time and written rows of every statement jOOQ runs, keyed by its {@link ExecuteType}.
+ *
+ * jOOQ asks the provider for a listener per execution, so the start time is a plain field of a fresh listener
+ * instead of an entry in the {@link ExecuteContext} data map. Without metrics the provider hands out one shared
+ * listener that does nothing.
+ *
+ * For a batch of one statement with many bind values, {@link ExecuteContext#batchRows()} only has a single element,
+ * so the statement of a batch is wrapped to see the update counts of <code>executeBatch</code>.
+ */
+class JooqMetricsListener implements ExecuteListener {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final ExecuteListener NO_OP = new ExecuteListener() {
+	};
+
+	private final MetricsRegistry metrics;
+	private long start;
+	private int[] batchCounts;
+
+	private JooqMetricsListener(MetricsRegistry metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * @param metrics read on every execution, so metrics can be set after the configuration was created
+	 */
+	static ExecuteListenerProvider provider(Supplier<MetricsRegistry> metrics) {
+		return () -> {
+			MetricsRegistry registry = metrics.get();
+			return registry == MetricsRegistry.NONE ? NO_OP : new JooqMetricsListener(registry);
+		};
+	}
+
+	@Override
+	public void prepareEnd(ExecuteContext ctx) {
+		if (ctx.type() == ExecuteType.BATCH && ctx.statement() != null) {
+			ctx.statement(new DefaultPreparedStatement(ctx.statement()) {
+				@Override
+				public int[] executeBatch() throws SQLException {
+					int[] counts = super.executeBatch();
+					JooqMetricsListener.this.batchCounts = counts;
+					return counts;
+				}
+			});
+		}
+	}
+
+	@Override
+	public void executeStart(ExecuteContext ctx) {
+		this.start = System.nanoTime();
+	}
+
+	@Override
+	public void executeEnd(ExecuteContext ctx) {
+		long nanos = System.nanoTime() - this.start;
+		long rows = 0;
+		if (ctx.type() == ExecuteType.BATCH) {
+			int[] counts = this.batchCounts != null ? this.batchCounts : ctx.batchRows();
+			this.metrics.recordBatch(counts.length);
+			for (int count : counts) {
+				// Statement.SUCCESS_NO_INFO is negative
+				rows += Math.max(count, 0);
+			}
+		} else {
+			rows = Math.max(ctx.rows(), 0);
+		}
+		this.metrics.recordStatement(ctx.type().name(), nanos, rows);
+	}
+
+}
@@ -0,0 +1,208 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Many links stored column by column, as an alternative to a list of {@link LinkDAO} for bulk loads and reads.
+ *
+ * The ids are kept in a <code>long[]</code>, <code>linkId</code> and the WKT <code>geometry</code> as UTF-8 packed into
+ * one byte array per column, with the end offset of each row in an <code>int[]</code>. A batch of any size thus consists
+ * of a handful of arrays instead of three objects per link, and the databases bind the bytes without decoding them
+ * to <code>String</code>s first. Geometries stored as WKB are converted to WKT when read into a batch.
+ *
+ * Links can only be appended. Not thread-safe.
+ */
+public class LinkBatch {
+
+	private int size = 0;
+	private long[] ids;
+	private byte[] linkIds;
+	private int[] linkIdEnds;
+	private byte[] geometries;
+	private int[] geometryEnds;
+	private final BitSet nullGeometries = new BitSet();
+
+	public LinkBatch() {
+		this(1024);
+	}
+
+	/**
+	 * @param expectedSize the number of links to allocate space for; the batch grows as needed
+	 */
+	public LinkBatch(int expectedSize) {
+		int capacity = Math.max(expectedSize, 16);
+		this.ids = new long[capacity];
+		this.linkIdEnds = new int[capacity];
+		this.geometryEnds = new int[capacity];
+		this.linkIds = new byte[capacity * 8];
+		this.geometries = new byte[capacity * 64];
+	}
+
+	public static LinkBatch of(List<LinkDAO> linkDAOs) {
+		LinkBatch batch = new LinkBatch(linkDAOs.size());
+		for (LinkDAO linkDAO : linkDAOs) {
+			batch.add(linkDAO.id, linkDAO.linkId, linkDAO.getGeometryWkt());
+		}
+		return batch;
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Appends a link, encoding <code>linkId</code> and <code>geometry</code> straight into the packed columns.
+	 *
+	 * @param geometry the geometry as WKT, or <code>null</code>
+	 */
+	public void add(long id, CharSequence linkId, CharSequence geometry) {
+		ensureRowCapacity();
+		this.ids[this.size] = id;
+		this.linkIdEnds[this.size] = appendUtf8(linkId, true);
+		if (geometry == null) {
+			this.nullGeometries.set(this.size);
+		}
+		this.geometryEnds[this.size] = appendUtf8(geometry, false);
+		this.size++;
+	}
+
+	/**
+	 * Appends a link whose <code>linkId</code> and <code>geometry</code> are already UTF-8, e.g. as read from the database.
+	 */
+	void addUtf8(long id, byte[] linkId, byte[] geometry) {
+		ensureRowCapacity();
+		this.ids[this.size] = id;
+		int linkIdStart = linkIdStart(this.size);
+		this.linkIds = ensureCapacity(this.linkIds, linkIdStart + linkId.length);
+		System.arraycopy(linkId, 0, this.linkIds, linkIdStart, linkId.length);
+		this.linkIdEnds[this.size] = linkIdStart + linkId.length;
+		int geometryStart = geometryStart(this.size);
+		if (geometry == null) {
+			this.nullGeometries.set(this.size);
+			this.geometryEnds[this.size] = geometryStart;
+		} else {
+			this.geometries = ensureCapacity(this.geometries, geometryStart + geometry.length);
+			System.arraycopy(geometry, 0, this.geometries, geometryStart, geometry.length);
+			this.geometryEnds[this.size] = geometryStart + geometry.length;
+		}
+		this.size++;
+	}
+
+	public long getId(int row) {
+		checkRow(row);
+		return this.ids[row];
+	}
+
+	/** Decodes the <code>linkId</code> of the row; use it for single rows, not on bulk paths. */
+	public String getLinkId(int row) {
+		checkRow(row);
+		int start = linkIdStart(row);
+		return new String(this.linkIds, start, this.linkIdEnds[row] - start, StandardCharsets.UTF_8);
+	}
+
+	/** Decodes the WKT geometry of the row, or returns <code>null</code>; use it for single rows, not on bulk paths. */
+	public String getGeometry(int row) {
+		checkRow(row);
+		if (this.nullGeometries.get(row)) {
+			return null;
+		}
+		int start = geometryStart(row);
+		return new String(this.geometries, start, this.geometryEnds[row] - start, StandardCharsets.UTF_8);
+	}
+
+	public LinkDAO toLinkDAO(int row) {
+		return new LinkDAO(getId(row), getLinkId(row), getGeometry(row));
+	}
+
+	/** Points <code>slice</code> at the UTF-8 bytes of the <code>linkId</code> of the row. */
+	ByteSlice linkId(int row, ByteSlice slice) {
+		checkRow(row);
+		int start = linkIdStart(row);
+		return slice.set(this.linkIds, start, this.linkIdEnds[row] - start);
+	}
+
+	/** Points <code>slice</code> at the WKT bytes of the geometry of the row, or returns <code>null</code>. */
+	ByteSlice geometry(int row, ByteSlice slice) {
+		checkRow(row);
+		if (this.nullGeometries.get(row)) {
+			return null;
+		}
+		int start = geometryStart(row);
+		return slice.set(this.geometries, start, this.geometryEnds[row] - start);
+	}
+
+	private int linkIdStart(int row) {
+		return row == 0 ? 0 : this.linkIdEnds[row - 1];
+	}
+
+	private int geometryStart(int row) {
+		return row == 0 ? 0 : this.geometryEnds[row - 1];
+	}
+
+	private void checkRow(int row) {
+		if (row < 0 || row >= this.size) {
+			throw new IndexOutOfBoundsException("row " + row + ", size " + this.size);
+		}
+	}
+
+	private void ensureRowCapacity() {
+		if (this.size == this.ids.length) {
+			int capacity = this.ids.length * 2;
+			this.ids = Arrays.copyOf(this.ids, capacity);
+			this.linkIdEnds = Arrays.copyOf(this.linkIdEnds, capacity);
+			this.geometryEnds = Arrays.copyOf(this.geometryEnds, capacity);
+		}
+	}
+
+	private static byte[] ensureCapacity(byte[] bytes, int capacity) {
+		if (capacity <= bytes.length) {
+			return bytes;
+		}
+		return Arrays.copyOf(bytes, Math.max(capacity, bytes.length * 2));
+	}
+
+	/**
+	 * Encodes the value as UTF-8 at the end of the <code>linkId</code> or geometry column.
+	 *
+	 * @return the new end of the column
+	 */
+	private int appendUtf8(CharSequence value, boolean isLinkId) {
+		int pos = isLinkId ? linkIdStart(this.size) : geometryStart(this.size);
+		if (value == null) {
+			return pos;
+		}
+		int length = value.length();
+		// at most 3 bytes per char, a surrogate pair is 2 chars for 4 bytes
+		byte[] bytes = ensureCapacity(isLinkId ? this.linkIds : this.geometries, pos + 3 * length);
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (c < 0x80) {
+				bytes[pos++] = (byte) c;
+			} else if (c < 0x800) {
+				bytes[pos++] = (byte) (0xc0 | (c >> 6));
+				bytes[pos++] = (byte) (0x80 | (c & 0x3f));
+			} else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, value.charAt(++i));
+				bytes[pos++] = (byte) (0xf0 | (codePoint >> 18));
+				bytes[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+				bytes[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+				bytes[pos++] = (byte) (0x80 | (codePoint & 0x3f));
+			} else if (Character.isSurrogate(c)) {
+				// unpaired surrogate, encoded as '?' like String.getBytes does
+				bytes[pos++] = '?';
+			} else {
+				bytes[pos++] = (byte) (0xe0 | (c >> 12));
+				bytes[pos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+				bytes[pos++] = (byte) (0x80 | (c & 0x3f));
+			}
+		}
+		if (isLinkId) {
+			this.linkIds = bytes;
+		} else {
+			this.geometries = bytes;
+		}
+		return pos;
+	}
+
+}
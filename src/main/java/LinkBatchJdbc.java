@@ -0,0 +1,69 @@
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Writes and reads a {@link LinkBatch} with plain JDBC, binding and fetching the packed UTF-8 columns as bytes.
+ */
+class LinkBatchJdbc {
+
+	static final String SELECT_LINKS_SQL = "SELECT id, linkId, geometry, geometryWkb FROM Link ORDER BY id";
+
+	private LinkBatchJdbc() {
+	}
+
+	/**
+	 * @param utf8Parameter the SQL of a parameter that converts the bound UTF-8 bytes to text, e.g. <code>CAST(? AS TEXT)</code>
+	 */
+	static String insertLinksSql(String tableName, String utf8Parameter) {
+		return "INSERT INTO " + tableName + " (linkId, " + GeometryEncoding.COLUMNS + ") VALUES ("
+				+ utf8Parameter + ", " + utf8Parameter + ", ?, ?, ?, ?, ?, ?)";
+	}
+
+	/**
+	 * Inserts the links with <code>insertSql</code> from {@link #insertLinksSql(String, String)}, executing the batch every
+	 * <code>batchSize</code> links. The ids of the batch are not written, the database assigns new ones.
+	 */
+	static void insertLinks(Connection conn, String insertSql, GeometryEncoding geometryEncoding, LinkBatch links, int batchSize, MetricsRegistry metrics) throws SQLException {
+		ByteSlice linkId = new ByteSlice();
+		ByteSlice geometry = new ByteSlice();
+		try (PreparedStatement stmt = conn.prepareStatement(insertSql)) {
+			for (int row = 0; row < links.size(); row++) {
+				stmt.setBytes(1, links.linkId(row, linkId).toByteArray());
+				geometryEncoding.bindUtf8(stmt, 2, links.geometry(row, geometry));
+				stmt.addBatch();
+				if ((row + 1) % batchSize == 0) {
+					JdbcMetrics.executeBatch(stmt, metrics);
+				}
+			}
+			JdbcMetrics.executeBatch(stmt, metrics);
+		}
+	}
+
+	/**
+	 * Reads all links, ordered by id. The text columns are fetched as their UTF-8 bytes, which both SQLite and
+	 * PostgreSQL return for <code>getBytes</code> on a text column.
+	 */
+	static LinkBatch readLinks(Connection conn, int fetchSize, MetricsRegistry metrics) throws SQLException {
+		LinkBatch links = new LinkBatch();
+		try (PreparedStatement stmt = conn.prepareStatement(SELECT_LINKS_SQL)) {
+			stmt.setFetchSize(fetchSize);
+			try (ResultSet rs = JdbcMetrics.executeQuery(stmt, metrics)) {
+				while (rs.next()) {
+					byte[] geometry = rs.getBytes(3);
+					if (geometry == null) {
+						byte[] wkb = rs.getBytes(4);
+						if (wkb != null) {
+							geometry = Wkb.toWkt(wkb).getBytes(StandardCharsets.UTF_8);
+						}
+					}
+					links.addUtf8(rs.getLong(1), rs.getBytes(2), geometry);
+				}
+			}
+		}
+		return links;
+	}
+
+}
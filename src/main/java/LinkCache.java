@@ -0,0 +1,197 @@
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Read-through cache of links in front of a {@link LinkStore}, e.g. a {@link SqliteDB} or {@link PostgresqlDB}.
+ *
+ * Links are kept by id in a {@link LongObjectHashMap}, together with an estimate of their memory footprint. When the
+ * estimate exceeds <code>maxBytes</code>, links are evicted with the CLOCK algorithm: a hand sweeps over the slots of the
+ * map, clearing the reference bit of links that were read since the last sweep, and evicting the first link without it.
+ * The complete list returned by {@link #getLinks()} is cached as well, as long as it fits.
+ *
+ * The cache is cleared whenever the store reports that its links changed. Links loaded by a call that started before
+ * the change are not put into the cache, so it never serves links that are older than the last write.
+ * The cached links are shared between callers and must not be modified.
+ */
+public class LinkCache implements LinkStore {
+
+	/** Estimated size of an entry object and its slot in the map. */
+	private static final int ENTRY_OVERHEAD = 40;
+	/** Estimated size of a reference in the cached list. */
+	private static final int LIST_ELEMENT_OVERHEAD = 8;
+
+	private final LinkStore store;
+	private final long maxBytes;
+	private final LongObjectHashMap<Entry> entries = new LongObjectHashMap<>();
+	private List<LinkDAO> allLinks = null;
+	private long usedBytes = 0;
+	private long generation = 0;
+	private int clockHand = 0;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	private static class Entry {
+		final LinkDAO link;
+		final long bytes;
+		boolean referenced = false;
+
+		Entry(LinkDAO link, long bytes) {
+			this.link = link;
+			this.bytes = bytes;
+		}
+	}
+
+	public LinkCache(LinkStore store, long maxBytes) {
+		this.store = store;
+		this.maxBytes = maxBytes;
+		store.addLinksChangedListener(this::invalidate);
+	}
+
+	@Override
+	public LinkDAO getLinkById(long id) {
+		long loadGeneration;
+		synchronized (this) {
+			Entry entry = this.entries.get(id);
+			if (entry != null) {
+				entry.referenced = true;
+				this.hits.increment();
+				return entry.link;
+			}
+			loadGeneration = this.generation;
+		}
+		this.misses.increment();
+		LinkDAO link = this.store.getLinkById(id);
+		if (link != null) {
+			synchronized (this) {
+				if (loadGeneration == this.generation && this.entries.get(id) == null) {
+					add(link);
+				}
+			}
+		}
+		return link;
+	}
+
+	/**
+	 * @return all links, ordered by id, as an unmodifiable list
+	 */
+	@Override
+	public List<LinkDAO> getLinks() {
+		long loadGeneration;
+		synchronized (this) {
+			if (this.allLinks != null) {
+				this.hits.increment();
+				return this.allLinks;
+			}
+			loadGeneration = this.generation;
+		}
+		this.misses.increment();
+		List<LinkDAO> links = Collections.unmodifiableList(this.store.getLinks());
+		long bytes = (long) links.size() * (ENTRY_OVERHEAD + LIST_ELEMENT_OVERHEAD);
+		for (LinkDAO link : links) {
+			bytes += estimateSize(link);
+		}
+		synchronized (this) {
+			if (loadGeneration == this.generation && bytes <= this.maxBytes) {
+				this.entries.clear();
+				for (LinkDAO link : links) {
+					this.entries.put(link.id, new Entry(link, ENTRY_OVERHEAD + estimateSize(link)));
+				}
+				this.usedBytes = bytes;
+				this.allLinks = links;
+			}
+		}
+		return links;
+	}
+
+	@Override
+	public void addLinksChangedListener(Runnable listener) {
+		this.store.addLinksChangedListener(listener);
+	}
+
+	/**
+	 * Removes all links from the cache. Called when the links of the store changed.
+	 */
+	public synchronized void invalidate() {
+		this.generation++;
+		this.entries.clear();
+		this.allLinks = null;
+		this.usedBytes = 0;
+		this.clockHand = 0;
+	}
+
+	public long getHitCount() {
+		return this.hits.sum();
+	}
+
+	public long getMissCount() {
+		return this.misses.sum();
+	}
+
+	public long getEvictionCount() {
+		return this.evictions.sum();
+	}
+
+	public synchronized int size() {
+		return this.entries.size();
+	}
+
+	public synchronized long getUsedBytes() {
+		return this.usedBytes;
+	}
+
+	private void add(LinkDAO link) {
+		long bytes = ENTRY_OVERHEAD + estimateSize(link);
+		if (bytes > this.maxBytes) {
+			return;
+		}
+		if (this.usedBytes + bytes > this.maxBytes) {
+			evict(this.usedBytes + bytes - this.maxBytes);
+		}
+		this.entries.put(link.id, new Entry(link, bytes));
+		this.usedBytes += bytes;
+	}
+
+	private void evict(long bytesToFree) {
+		if (this.allLinks != null) {
+			// the list keeps all links reachable, so it has to go first
+			this.usedBytes -= (long) this.allLinks.size() * LIST_ELEMENT_OVERHEAD;
+			this.allLinks = null;
+		}
+		long freed = 0;
+		while (freed < bytesToFree && this.entries.size() > 0) {
+			int slot = this.clockHand % this.entries.capacity();
+			Entry entry = this.entries.valueAt(slot);
+			if (entry == null) {
+				this.clockHand = slot + 1;
+			} else if (entry.referenced) {
+				entry.referenced = false;
+				this.clockHand = slot + 1;
+			} else {
+				// the hand stays, the slot may now hold an entry shifted back by the removal
+				this.entries.removeAt(slot);
+				this.usedBytes -= entry.bytes;
+				freed += entry.bytes;
+				this.evictions.increment();
+			}
+		}
+	}
+
+	/** Estimated heap size of the link, its strings and its WKB, assuming compact (Latin-1) strings. */
+	static long estimateSize(LinkDAO link) {
+		long bytes = 40;
+		if (link.linkId != null) {
+			bytes += 40 + link.linkId.length();
+		}
+		if (link.geometry != null) {
+			bytes += 40 + link.geometry.length();
+		}
+		if (link.geometryWkb != null) {
+			bytes += 16 + link.geometryWkb.length;
+		}
+		return bytes;
+	}
+
+}
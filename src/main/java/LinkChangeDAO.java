@@ -0,0 +1,53 @@
+/**
+ * A logged change of the links, as returned by <code>getLinkChangesSince</code>.
+ *
+ * Consumers apply the changes in order, keyed by id: an insert or update stores {@link #link} (skipped if it is
+ * <code>null</code>), a delete removes the link if it is known, and a reset means that all links were replaced,
+ * or that the changes were compacted, and the links have to be read again.
+ */
+public class LinkChangeDAO {
+
+	public enum Kind {
+		INSERT("I"), UPDATE("U"), DELETE("D"), RESET("R");
+
+		/** The value of the <code>kind</code> column. */
+		public final String code;
+
+		Kind(String code) {
+			this.code = code;
+		}
+
+		static Kind of(String code) {
+			for (Kind kind : values()) {
+				if (kind.code.equals(code)) {
+					return kind;
+				}
+			}
+			throw new IllegalArgumentException("Unknown kind of link change: " + code);
+		}
+	}
+
+	public final long sequence;
+	public final Kind kind;
+	/** The id of the changed link, <code>null</code> for a reset. */
+	public final Long id;
+	public final String linkId;
+	/**
+	 * The link as it is stored now for an insert or update, or <code>null</code> if it was deleted since.
+	 * Always <code>null</code> for a delete or reset.
+	 */
+	public final LinkDAO link;
+
+	public LinkChangeDAO(long sequence, Kind kind, Long id, String linkId, LinkDAO link) {
+		this.sequence = sequence;
+		this.kind = kind;
+		this.id = id;
+		this.linkId = linkId;
+		this.link = link;
+	}
+
+	@Override
+	public String toString() {
+		return this.sequence + " " + this.kind + " " + this.id + " " + this.linkId;
+	}
+}
@@ -0,0 +1,90 @@
+import jooq.tables.LinkChange;
+import org.jooq.DSLContext;
+import org.jooq.Record8;
+import org.jooq.impl.DSL;
+
+import java.util.stream.Stream;
+
+import static jooq.Tables.LINK;
+import static jooq.Tables.LINK_CHANGE;
+
+/**
+ * Implementation of the link change log, shared by {@link SqliteDB} and {@link PostgresqlDB}.
+ *
+ * The triggers of the migration V4 log every inserted, updated and deleted link in <code>Link_change</code>, with a
+ * sequence number that grows in commit order, in PostgreSQL assigned when the transaction commits (V6). Replacing all links suspends the triggers within its transaction, SQLite
+ * drops and re-creates them, and logs one reset instead, as logging every link twice would cost more than consumers
+ * reading all links again.
+ */
+class LinkChangeLog {
+
+	private LinkChangeLog() {
+	}
+
+	/**
+	 * The changes after <code>sequence</code>, ordered by sequence, with the links as they are stored now.
+	 * The stream is backed by a lazy cursor on the connection of <code>ctx</code>.
+	 */
+	static Stream<LinkChangeDAO> changesSince(DSLContext ctx, long sequence, int fetchSize) {
+		return ctx
+			.select(LINK_CHANGE.SEQ, LINK_CHANGE.KIND, LINK_CHANGE.ID, LINK_CHANGE.LINKID, LINK.ID, LINK.LINKID, LINK.GEOMETRY, LINK.GEOMETRYWKB)
+			.from(LINK_CHANGE)
+			.leftJoin(LINK).on(LINK.ID.eq(LINK_CHANGE.ID))
+				.and(LINK.LINKID.eq(LINK_CHANGE.LINKID))
+				.and(LINK_CHANGE.KIND.in(LinkChangeDAO.Kind.INSERT.code, LinkChangeDAO.Kind.UPDATE.code))
+			.where(LINK_CHANGE.SEQ.gt(sequence))
+			.orderBy(LINK_CHANGE.SEQ)
+			.fetchSize(fetchSize)
+			.fetchStream()
+			.map(LinkChangeLog::toLinkChangeDAO);
+	}
+
+	/**
+	 * @return the sequence of the last logged change, or 0 if there is none
+	 */
+	static long lastSequence(DSLContext ctx) {
+		Long sequence = ctx.select(DSL.max(LINK_CHANGE.SEQ)).from(LINK_CHANGE).fetchOne(0, Long.class);
+		return sequence == null ? 0 : sequence;
+	}
+
+	/**
+	 * Deletes the changes up to <code>sequence</code> and all changes before the last reset, in the transaction of
+	 * <code>tx</code>. The last deleted change is kept as reset, so consumers that have not read up to it yet reload
+	 * the links instead of missing changes. Of the remaining changes, only the last one of every link is kept,
+	 * as it carries the link as it is stored now.
+	 *
+	 * @return the number of deleted changes
+	 */
+	static int compact(DSLContext tx, long sequence) {
+		Long lastReset = tx.select(DSL.max(LINK_CHANGE.SEQ)).from(LINK_CHANGE).where(LINK_CHANGE.KIND.eq(LinkChangeDAO.Kind.RESET.code)).fetchOne(0, Long.class);
+		long upTo = Math.max(sequence, lastReset == null ? 0 : lastReset);
+		int deleted = 0;
+		Long last = tx.select(DSL.max(LINK_CHANGE.SEQ)).from(LINK_CHANGE).where(LINK_CHANGE.SEQ.le(upTo)).fetchOne(0, Long.class);
+		if (last != null) {
+			tx.update(LINK_CHANGE)
+				.set(LINK_CHANGE.KIND, LinkChangeDAO.Kind.RESET.code)
+				.setNull(LINK_CHANGE.ID)
+				.setNull(LINK_CHANGE.LINKID)
+				.where(LINK_CHANGE.SEQ.eq(last))
+				.execute();
+			deleted += tx.deleteFrom(LINK_CHANGE).where(LINK_CHANGE.SEQ.lt(last)).execute();
+		}
+		LinkChange later = LINK_CHANGE.as("later");
+		deleted += tx
+			.deleteFrom(LINK_CHANGE)
+			.where(LINK_CHANGE.KIND.ne(LinkChangeDAO.Kind.RESET.code))
+			.andExists(DSL.selectOne()
+				.from(later)
+				.where(later.ID.eq(LINK_CHANGE.ID))
+				.and(later.LINKID.eq(LINK_CHANGE.LINKID))
+				.and(later.SEQ.gt(LINK_CHANGE.SEQ)))
+			.execute();
+		return deleted;
+	}
+
+	private static LinkChangeDAO toLinkChangeDAO(Record8<Long, String, Long, String, Long, String, String, byte[]> r) {
+		LinkDAO link = r.value5() == null ? null : new LinkDAO(r.value5(), r.value6(), r.value7(), r.value8());
+		return new LinkChangeDAO(r.value1(), LinkChangeDAO.Kind.of(r.value2().trim()), r.value3(), r.value4(), link);
+	}
+
+}
@@ -3,10 +3,45 @@ public class LinkDAO {
 	public final long id;
 	public String linkId;
 	public String geometry;
+	public byte[] geometryWkb;
 
 	public LinkDAO(long id, String linkId, String geometry) {
 		this.id = id;
 		this.linkId = linkId;
 		this.geometry = geometry;
 	}
+
+	public LinkDAO(long id, String linkId, String geometry, byte[] geometryWkb) {
+		this.id = id;
+		this.linkId = linkId;
+		this.geometry = geometry;
+		this.geometryWkb = geometryWkb;
+	}
+
+	/** The geometry as WKT, converted from {@link #geometryWkb} if the link only has WKB. */
+	public String getGeometryWkt() {
+		if (this.geometry == null && this.geometryWkb != null) {
+			return Wkb.toWkt(this.geometryWkb);
+		}
+		return this.geometry;
+	}
+
+	/** The geometry as WKB, converted from {@link #geometry} if the link only has WKT. */
+	public byte[] getGeometryWkb() {
+		if (this.geometryWkb == null && this.geometry != null) {
+			return Wkb.fromWkt(this.geometry);
+		}
+		return this.geometryWkb;
+	}
+
+	/** The bounding box of the geometry, or <code>null</code> if the link has no geometry. */
+	public Envelope getEnvelope() {
+		if (this.geometryWkb != null) {
+			return Wkb.envelope(this.geometryWkb);
+		}
+		if (this.geometry != null) {
+			return Envelope.ofWkt(this.geometry);
+		}
+		return null;
+	}
 }
@@ -0,0 +1,71 @@
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * The operations {@link SqliteDB} and {@link PostgresqlDB} have in common, e.g. for {@link AsyncLinkDatabase}.
+ */
+public interface LinkDatabase extends LinkStore, Closeable {
+
+	void replaceLinks(List<LinkDAO> linkDAOs);
+
+	void replaceLinks(Iterator<LinkDAO> linkDAOs, int batchSize);
+
+	void replaceLinks(LinkBatch links);
+
+	/**
+	 * The row {@link #replaceEncodedLinks(Iterator, int)} inserts for <code>linkDAO</code>, with the geometry encoding of
+	 * the database at the time of the call. Thread-safe, e.g. for the producers of a {@link LinkIngestionPipeline}.
+	 */
+	Object[] encodeLink(LinkDAO linkDAO);
+
+	/**
+	 * Same as {@link #replaceLinks(Iterator, int)}, for links already encoded with {@link #encodeLink(LinkDAO)}:
+	 * the rows are only bound and executed.
+	 */
+	void replaceEncodedLinks(Iterator<Object[]> rows, int batchSize);
+
+	SyncResult syncLinks(Iterator<LinkDAO> linkDAOs, int batchSize);
+
+	LinkBatch getLinkBatch();
+
+	List<LinkDAO> getLinksInEnvelope(double minX, double minY, double maxX, double maxY);
+
+	/**
+	 * Borrows one connection, runs <code>work</code> in a transaction on it and returns the connection, also on failure.
+	 * The transaction is committed if <code>work</code> returns, and rolled back if it throws.
+	 * Writes to the links through <code>tx</code> do not notify the links changed listeners.
+	 */
+	<T> T inUnitOfWork(UnitOfWork<T> work);
+
+	/**
+	 * Creates a loader for any table of the database, see {@link BulkLoader}.
+	 */
+	<T> BulkLoader<T> bulkLoader(TableMapping<T> mapping);
+
+	<T> void replaceRows(BulkLoader<T> loader, Iterator<? extends T> rows, int batchSize);
+
+	<T> void replaceRows_ShadowTable(BulkLoader<T> loader, Iterator<? extends T> rows, int batchSize);
+
+	/**
+	 * Returns the changes of the links after <code>sequence</code>, in commit order, see {@link LinkChangeDAO}.
+	 * Consumers read {@link #getLinkChangeSequence()} before reading all links, and later the changes since then.
+	 * The stream holds a database connection and must be closed.
+	 */
+	Stream<LinkChangeDAO> getLinkChangesSince(long sequence);
+
+	/**
+	 * @return the sequence of the last logged change of the links, or 0 if none was logged yet
+	 */
+	long getLinkChangeSequence();
+
+	/**
+	 * Deletes the changes up to <code>sequence</code>, e.g. the sequence all consumers have read, and the changes superseded
+	 * by later ones. Consumers that are behind <code>sequence</code> read a reset. 0 only removes superseded changes.
+	 *
+	 * @return the number of deleted changes
+	 */
+	int compactLinkChanges(long sequence);
+
+}
@@ -0,0 +1,209 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Loads links produced by CPU-heavy work (parsing, geometry processing) while the database is writing.
+ *
+ * Several producer threads take items from the source, convert them to {@link LinkDAO}s, encode them to the rows of
+ * the Link table, e.g. with {@link LinkDatabase#encodeLink(LinkDAO)}, and put them, in chunks, into a bounded queue.
+ * Producers block when the queue is full, so memory stays bounded if the database is slower than the producers.
+ * The thread calling {@link #run(Iterator, LinkWriter)} is the single writer: it passes an iterator over the queue to
+ * the {@link LinkWriter}, e.g. <code>rows -> db.replaceEncodedLinks(rows, batchSize)</code>, which thus owns the
+ * transaction and only binds and executes the rows. If a producer fails, the writer's iterator throws and its
+ * transaction is rolled back.
+ *
+ * The links reach the writer in no particular order.
+ *
+ * @param <T> the type of the items the links are converted from
+ */
+public class LinkIngestionPipeline<T> {
+
+	@FunctionalInterface
+	public interface LinkWriter {
+		void write(Iterator<Object[]> rows) throws Exception;
+	}
+
+	public static class Stats {
+		public final long linkCount;
+		public final long durationNanos;
+		public final int maxQueueDepth;
+		public final double averageQueueDepth;
+		/** Total time producers were blocked because the queue was full, i.e. the writer was the bottleneck. */
+		public final long producerBlockedNanos;
+		/** Total time the writer waited for the queue to fill, i.e. the producers were the bottleneck. */
+		public final long writerWaitNanos;
+
+		Stats(long linkCount, long durationNanos, int maxQueueDepth, double averageQueueDepth, long producerBlockedNanos, long writerWaitNanos) {
+			this.linkCount = linkCount;
+			this.durationNanos = durationNanos;
+			this.maxQueueDepth = maxQueueDepth;
+			this.averageQueueDepth = averageQueueDepth;
+			this.producerBlockedNanos = producerBlockedNanos;
+			this.writerWaitNanos = writerWaitNanos;
+		}
+
+		public double getLinksPerSecond() {
+			return this.durationNanos == 0 ? 0 : this.linkCount * 1e9 / this.durationNanos;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d links in %d ms (%.0f links/s), queue depth avg %.1f max %d chunks, producers blocked %d ms, writer waited %d ms",
+				this.linkCount, TimeUnit.NANOSECONDS.toMillis(this.durationNanos), getLinksPerSecond(), this.averageQueueDepth, this.maxQueueDepth,
+				TimeUnit.NANOSECONDS.toMillis(this.producerBlockedNanos), TimeUnit.NANOSECONDS.toMillis(this.writerWaitNanos));
+		}
+	}
+
+	private static final List<Object[]> END_OF_LINKS = new ArrayList<>();
+
+	private final int producerCount;
+	private final int queueCapacity;
+	private final int chunkSize;
+	private final Function<T, LinkDAO> converter;
+	private final Function<LinkDAO, Object[]> encoder;
+
+	/**
+	 * @param producerCount number of threads converting items to links
+	 * @param queueCapacity maximum number of chunks waiting for the writer
+	 * @param chunkSize number of links per chunk, i.e. per queue operation
+	 * @param converter converts an item to a link, called concurrently by the producers
+	 * @param encoder encodes a link to the row the writer inserts, e.g. <code>db::encodeLink</code>, called concurrently by the producers
+	 */
+	public LinkIngestionPipeline(int producerCount, int queueCapacity, int chunkSize, Function<T, LinkDAO> converter, Function<LinkDAO, Object[]> encoder) {
+		this.producerCount = producerCount;
+		this.queueCapacity = queueCapacity;
+		this.chunkSize = chunkSize;
+		this.converter = converter;
+		this.encoder = encoder;
+	}
+
+	public Stats run(Iterator<T> source, LinkWriter writer) throws Exception {
+		BlockingQueue<List<Object[]>> queue = new ArrayBlockingQueue<>(this.queueCapacity);
+		AtomicReference<Throwable> producerFailure = new AtomicReference<>();
+		AtomicInteger runningProducers = new AtomicInteger(this.producerCount);
+		AtomicLong producerBlockedNanos = new AtomicLong();
+		AtomicInteger producerIndex = new AtomicInteger();
+		ExecutorService producers = Executors.newFixedThreadPool(this.producerCount, r -> {
+			Thread t = new Thread(r, "link-ingestion-producer-" + producerIndex.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+
+		long start = System.nanoTime();
+		for (int i = 0; i < this.producerCount; i++) {
+			producers.execute(() -> {
+				try {
+					List<T> items = new ArrayList<>(this.chunkSize);
+					while (producerFailure.get() == null && nextItems(source, items)) {
+						List<Object[]> chunk = new ArrayList<>(items.size());
+						for (T item : items) {
+							chunk.add(this.encoder.apply(this.converter.apply(item)));
+						}
+						long putStart = System.nanoTime();
+						queue.put(chunk);
+						producerBlockedNanos.addAndGet(System.nanoTime() - putStart);
+					}
+				} catch (Throwable t) {
+					producerFailure.compareAndSet(null, t);
+				} finally {
+					if (runningProducers.decrementAndGet() == 0) {
+						try {
+							queue.put(END_OF_LINKS);
+						} catch (InterruptedException e) {
+							// the writer has already finished or failed and no longer reads from the queue
+						}
+					}
+				}
+			});
+		}
+
+		QueueIterator rowIterator = new QueueIterator(queue, producerFailure);
+		try {
+			writer.write(rowIterator);
+		} finally {
+			producers.shutdownNow();
+			queue.clear();
+		}
+		if (producerFailure.get() != null) {
+			throw new RuntimeException("Link producer failed.", producerFailure.get());
+		}
+		return new Stats(rowIterator.linkCount, System.nanoTime() - start, rowIterator.maxQueueDepth,
+			rowIterator.chunkCount == 0 ? 0 : (double) rowIterator.queueDepthSum / rowIterator.chunkCount,
+			producerBlockedNanos.get(), rowIterator.waitNanos);
+	}
+
+	private boolean nextItems(Iterator<T> source, List<T> items) {
+		items.clear();
+		synchronized (source) {
+			while (items.size() < this.chunkSize && source.hasNext()) {
+				items.add(source.next());
+			}
+		}
+		return !items.isEmpty();
+	}
+
+	private static class QueueIterator implements Iterator<Object[]> {
+
+		private final BlockingQueue<List<Object[]>> queue;
+		private final AtomicReference<Throwable> producerFailure;
+		private List<Object[]> chunk = new ArrayList<>();
+		private int index = 0;
+		long linkCount = 0;
+		long chunkCount = 0;
+		long queueDepthSum = 0;
+		int maxQueueDepth = 0;
+		long waitNanos = 0;
+
+		QueueIterator(BlockingQueue<List<Object[]>> queue, AtomicReference<Throwable> producerFailure) {
+			this.queue = queue;
+			this.producerFailure = producerFailure;
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (this.index == this.chunk.size()) {
+				if (this.chunk == END_OF_LINKS) {
+					if (this.producerFailure.get() != null) {
+						throw new IllegalStateException("Link producer failed.", this.producerFailure.get());
+					}
+					return false;
+				}
+				int depth = this.queue.size();
+				this.queueDepthSum += depth;
+				this.maxQueueDepth = Math.max(this.maxQueueDepth, depth);
+				long takeStart = System.nanoTime();
+				try {
+					this.chunk = this.queue.take();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Interrupted while waiting for links.", e);
+				}
+				this.waitNanos += System.nanoTime() - takeStart;
+				this.chunkCount++;
+				this.index = 0;
+			}
+			return true;
+		}
+
+		@Override
+		public Object[] next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			this.linkCount++;
+			return this.chunk.get(this.index++);
+		}
+	}
+
+}
@@ -0,0 +1,279 @@
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * In-memory {@link MetricsRegistry}: a latency histogram and a row counter per statement kind, histograms of the batch
+ * sizes, of the connection-acquire waits and of how long pooled connections were used, and the registered gauges. Can be registered as MBean, see
+ * {@link #registerMBean(String)}.
+ *
+ * Recording only adds to {@link LongAdder}s, so threads do not contend on a shared counter.
+ */
+public class LinkMetrics implements MetricsRegistry, LinkMetricsMXBean {
+
+	private final Map<String, Histogram> statements = new ConcurrentHashMap<>();
+	private final Map<String, LongAdder> rows = new ConcurrentHashMap<>();
+	private final Histogram batchSizes = new Histogram();
+	private final Histogram connectionAcquires = new Histogram();
+	private final Histogram connectionUsages = new Histogram();
+	private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+	@Override
+	public void recordStatement(String kind, long nanos, long rows) {
+		this.statements.computeIfAbsent(kind, k -> new Histogram()).record(nanos);
+		if (rows > 0) {
+			this.rows.computeIfAbsent(kind, k -> new LongAdder()).add(rows);
+		}
+	}
+
+	@Override
+	public void recordBatch(int size) {
+		this.batchSizes.record(size);
+	}
+
+	@Override
+	public void recordConnectionAcquire(long nanos) {
+		this.connectionAcquires.record(nanos);
+	}
+
+	@Override
+	public void recordConnectionUsage(long millis) {
+		this.connectionUsages.record(millis);
+	}
+
+	@Override
+	public void registerGauge(String name, LongSupplier value) {
+		this.gauges.put(name, value);
+	}
+
+	/** The latencies of one statement kind, in nanoseconds, or <code>null</code> if none was recorded. */
+	public Histogram getStatementHistogram(String kind) {
+		return this.statements.get(kind);
+	}
+
+	public long getRows(String kind) {
+		LongAdder adder = this.rows.get(kind);
+		return adder == null ? 0 : adder.sum();
+	}
+
+	public Histogram getBatchSizeHistogram() {
+		return this.batchSizes;
+	}
+
+	/** The connection-acquire waits, in nanoseconds. */
+	public Histogram getConnectionAcquireHistogram() {
+		return this.connectionAcquires;
+	}
+
+	/** How long pooled connections were used, in milliseconds; one value per returned connection. */
+	public Histogram getConnectionUsageHistogram() {
+		return this.connectionUsages;
+	}
+
+	/**
+	 * Registers this as MBean in the platform MBean server, replacing an MBean of the same name.
+	 *
+	 * @param name e.g. <code>sqlite-jooq-test:type=LinkMetrics,name=links</code>
+	 */
+	public ObjectName registerMBean(String name) {
+		try {
+			ObjectName objectName = new ObjectName(name);
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			try {
+				server.registerMBean(this, objectName);
+			} catch (InstanceAlreadyExistsException e) {
+				server.unregisterMBean(objectName);
+				server.registerMBean(this, objectName);
+			}
+			return objectName;
+		} catch (JMException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public Map<String, Long> getStatementCounts() {
+		Map<String, Long> counts = new TreeMap<>();
+		this.statements.forEach((kind, histogram) -> counts.put(kind, histogram.getCount()));
+		return counts;
+	}
+
+	@Override
+	public Map<String, Double> getStatementMeanMillis() {
+		return statementMillis(Histogram::getMean);
+	}
+
+	@Override
+	public Map<String, Double> getStatementP99Millis() {
+		return statementMillis(histogram -> histogram.getPercentile(99));
+	}
+
+	@Override
+	public Map<String, Double> getStatementMaxMillis() {
+		return statementMillis(histogram -> histogram.getMax());
+	}
+
+	@Override
+	public Map<String, Long> getRowsAffected() {
+		Map<String, Long> result = new TreeMap<>();
+		this.rows.forEach((kind, adder) -> result.put(kind, adder.sum()));
+		return result;
+	}
+
+	@Override
+	public long getBatchCount() {
+		return this.batchSizes.getCount();
+	}
+
+	@Override
+	public double getMeanBatchSize() {
+		return this.batchSizes.getMean();
+	}
+
+	@Override
+	public long getConnectionAcquireCount() {
+		return this.connectionAcquires.getCount();
+	}
+
+	@Override
+	public double getConnectionAcquireMeanMillis() {
+		return this.connectionAcquires.getMean() / 1e6;
+	}
+
+	@Override
+	public double getConnectionAcquireP99Millis() {
+		return this.connectionAcquires.getPercentile(99) / 1e6;
+	}
+
+	@Override
+	public long getConnectionReturnCount() {
+		return this.connectionUsages.getCount();
+	}
+
+	@Override
+	public double getConnectionUsageMeanMillis() {
+		return this.connectionUsages.getMean();
+	}
+
+	@Override
+	public double getConnectionUsageMaxMillis() {
+		return this.connectionUsages.getMax();
+	}
+
+	@Override
+	public Map<String, Long> getGauges() {
+		Map<String, Long> result = new TreeMap<>();
+		this.gauges.forEach((name, gauge) -> result.put(name, gauge.getAsLong()));
+		return result;
+	}
+
+	/** Clears the recorded values; the gauges stay registered. */
+	@Override
+	public void reset() {
+		this.statements.clear();
+		this.rows.clear();
+		this.batchSizes.reset();
+		this.connectionAcquires.reset();
+		this.connectionUsages.reset();
+	}
+
+	private Map<String, Double> statementMillis(ToDoubleFunction<Histogram> nanos) {
+		Map<String, Double> result = new TreeMap<>();
+		this.statements.forEach((kind, histogram) -> result.put(kind, nanos.applyAsDouble(histogram) / 1e6));
+		return result;
+	}
+
+	/**
+	 * Counts non-negative values in power-of-two buckets: bucket <code>i</code> holds the values with <code>i</code>
+	 * significant bits, i.e. <code>[2^(i-1), 2^i)</code>. Percentiles are thus accurate within a factor of two, which
+	 * is enough to tell a fast statement from a slow one, at the cost of 65 counters.
+	 */
+	public static class Histogram {
+
+		private final LongAdder[] buckets = new LongAdder[65];
+		private final LongAdder sum = new LongAdder();
+		private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+		public Histogram() {
+			for (int i = 0; i < this.buckets.length; i++) {
+				this.buckets[i] = new LongAdder();
+			}
+		}
+
+		public void record(long value) {
+			if (value < 0) {
+				value = 0;
+			}
+			this.buckets[64 - Long.numberOfLeadingZeros(value)].increment();
+			this.sum.add(value);
+			this.max.accumulate(value);
+		}
+
+		public long getCount() {
+			long count = 0;
+			for (LongAdder bucket : this.buckets) {
+				count += bucket.sum();
+			}
+			return count;
+		}
+
+		public long getSum() {
+			return this.sum.sum();
+		}
+
+		public long getMax() {
+			return this.max.get();
+		}
+
+		public double getMean() {
+			long count = getCount();
+			return count == 0 ? 0 : (double) getSum() / count;
+		}
+
+		/**
+		 * The upper bound of the bucket holding the given percentile, but at most the largest value recorded.
+		 *
+		 * @param percentile between 0 and 100
+		 */
+		public long getPercentile(double percentile) {
+			long[] counts = new long[this.buckets.length];
+			long count = 0;
+			for (int i = 0; i < counts.length; i++) {
+				counts[i] = this.buckets[i].sum();
+				count += counts[i];
+			}
+			if (count == 0) {
+				return 0;
+			}
+			long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+			long seen = 0;
+			for (int i = 0; i < counts.length; i++) {
+				seen += counts[i];
+				if (seen >= rank) {
+					long upperBound = i == 0 ? 0 : i == 64 ? Long.MAX_VALUE : (1L << i) - 1;
+					return Math.min(upperBound, getMax());
+				}
+			}
+			return getMax();
+		}
+
+		void reset() {
+			for (LongAdder bucket : this.buckets) {
+				bucket.reset();
+			}
+			this.sum.reset();
+			this.max.reset();
+		}
+
+	}
+
+}
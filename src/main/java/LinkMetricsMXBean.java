@@ -0,0 +1,39 @@
+import java.util.Map;
+
+/**
+ * The JMX view of {@link LinkMetrics}. Durations are in milliseconds, maps are keyed by statement kind or gauge name.
+ */
+public interface LinkMetricsMXBean {
+
+	Map<String, Long> getStatementCounts();
+
+	Map<String, Double> getStatementMeanMillis();
+
+	Map<String, Double> getStatementP99Millis();
+
+	Map<String, Double> getStatementMaxMillis();
+
+	Map<String, Long> getRowsAffected();
+
+	long getBatchCount();
+
+	double getMeanBatchSize();
+
+	long getConnectionAcquireCount();
+
+	double getConnectionAcquireMeanMillis();
+
+	double getConnectionAcquireP99Millis();
+
+	/** Less than {@link #getConnectionAcquireCount()} while connections are borrowed, or if connections leak. */
+	long getConnectionReturnCount();
+
+	double getConnectionUsageMeanMillis();
+
+	double getConnectionUsageMaxMillis();
+
+	Map<String, Long> getGauges();
+
+	void reset();
+
+}
@@ -0,0 +1,89 @@
+import java.util.Arrays;
+
+/**
+ * How {@link ShardedSqliteDB} distributes links over its shards: by a hash of the id or of the linkId, or by ranges of ids.
+ * The same partitioning must be used every time the shards are opened, otherwise links are looked up in the wrong shard.
+ */
+public final class LinkPartitioning {
+
+	private enum Kind {HASH_ID, HASH_LINK_ID, RANGE_ID}
+
+	private final Kind kind;
+	private final int shardCount;
+	/** For {@link Kind#RANGE_ID}: the smallest id of every shard but the first, ascending. */
+	private final long[] lowerBounds;
+
+	private LinkPartitioning(Kind kind, int shardCount, long[] lowerBounds) {
+		if (shardCount < 1) {
+			throw new IllegalArgumentException("At least one shard is required, not " + shardCount);
+		}
+		this.kind = kind;
+		this.shardCount = shardCount;
+		this.lowerBounds = lowerBounds;
+	}
+
+	/** Spreads the links evenly over the shards, also if the ids have gaps or a stride. */
+	public static LinkPartitioning hashById(int shardCount) {
+		return new LinkPartitioning(Kind.HASH_ID, shardCount, null);
+	}
+
+	/** Keeps all links with the same linkId in the same shard. A link is only found by id by asking every shard. */
+	public static LinkPartitioning hashByLinkId(int shardCount) {
+		return new LinkPartitioning(Kind.HASH_LINK_ID, shardCount, null);
+	}
+
+	/**
+	 * Shard <code>i</code> holds the ids from <code>lowerBounds[i - 1]</code> up to but excluding <code>lowerBounds[i]</code>,
+	 * the first shard all ids below <code>lowerBounds[0]</code>. Reading all links in id order needs no merge then.
+	 */
+	public static LinkPartitioning rangeById(long... lowerBounds) {
+		for (int i = 1; i < lowerBounds.length; i++) {
+			if (lowerBounds[i] <= lowerBounds[i - 1]) {
+				throw new IllegalArgumentException("The lower bounds must be ascending: " + Arrays.toString(lowerBounds));
+			}
+		}
+		return new LinkPartitioning(Kind.RANGE_ID, lowerBounds.length + 1, lowerBounds.clone());
+	}
+
+	public int getShardCount() {
+		return this.shardCount;
+	}
+
+	public int shardOf(LinkDAO link) {
+		if (this.kind == Kind.HASH_LINK_ID) {
+			return link.linkId == null ? 0 : Math.floorMod(link.linkId.hashCode(), this.shardCount);
+		}
+		return shardOfId(link.id);
+	}
+
+	/**
+	 * @return the shard that holds the link with this id, or -1 if it can be in any shard
+	 */
+	public int shardOfId(long id) {
+		return switch (this.kind) {
+			case HASH_ID -> Math.floorMod(mix(id), this.shardCount);
+			case HASH_LINK_ID -> -1;
+			case RANGE_ID -> {
+				int index = Arrays.binarySearch(this.lowerBounds, id);
+				yield index >= 0 ? index + 1 : -index - 1;
+			}
+		};
+	}
+
+	/** Whether the shards hold ascending, disjoint ranges of ids, so their links in id order only need to be concatenated. */
+	public boolean isOrderedById() {
+		return this.kind == Kind.RANGE_ID;
+	}
+
+	/** The finalizer of MurmurHash3, so ids with a stride that is a multiple of the shard count still spread over all shards. */
+	private static long mix(long id) {
+		long h = id;
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+}
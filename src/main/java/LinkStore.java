@@ -0,0 +1,20 @@
+import java.util.List;
+
+/**
+ * Read access to the stored links, implemented by the databases and by {@link LinkCache} in front of them.
+ */
+public interface LinkStore {
+
+	List<LinkDAO> getLinks();
+
+	/**
+	 * @return the link with the given id, or <code>null</code>
+	 */
+	LinkDAO getLinkById(long id);
+
+	/**
+	 * Registers a listener that is called after every write to the links, once it is committed or rolled back.
+	 */
+	void addLinksChangedListener(Runnable listener);
+
+}
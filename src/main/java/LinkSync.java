@@ -0,0 +1,282 @@
+import org.jooq.DSLContext;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Implementation of <code>syncLinks</code>, shared by {@link SqliteDB} and {@link PostgresqlDB}.
+ *
+ * The incoming links are processed in chunks of {@value #CHUNK_SIZE}: for each chunk, only the <code>linkId</code> and
+ * <code>geometryHash</code> of the stored links with the same linkIds are looked up through the index on
+ * <code>linkId</code>. Unknown links are inserted, and links with a different hash are updated; the geometry of the
+ * stored links is never read. The hash covers the stored representation, so links stored with another
+ * {@link GeometryEncoding} are rewritten, as are links written before the hash was stored. The linkIds of the incoming
+ * links are collected in the temporary table {@value #SYNCED_TABLE}, stored links that are not in it are deleted at the
+ * end, so memory does not depend on the number of links.
+ *
+ * The linkIds of the incoming links must be unique. Stored links that share a linkId are deleted,
+ * and the incoming link with that linkId, if any, is inserted once.
+ */
+class LinkSync {
+
+	static final int CHUNK_SIZE = 500;
+	static final String SYNCED_TABLE = "Link_synced";
+
+	private LinkSync() {
+	}
+
+	/**
+	 * @param envelopeIndexTable an R*Tree of the link bounding boxes (SQLite) to update along with the links, or <code>null</code>
+	 */
+	static SyncResult sync(DSLContext tx, GeometryEncoding geometryEncoding, String envelopeIndexTable, Iterator<LinkDAO> linkDAOs, int batchSize) {
+		return tx.connectionResult(conn -> {
+			try (Statement stmt = conn.createStatement()) {
+				stmt.executeUpdate("CREATE TEMPORARY TABLE " + SYNCED_TABLE + " (linkId VARCHAR(1000) PRIMARY KEY)");
+				SyncResult result = sync(conn, geometryEncoding, envelopeIndexTable, linkDAOs, batchSize);
+				stmt.executeUpdate("DROP TABLE " + SYNCED_TABLE);
+				return result;
+			}
+		});
+	}
+
+	private static SyncResult sync(Connection conn, GeometryEncoding geometryEncoding, String envelopeIndexTable, Iterator<LinkDAO> linkDAOs, int batchSize) throws SQLException {
+		int inserted = 0;
+		int updated = 0;
+		int deleted = 0;
+		int unchanged = 0;
+		List<LinkDAO> chunk = new ArrayList<>(CHUNK_SIZE);
+		try (Batches batches = new Batches(conn, envelopeIndexTable)) {
+			while (linkDAOs.hasNext()) {
+				chunk.clear();
+				while (chunk.size() < CHUNK_SIZE && linkDAOs.hasNext()) {
+					chunk.add(linkDAOs.next());
+				}
+				Map<String, Long> storedHashes = new HashMap<>();
+				Map<String, Integer> storedCounts = new HashMap<>();
+				lookup(batches, chunk, storedHashes, storedCounts);
+
+				boolean storedDuplicates = false;
+				for (Map.Entry<String, Integer> stored : List.copyOf(storedCounts.entrySet())) {
+					if (stored.getValue() > 1) {
+						storedDuplicates = true;
+						// stored more than once: deleted before the incoming link is inserted
+						storedCounts.remove(stored.getKey());
+						storedHashes.remove(stored.getKey());
+						batches.deleteStmt.setString(1, stored.getKey());
+						batches.deleteStmt.addBatch();
+						batches.addEnvelopeDelete(stored.getKey());
+						deleted += stored.getValue();
+						batches.pending++;
+					}
+				}
+				if (storedDuplicates) {
+					batches.execute();
+				}
+
+				for (LinkDAO dao : chunk) {
+					batches.syncedStmt.setString(1, dao.linkId);
+					batches.syncedStmt.addBatch();
+					if (!storedCounts.containsKey(dao.linkId)) {
+						batches.insertStmt.setString(1, dao.linkId);
+						geometryEncoding.bind(batches.insertStmt, 2, dao);
+						batches.insertStmt.addBatch();
+						batches.addEnvelopeInsert(dao.linkId);
+						inserted++;
+					} else {
+						Long storedHash = storedHashes.get(dao.linkId);
+						if (storedHash != null && storedHash == geometryEncoding.contentHash(dao)) {
+							unchanged++;
+							continue;
+						}
+						batches.addUpdate(geometryEncoding, dao);
+						updated++;
+					}
+					if (++batches.pending == batchSize) {
+						batches.execute();
+					}
+				}
+				batches.syncedStmt.executeBatch();
+			}
+			batches.execute();
+			deleted += batches.deleteUnsynced();
+		}
+		return new SyncResult(inserted, updated, deleted, unchanged);
+	}
+
+	/**
+	 * Looks up the hashes of the stored links with the linkIds of <code>chunk</code>, and how often each linkId is stored.
+	 * A stored link without hash is in <code>storedCounts</code> only.
+	 *
+	 * @throws IllegalArgumentException if a linkId occurs more than once in the incoming links
+	 */
+	private static void lookup(Batches batches, List<LinkDAO> chunk, Map<String, Long> storedHashes, Map<String, Integer> storedCounts) throws SQLException {
+		Set<String> linkIds = new HashSet<>();
+		for (LinkDAO dao : chunk) {
+			if (!linkIds.add(dao.linkId)) {
+				throw duplicateLinkId(dao.linkId);
+			}
+		}
+		PreparedStatement stmt = batches.lookupStmt(chunk.size());
+		for (int i = 0; i < chunk.size(); i++) {
+			stmt.setString(i + 1, chunk.get(i).linkId);
+			stmt.setString(chunk.size() + i + 1, chunk.get(i).linkId);
+		}
+		try (ResultSet rs = stmt.executeQuery()) {
+			while (rs.next()) {
+				String linkId = rs.getString(1);
+				if (rs.getInt(3) == 1) {
+					throw duplicateLinkId(linkId);
+				}
+				long hash = rs.getLong(2);
+				if (!rs.wasNull()) {
+					storedHashes.put(linkId, hash);
+				}
+				storedCounts.merge(linkId, 1, Integer::sum);
+			}
+		}
+	}
+
+	private static IllegalArgumentException duplicateLinkId(String linkId) {
+		return new IllegalArgumentException("The linkId " + linkId + " occurs more than once in the links to sync.");
+	}
+
+	/**
+	 * The statements of a sync, executed together so the R*Tree of the bounding boxes (if any) is updated
+	 * in the right order: entries are deleted while the links still have their ids, and inserted once the links are written.
+	 */
+	private static class Batches implements AutoCloseable {
+
+		final PreparedStatement insertStmt;
+		final PreparedStatement updateStmt;
+		final PreparedStatement deleteStmt;
+		final PreparedStatement syncedStmt;
+		private final Connection conn;
+		private final String envelopeIndexTable;
+		private final PreparedStatement envelopeInsertStmt;
+		private final PreparedStatement envelopeDeleteStmt;
+		/** The lookup of a full chunk, and of the last one if it is shorter. */
+		private PreparedStatement lookupStmt = null;
+		private PreparedStatement lastLookupStmt = null;
+		int pending = 0;
+
+		Batches(Connection conn, String envelopeIndexTable) throws SQLException {
+			this.conn = conn;
+			this.envelopeIndexTable = envelopeIndexTable;
+			this.insertStmt = conn.prepareStatement("INSERT INTO Link (linkId, " + GeometryEncoding.COLUMNS + ") VALUES (?" + ", ?".repeat(GeometryEncoding.COLUMN_COUNT) + ")");
+			this.updateStmt = conn.prepareStatement("UPDATE Link SET geometry = ?, geometryWkb = ?, minX = ?, minY = ?, maxX = ?, maxY = ?, geometryHash = ? WHERE linkId = ?");
+			this.deleteStmt = conn.prepareStatement("DELETE FROM Link WHERE linkId = ?");
+			this.syncedStmt = conn.prepareStatement("INSERT INTO " + SYNCED_TABLE + " (linkId) VALUES (?)");
+			if (envelopeIndexTable != null) {
+				this.envelopeInsertStmt = conn.prepareStatement("INSERT INTO " + envelopeIndexTable + " (id, minX, maxX, minY, maxY) SELECT id, minX, maxX, minY, maxY FROM Link WHERE linkId = ? AND minX IS NOT NULL");
+				this.envelopeDeleteStmt = conn.prepareStatement("DELETE FROM " + envelopeIndexTable + " WHERE id IN (SELECT id FROM Link WHERE linkId = ?)");
+			} else {
+				this.envelopeInsertStmt = null;
+				this.envelopeDeleteStmt = null;
+			}
+		}
+
+		void addUpdate(GeometryEncoding geometryEncoding, LinkDAO dao) throws SQLException {
+			geometryEncoding.bind(this.updateStmt, 1, dao);
+			this.updateStmt.setString(1 + GeometryEncoding.COLUMN_COUNT, dao.linkId);
+			this.updateStmt.addBatch();
+			addEnvelopeDelete(dao.linkId);
+			addEnvelopeInsert(dao.linkId);
+		}
+
+		void addEnvelopeInsert(String linkId) throws SQLException {
+			if (this.envelopeInsertStmt != null) {
+				this.envelopeInsertStmt.setString(1, linkId);
+				this.envelopeInsertStmt.addBatch();
+			}
+		}
+
+		void addEnvelopeDelete(String linkId) throws SQLException {
+			if (this.envelopeDeleteStmt != null) {
+				this.envelopeDeleteStmt.setString(1, linkId);
+				this.envelopeDeleteStmt.addBatch();
+			}
+		}
+
+		/**
+		 * Selects <code>linkId</code>, <code>geometryHash</code> and 0 of the stored links with one of <code>size</code> linkIds,
+		 * and the linkId, <code>NULL</code> and 1 for those already synced; the linkIds are bound twice.
+		 */
+		PreparedStatement lookupStmt(int size) throws SQLException {
+			if (size == CHUNK_SIZE) {
+				if (this.lookupStmt == null) {
+					this.lookupStmt = this.conn.prepareStatement(lookupSql(size));
+				}
+				return this.lookupStmt;
+			}
+			if (this.lastLookupStmt != null) {
+				this.lastLookupStmt.close();
+			}
+			this.lastLookupStmt = this.conn.prepareStatement(lookupSql(size));
+			return this.lastLookupStmt;
+		}
+
+		private static String lookupSql(int size) {
+			String parameters = "?" + ", ?".repeat(size - 1);
+			return "SELECT linkId, geometryHash, 0 FROM Link WHERE linkId IN (" + parameters + ")"
+				+ " UNION ALL SELECT linkId, NULL, 1 FROM " + SYNCED_TABLE + " WHERE linkId IN (" + parameters + ")";
+		}
+
+		/**
+		 * Deletes the stored links whose linkId was not synced, with their entries in the R*Tree. The links are counted
+		 * first, as the update count of SQLite includes the rows written by the change log triggers.
+		 *
+		 * @return the number of deleted links
+		 */
+		int deleteUnsynced() throws SQLException {
+			String unsynced = "FROM Link WHERE linkId NOT IN (SELECT linkId FROM " + SYNCED_TABLE + ")";
+			try (Statement stmt = this.conn.createStatement()) {
+				int count;
+				try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) " + unsynced)) {
+					rs.next();
+					count = rs.getInt(1);
+				}
+				if (count > 0) {
+					if (this.envelopeIndexTable != null) {
+						stmt.executeUpdate("DELETE FROM " + this.envelopeIndexTable + " WHERE id IN (SELECT id " + unsynced + ")");
+					}
+					stmt.executeUpdate("DELETE " + unsynced);
+				}
+				return count;
+			}
+		}
+
+		void execute() throws SQLException {
+			if (this.envelopeDeleteStmt != null) {
+				this.envelopeDeleteStmt.executeBatch();
+			}
+			this.insertStmt.executeBatch();
+			this.updateStmt.executeBatch();
+			this.deleteStmt.executeBatch();
+			if (this.envelopeInsertStmt != null) {
+				this.envelopeInsertStmt.executeBatch();
+			}
+			this.pending = 0;
+		}
+
+		@Override
+		public void close() throws SQLException {
+			for (PreparedStatement stmt : new PreparedStatement[] { this.insertStmt, this.updateStmt, this.deleteStmt, this.syncedStmt,
+					this.envelopeInsertStmt, this.envelopeDeleteStmt, this.lookupStmt, this.lastLookupStmt }) {
+				if (stmt != null) {
+					stmt.close();
+				}
+			}
+		}
+	}
+
+}
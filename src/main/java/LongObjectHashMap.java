@@ -0,0 +1,163 @@
+/**
+ * Hash map with primitive <code>long</code> keys, so neither lookups nor entries box the key.
+ *
+ * Open addressing with linear probing: keys and values are kept in two parallel arrays, an empty slot has a
+ * <code>null</code> value, so values must not be <code>null</code>. Removing an entry shifts the following entries
+ * of its probe sequence back instead of leaving a tombstone. Not thread-safe.
+ */
+class LongObjectHashMap<V> {
+
+	private static final int MIN_CAPACITY = 16;
+
+	private long[] keys;
+	private Object[] values;
+	private int mask;
+	private int size = 0;
+	private int resizeThreshold;
+
+	LongObjectHashMap() {
+		this(MIN_CAPACITY);
+	}
+
+	LongObjectHashMap(int expectedSize) {
+		allocate(capacityFor(expectedSize));
+	}
+
+	int size() {
+		return this.size;
+	}
+
+	V get(long key) {
+		int slot = slotOf(key);
+		return slot < 0 ? null : valueAt(slot);
+	}
+
+	/**
+	 * @return the previous value of the key, or <code>null</code>
+	 */
+	V put(long key, V value) {
+		if (value == null) {
+			throw new IllegalArgumentException("values must not be null");
+		}
+		int slot = hash(key) & this.mask;
+		while (this.values[slot] != null) {
+			if (this.keys[slot] == key) {
+				V previous = valueAt(slot);
+				this.values[slot] = value;
+				return previous;
+			}
+			slot = (slot + 1) & this.mask;
+		}
+		this.keys[slot] = key;
+		this.values[slot] = value;
+		if (++this.size > this.resizeThreshold) {
+			resize(this.keys.length * 2);
+		}
+		return null;
+	}
+
+	/**
+	 * @return the removed value, or <code>null</code> if the key was not in the map
+	 */
+	V remove(long key) {
+		int slot = slotOf(key);
+		if (slot < 0) {
+			return null;
+		}
+		V value = valueAt(slot);
+		removeAt(slot);
+		return value;
+	}
+
+	void clear() {
+		allocate(MIN_CAPACITY);
+		this.size = 0;
+	}
+
+	/** The number of slots, for iterating with {@link #valueAt(int)}. Changes when the map grows. */
+	int capacity() {
+		return this.keys.length;
+	}
+
+	/** The value in the slot, or <code>null</code> if the slot is empty. */
+	@SuppressWarnings("unchecked")
+	V valueAt(int slot) {
+		return (V) this.values[slot];
+	}
+
+	long keyAt(int slot) {
+		return this.keys[slot];
+	}
+
+	/**
+	 * Removes the entry in the slot. A later entry of the probe sequence may be moved into the slot.
+	 */
+	void removeAt(int slot) {
+		int gap = slot;
+		int i = slot;
+		while (true) {
+			i = (i + 1) & this.mask;
+			if (this.values[i] == null) {
+				break;
+			}
+			int home = hash(this.keys[i]) & this.mask;
+			// the entry can fill the gap if the gap lies between its home slot and its current slot
+			if (((i - home) & this.mask) >= ((i - gap) & this.mask)) {
+				this.keys[gap] = this.keys[i];
+				this.values[gap] = this.values[i];
+				gap = i;
+			}
+		}
+		this.values[gap] = null;
+		this.size--;
+	}
+
+	private int slotOf(long key) {
+		int slot = hash(key) & this.mask;
+		while (this.values[slot] != null) {
+			if (this.keys[slot] == key) {
+				return slot;
+			}
+			slot = (slot + 1) & this.mask;
+		}
+		return -1;
+	}
+
+	private void resize(int capacity) {
+		long[] oldKeys = this.keys;
+		Object[] oldValues = this.values;
+		allocate(capacity);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldValues[i] != null) {
+				int slot = hash(oldKeys[i]) & this.mask;
+				while (this.values[slot] != null) {
+					slot = (slot + 1) & this.mask;
+				}
+				this.keys[slot] = oldKeys[i];
+				this.values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	private void allocate(int capacity) {
+		this.keys = new long[capacity];
+		this.values = new Object[capacity];
+		this.mask = capacity - 1;
+		this.resizeThreshold = capacity / 4 * 3;
+	}
+
+	private static int capacityFor(int expectedSize) {
+		int capacity = MIN_CAPACITY;
+		while (capacity / 4 * 3 < expectedSize) {
+			capacity *= 2;
+		}
+		return capacity;
+	}
+
+	/** Ids are mostly consecutive, so the bits are mixed to spread them over the slots. */
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+}
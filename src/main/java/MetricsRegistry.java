@@ -0,0 +1,46 @@
+import java.util.function.LongSupplier;
+
+/**
+ * Receives the measurements of {@link SqliteDB} and {@link PostgresqlDB}, see their <code>setMetrics</code>.
+ *
+ * {@link LinkMetrics} keeps them in memory and exposes them over JMX; implement this interface to forward them
+ * to another metrics library instead. The methods are called on the hot path, from many threads, so they must be
+ * cheap and thread-safe. All methods do nothing by default.
+ */
+public interface MetricsRegistry {
+
+	/** Records nothing. */
+	MetricsRegistry NONE = new MetricsRegistry() {
+	};
+
+	/**
+	 * A statement was executed.
+	 *
+	 * @param kind the jOOQ <code>ExecuteType</code> of the statement, e.g. <code>READ</code>, <code>WRITE</code>
+	 *             or <code>BATCH</code>, or <code>COPY</code> for a PostgreSQL <code>COPY</code>
+	 * @param nanos how long executing took, without fetching the results of a query
+	 * @param rows the number of rows written, <code>0</code> for queries
+	 */
+	default void recordStatement(String kind, long nanos, long rows) {
+	}
+
+	/** A JDBC batch of <code>size</code> statements was executed. */
+	default void recordBatch(int size) {
+	}
+
+	/** A thread waited <code>nanos</code> for a connection, from a pool or for the single SQLite write connection. */
+	default void recordConnectionAcquire(long nanos) {
+	}
+
+	/**
+	 * A pooled connection was returned after being borrowed for <code>millis</code>. Every acquire from a pool is
+	 * followed by one such call, unless the connection leaks.
+	 */
+	default void recordConnectionUsage(long millis) {
+	}
+
+	/** A value that is read when needed, e.g. the number of active connections of a pool. */
+	default void registerGauge(String name, LongSupplier value) {
+	}
+
+}
@@ -0,0 +1,67 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Implementation of {@link InsertStrategy#MULTI_ROW_VALUES} for any {@link TableMapping}.
+ */
+class MultiRowInsert {
+
+	private MultiRowInsert() {
+	}
+
+	static String insertSql(String tableName, TableMapping<?> mapping, int rowCount) {
+		String rowParameters = "(" + "?,".repeat(mapping.size() - 1) + "?)";
+		StringBuilder sql = new StringBuilder(100 + rowCount * (rowParameters.length() + 1));
+		sql.append("INSERT INTO ").append(tableName).append(" (").append(mapping.columns()).append(") VALUES ");
+		for (int i = 0; i < rowCount; i++) {
+			if (i > 0) {
+				sql.append(',');
+			}
+			sql.append(rowParameters);
+		}
+		return sql.toString();
+	}
+
+	/**
+	 * Inserts the rows with statements of <code>rowsPerStatement</code> rows each, plus one shorter statement for the remaining rows.
+	 */
+	static <T> void insert(Connection conn, String tableName, TableMapping<T> mapping, Iterator<? extends T> rows, int rowsPerStatement, MetricsRegistry metrics) throws SQLException {
+		List<T> chunk = new ArrayList<>(rowsPerStatement);
+		PreparedStatement fullChunkStmt = null;
+		try {
+			while (rows.hasNext()) {
+				chunk.add(rows.next());
+				if (chunk.size() == rowsPerStatement) {
+					if (fullChunkStmt == null) {
+						fullChunkStmt = conn.prepareStatement(insertSql(tableName, mapping, rowsPerStatement));
+					}
+					bindAndExecute(fullChunkStmt, mapping, chunk, metrics);
+					chunk.clear();
+				}
+			}
+		} finally {
+			if (fullChunkStmt != null) {
+				fullChunkStmt.close();
+			}
+		}
+		if (!chunk.isEmpty()) {
+			try (PreparedStatement stmt = conn.prepareStatement(insertSql(tableName, mapping, chunk.size()))) {
+				bindAndExecute(stmt, mapping, chunk, metrics);
+			}
+		}
+	}
+
+	private static <T> void bindAndExecute(PreparedStatement stmt, TableMapping<T> mapping, List<T> chunk, MetricsRegistry metrics) throws SQLException {
+		int index = 1;
+		for (T row : chunk) {
+			mapping.bind(stmt, index, row);
+			index += mapping.size();
+		}
+		JdbcMetrics.executeUpdate(stmt, metrics);
+	}
+
+}
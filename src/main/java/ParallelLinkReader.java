@@ -0,0 +1,133 @@
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Record3;
+import org.jooq.Table;
+import org.jooq.impl.DSL;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+import static jooq.Tables.LINK;
+
+/**
+ * Implementation of <code>forEachLinkParallel</code>, shared by {@link SqliteDB} and {@link PostgresqlDB}: the ids are
+ * split into ranges of about the same number of links, the partitions, which are read with a cursor each, on a thread
+ * and a connection of their own.
+ */
+class ParallelLinkReader {
+
+	/**
+	 * Reads the links with ids from <code>lowerId</code> up to but excluding <code>upperId</code>, ordered by id.
+	 */
+	@FunctionalInterface
+	interface PartitionRead {
+		void read(long lowerId, long upperId, Consumer<LinkDAO> consumer);
+	}
+
+	private ParallelLinkReader() {
+	}
+
+	/**
+	 * The bounds of at most <code>partitions</code> id ranges: partition <code>i</code> has the ids from
+	 * <code>bounds[i]</code> up to but excluding <code>bounds[i + 1]</code>. Empty if there are no links.
+	 *
+	 * As ids are assigned consecutively by a replace, the range from the smallest to the largest id is split evenly.
+	 * If less than half of the ids in that range are used, e.g. after many syncs, every n-th id is taken as a
+	 * bound instead, which costs a scan of the id index.
+	 */
+	static long[] bounds(DSLContext ctx, int partitions) {
+		if (partitions < 1) {
+			throw new IllegalArgumentException("At least one partition is required, not " + partitions);
+		}
+		Record3<Integer, Long, Long> stats = ctx.select(DSL.count(), DSL.min(LINK.ID), DSL.max(LINK.ID)).from(LINK).fetchOne();
+		int count = stats.value1();
+		if (count == 0) {
+			return new long[0];
+		}
+		long minId = stats.value2();
+		long maxId = stats.value3();
+		int partitionCount = Math.min(partitions, count);
+		long span = maxId - minId + 1;
+		if (span <= 2L * count) {
+			long[] bounds = new long[partitionCount + 1];
+			for (int i = 0; i < partitionCount; i++) {
+				bounds[i] = minId + span * i / partitionCount;
+			}
+			bounds[partitionCount] = maxId + 1;
+			return bounds;
+		}
+
+		int step = (count + partitionCount - 1) / partitionCount;
+		Field<Integer> rowNumber = DSL.rowNumber().over(DSL.orderBy(LINK.ID)).as("rn");
+		Table<?> numbered = DSL.select(LINK.ID, rowNumber).from(LINK).asTable("numbered");
+		List<Long> lowerBounds = ctx
+			.select(numbered.field(LINK.ID))
+			.from(numbered)
+			.where(numbered.field(rowNumber).minus(1).mod(step).eq(0))
+			.orderBy(numbered.field(LINK.ID))
+			.fetch(0, Long.class);
+		long[] bounds = new long[lowerBounds.size() + 1];
+		for (int i = 0; i < lowerBounds.size(); i++) {
+			bounds[i] = lowerBounds.get(i);
+		}
+		bounds[lowerBounds.size()] = maxId + 1;
+		return bounds;
+	}
+
+	/**
+	 * Reads every partition with <code>read</code> and passes its links to the consumer for its index. With
+	 * <code>parallel</code>, every partition is read on a thread of its own, otherwise one after the other.
+	 * If a partition fails, the first failure is thrown once all partitions have ended.
+	 */
+	static void readPartitions(long[] bounds, boolean parallel, PartitionRead read, IntFunction<Consumer<LinkDAO>> consumers) {
+		int partitionCount = bounds.length - 1;
+		if (!parallel || partitionCount <= 1) {
+			for (int i = 0; i < partitionCount; i++) {
+				read.read(bounds[i], bounds[i + 1], consumers.apply(i));
+			}
+			return;
+		}
+		AtomicInteger threadCount = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(partitionCount, runnable -> {
+			Thread thread = new Thread(runnable, "link-partition-reader-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			List<Future<?>> reads = new ArrayList<>();
+			for (int i = 0; i < partitionCount; i++) {
+				int partition = i;
+				reads.add(executor.submit(() -> read.read(bounds[partition], bounds[partition + 1], consumers.apply(partition))));
+			}
+			RuntimeException failure = null;
+			for (Future<?> future : reads) {
+				try {
+					future.get();
+				} catch (ExecutionException e) {
+					RuntimeException cause = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new RuntimeException(e.getCause());
+					if (failure == null) {
+						failure = cause;
+					} else {
+						failure.addSuppressed(cause);
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new RuntimeException(e);
+				}
+			}
+			if (failure != null) {
+				throw failure;
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+}
@@ -1,12 +1,15 @@
 import com.zaxxer.hikari.HikariDataSource;
 import jooq.tables.records.LinkRecord;
-import org.jooq.BatchBindStep;
+import org.jooq.Condition;
+import org.jooq.Configuration;
+import org.jooq.Cursor;
 import org.jooq.DSLContext;
-import org.jooq.Result;
+import org.jooq.Field;
 import org.jooq.SQLDialect;
 import org.jooq.conf.RenderNameCase;
 import org.jooq.conf.Settings;
 import org.jooq.impl.DSL;
+import org.jooq.impl.DefaultConfiguration;
 
 import javax.sql.DataSource;
 import java.io.Closeable;
@@ -14,15 +17,28 @@ import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
 
 import static jooq.Tables.LINK;
 
-public class PostgresqlDB implements AutoCloseable, Closeable {
+public class PostgresqlDB implements AutoCloseable, Closeable, LinkDatabase {
 
 	public final static String DB_NAME_PREFIX = "test-db-";
+	public final static int DEFAULT_BATCH_SIZE = 10_000;
+	public final static int DEFAULT_FETCH_SIZE = 1_000;
+	/** The wire protocol encodes the number of parameters of a statement as 16-bit integer. */
+	public final static int MAX_BIND_VARIABLES = 32_767;
+	private final static String INSERT_LINK_BATCH_SQL = LinkBatchJdbc.insertLinksSql("link", "convert_from(?, 'UTF8')");
 
 	private final Connection connection;
 	private final String connectionString;
@@ -30,6 +46,20 @@ public class PostgresqlDB implements AutoCloseable, Closeable {
 	private final String dbPassword;
 	private final DataSource dataSource;
 	private final Settings jooqSettings;
+	/** The dialect, settings and listeners shared by all contexts, without a connection. */
+	private final Configuration configuration;
+	private final DSLContext dsl;
+	private final StatementCache statementCache;
+	private final String selectLinkByIdSql;
+	private final String selectLinksInEnvelopeSql;
+	private GeometryEncoding geometryEncoding = GeometryEncoding.WKT;
+	private final BulkLoader<LinkDAO> linkLoader;
+	/** Like {@link #linkLoader}, for links already encoded with {@link #encodeLink(LinkDAO)}. */
+	private final BulkLoader<Object[]> encodedLinkLoader;
+	private final List<Runnable> linksChangedListeners = new CopyOnWriteArrayList<>();
+	private final HikariMetrics hikariMetrics;
+	private volatile MetricsRegistry metrics = MetricsRegistry.NONE;
+	private volatile SchemaCheck schemaCheck;
 
 	static {
 		try {
@@ -40,12 +70,17 @@ public class PostgresqlDB implements AutoCloseable, Closeable {
 	}
 
 	public static PostgresqlDB createPostgreWithHikari(String host, int port, String dbName, String username, String password) {
+		return createPostgreWithHikari(host, port, dbName, username, password, 10);
+	}
+
+	public static PostgresqlDB createPostgreWithHikari(String host, int port, String dbName, String username, String password, int maxPoolSize) {
 		String connectionString = "jdbc:postgresql://" + host + ":" + port + "/" + dbName;
 		HikariDataSource ds = new HikariDataSource();
 		ds.setJdbcUrl(connectionString);
 		ds.setUsername(username);
 		ds.setPassword(password);
 		ds.setDriverClassName("org.postgresql.Driver");
+		ds.setMaximumPoolSize(maxPoolSize);
 		return new PostgresqlDB(ds);
 	}
 
@@ -61,29 +96,53 @@ public class PostgresqlDB implements AutoCloseable, Closeable {
 	}
 
 	private PostgresqlDB(DataSource dataSource) {
-		this.connection = null;
-		this.connectionString = null;
-		this.dbUsername = null;
-		this.dbPassword = null;
-		this.dataSource = dataSource;
-		this.jooqSettings = new Settings();
-		this.jooqSettings.setRenderNameCase(RenderNameCase.LOWER);
-		this.runFlyway();
+		this(null, null, null, null, dataSource);
 	}
 
 	private PostgresqlDB(Connection connection, String connectionString, String dbUsername, String dbPassword) {
+		this(connection, connectionString, dbUsername, dbPassword, null);
+	}
+
+	private PostgresqlDB(Connection connection, String connectionString, String dbUsername, String dbPassword, DataSource dataSource) {
 		this.connection = connection;
 		this.connectionString = connectionString;
 		this.dbUsername = dbUsername;
 		this.dbPassword = dbPassword;
-		this.dataSource = null;
-		this.jooqSettings = new Settings();
+		this.dataSource = dataSource;
+		this.jooqSettings = new Settings()
+			.withExecuteLogging(false); // the debug logging listener is added to every query otherwise
 		this.jooqSettings.setRenderNameCase(RenderNameCase.LOWER);
+		this.configuration = new DefaultConfiguration().set(SQLDialect.POSTGRES).set(this.jooqSettings)
+			.set(JooqMetricsListener.provider(() -> this.metrics));
+		if (dataSource != null) {
+			this.dsl = DSL.using(this.configuration.derive(dataSource));
+		} else {
+			this.dsl = DSL.using(this.configuration.derive(connection));
+		}
+		this.hikariMetrics = HikariMetrics.install(dataSource, () -> this.metrics);
+		this.statementCache = new StatementCache(connection);
+		this.linkLoader = bulkLoader(TableMapping.of(LINK, GeometryEncoding.insertFields(LINK), linkDAO -> this.geometryEncoding.insertValues(linkDAO)));
+		this.linkLoader.setBeforeReplace(PostgresqlDB::suspendChangeLog);
+		this.linkLoader.setAfterReplace(PostgresqlDB::resumeChangeLog);
+		this.encodedLinkLoader = bulkLoader(TableMapping.of(LINK, GeometryEncoding.insertFields(LINK), row -> row));
+		this.encodedLinkLoader.setBeforeReplace(PostgresqlDB::suspendChangeLog);
+		this.encodedLinkLoader.setAfterReplace(PostgresqlDB::resumeChangeLog);
+		this.selectLinkByIdSql = this.dsl.render(
+			DSL.selectFrom(LINK).where(LINK.ID.eq(DSL.param(LINK.ID.getName(), Long.class))));
+		this.selectLinksInEnvelopeSql = this.dsl.render(
+			DSL.selectFrom(LINK)
+				.where(envelopeCondition(DSL.param("minX", Double.class), DSL.param("minY", Double.class), DSL.param("maxX", Double.class), DSL.param("maxY", Double.class)))
+				.orderBy(LINK.ID));
 		this.runFlyway();
 	}
 
 	@Override
 	public void close() throws IOException {
+		try {
+			this.statementCache.close();
+		} catch (SQLException e) {
+			throw new IOException("Could not close prepared statements.", e);
+		}
 		if (this.dataSource instanceof AutoCloseable) {
 			try {
 				((AutoCloseable) this.dataSource).close();
@@ -91,119 +150,608 @@ public class PostgresqlDB implements AutoCloseable, Closeable {
 				throw new IOException("Could not close database connection.", e);
 			}
 		}
+		if (this.connection != null) {
+			try {
+				this.connection.close();
+			} catch (SQLException e) {
+				throw new IOException("Could not close database connection.", e);
+			}
+		}
+	}
+
+	/**
+	 * Sets how the streaming <code>replaceLinks</code> methods insert links.
+	 */
+	public void setInsertStrategy(InsertStrategy insertStrategy) {
+		this.linkLoader.setInsertStrategy(insertStrategy);
+		this.encodedLinkLoader.setInsertStrategy(insertStrategy);
+	}
+
+	/**
+	 * Sets how all write methods store the geometry of links. Already stored links keep their encoding until they are written again.
+	 */
+	public void setGeometryEncoding(GeometryEncoding geometryEncoding) {
+		this.geometryEncoding = geometryEncoding;
+	}
+
+	/**
+	 * Records the statements, batches and connection-acquire waits of this database in <code>metrics</code>, including
+	 * the plain JDBC write paths and <code>COPY</code>, and registers the gauges of the connection pool, if any.
+	 * {@link MetricsRegistry#NONE}, the default, turns recording off again.
+	 */
+	public void setMetrics(MetricsRegistry metrics) {
+		this.metrics = metrics;
+		if (this.hikariMetrics != null) {
+			this.hikariMetrics.registerGauges(metrics);
+		}
 	}
 
+	/**
+	 * Checks the schema in the mode set with {@link DBUtils#setStartupMode(DBUtils.StartupMode)}, and migrates it if needed.
+	 * Called when the database is opened.
+	 */
 	public void runFlyway() {
+		if (DBUtils.getStartupMode() == DBUtils.StartupMode.FAST_START) {
+			this.schemaCheck = DBUtils.fastStart(db(), "/migrations", this::migrate);
+		} else {
+			this.schemaCheck = migrate();
+		}
+	}
+
+	/**
+	 * @return the outcome and phase timings of the last {@link #runFlyway()}
+	 */
+	public SchemaCheck getSchemaCheck() {
+		return this.schemaCheck;
+	}
+
+	private SchemaCheck migrate() {
 		if (this.connectionString != null) {
-			DBUtils.runFlyway(DB_NAME_PREFIX, this.connectionString, this.dbUsername, this.dbPassword, "/migrations", DBUtils.DatabaseType.POSTGRESQL);
-		} else if (this.dataSource != null) {
-			DBUtils.runFlyway(DB_NAME_PREFIX, this.dataSource, "/migrations", DBUtils.DatabaseType.POSTGRESQL);
+			return DBUtils.runFlyway(DB_NAME_PREFIX, this.connectionString, this.dbUsername, this.dbPassword, "/migrations", DBUtils.DatabaseType.POSTGRESQL);
 		}
+		return DBUtils.runFlyway(DB_NAME_PREFIX, this.dataSource, "/migrations", DBUtils.DatabaseType.POSTGRESQL);
 	}
 
+	/**
+	 * @return the context for all operations. It is created once, so its configuration is not set up again for every call.
+	 */
 	private DSLContext db() {
-		if (this.dataSource != null) {
-			return DSL.using(this.dataSource, SQLDialect.POSTGRES, this.jooqSettings);
-		}
-		if (this.connection != null) {
-			return DSL.using(this.connection, SQLDialect.POSTGRES, this.jooqSettings);
-		}
-		throw new RuntimeException("undefined db connection type");
+		return this.dsl;
 	}
 
-	private DSLContext db2() { // Connection from DataSource
-		if (this.dataSource != null) {
-			try {
-				return DSL.using(this.dataSource.getConnection(), SQLDialect.POSTGRES, this.jooqSettings);
-			} catch (SQLException e) {
-				throw new RuntimeException(e);
-			}
-		}
-		throw new RuntimeException("undefined db connection type");
+	/**
+	 * @return a context for the connection, with the settings and listeners of this database
+	 */
+	private DSLContext using(Connection conn) {
+		return DSL.using(this.configuration.derive(conn));
+	}
+
+	/**
+	 * Runs <code>work</code> on one connection of the data source, or on the single connection.
+	 */
+	@Override
+	public <T> T inUnitOfWork(UnitOfWork<T> work) {
+		return db().connectionResult(conn -> using(conn).transactionResult(c -> work.execute(c.dsl())));
+	}
+
+	/**
+	 * Creates a loader for any table of this database, with the metrics of this database.
+	 * Run it with {@link #replaceRows(BulkLoader, Iterator, int)}, or with {@link #inUnitOfWork(UnitOfWork)} for other operations.
+	 */
+	@Override
+	public <T> BulkLoader<T> bulkLoader(TableMapping<T> mapping) {
+		return new BulkLoader<>(mapping, SQLDialect.POSTGRES, () -> this.metrics);
+	}
+
+	/**
+	 * Replaces all rows of the loader's table in one unit of work, see {@link BulkLoader#replace(DSLContext, Iterator, int)}.
+	 */
+	@Override
+	public <T> void replaceRows(BulkLoader<T> loader, Iterator<? extends T> rows, int batchSize) {
+		inUnitOfWork(tx -> {
+			loader.replace(tx, rows, batchSize);
+			return null;
+		});
+	}
+
+	/**
+	 * Replaces all rows of the loader's table through a staging table, on one connection,
+	 * see {@link BulkLoader#replaceViaStagingTable(DSLContext, Iterator, int)}.
+	 */
+	@Override
+	public <T> void replaceRows_ShadowTable(BulkLoader<T> loader, Iterator<? extends T> rows, int batchSize) {
+		db().connection(conn -> loader.replaceViaStagingTable(using(conn), rows, batchSize));
 	}
 
 	// ==== LINK ====
 
+	@Override
 	public void replaceLinks(List<LinkDAO> linkDAOs) {
 		if (linkDAOs.isEmpty()) {
 			return;
 		}
-		BatchBindStep batchInsert = db().batch(
-			db()
-				.insertInto(LINK, LINK.LINKID, LINK.GEOMETRY)
-				.values((String) null, null)
-		);
-		for (LinkDAO linkDAO : linkDAOs) {
-			batchInsert.bind(linkDAO.linkId, linkDAO.geometry);
-		}
-		db()
-				.truncate(LINK)
-				.cascade()
-				.execute();
-		db().transaction(c -> {
-			batchInsert.execute();
-		});
+		try {
+			inUnitOfWork(tx -> {
+				replaceAll(tx, linkDAOs);
+				return null;
+			});
+		} finally {
+			fireLinksChanged();
+		}
+	}
+
+	/**
+	 * Replaces all links with the ones provided by the stream, without materializing them.
+	 * The stream is consumed in sub-batches of {@link #DEFAULT_BATCH_SIZE} and closed afterwards.
+	 */
+	public void replaceLinks(Stream<LinkDAO> linkDAOs) {
+		try (linkDAOs) {
+			replaceLinks(linkDAOs.iterator(), DEFAULT_BATCH_SIZE);
+		}
+	}
+
+	/**
+	 * Replaces all links with the ones provided by the iterator. At most <code>batchSize</code> links
+	 * are bound and sent to the driver at once, so memory usage does not depend on the number of links.
+	 * Truncate and all inserts run in one transaction, so readers either see the old or the new links.
+	 */
+	@Override
+	public void replaceLinks(Iterator<LinkDAO> linkDAOs, int batchSize) {
+		if (!linkDAOs.hasNext()) {
+			return;
+		}
+		try {
+			replaceRows(this.linkLoader, linkDAOs, batchSize);
+		} finally {
+			fireLinksChanged();
+		}
+	}
+
+	@Override
+	public Object[] encodeLink(LinkDAO linkDAO) {
+		return this.geometryEncoding.insertValues(linkDAO);
 	}
 
+	@Override
+	public void replaceEncodedLinks(Iterator<Object[]> rows, int batchSize) {
+		if (!rows.hasNext()) {
+			return;
+		}
+		try {
+			replaceRows(this.encodedLinkLoader, rows, batchSize);
+		} finally {
+			fireLinksChanged();
+		}
+	}
+
+	/**
+	 * Replaces all links with the ones of the batch, in one transaction. <code>linkId</code> and <code>geometry</code> are
+	 * bound as the UTF-8 bytes of the batch and converted to text with <code>convert_from</code>. The ids of the batch are not written.
+	 */
+	@Override
+	public void replaceLinks(LinkBatch links) {
+		if (links.size() == 0) {
+			return;
+		}
+		try {
+			inUnitOfWork(tx -> {
+				tx.connection(PostgresqlDB::suspendChangeLog);
+				tx
+						.truncate(LINK)
+						.cascade()
+						.execute();
+				tx.connection(conn -> {
+					LinkBatchJdbc.insertLinks(conn, INSERT_LINK_BATCH_SQL, this.geometryEncoding, links, DEFAULT_BATCH_SIZE, this.metrics);
+					resumeChangeLog(conn);
+				});
+				return null;
+			});
+		} finally {
+			fireLinksChanged();
+		}
+	}
+
+	/**
+	 * Makes the stored links equal to the provided ones, writing only the differences: links are matched by
+	 * <code>linkId</code>, links with a changed geometry are updated, new links inserted, and stored links
+	 * missing from the provided ones deleted. Unlike <code>replaceLinks</code>, an empty iterator deletes all links.
+	 * Runs in one transaction.
+	 */
+	@Override
+	public SyncResult syncLinks(Iterator<LinkDAO> linkDAOs, int batchSize) {
+		try {
+			return inUnitOfWork(tx -> LinkSync.sync(tx, this.geometryEncoding, null, linkDAOs, batchSize));
+		} finally {
+			fireLinksChanged();
+		}
+	}
+
+	/**
+	 * Replaces all links by loading them into a staging table without indexes, building the indexes once
+	 * after the load, and then swapping the staging table in place of <code>link</code> by renaming it
+	 * in a short transaction. The load itself does not lock <code>link</code>, so readers see the old links until the swap.
+	 */
+	public void replaceLinks_ShadowTable(Iterator<LinkDAO> linkDAOs, int batchSize) {
+		if (!linkDAOs.hasNext()) {
+			return;
+		}
+		try {
+			replaceRows_ShadowTable(this.linkLoader, linkDAOs, batchSize);
+		} finally {
+			fireLinksChanged();
+		}
+	}
+
+	/**
+	 * Same as {@link #replaceLinks(List)}, but borrowing the connection from the data source directly instead of through jOOQ.
+	 */
 	public void replaceLinks2(List<LinkDAO> linkDAOs) {
 		if (linkDAOs.isEmpty()) {
 			return;
 		}
-		db2().transaction(c -> {
-			BatchBindStep batchInsert = db().batch(
-					db2()
-							.insertInto(LINK, LINK.LINKID, LINK.GEOMETRY)
-							.values((String) null, null)
-			);
-			for (LinkDAO linkDAO : linkDAOs) {
-				batchInsert.bind(linkDAO.linkId, linkDAO.geometry);
+		if (this.dataSource == null) {
+			throw new RuntimeException("undefined db connection type");
+		}
+		try (Connection conn = this.dataSource.getConnection()) {
+			using(conn).transaction(c -> replaceAll(c.dsl(), linkDAOs));
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		} finally {
+			fireLinksChanged();
+		}
+	}
+
+	/**
+	 * Replaces all links in the transaction of <code>tx</code>, with one batch for all links.
+	 */
+	private void replaceAll(DSLContext tx, List<LinkDAO> linkDAOs) {
+		this.linkLoader.replace(tx, linkDAOs.iterator(), Math.max(linkDAOs.size(), 1), InsertStrategy.BATCH);
+	}
+
+	/**
+	 * Replaces all links with plain JDBC, with one batch for all links.
+	 */
+	public void replaceLinks_JDBC(List<LinkDAO> linkDAOs) throws SQLException {
+		replaceLinks_JDBC(linkDAOs.iterator(), Math.max(linkDAOs.size(), 1));
+	}
+
+	/**
+	 * Streaming variant of {@link #replaceLinks_JDBC(List)}, executing the batch every <code>batchSize</code> links.
+	 * The links keep their ids, and the id sequence continues after the largest one.
+	 */
+	public void replaceLinks_JDBC(Iterator<LinkDAO> linkDAOs, int batchSize) throws SQLException {
+		try {
+			Connection conn = this.connection;
+			if (this.connection == null) {
+				conn = this.dataSource.getConnection();
+			}
+			try {
+				conn.setAutoCommit(false);
+				try (Statement stmt = conn.createStatement();
+						 PreparedStatement pstmt = conn.prepareStatement("INSERT INTO Link(id, linkid, " + GeometryEncoding.COLUMNS + ") VALUES(?,?,?,?,?,?,?,?,?)")) {
+					suspendChangeLog(conn);
+					stmt.execute("DELETE FROM LINK;");
+					int count = 0;
+					while (linkDAOs.hasNext()) {
+						LinkDAO dao = linkDAOs.next();
+						pstmt.setLong(1, dao.id);
+						pstmt.setString(2, dao.linkId);
+						this.geometryEncoding.bind(pstmt, 3, dao);
+						pstmt.addBatch();
+						if (++count % batchSize == 0) {
+							JdbcMetrics.executeBatch(pstmt, this.metrics);
+						}
+					}
+					JdbcMetrics.executeBatch(pstmt, this.metrics);
+					// the ids were given, so the sequence has to continue after them
+					stmt.execute("SELECT setval(pg_get_serial_sequence('link', 'id'), COALESCE((SELECT MAX(id) FROM link), 0) + 1, false)");
+					resumeChangeLog(conn);
+					conn.commit();
+				} catch (SQLException | RuntimeException e) {
+					conn.rollback();
+					throw e;
+				}
+			} finally {
+				try {
+					conn.setAutoCommit(true);
+				} finally {
+					if (this.connection == null) {
+						conn.close();
+					}
+				}
 			}
-			db2()
-					.truncate(LINK)
-					.cascade()
-					.execute();
+		} finally {
+			fireLinksChanged();
+		}
+	}
+
+	/**
+	 * Registers a listener that is called after every replaceLinks* or syncLinks call, also if it failed.
+	 */
+	@Override
+	public void addLinksChangedListener(Runnable listener) {
+		this.linksChangedListeners.add(listener);
+	}
 
+	private void fireLinksChanged() {
+		for (Runnable listener : this.linksChangedListeners) {
+			listener.run();
+		}
+	}
 
-			batchInsert.execute();
+	@Override
+	public List<LinkDAO> getLinks() {
+		List<LinkDAO> linkDAOs = new ArrayList<>();
+		forEachLink(linkDAOs::add);
+		return linkDAOs;
+	}
+
+	/**
+	 * Returns all links, ordered by id, as one {@link LinkBatch} instead of a {@link LinkDAO} per link.
+	 * Read with a server-side cursor, so the driver holds at most <code>DEFAULT_FETCH_SIZE</code> rows besides the batch.
+	 */
+	@Override
+	public LinkBatch getLinkBatch() {
+		return db().transactionResult(c -> c.dsl().connectionResult(conn -> LinkBatchJdbc.readLinks(conn, DEFAULT_FETCH_SIZE, this.metrics)));
+	}
+
+	public void forEachLink(Consumer<LinkDAO> consumer) {
+		forEachLink(consumer, DEFAULT_FETCH_SIZE);
+	}
+
+	/**
+	 * Passes all links, ordered by id, to the consumer. The links are read with a server-side cursor
+	 * (which requires a transaction in PostgreSQL), so only <code>fetchSize</code> rows are held in memory at any time.
+	 */
+	public void forEachLink(Consumer<LinkDAO> consumer, int fetchSize) {
+		db().transaction(c -> {
+			try (Cursor<LinkRecord> cursor = c.dsl()
+				.selectFrom(LINK)
+				.orderBy(LINK.ID)
+				.fetchSize(fetchSize)
+				.fetchLazy()) {
+				for (LinkRecord lr : cursor) {
+					consumer.accept(toLinkDAO(lr));
+				}
+			}
 		});
 	}
 
-	public void replaceLinks_JDBC(List<LinkDAO> linkDAOs) throws SQLException {
+	public Stream<LinkDAO> streamLinks() {
+		return streamLinks(DEFAULT_FETCH_SIZE);
+	}
+
+	/**
+	 * Returns all links, ordered by id, backed by a server-side cursor. The stream holds a database connection
+	 * with an open transaction and must be closed, e.g. with try-with-resources.
+	 */
+	public Stream<LinkDAO> streamLinks(int fetchSize) {
+		return streamInCursorTransaction(ctx -> ctx
+			.selectFrom(LINK)
+			.orderBy(LINK.ID)
+			.fetchSize(fetchSize)
+			.fetchStream()
+			.map(PostgresqlDB::toLinkDAO));
+	}
+
+	/**
+	 * Opens the stream of <code>query</code> in a transaction, as PostgreSQL only reads with a server-side cursor
+	 * within a transaction. The transaction ends when the stream is closed.
+	 */
+	private <T> Stream<T> streamInCursorTransaction(Function<DSLContext, Stream<T>> query) {
 		Connection conn = this.connection;
-		if (this.connection == null) {
-			conn = this.dataSource.getConnection();
+		try {
+			if (this.connection == null) {
+				conn = this.dataSource.getConnection();
+			}
+			conn.setAutoCommit(false);
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+		Connection cursorConnection = conn;
+		try {
+			return query.apply(using(cursorConnection))
+				.onClose(() -> endCursorTransaction(cursorConnection, true));
+		} catch (RuntimeException e) {
+			endCursorTransaction(cursorConnection, false);
+			throw e;
+		}
+	}
+
+	/**
+	 * Ends the transaction of {@link #streamInCursorTransaction(Function)} and returns a borrowed connection, also if ending the transaction fails.
+	 */
+	private void endCursorTransaction(Connection conn, boolean commit) {
+		try {
+			try {
+				if (commit) {
+					conn.commit();
+				} else {
+					conn.rollback();
+				}
+				conn.setAutoCommit(true);
+			} finally {
+				if (this.connection == null) {
+					conn.close();
+				}
+			}
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
 		}
-		conn.setAutoCommit(false);
-		conn.createStatement().execute("DELETE FROM LINK;");
-		PreparedStatement pstmt = conn.prepareStatement(
-				"INSERT INTO Link(id, linkid, geometry) VALUES(?,?,?)");
+	}
 
-		for (LinkDAO dao : linkDAOs) {
-			pstmt.setLong(1, dao.id);
-			pstmt.setString(2, dao.linkId);
-			pstmt.setString(3, dao.geometry);
-			pstmt.addBatch();
+	/**
+	 * Returns all links, ordered by id, read in up to <code>partitions</code> id ranges in parallel,
+	 * see {@link #forEachLinkParallel(int, IntFunction)}.
+	 */
+	public List<LinkDAO> getLinksParallel(int partitions) {
+		List<List<LinkDAO>> partitionLinks = new ArrayList<>();
+		for (int i = 0; i < partitions; i++) {
+			partitionLinks.add(new ArrayList<>());
 		}
-		pstmt.executeBatch();
-		conn.commit();
-		if (this.connection == null) {
-			conn.close();
+		int partitionCount = forEachLinkParallel(partitions, i -> partitionLinks.get(i)::add);
+		List<LinkDAO> linkDAOs = new ArrayList<>(partitionLinks.stream().mapToInt(List::size).sum());
+		for (int i = 0; i < partitionCount; i++) {
+			linkDAOs.addAll(partitionLinks.get(i));
 		}
+		return linkDAOs;
 	}
 
-	public List<LinkDAO> getLinks() {
-		List<LinkDAO> linkDAOs = new ArrayList<>();
+	/**
+	 * Splits the ids into up to <code>partitions</code> ranges of about the same number of links, and reads every range
+	 * with a server-side cursor on a backend and a thread of its own. The links of range <code>i</code> are passed to
+	 * <code>consumers.apply(i)</code> in id order, on the thread reading the range.
+	 *
+	 * All ranges see the same snapshot: a coordinating transaction exports its snapshot, which the transactions of the
+	 * ranges import, as <code>pg_dump</code> does for parallel dumps. The coordinator keeps its connection until all ranges
+	 * are read, so the pool needs at least two connections, and up to <code>partitions + 1</code> are used.
+	 * With a single connection, the ranges are read one after the other, in one transaction.
+	 *
+	 * @return the number of ranges, less than <code>partitions</code> if there are fewer links
+	 */
+	public int forEachLinkParallel(int partitions, IntFunction<Consumer<LinkDAO>> consumers) {
+		if (this.dataSource == null) {
+			return db().transactionResult(c -> {
+				long[] bounds = ParallelLinkReader.bounds(c.dsl(), partitions);
+				ParallelLinkReader.readPartitions(bounds, false, (lowerId, upperId, consumer) -> readLinks(c.dsl(), lowerId, upperId, consumer), consumers);
+				return Math.max(0, bounds.length - 1);
+			});
+		}
+		return db().transactionResult(c -> {
+			c.dsl().execute("SET TRANSACTION ISOLATION LEVEL REPEATABLE READ");
+			String snapshot = c.dsl().fetchValue("SELECT pg_export_snapshot()").toString();
+			long[] bounds = ParallelLinkReader.bounds(c.dsl(), partitions);
+			ParallelLinkReader.readPartitions(bounds, true, (lowerId, upperId, consumer) -> db().transaction(p -> {
+				p.dsl().execute("SET TRANSACTION ISOLATION LEVEL REPEATABLE READ");
+				p.dsl().execute("SET TRANSACTION SNAPSHOT {0}", DSL.inline(snapshot));
+				readLinks(p.dsl(), lowerId, upperId, consumer);
+			}), consumers);
+			return Math.max(0, bounds.length - 1);
+		});
+	}
 
-		Result<LinkRecord> linkRecords = db()
+	/** Reads the links of one id range with a server-side cursor, in the transaction of <code>tx</code>. */
+	private static void readLinks(DSLContext tx, long lowerId, long upperId, Consumer<LinkDAO> consumer) {
+		try (Cursor<LinkRecord> cursor = tx
 			.selectFrom(LINK)
+			.where(LINK.ID.ge(lowerId))
+			.and(LINK.ID.lt(upperId))
 			.orderBy(LINK.ID)
-			.fetch();
+			.fetchSize(DEFAULT_FETCH_SIZE)
+			.fetchLazy()) {
+			for (LinkRecord lr : cursor) {
+				consumer.accept(toLinkDAO(lr));
+			}
+		}
+	}
+
+	/**
+	 * Returns the links whose bounding box intersects the envelope, ordered by id. The condition repeats the expression
+	 * of the GiST index <code>link_bbox</code>, so the index is used. The SQL is rendered once.
+	 */
+	@Override
+	public List<LinkDAO> getLinksInEnvelope(double minX, double minY, double maxX, double maxY) {
+		return db().connectionResult(conn -> this.statementCache.execute(conn, this.selectLinksInEnvelopeSql, stmt -> {
+			stmt.setDouble(1, minX);
+			stmt.setDouble(2, minY);
+			stmt.setDouble(3, maxX);
+			stmt.setDouble(4, maxY);
+			List<LinkDAO> linkDAOs = new ArrayList<>();
+			try (ResultSet rs = JdbcMetrics.executeQuery(stmt, this.metrics)) {
+				while (rs.next()) {
+					linkDAOs.add(toLinkDAO(rs));
+				}
+			}
+			return linkDAOs;
+		}));
+	}
+
+	private static Condition envelopeCondition(Field<Double> minX, Field<Double> minY, Field<Double> maxX, Field<Double> maxY) {
+		return DSL.condition("box(point({0}, {1}), point({2}, {3})) && box(point({4}, {5}), point({6}, {7}))",
+			LINK.MINX, LINK.MINY, LINK.MAXX, LINK.MAXY, minX, minY, maxX, maxY);
+	}
 
-		for (LinkRecord lr : linkRecords) {
-			linkDAOs.add(new LinkDAO(lr.getId(), lr.getLinkid(), lr.getGeometry()));
+	/**
+	 * Returns the link with the given id, or <code>null</code>. Meant for a high rate of small calls: the SQL is rendered once.
+	 * With a single long-lived connection the prepared statement is reused; pooled connections rely on the driver,
+	 * which switches to a server-side prepared statement after the same SQL was executed a few times on a connection.
+	 */
+	@Override
+	public LinkDAO getLinkById(long id) {
+		return db().connectionResult(conn -> this.statementCache.execute(conn, this.selectLinkByIdSql, stmt -> {
+			stmt.setLong(1, id);
+			try (ResultSet rs = JdbcMetrics.executeQuery(stmt, this.metrics)) {
+				return rs.next() ? toLinkDAO(rs) : null;
+			}
+		}));
+	}
+
+	/**
+	 * Same as {@link #getLinkById(long)}, but building and rendering the query with jOOQ on every call.
+	 */
+	public LinkDAO getLinkById_jooq(long id) {
+		LinkRecord lr = db().selectFrom(LINK).where(LINK.ID.eq(id)).fetchOne();
+		return lr == null ? null : toLinkDAO(lr);
+	}
+
+	// ==== LINK CHANGES ====
+
+	@Override
+	public Stream<LinkChangeDAO> getLinkChangesSince(long sequence) {
+		return getLinkChangesSince(sequence, DEFAULT_FETCH_SIZE);
+	}
+
+	/**
+	 * Returns the changes of the links after <code>sequence</code>, in commit order, backed by a server-side cursor.
+	 * The stream holds a database connection with an open transaction and must be closed, e.g. with try-with-resources.
+	 */
+	public Stream<LinkChangeDAO> getLinkChangesSince(long sequence, int fetchSize) {
+		return streamInCursorTransaction(ctx -> LinkChangeLog.changesSince(ctx, sequence, fetchSize));
+	}
+
+	@Override
+	public long getLinkChangeSequence() {
+		return LinkChangeLog.lastSequence(db());
+	}
+
+	/**
+	 * Compacts the change log in one transaction, see {@link LinkChangeLog#compact(DSLContext, long)}.
+	 * Waits for the writers of links that have not committed yet.
+	 */
+	@Override
+	public int compactLinkChanges(long sequence) {
+		return inUnitOfWork(tx -> LinkChangeLog.compact(tx, sequence));
+	}
+
+	/**
+	 * Suspends the triggers of the change log for the rest of the transaction of a replace, before the links are deleted.
+	 * {@link #resumeChangeLog(Connection)} resumes them and logs one reset instead of a change per link.
+	 */
+	private static void suspendChangeLog(Connection conn) throws SQLException {
+		try (Statement stmt = conn.createStatement()) {
+			stmt.execute("SET LOCAL link_change.suspended = on");
 		}
+	}
 
-		return linkDAOs;
+	/**
+	 * Logs the reset of a replace, called by the replacing write methods within their transaction. Like the changes
+	 * logged by the triggers, the reset is numbered again when the transaction commits. A replace through a staging
+	 * table swaps the table without firing the triggers, so it only logs the reset.
+	 */
+	private static void resumeChangeLog(Connection conn) throws SQLException {
+		try (Statement stmt = conn.createStatement()) {
+			stmt.execute("SET LOCAL link_change.suspended = off");
+			stmt.executeUpdate("INSERT INTO link_change (kind) VALUES ('" + LinkChangeDAO.Kind.RESET.code + "')");
+		}
+	}
+
+	/** Maps a row with the columns of {@link LinkRecord}, in their order. */
+	private static LinkDAO toLinkDAO(ResultSet rs) throws SQLException {
+		return new LinkDAO(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getBytes(4));
+	}
+
+	private static LinkDAO toLinkDAO(LinkRecord lr) {
+		return new LinkDAO(lr.getId(), lr.getLinkid(), lr.getGeometry(), lr.getGeometrywkb());
 	}
 
 }
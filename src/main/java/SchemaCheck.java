@@ -0,0 +1,48 @@
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outcome and phase timings of the schema check when a database is opened, see {@link DBUtils.StartupMode}.
+ */
+public class SchemaCheck {
+
+	public enum Outcome {
+		/** Fast start found all migrations of the manifest applied, Flyway was skipped. */
+		UP_TO_DATE,
+		/** Flyway ran, but had nothing to apply. */
+		UNCHANGED,
+		/** Flyway applied at least one migration. */
+		MIGRATED,
+	}
+
+	public final Outcome outcome;
+	/** The schema version after the check, or <code>null</code> if there is none. */
+	public final String version;
+	/** Time for loading the migration manifest, <code>0</code> without fast start or if it was cached already. */
+	public final long manifestNanos;
+	/** Time for reading the schema history, <code>0</code> without fast start. */
+	public final long historyNanos;
+	/** Time spent in Flyway, <code>0</code> if it was skipped. */
+	public final long flywayNanos;
+
+	public SchemaCheck(Outcome outcome, String version, long manifestNanos, long historyNanos, long flywayNanos) {
+		this.outcome = outcome;
+		this.version = version;
+		this.manifestNanos = manifestNanos;
+		this.historyNanos = historyNanos;
+		this.flywayNanos = flywayNanos;
+	}
+
+	public long getTotalNanos() {
+		return this.manifestNanos + this.historyNanos + this.flywayNanos;
+	}
+
+	@Override
+	public String toString() {
+		return "outcome=" + this.outcome + ", version=" + this.version
+			+ ", manifest=" + millis(this.manifestNanos) + ", history=" + millis(this.historyNanos) + ", flyway=" + millis(this.flywayNanos);
+	}
+
+	private static String millis(long nanos) {
+		return String.format("%.1f ms", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+	}
+}
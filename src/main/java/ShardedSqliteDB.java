@@ -0,0 +1,482 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Stores the links in several SQLite files, the shards, so they can be written in parallel: SQLite allows only one
+ * writer per database. A {@link LinkPartitioning} decides which shard holds a link, and the links keep their ids.
+ *
+ * A replace loads every shard on a thread of its own, each in a transaction, while the calling thread distributes the
+ * links. The transactions are only committed once all shards are loaded, and all are rolled back if one shard fails,
+ * so a failed replace leaves the old links in every shard. The commits themselves are not atomic across the files:
+ * if the process dies between them, some shards may have the new links already.
+ *
+ * Reads ask all shards in parallel and merge their links by id, or concatenate them for a partitioning by id ranges,
+ * so links are returned in id order as by {@link SqliteDB}.
+ */
+public class ShardedSqliteDB implements LinkStore, Closeable {
+
+	/** How many batches of links may wait for each shard writer, bounding the memory of a replace. */
+	private static final int QUEUED_BATCHES_PER_SHARD = 4;
+	private static final long POLL_MILLIS = 100;
+
+	private final List<SqliteDB> shards;
+	private final LinkPartitioning partitioning;
+	private final ExecutorService writeExecutor;
+	private final ExecutorService readExecutor;
+	private final List<Runnable> linksChangedListeners = new CopyOnWriteArrayList<>();
+	private final ReentrantLock replaceLock = new ReentrantLock();
+
+	private ShardedSqliteDB(List<SqliteDB> shards, LinkPartitioning partitioning) {
+		this.shards = List.copyOf(shards);
+		this.partitioning = partitioning;
+		this.writeExecutor = Executors.newFixedThreadPool(shards.size(), daemonThreads("shard-writer"));
+		// a read uses one thread per shard, concurrent reads wait for the threads instead of adding more
+		this.readExecutor = Executors.newFixedThreadPool(shards.size(), daemonThreads("shard-reader"));
+	}
+
+	public static ShardedSqliteDB createSharded(File directory, String name, LinkPartitioning partitioning) {
+		return createSharded(directory, name, partitioning, SqliteDB::createSqliteWithHikari);
+	}
+
+	/**
+	 * Opens or creates the shards as the files <code>name-0.db</code>, <code>name-1.db</code>, ... in <code>directory</code>,
+	 * each with <code>openShard</code>, e.g. <code>SqliteDB::createSqliteWithConnection</code>.
+	 */
+	public static ShardedSqliteDB createSharded(File directory, String name, LinkPartitioning partitioning, Function<File, SqliteDB> openShard) {
+		List<SqliteDB> shards = new ArrayList<>();
+		try {
+			for (int i = 0; i < partitioning.getShardCount(); i++) {
+				shards.add(openShard.apply(new File(directory, name + "-" + i + ".db")));
+			}
+		} catch (RuntimeException e) {
+			for (SqliteDB shard : shards) {
+				try {
+					shard.close();
+				} catch (IOException closeException) {
+					e.addSuppressed(closeException);
+				}
+			}
+			throw e;
+		}
+		return new ShardedSqliteDB(shards, partitioning);
+	}
+
+	/**
+	 * The shards, in the order of the partitioning, e.g. to configure them. Writing to a shard directly bypasses the partitioning.
+	 */
+	public List<SqliteDB> getShards() {
+		return this.shards;
+	}
+
+	public LinkPartitioning getPartitioning() {
+		return this.partitioning;
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.writeExecutor.shutdown();
+		this.readExecutor.shutdown();
+		IOException failure = null;
+		for (SqliteDB shard : this.shards) {
+			try {
+				shard.close();
+			} catch (IOException e) {
+				if (failure == null) {
+					failure = e;
+				} else {
+					failure.addSuppressed(e);
+				}
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	// ==== LINK ====
+
+	public void replaceLinks(List<LinkDAO> linkDAOs) {
+		replaceLinks(linkDAOs.iterator(), SqliteDB.DEFAULT_BATCH_SIZE);
+	}
+
+	/**
+	 * Replaces all links of all shards with the ones provided by the iterator, loading the shards in parallel.
+	 * At most {@value #QUEUED_BATCHES_PER_SHARD} batches of <code>batchSize</code> links per shard are held in memory.
+	 * Either all shards have the new links afterwards, or, if loading any shard failed, all keep the old ones.
+	 * Concurrent replaces run one after the other.
+	 */
+	public void replaceLinks(Iterator<LinkDAO> linkDAOs, int batchSize) {
+		if (!linkDAOs.hasNext()) {
+			return;
+		}
+		// the shard writers of a replace wait for each other, so a second replace on the same threads could never finish
+		this.replaceLock.lock();
+		try {
+			ShardedLoad load = new ShardedLoad(this.shards.size());
+			List<CompletableFuture<Void>> writes = new ArrayList<>();
+			for (int i = 0; i < this.shards.size(); i++) {
+				SqliteDB shard = this.shards.get(i);
+				Iterator<LinkDAO> feed = load.feed(i);
+				writes.add(CompletableFuture.runAsync(() -> shard.inUnitOfWork(tx -> {
+					load.loadThenAwaitOthers(() -> shard.replaceLinksKeepingIds(tx, feed, batchSize));
+					return null;
+				}), this.writeExecutor));
+			}
+			try {
+				load.distribute(linkDAOs, this.partitioning, batchSize);
+			} finally {
+				for (CompletableFuture<Void> write : writes) {
+					try {
+						write.join();
+					} catch (CompletionException e) {
+						load.fail(e.getCause());
+					}
+				}
+			}
+			load.throwIfFailed();
+		} finally {
+			this.replaceLock.unlock();
+			fireLinksChanged();
+		}
+	}
+
+	/**
+	 * Registers a listener that is called after every replaceLinks call, also if it failed.
+	 */
+	@Override
+	public void addLinksChangedListener(Runnable listener) {
+		this.linksChangedListeners.add(listener);
+	}
+
+	private void fireLinksChanged() {
+		for (Runnable listener : this.linksChangedListeners) {
+			listener.run();
+		}
+	}
+
+	/**
+	 * Returns all links, ordered by id. The shards are read in parallel.
+	 */
+	@Override
+	public List<LinkDAO> getLinks() {
+		List<List<LinkDAO>> shardLinks = readAll(SqliteDB::getLinks);
+		List<LinkDAO> links = new ArrayList<>(shardLinks.stream().mapToInt(List::size).sum());
+		mergeById(shardLinks.stream().map(List::iterator).toList()).forEachRemaining(links::add);
+		return links;
+	}
+
+	/**
+	 * Returns all links, ordered by id, merged from lazy cursors on all shards. The stream holds a connection of every
+	 * shard and must be closed, e.g. with try-with-resources.
+	 */
+	public Stream<LinkDAO> streamLinks() {
+		List<Stream<LinkDAO>> shardStreams = new ArrayList<>();
+		try {
+			for (SqliteDB shard : this.shards) {
+				shardStreams.add(shard.streamLinks());
+			}
+		} catch (RuntimeException e) {
+			shardStreams.forEach(Stream::close);
+			throw e;
+		}
+		Iterator<LinkDAO> merged = mergeById(shardStreams.stream().map(Stream::iterator).toList());
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(merged, Spliterator.ORDERED | Spliterator.NONNULL), false)
+			.onClose(() -> shardStreams.forEach(Stream::close));
+	}
+
+	/**
+	 * Asks only the shard of the id, or all shards in parallel if the partitioning does not tell the shard from the id.
+	 */
+	@Override
+	public LinkDAO getLinkById(long id) {
+		int shard = this.partitioning.shardOfId(id);
+		if (shard >= 0) {
+			return this.shards.get(shard).getLinkById(id);
+		}
+		for (LinkDAO link : readAll(db -> db.getLinkById(id))) {
+			if (link != null) {
+				return link;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the links whose bounding box intersects the envelope, ordered by id, see {@link SqliteDB#getLinksInEnvelope(double, double, double, double)}.
+	 */
+	public List<LinkDAO> getLinksInEnvelope(double minX, double minY, double maxX, double maxY) {
+		List<List<LinkDAO>> shardLinks = readAll(db -> db.getLinksInEnvelope(minX, minY, maxX, maxY));
+		List<LinkDAO> links = new ArrayList<>();
+		mergeById(shardLinks.stream().map(List::iterator).toList()).forEachRemaining(links::add);
+		return links;
+	}
+
+	/** Runs <code>read</code> on all shards in parallel, and returns the results in the order of the shards. */
+	private <T> List<T> readAll(Function<SqliteDB, T> read) {
+		List<CompletableFuture<T>> reads = this.shards.stream()
+			.map(shard -> CompletableFuture.supplyAsync(() -> read.apply(shard), this.readExecutor))
+			.toList();
+		try {
+			return reads.stream().map(CompletableFuture::join).toList();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Merges the links of the shards, each ordered by id, into one iteration ordered by id.
+	 * Shards of a partitioning by id ranges are only concatenated.
+	 */
+	private Iterator<LinkDAO> mergeById(List<Iterator<LinkDAO>> shardLinks) {
+		if (this.partitioning.isOrderedById()) {
+			Iterator<Iterator<LinkDAO>> shards = shardLinks.iterator();
+			return new Iterator<>() {
+				private Iterator<LinkDAO> current = Collections.emptyIterator();
+
+				@Override
+				public boolean hasNext() {
+					while (!this.current.hasNext() && shards.hasNext()) {
+						this.current = shards.next();
+					}
+					return this.current.hasNext();
+				}
+
+				@Override
+				public LinkDAO next() {
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+					return this.current.next();
+				}
+			};
+		}
+		return new MergingIterator(shardLinks);
+	}
+
+	private static ThreadFactory daemonThreads(String name) {
+		AtomicInteger counter = new AtomicInteger();
+		return runnable -> {
+			Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	/**
+	 * A k-way merge of iterators ordered by id, with a heap of the next link of every iterator.
+	 */
+	private static class MergingIterator implements Iterator<LinkDAO> {
+
+		private record Head(LinkDAO link, Iterator<LinkDAO> rest) {
+		}
+
+		private final PriorityQueue<Head> heads;
+
+		MergingIterator(List<Iterator<LinkDAO>> iterators) {
+			this.heads = new PriorityQueue<>(Math.max(1, iterators.size()), Comparator.comparingLong(head -> head.link.id));
+			for (Iterator<LinkDAO> iterator : iterators) {
+				if (iterator.hasNext()) {
+					this.heads.add(new Head(iterator.next(), iterator));
+				}
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return !this.heads.isEmpty();
+		}
+
+		@Override
+		public LinkDAO next() {
+			Head head = this.heads.poll();
+			if (head == null) {
+				throw new NoSuchElementException();
+			}
+			if (head.rest.hasNext()) {
+				this.heads.add(new Head(head.rest.next(), head.rest));
+			}
+			return head.link;
+		}
+	}
+
+	/**
+	 * The coordination of one replace: the calling thread hands batches of links to a queue per shard, every shard
+	 * writer loads its queue and then waits until all shards are loaded, to commit or, if any failed, to roll back.
+	 * Waiting threads check for a failure regularly, so no thread blocks forever on a queue a failed thread abandoned.
+	 */
+	private static class ShardedLoad {
+
+		/** Marks the end of the links of a shard; compared by identity. */
+		private static final List<LinkDAO> END = new ArrayList<>(0);
+
+		private final List<BlockingQueue<List<LinkDAO>>> queues = new ArrayList<>();
+		private final CountDownLatch loaded;
+		private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+		ShardedLoad(int shardCount) {
+			for (int i = 0; i < shardCount; i++) {
+				this.queues.add(new ArrayBlockingQueue<>(QUEUED_BATCHES_PER_SHARD));
+			}
+			this.loaded = new CountDownLatch(shardCount);
+		}
+
+		/**
+		 * Splits the links into batches per shard and queues them, on the calling thread.
+		 * If reading the links fails, the shard writers are told to roll back before the failure is thrown.
+		 */
+		void distribute(Iterator<LinkDAO> linkDAOs, LinkPartitioning partitioning, int batchSize) {
+			List<List<LinkDAO>> batches = new ArrayList<>();
+			for (int i = 0; i < this.queues.size(); i++) {
+				batches.add(new ArrayList<>(batchSize));
+			}
+			try {
+				while (linkDAOs.hasNext()) {
+					LinkDAO link = linkDAOs.next();
+					int shard = partitioning.shardOf(link);
+					List<LinkDAO> batch = batches.get(shard);
+					batch.add(link);
+					if (batch.size() >= batchSize) {
+						put(shard, batch);
+						batches.set(shard, new ArrayList<>(batchSize));
+					}
+				}
+				for (int shard = 0; shard < this.queues.size(); shard++) {
+					if (!batches.get(shard).isEmpty()) {
+						put(shard, batches.get(shard));
+					}
+					put(shard, END);
+				}
+			} catch (CancellationException e) {
+				// a shard failed, its writer reports why
+			} catch (Throwable t) {
+				fail(t);
+				throw t;
+			}
+		}
+
+		/** The links of one shard, as its writer takes them from the queue. */
+		Iterator<LinkDAO> feed(int shard) {
+			BlockingQueue<List<LinkDAO>> queue = this.queues.get(shard);
+			return new Iterator<>() {
+				private List<LinkDAO> batch = null;
+				private int index = 0;
+
+				@Override
+				public boolean hasNext() {
+					while (this.batch != END && (this.batch == null || this.index == this.batch.size())) {
+						this.batch = take(queue);
+						this.index = 0;
+					}
+					return this.batch != END;
+				}
+
+				@Override
+				public LinkDAO next() {
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+					return this.batch.get(this.index++);
+				}
+			};
+		}
+
+		/**
+		 * Runs the load of one shard, then waits for the other shards. Throws, so the transaction of the shard is rolled back,
+		 * if the load or the load of any other shard failed.
+		 */
+		void loadThenAwaitOthers(Runnable load) throws InterruptedException {
+			try {
+				load.run();
+			} catch (RuntimeException | Error e) {
+				fail(e);
+				throw e;
+			} finally {
+				this.loaded.countDown();
+			}
+			this.loaded.await();
+			if (this.failure.get() != null) {
+				throw new CancellationException("Rolled back, loading another shard failed.");
+			}
+		}
+
+		void fail(Throwable t) {
+			if (!(t instanceof CancellationException)) {
+				this.failure.compareAndSet(null, t);
+			}
+		}
+
+		void throwIfFailed() {
+			Throwable t = this.failure.get();
+			if (t instanceof RuntimeException) {
+				throw (RuntimeException) t;
+			}
+			if (t instanceof Error) {
+				throw (Error) t;
+			}
+			if (t != null) {
+				throw new RuntimeException(t);
+			}
+		}
+
+		private void put(int shard, List<LinkDAO> batch) {
+			try {
+				while (!this.queues.get(shard).offer(batch, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+					checkNotFailed();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			}
+		}
+
+		private List<LinkDAO> take(BlockingQueue<List<LinkDAO>> queue) {
+			try {
+				List<LinkDAO> batch;
+				while ((batch = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+					checkNotFailed();
+				}
+				return batch;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			}
+		}
+
+		private void checkNotFailed() {
+			if (this.failure.get() != null) {
+				throw new CancellationException("Loading another shard failed.");
+			}
+		}
+	}
+
+}
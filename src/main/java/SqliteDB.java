@@ -1,35 +1,86 @@
 import com.zaxxer.hikari.HikariDataSource;
 import jooq.tables.records.LinkRecord;
-import org.jooq.BatchBindStep;
+import org.jooq.Configuration;
+import org.jooq.Cursor;
 import org.jooq.DSLContext;
-import org.jooq.Result;
+import org.jooq.Field;
 import org.jooq.SQLDialect;
 import org.jooq.conf.RenderNameCase;
 import org.jooq.conf.Settings;
 import org.jooq.impl.DSL;
+import org.jooq.impl.DefaultConfiguration;
 import org.sqlite.SQLiteConfig;
+import org.sqlite.SQLiteConnection;
 import org.sqlite.SQLiteDataSource;
 
 import javax.sql.DataSource;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
 
 import static jooq.Tables.LINK;
+import static jooq.Tables.LINK_BBOX;
+import static jooq.Tables.LINK_CHANGE;
 
-public class SqliteDB implements AutoCloseable, Closeable {
+public class SqliteDB implements AutoCloseable, Closeable, LinkDatabase {
 
 	public final static String DB_NAME_PREFIX = "test-db-";
+	public final static int DEFAULT_BATCH_SIZE = 10_000;
+	public final static int DEFAULT_FETCH_SIZE = 1_000;
+	private final static String INSERT_LINK_BATCH_SQL = LinkBatchJdbc.insertLinksSql("Link", "CAST(? AS TEXT)");
+	/** The triggers of the change log dropped during a replace, see {@link #suspendChangeLog(Connection)}. */
+	private final static String SUSPENDED_TRIGGERS = "temp.Link_change_suspended";
 
 	private final Connection connection;
 	private final String connectionString;
 	private final DataSource dataSource;
+	private final SqliteWriter writer;
+	/** Keeps an in-memory database of a connection pool alive while the pool has no connection open, <code>null</code> otherwise. */
+	private final Connection memoryAnchor;
 	private final Settings jooqSettings;
+	/** The dialect, settings and listeners shared by all contexts, without a connection. */
+	private final Configuration configuration;
+	private final DSLContext dsl;
+	private final DSLContext writerDsl;
+	private final StatementCache statementCache;
+	private final String selectLinkByIdSql;
+	private final String selectLinksInEnvelopeSql;
+	private GeometryEncoding geometryEncoding = GeometryEncoding.WKT;
+	private final BulkLoader<LinkDAO> linkLoader;
+	/** Like {@link #linkLoader}, but also writes the ids of the links. */
+	private final BulkLoader<LinkDAO> linkWithIdLoader;
+	/** Like {@link #linkLoader}, for links already encoded with {@link #encodeLink(LinkDAO)}. */
+	private final BulkLoader<Object[]> encodedLinkLoader;
+	private final List<Runnable> linksChangedListeners = new CopyOnWriteArrayList<>();
+	private final HikariMetrics hikariMetrics;
+	private volatile MetricsRegistry metrics = MetricsRegistry.NONE;
+	private volatile SchemaCheck schemaCheck;
+	private volatile File snapshotOnClose = null;
+	private volatile SnapshotMethod snapshotOnCloseMethod = SnapshotMethod.BACKUP;
+
+	/**
+	 * How {@link #snapshotTo(File, SnapshotMethod)} writes the database to a file.
+	 */
+	public enum SnapshotMethod {
+		/** Copies the pages as they are with the online backup API. The fastest way. */
+		BACKUP,
+		/** <code>VACUUM INTO</code>: writes the tables and indexes anew, so the file has no free pages and is defragmented. */
+		VACUUM_INTO
+	}
 
 	static {
 		try {
@@ -40,51 +91,240 @@ public class SqliteDB implements AutoCloseable, Closeable {
 	}
 
 	public static SqliteDB createSqliteWithDataSource(File dbFile) {
+		return createSqliteWithDataSource(dbFile, SqlitePragmaProfile.DEFAULT);
+	}
+
+	public static SqliteDB createSqliteWithDataSource(File dbFile, SqlitePragmaProfile profile) {
 		String connectionString = "jdbc:sqlite:" + dbFile.getAbsolutePath();
-		SQLiteConfig sqliteConfig = new SQLiteConfig();
-		sqliteConfig.enforceForeignKeys(true);
-		SQLiteDataSource ds = new SQLiteDataSource();
+		SQLiteDataSource ds = new SQLiteDataSource(profile.toConfig());
 		ds.setUrl(connectionString);
-		return new SqliteDB(null, null, ds, SQLDialect.SQLITE);
+		return new SqliteDB(null, null, ds, null, SQLDialect.SQLITE);
 	}
 
 	public static SqliteDB createSqliteWithHikari(File dbFile) {
+		return createSqliteWithHikari(dbFile, SqlitePragmaProfile.DEFAULT);
+	}
+
+	public static SqliteDB createSqliteWithHikari(File dbFile, SqlitePragmaProfile profile) {
+		return createSqliteWithHikari(dbFile, profile, 10);
+	}
+
+	public static SqliteDB createSqliteWithHikari(File dbFile, SqlitePragmaProfile profile, int maxPoolSize) {
 		String connectionString = "jdbc:sqlite:" + dbFile.getAbsolutePath();
-		SQLiteConfig sqliteConfig = new SQLiteConfig();
-		sqliteConfig.enforceForeignKeys(true);
 		HikariDataSource ds = new HikariDataSource();
 		ds.setJdbcUrl(connectionString);
 		ds.setDriverClassName("org.sqlite.JDBC");
-		return new SqliteDB(null, null, ds, SQLDialect.SQLITE);
+		ds.setDataSourceProperties(profile.toConfig().toProperties());
+		ds.setMaximumPoolSize(maxPoolSize);
+		return new SqliteDB(null, null, ds, null, SQLDialect.SQLITE);
 	}
 
 	public static SqliteDB createSqliteWithConnection(File dbFile) {
+		return createSqliteWithConnection(dbFile, SqlitePragmaProfile.DEFAULT);
+	}
+
+	public static SqliteDB createSqliteWithConnection(File dbFile, SqlitePragmaProfile profile) {
 		String filename = dbFile.getAbsolutePath();
 		String connectionString = "jdbc:sqlite:" + filename;
 
 		try {
-			SQLiteConfig config = new SQLiteConfig();
-			config.enforceForeignKeys(true);
-			Connection connection = DriverManager.getConnection(connectionString, config.toProperties());
-			return new SqliteDB(connection, connectionString, null, SQLDialect.SQLITE);
+			Connection connection = DriverManager.getConnection(connectionString, profile.toConfig().toProperties());
+			return new SqliteDB(connection, connectionString, null, null, SQLDialect.SQLITE);
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Creates a database with one long-lived write connection and a pool of <code>readerCount</code> read-only connections,
+	 * using {@link SqlitePragmaProfile#CONCURRENT_READ}. The database is in WAL mode, so readers are not blocked by a writer.
+	 * All write methods queue for the write connection, all read methods use the reader pool.
+	 */
+	public static SqliteDB createSqliteWithWriterAndReaders(File dbFile, int readerCount) {
+		String connectionString = "jdbc:sqlite:" + dbFile.getAbsolutePath();
+
+		try {
+			Connection writeConnection = DriverManager.getConnection(connectionString, SqlitePragmaProfile.CONCURRENT_READ.toConfig().toProperties());
+			SQLiteConfig readerConfig = SqlitePragmaProfile.CONCURRENT_READ.toConfig();
+			readerConfig.setReadOnly(true);
+			HikariDataSource readers = new HikariDataSource();
+			readers.setJdbcUrl(connectionString);
+			readers.setDriverClassName("org.sqlite.JDBC");
+			readers.setDataSourceProperties(readerConfig.toProperties());
+			readers.setReadOnly(true); // must match the read-only open flag, sqlite-jdbc does not allow Hikari to change it
+			readers.setMaximumPoolSize(readerCount);
+			return new SqliteDB(null, connectionString, readers, new SqliteWriter(writeConnection), SQLDialect.SQLITE);
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Creates a database that only lives in memory, with one connection, so no write pays for disk I/O.
+	 * If <code>loadFrom</code> is not <code>null</code>, the database is first loaded from that file with the online backup API.
+	 * Keep the data with {@link #snapshotTo(File)} or {@link #setSnapshotOnClose(File, SnapshotMethod)}, it is gone after {@link #close()}.
+	 */
+	public static SqliteDB createSqliteInMemory(File loadFrom) {
+		String connectionString = memoryConnectionString();
+
+		try {
+			Connection connection = openInMemory(connectionString, loadFrom);
+			return new SqliteDB(connection, connectionString, null, null, SQLDialect.SQLITE);
 		} catch (SQLException e) {
 			throw new RuntimeException(e);
 		}
 	}
 
-	private SqliteDB(Connection connection, String connectionString, DataSource dataSource, SQLDialect sqlDialect) {
+	/**
+	 * Like {@link #createSqliteInMemory(File)}, but with a Hikari pool of up to <code>maxPoolSize</code> connections to the
+	 * same in-memory database. It uses the <code>memdb</code> VFS of SQLite rather than a shared cache, so connections wait
+	 * for each other's locks with the busy timeout instead of failing. The database can grow up to 1 GiB.
+	 */
+	public static SqliteDB createSqliteInMemoryWithHikari(File loadFrom, int maxPoolSize) {
+		String connectionString = memoryConnectionString();
+		Properties properties = SqlitePragmaProfile.DEFAULT.toConfig().toProperties();
+
+		Connection anchor = null;
+		HikariDataSource ds = null;
+		try {
+			anchor = openInMemory(connectionString, loadFrom);
+			ds = new HikariDataSource();
+			ds.setJdbcUrl(connectionString);
+			ds.setDriverClassName("org.sqlite.JDBC");
+			ds.setDataSourceProperties(properties);
+			ds.setMaximumPoolSize(maxPoolSize);
+			return new SqliteDB(null, null, ds, null, SQLDialect.SQLITE, anchor);
+		} catch (SQLException | RuntimeException e) {
+			if (ds != null) {
+				ds.close();
+			}
+			if (anchor != null) {
+				try {
+					anchor.close();
+				} catch (SQLException closeException) {
+					e.addSuppressed(closeException);
+				}
+			}
+			throw e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException(e);
+		}
+	}
+
+	/** A new, unique database of the <code>memdb</code> VFS, which all connections with the same name share while one of them is open. */
+	private static String memoryConnectionString() {
+		return "jdbc:sqlite:file:/" + DB_NAME_PREFIX + UUID.randomUUID() + "?vfs=memdb";
+	}
+
+	private static Connection openInMemory(String connectionString, File loadFrom) throws SQLException {
+		if (loadFrom != null && !loadFrom.isFile()) {
+			throw new IllegalArgumentException("Database file " + loadFrom + " does not exist.");
+		}
+		Connection connection = DriverManager.getConnection(connectionString, SqlitePragmaProfile.DEFAULT.toConfig().toProperties());
+		if (loadFrom != null) {
+			try {
+				int rc = connection.unwrap(SQLiteConnection.class).getDatabase().restore("main", loadFrom.getAbsolutePath(), null);
+				if (rc != 0) {
+					throw new SQLException("Could not load " + loadFrom + " into memory, SQLite error code " + rc);
+				}
+			} catch (SQLException e) {
+				connection.close();
+				throw e;
+			}
+		}
+		return connection;
+	}
+
+	private SqliteDB(Connection connection, String connectionString, DataSource dataSource, SqliteWriter writer, SQLDialect sqlDialect) {
+		this(connection, connectionString, dataSource, writer, sqlDialect, null);
+	}
+
+	private SqliteDB(Connection connection, String connectionString, DataSource dataSource, SqliteWriter writer, SQLDialect sqlDialect, Connection memoryAnchor) {
 		this.connection = connection;
 		this.connectionString = connectionString;
 		this.dataSource = dataSource;
-		this.jooqSettings = new Settings();
+		this.writer = writer;
+		this.memoryAnchor = memoryAnchor;
+		this.jooqSettings = new Settings()
+			.withExecuteLogging(false); // the debug logging listener is added to every query otherwise
 		if (sqlDialect == SQLDialect.POSTGRES) {
 			this.jooqSettings.setRenderNameCase(RenderNameCase.LOWER);
 		}
+		this.configuration = new DefaultConfiguration().set(sqlDialect).set(this.jooqSettings)
+			.set(JooqMetricsListener.provider(() -> this.metrics));
+		if (dataSource != null) {
+			this.dsl = DSL.using(this.configuration.derive(dataSource));
+		} else if (connection != null) {
+			this.dsl = DSL.using(this.configuration.derive(connection));
+		} else {
+			this.dsl = null;
+		}
+		this.writerDsl = writer != null ? DSL.using(this.configuration.derive(writer)) : null;
+		this.hikariMetrics = HikariMetrics.install(dataSource, () -> this.metrics);
+		this.statementCache = new StatementCache(connection);
+		this.linkLoader = bulkLoader(TableMapping.of(LINK, GeometryEncoding.insertFields(LINK), linkDAO -> this.geometryEncoding.insertValues(linkDAO)));
+		this.linkLoader.setBeforeReplace(SqliteDB::suspendChangeLog);
+		this.linkLoader.setAfterReplace(SqliteDB::afterLinksReplaced);
+		this.encodedLinkLoader = bulkLoader(TableMapping.of(LINK, GeometryEncoding.insertFields(LINK), row -> row));
+		this.encodedLinkLoader.setBeforeReplace(SqliteDB::suspendChangeLog);
+		this.encodedLinkLoader.setAfterReplace(SqliteDB::afterLinksReplaced);
+		List<Field<?>> linkWithIdFields = new ArrayList<>();
+		linkWithIdFields.add(LINK.ID);
+		linkWithIdFields.addAll(GeometryEncoding.insertFields(LINK));
+		this.linkWithIdLoader = bulkLoader(TableMapping.of(LINK, linkWithIdFields, linkDAO -> {
+			Object[] values = this.geometryEncoding.insertValues(linkDAO);
+			Object[] withId = new Object[values.length + 1];
+			withId[0] = linkDAO.id;
+			System.arraycopy(values, 0, withId, 1, values.length);
+			return withId;
+		}));
+		this.linkWithIdLoader.setBeforeReplace(SqliteDB::suspendChangeLog);
+		this.linkWithIdLoader.setAfterReplace(SqliteDB::afterLinksReplaced);
+		this.selectLinkByIdSql = DSL.using(sqlDialect, this.jooqSettings).render(
+			DSL.selectFrom(LINK).where(LINK.ID.eq(DSL.param(LINK.ID.getName(), Long.class))));
+		// binds maxX, minX, maxY, minY for the R*Tree, then again for the exact bounding box
+		this.selectLinksInEnvelopeSql = DSL.using(sqlDialect, this.jooqSettings).render(
+			DSL.select(LINK.fields())
+				.from(LINK_BBOX)
+				.join(LINK).on(LINK.ID.eq(LINK_BBOX.ID))
+				.where(LINK_BBOX.MINX.coerce(Double.class).le(DSL.param("maxX", Double.class)))
+				.and(LINK_BBOX.MAXX.coerce(Double.class).ge(DSL.param("minX", Double.class)))
+				.and(LINK_BBOX.MINY.coerce(Double.class).le(DSL.param("maxY", Double.class)))
+				.and(LINK_BBOX.MAXY.coerce(Double.class).ge(DSL.param("minY", Double.class)))
+				.and(LINK.MINX.le(DSL.param("maxX", Double.class)))
+				.and(LINK.MAXX.ge(DSL.param("minX", Double.class)))
+				.and(LINK.MINY.le(DSL.param("maxY", Double.class)))
+				.and(LINK.MAXY.ge(DSL.param("minY", Double.class)))
+				.orderBy(LINK.ID));
 		this.runFlyway();
 	}
 
+	/**
+	 * Closes all connections, after writing the snapshot set with {@link #setSnapshotOnClose(File, SnapshotMethod)}, if any.
+	 * The connections are closed even if the snapshot fails, its failure is then thrown, or suppressed by a failure to close.
+	 */
 	@Override
 	public void close() throws IOException {
+		File snapshotOnClose = this.snapshotOnClose;
+		Exception snapshotFailure = null;
+		try {
+			if (snapshotOnClose != null) {
+				snapshotTo(snapshotOnClose, this.snapshotOnCloseMethod);
+			}
+		} catch (IOException | RuntimeException e) {
+			snapshotFailure = e;
+			throw e;
+		} finally {
+			try {
+				closeConnections();
+			} catch (IOException | RuntimeException e) {
+				if (snapshotFailure != null) {
+					e.addSuppressed(snapshotFailure);
+				}
+				throw e;
+			}
+		}
+	}
+
+	private void closeConnections() throws IOException {
 		if (this.dataSource instanceof AutoCloseable) {
 			try {
 				((AutoCloseable) this.dataSource).close();
@@ -92,119 +332,732 @@ public class SqliteDB implements AutoCloseable, Closeable {
 				throw new IOException("Could not close database connection.", e);
 			}
 		}
+		try {
+			this.statementCache.close();
+		} catch (SQLException e) {
+			throw new IOException("Could not close prepared statements.", e);
+		}
+		if (this.connection != null) {
+			try {
+				this.connection.close();
+			} catch (SQLException e) {
+				throw new IOException("Could not close database connection.", e);
+			}
+		}
+		if (this.writer != null) {
+			try {
+				this.writer.close();
+			} catch (SQLException e) {
+				throw new IOException("Could not close database connection.", e);
+			}
+		}
+		if (this.memoryAnchor != null) {
+			try {
+				this.memoryAnchor.close();
+			} catch (SQLException e) {
+				throw new IOException("Could not close database connection.", e);
+			}
+		}
+	}
+
+	/**
+	 * Writes a consistent copy of the database to <code>file</code> with the online backup API, replacing the file.
+	 * Mostly meant for in-memory databases, but works for every database.
+	 */
+	public void snapshotTo(File file) throws IOException {
+		snapshotTo(file, SnapshotMethod.BACKUP);
+	}
+
+	/**
+	 * Writes a consistent copy of the database to <code>file</code>. The copy is written to a temporary file next to it
+	 * first, and then moved in place of <code>file</code>, so a failed snapshot does not destroy an older one.
+	 */
+	public void snapshotTo(File file, SnapshotMethod method) throws IOException {
+		Path target = file.toPath().toAbsolutePath();
+		Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+		Files.deleteIfExists(tmp);
+		try {
+			writeDb().connection(conn -> {
+				switch (method) {
+					case BACKUP -> {
+						int rc = conn.unwrap(SQLiteConnection.class).getDatabase().backup("main", tmp.toString(), null);
+						if (rc != 0) {
+							throw new SQLException("Could not write snapshot to " + tmp + ", SQLite error code " + rc);
+						}
+					}
+					case VACUUM_INTO -> {
+						try (Statement stmt = conn.createStatement()) {
+							stmt.execute("VACUUM INTO '" + osFileUri(tmp).replace("'", "''") + "'");
+						}
+					}
+				}
+			});
+			Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (RuntimeException e) {
+			Files.deleteIfExists(tmp);
+			throw new IOException("Could not write snapshot to " + target, e);
+		}
+	}
+
+	/**
+	 * Writes a snapshot to <code>file</code> when the database is closed, or none if <code>file</code> is <code>null</code>.
+	 */
+	public void setSnapshotOnClose(File file, SnapshotMethod method) {
+		this.snapshotOnCloseMethod = method;
+		this.snapshotOnClose = file;
+	}
+
+	/**
+	 * A URI for the file with the VFS of the operating system: <code>VACUUM INTO</code> writes with the VFS of the
+	 * database otherwise, which for a <code>memdb</code> database is memory.
+	 */
+	private static String osFileUri(Path path) {
+		String vfs = System.getProperty("os.name").startsWith("Windows") ? "win32" : "unix";
+		return path.toUri() + "?vfs=" + vfs;
+	}
+
+	/**
+	 * Sets how the streaming <code>replaceLinks</code> methods insert links. {@link InsertStrategy#COPY} is not supported.
+	 */
+	public void setInsertStrategy(InsertStrategy insertStrategy) {
+		this.linkLoader.setInsertStrategy(insertStrategy);
+		this.linkWithIdLoader.setInsertStrategy(insertStrategy);
+		this.encodedLinkLoader.setInsertStrategy(insertStrategy);
+	}
+
+	/**
+	 * Sets how all write methods store the geometry of links. Already stored links keep their encoding until they are written again.
+	 */
+	public void setGeometryEncoding(GeometryEncoding geometryEncoding) {
+		this.geometryEncoding = geometryEncoding;
+	}
+
+	/**
+	 * Records the statements, batches and connection-acquire waits of this database in <code>metrics</code>, including
+	 * the plain JDBC write paths, and registers the gauges of the connection pool and the write queue, if any.
+	 * {@link MetricsRegistry#NONE}, the default, turns recording off again.
+	 */
+	public void setMetrics(MetricsRegistry metrics) {
+		this.metrics = metrics;
+		if (this.hikariMetrics != null) {
+			this.hikariMetrics.registerGauges(metrics);
+		}
+		if (this.writer != null) {
+			this.writer.setMetrics(metrics);
+			metrics.registerGauge("writer.queued", this.writer::getQueueLength);
+		}
 	}
 
+	/**
+	 * Checks the schema in the mode set with {@link DBUtils#setStartupMode(DBUtils.StartupMode)}, and migrates it if needed.
+	 * Called when the database is opened.
+	 */
 	public void runFlyway() {
+		if (DBUtils.getStartupMode() == DBUtils.StartupMode.FAST_START) {
+			this.schemaCheck = DBUtils.fastStart(writeDb(), "/migrations", this::migrate);
+		} else {
+			this.schemaCheck = migrate();
+		}
+	}
+
+	/**
+	 * @return the outcome and phase timings of the last {@link #runFlyway()}
+	 */
+	public SchemaCheck getSchemaCheck() {
+		return this.schemaCheck;
+	}
+
+	private SchemaCheck migrate() {
 		if (this.connectionString != null) {
-			DBUtils.runFlyway(DB_NAME_PREFIX, this.connectionString, null, null, "/migrations", DBUtils.DatabaseType.SQLITE);
-		} else if (this.dataSource != null) {
-			DBUtils.runFlyway(DB_NAME_PREFIX, this.dataSource, "/migrations", DBUtils.DatabaseType.SQLITE);
+			return DBUtils.runFlyway(DB_NAME_PREFIX, this.connectionString, null, null, "/migrations", DBUtils.DatabaseType.SQLITE);
 		}
+		return DBUtils.runFlyway(DB_NAME_PREFIX, this.dataSource, "/migrations", DBUtils.DatabaseType.SQLITE);
 	}
 
+	/**
+	 * @return the context for read operations. It is created once, so its configuration is not set up again for every call.
+	 */
 	private DSLContext db() {
-		if (this.dataSource != null) {
-			return DSL.using(this.dataSource, SQLDialect.SQLITE, this.jooqSettings);
+		if (this.dsl == null) {
+			throw new RuntimeException("undefined db connection type");
+		}
+		return this.dsl;
+	}
+
+	/**
+	 * @return the context for write operations: the queued write connection if there is one, otherwise the same as {@link #db()}.
+	 */
+	private DSLContext writeDb() {
+		if (this.writerDsl != null) {
+			return this.writerDsl;
+		}
+		return db();
+	}
+
+	private Connection acquireWriteConnection() throws SQLException {
+		if (this.writer != null) {
+			return this.writer.acquire();
 		}
 		if (this.connection != null) {
-			return DSL.using(this.connection, SQLDialect.SQLITE, this.jooqSettings);
+			return this.connection;
 		}
-		throw new RuntimeException("undefined db connection type");
+		return this.dataSource.getConnection();
 	}
 
-	private DSLContext db2() {
-		if (this.dataSource != null) {
-			try {
-				return DSL.using(this.dataSource.getConnection(), SQLDialect.SQLITE, this.jooqSettings);
-			} catch (SQLException e) {
-				throw new RuntimeException(e);
-			}
+	private void releaseWriteConnection(Connection conn) throws SQLException {
+		if (this.writer != null) {
+			this.writer.release(conn);
+		} else if (this.connection == null) {
+			conn.close();
 		}
-		throw new RuntimeException("undefined db connection type");
+	}
+
+	/**
+	 * @return a context for the connection, with the settings and listeners of this database
+	 */
+	private DSLContext using(Connection conn) {
+		return DSL.using(this.configuration.derive(conn));
+	}
+
+	/**
+	 * Runs <code>work</code> on the write connection if there is one, otherwise on one connection of the data source or the single connection.
+	 */
+	@Override
+	public <T> T inUnitOfWork(UnitOfWork<T> work) {
+		return writeDb().connectionResult(conn -> using(conn).transactionResult(c -> work.execute(c.dsl())));
+	}
+
+	/**
+	 * Creates a loader for any table of this database, with the metrics of this database.
+	 * Run it with {@link #replaceRows(BulkLoader, Iterator, int)}, or with {@link #inUnitOfWork(UnitOfWork)} for other operations.
+	 */
+	@Override
+	public <T> BulkLoader<T> bulkLoader(TableMapping<T> mapping) {
+		return new BulkLoader<>(mapping, this.configuration.dialect(), () -> this.metrics);
+	}
+
+	/**
+	 * Replaces all rows of the loader's table in one unit of work, see {@link BulkLoader#replace(DSLContext, Iterator, int)}.
+	 */
+	@Override
+	public <T> void replaceRows(BulkLoader<T> loader, Iterator<? extends T> rows, int batchSize) {
+		inUnitOfWork(tx -> {
+			loader.replace(tx, rows, batchSize);
+			return null;
+		});
+	}
+
+	/**
+	 * Replaces all rows of the loader's table through a staging table, on the write connection if there is one,
+	 * see {@link BulkLoader#replaceViaStagingTable(DSLContext, Iterator, int)}.
+	 */
+	@Override
+	public <T> void replaceRows_ShadowTable(BulkLoader<T> loader, Iterator<? extends T> rows, int batchSize) {
+		writeDb().connection(conn -> loader.replaceViaStagingTable(using(conn), rows, batchSize));
 	}
 
 	// ==== LINK ====
 
+	@Override
 	public void replaceLinks(List<LinkDAO> linkDAOs) {
 		if (linkDAOs.isEmpty()) {
 			return;
 		}
-		db().transaction(c -> {
-			BatchBindStep batchInsert = db().batch(
-				db()
-					.insertInto(LINK, LINK.LINKID, LINK.GEOMETRY)
-					.values((String) null, null)
-			);
-			for (LinkDAO linkDAO : linkDAOs) {
-				batchInsert.bind(linkDAO.linkId, linkDAO.geometry);
-			}
-			db()
-					.truncate(LINK)
-					.cascade()
-					.execute();
-			batchInsert.execute();
-		});
+		try {
+			inUnitOfWork(tx -> {
+				replaceAll(tx, linkDAOs);
+				return null;
+			});
+		} finally {
+			fireLinksChanged();
+		}
 	}
 
+	/**
+	 * Replaces all links with the ones provided by the stream, without materializing them.
+	 * The stream is consumed in sub-batches of {@link #DEFAULT_BATCH_SIZE} and closed afterwards.
+	 */
+	public void replaceLinks(Stream<LinkDAO> linkDAOs) {
+		try (linkDAOs) {
+			replaceLinks(linkDAOs.iterator(), DEFAULT_BATCH_SIZE);
+		}
+	}
+
+	/**
+	 * Replaces all links with the ones provided by the iterator. At most <code>batchSize</code> links
+	 * are bound and sent to the driver at once, so memory usage does not depend on the number of links.
+	 * Truncate and all inserts run in one transaction, so readers either see the old or the new links.
+	 */
+	@Override
+	public void replaceLinks(Iterator<LinkDAO> linkDAOs, int batchSize) {
+		if (!linkDAOs.hasNext()) {
+			return;
+		}
+		try {
+			replaceRows(this.linkLoader, linkDAOs, batchSize);
+		} finally {
+			fireLinksChanged();
+		}
+	}
+
+	@Override
+	public Object[] encodeLink(LinkDAO linkDAO) {
+		return this.geometryEncoding.insertValues(linkDAO);
+	}
+
+	@Override
+	public void replaceEncodedLinks(Iterator<Object[]> rows, int batchSize) {
+		if (!rows.hasNext()) {
+			return;
+		}
+		try {
+			replaceRows(this.encodedLinkLoader, rows, batchSize);
+		} finally {
+			fireLinksChanged();
+		}
+	}
+
+	/**
+	 * Replaces all links in the transaction of <code>tx</code>, keeping the ids of the links instead of numbering them anew,
+	 * e.g. for the shards of {@link ShardedSqliteDB}. Does not notify the links changed listeners.
+	 */
+	void replaceLinksKeepingIds(DSLContext tx, Iterator<LinkDAO> linkDAOs, int batchSize) {
+		this.linkWithIdLoader.replace(tx, linkDAOs, batchSize);
+	}
+
+	/**
+	 * Replaces all links with the ones of the batch, in one transaction. <code>linkId</code> and <code>geometry</code> are
+	 * bound as the UTF-8 bytes of the batch and converted to text by SQLite. The ids of the batch are not written.
+	 */
+	@Override
+	public void replaceLinks(LinkBatch links) {
+		if (links.size() == 0) {
+			return;
+		}
+		try {
+			inUnitOfWork(tx -> {
+				tx.connection(SqliteDB::suspendChangeLog);
+				tx
+						.truncate(LINK)
+						.cascade()
+						.execute();
+				tx.connection(conn -> {
+					LinkBatchJdbc.insertLinks(conn, INSERT_LINK_BATCH_SQL, this.geometryEncoding, links, DEFAULT_BATCH_SIZE, this.metrics);
+					afterLinksReplaced(conn);
+				});
+				return null;
+			});
+		} finally {
+			fireLinksChanged();
+		}
+	}
+
+	public void replaceLinks(List<LinkDAO> linkDAOs, SqlitePragmaProfile loadProfile) {
+		replaceLinks(linkDAOs.iterator(), DEFAULT_BATCH_SIZE, loadProfile);
+	}
+
+	/**
+	 * Like {@link #replaceLinks(Iterator, int)}, but switches the connection to <code>loadProfile</code>
+	 * (typically {@link SqlitePragmaProfile#BULK_LOAD}) for the duration of the replace, and restores
+	 * the previous settings afterwards. See {@link SqlitePragmaProfile#applyTo(Connection)} for which settings are switched;
+	 * the journal is kept at least in memory, so a failed replace is rolled back.
+	 */
+	public void replaceLinks(Iterator<LinkDAO> linkDAOs, int batchSize, SqlitePragmaProfile loadProfile) {
+		if (!linkDAOs.hasNext()) {
+			return;
+		}
+		try {
+			writeDb().connection(conn -> {
+				Map<String, String> previousPragmas = loadProfile.applyTo(conn);
+				try {
+					using(conn).transaction(c -> this.linkLoader.replace(c.dsl(), linkDAOs, batchSize));
+				} finally {
+					SqlitePragmaProfile.restore(conn, previousPragmas);
+				}
+			});
+		} finally {
+			fireLinksChanged();
+		}
+	}
+
+	/**
+	 * Makes the stored links equal to the provided ones, writing only the differences: links are matched by
+	 * <code>linkId</code>, links with a changed geometry are updated, new links inserted, and stored links
+	 * missing from the provided ones deleted. Unlike <code>replaceLinks</code>, an empty iterator deletes all links.
+	 * Runs in one transaction.
+	 */
+	@Override
+	public SyncResult syncLinks(Iterator<LinkDAO> linkDAOs, int batchSize) {
+		try {
+			return inUnitOfWork(tx -> LinkSync.sync(tx, this.geometryEncoding, LINK_BBOX.getName(), linkDAOs, batchSize));
+		} finally {
+			fireLinksChanged();
+		}
+	}
+
+	/**
+	 * Replaces all links by loading them into a staging table without secondary indexes, and then swapping
+	 * the staging table in place of <code>Link</code>. The indexes are built once after the load instead of
+	 * being maintained for every inserted row. Readers see the old links until the swap is committed, without
+	 * being blocked during the load if the database is in WAL mode.
+	 */
+	public void replaceLinks_ShadowTable(Iterator<LinkDAO> linkDAOs, int batchSize) {
+		if (!linkDAOs.hasNext()) {
+			return;
+		}
+		try {
+			replaceRows_ShadowTable(this.linkLoader, linkDAOs, batchSize);
+		} finally {
+			fireLinksChanged();
+		}
+	}
+
+	/**
+	 * Same as {@link #replaceLinks(List)}, but borrowing the connection from the data source directly instead of through jOOQ.
+	 * With a write connection, the write connection is used.
+	 */
 	public void replaceLinks_ConnectionFromDataSource(List<LinkDAO> linkDAOs) {
 		if (linkDAOs.isEmpty()) {
 			return;
 		}
-		db2().transaction(c -> {
-			BatchBindStep batchInsert = db().batch(
-					db2()
-							.insertInto(LINK, LINK.LINKID, LINK.GEOMETRY)
-							.values((String) null, null)
-			);
-			for (LinkDAO linkDAO : linkDAOs) {
-				batchInsert.bind(linkDAO.linkId, linkDAO.geometry);
+		try {
+			if (this.writer != null) {
+				inUnitOfWork(tx -> {
+					replaceAll(tx, linkDAOs);
+					return null;
+				});
+			} else if (this.dataSource != null) {
+				try (Connection conn = this.dataSource.getConnection()) {
+					using(conn).transaction(c -> replaceAll(c.dsl(), linkDAOs));
+				} catch (SQLException e) {
+					throw new RuntimeException(e);
+				}
+			} else {
+				throw new RuntimeException("undefined db connection type");
 			}
-			db2()
-					.truncate(LINK)
-					.cascade()
-					.execute();
-
+		} finally {
+			fireLinksChanged();
+		}
+	}
 
-			batchInsert.execute();
-		});
+	/**
+	 * Replaces all links in the transaction of <code>tx</code>, with one batch for all links.
+	 */
+	private void replaceAll(DSLContext tx, List<LinkDAO> linkDAOs) {
+		this.linkLoader.replace(tx, linkDAOs.iterator(), Math.max(linkDAOs.size(), 1), InsertStrategy.BATCH);
 	}
 
+	/**
+	 * Replaces all links with plain JDBC, with one batch for all links.
+	 */
 	public void replaceLinks_JDBC(List<LinkDAO> linkDAOs) throws SQLException {
-		Connection conn = this.connection;
-		if (this.connection == null) {
-			conn = this.dataSource.getConnection();
-		}
-		conn.setAutoCommit(false);
-		conn.createStatement().execute("DELETE FROM LINK;");
-		PreparedStatement pstmt = conn.prepareStatement(
-				"INSERT INTO Link(id, linkid, geometry) VALUES(?,?,?)");
-
-		for (LinkDAO dao : linkDAOs) {
-			pstmt.setLong(1, dao.id);
-			pstmt.setString(2, dao.linkId);
-			pstmt.setString(3, dao.geometry);
-			pstmt.addBatch();
-		}
-		pstmt.executeBatch();
-		conn.commit();
-		if (this.connection == null) {
-			conn.close();
+		replaceLinks_JDBC(linkDAOs.iterator(), Math.max(linkDAOs.size(), 1));
+	}
+
+	/**
+	 * Streaming variant of {@link #replaceLinks_JDBC(List)}, executing the batch every <code>batchSize</code> links.
+	 */
+	public void replaceLinks_JDBC(Iterator<LinkDAO> linkDAOs, int batchSize) throws SQLException {
+		try {
+			Connection conn = acquireWriteConnection();
+			try {
+				conn.setAutoCommit(false);
+				try (Statement stmt = conn.createStatement();
+						 PreparedStatement pstmt = conn.prepareStatement("INSERT INTO Link(id, linkid, " + GeometryEncoding.COLUMNS + ") VALUES(?,?,?,?,?,?,?,?,?)")) {
+					suspendChangeLog(conn);
+					stmt.execute("DELETE FROM LINK;");
+					int count = 0;
+					while (linkDAOs.hasNext()) {
+						LinkDAO dao = linkDAOs.next();
+						pstmt.setLong(1, dao.id);
+						pstmt.setString(2, dao.linkId);
+						this.geometryEncoding.bind(pstmt, 3, dao);
+						pstmt.addBatch();
+						if (++count % batchSize == 0) {
+							JdbcMetrics.executeBatch(pstmt, this.metrics);
+						}
+					}
+					JdbcMetrics.executeBatch(pstmt, this.metrics);
+					afterLinksReplaced(conn);
+					conn.commit();
+				} catch (SQLException | RuntimeException e) {
+					conn.rollback();
+					throw e;
+				}
+			} finally {
+				try {
+					conn.setAutoCommit(true);
+				} finally {
+					releaseWriteConnection(conn);
+				}
+			}
+		} finally {
+			fireLinksChanged();
 		}
 	}
 
+	/**
+	 * Registers a listener that is called after every replaceLinks* or syncLinks call, also if it failed.
+	 */
+	@Override
+	public void addLinksChangedListener(Runnable listener) {
+		this.linksChangedListeners.add(listener);
+	}
+
+	private void fireLinksChanged() {
+		for (Runnable listener : this.linksChangedListeners) {
+			listener.run();
+		}
+	}
+
+	@Override
 	public List<LinkDAO> getLinks() {
 		List<LinkDAO> linkDAOs = new ArrayList<>();
+		forEachLink(linkDAOs::add);
+		return linkDAOs;
+	}
+
+	/**
+	 * Returns all links, ordered by id, as one {@link LinkBatch} instead of a {@link LinkDAO} per link.
+	 */
+	@Override
+	public LinkBatch getLinkBatch() {
+		return db().connectionResult(conn -> LinkBatchJdbc.readLinks(conn, DEFAULT_FETCH_SIZE, this.metrics));
+	}
 
-		Result<LinkRecord> linkRecords = db()
+	public void forEachLink(Consumer<LinkDAO> consumer) {
+		forEachLink(consumer, DEFAULT_FETCH_SIZE);
+	}
+
+	/**
+	 * Passes all links, ordered by id, to the consumer. The links are read with a lazy cursor,
+	 * so only <code>fetchSize</code> rows are held in memory at any time.
+	 */
+	public void forEachLink(Consumer<LinkDAO> consumer, int fetchSize) {
+		try (Cursor<LinkRecord> cursor = db()
 			.selectFrom(LINK)
 			.orderBy(LINK.ID)
-			.fetch();
-
-		for (LinkRecord lr : linkRecords) {
-			linkDAOs.add(new LinkDAO(lr.getId(), lr.getLinkid(), lr.getGeometry()));
+			.fetchSize(fetchSize)
+			.fetchLazy()) {
+			for (LinkRecord lr : cursor) {
+				consumer.accept(toLinkDAO(lr));
+			}
 		}
+	}
+
+	public Stream<LinkDAO> streamLinks() {
+		return streamLinks(DEFAULT_FETCH_SIZE);
+	}
+
+	/**
+	 * Returns all links, ordered by id, backed by a lazy cursor. The stream holds a database connection
+	 * and must be closed, e.g. with try-with-resources.
+	 */
+	public Stream<LinkDAO> streamLinks(int fetchSize) {
+		return db()
+			.selectFrom(LINK)
+			.orderBy(LINK.ID)
+			.fetchSize(fetchSize)
+			.fetchStream()
+			.map(SqliteDB::toLinkDAO);
+	}
 
+	/**
+	 * Returns all links, ordered by id, read in up to <code>partitions</code> id ranges in parallel,
+	 * see {@link #forEachLinkParallel(int, IntFunction)}.
+	 */
+	public List<LinkDAO> getLinksParallel(int partitions) {
+		List<List<LinkDAO>> partitionLinks = new ArrayList<>();
+		for (int i = 0; i < partitions; i++) {
+			partitionLinks.add(new ArrayList<>());
+		}
+		int partitionCount = forEachLinkParallel(partitions, i -> partitionLinks.get(i)::add);
+		List<LinkDAO> linkDAOs = new ArrayList<>(partitionLinks.stream().mapToInt(List::size).sum());
+		for (int i = 0; i < partitionCount; i++) {
+			linkDAOs.addAll(partitionLinks.get(i));
+		}
 		return linkDAOs;
 	}
 
+	/**
+	 * Splits the ids into up to <code>partitions</code> ranges of about the same number of links, and reads every range
+	 * with a cursor on a connection and a thread of its own, e.g. on the WAL readers of {@link #createSqliteWithWriterAndReaders(File, int)}.
+	 * The links of range <code>i</code> are passed to <code>consumers.apply(i)</code> in id order, on the thread reading
+	 * the range. With a single connection, the ranges are read one after the other.
+	 * Every range is read in a transaction of its own, so a write committed during the read may only be seen by some ranges.
+	 *
+	 * @return the number of ranges, less than <code>partitions</code> if there are fewer links
+	 */
+	public int forEachLinkParallel(int partitions, IntFunction<Consumer<LinkDAO>> consumers) {
+		long[] bounds = ParallelLinkReader.bounds(db(), partitions);
+		ParallelLinkReader.readPartitions(bounds, this.dataSource != null, (lowerId, upperId, consumer) -> {
+			try (Cursor<LinkRecord> cursor = db()
+				.selectFrom(LINK)
+				.where(LINK.ID.ge(lowerId))
+				.and(LINK.ID.lt(upperId))
+				.orderBy(LINK.ID)
+				.fetchSize(DEFAULT_FETCH_SIZE)
+				.fetchLazy()) {
+				for (LinkRecord lr : cursor) {
+					consumer.accept(toLinkDAO(lr));
+				}
+			}
+		}, consumers);
+		return Math.max(0, bounds.length - 1);
+	}
+
+	/**
+	 * Returns the links whose bounding box intersects the envelope, ordered by id. The candidates are found with
+	 * the R*Tree <code>Link_bbox</code>, which stores the boxes with single precision, so they are checked again
+	 * against the exact bounding box stored with the link.
+	 */
+	@Override
+	public List<LinkDAO> getLinksInEnvelope(double minX, double minY, double maxX, double maxY) {
+		return db().connectionResult(conn -> this.statementCache.execute(conn, this.selectLinksInEnvelopeSql, stmt -> {
+			for (int offset = 0; offset <= 4; offset += 4) {
+				stmt.setDouble(offset + 1, maxX);
+				stmt.setDouble(offset + 2, minX);
+				stmt.setDouble(offset + 3, maxY);
+				stmt.setDouble(offset + 4, minY);
+			}
+			List<LinkDAO> linkDAOs = new ArrayList<>();
+			try (ResultSet rs = JdbcMetrics.executeQuery(stmt, this.metrics)) {
+				while (rs.next()) {
+					linkDAOs.add(toLinkDAO(rs));
+				}
+			}
+			return linkDAOs;
+		}));
+	}
+
+	/**
+	 * Returns the link with the given id, or <code>null</code>. Meant for a high rate of small calls: the SQL is rendered once,
+	 * and with a single long-lived connection the prepared statement is reused as well.
+	 */
+	@Override
+	public LinkDAO getLinkById(long id) {
+		return db().connectionResult(conn -> this.statementCache.execute(conn, this.selectLinkByIdSql, stmt -> {
+			stmt.setLong(1, id);
+			try (ResultSet rs = JdbcMetrics.executeQuery(stmt, this.metrics)) {
+				return rs.next() ? toLinkDAO(rs) : null;
+			}
+		}));
+	}
+
+	/**
+	 * Same as {@link #getLinkById(long)}, but building and rendering the query with jOOQ on every call.
+	 */
+	public LinkDAO getLinkById_jooq(long id) {
+		LinkRecord lr = db().selectFrom(LINK).where(LINK.ID.eq(id)).fetchOne();
+		return lr == null ? null : toLinkDAO(lr);
+	}
+
+	// ==== LINK CHANGES ====
+
+	@Override
+	public Stream<LinkChangeDAO> getLinkChangesSince(long sequence) {
+		return getLinkChangesSince(sequence, DEFAULT_FETCH_SIZE);
+	}
+
+	/**
+	 * Returns the changes of the links after <code>sequence</code>, in commit order, backed by a lazy cursor.
+	 * The stream holds a database connection and must be closed, e.g. with try-with-resources.
+	 */
+	public Stream<LinkChangeDAO> getLinkChangesSince(long sequence, int fetchSize) {
+		return LinkChangeLog.changesSince(db(), sequence, fetchSize);
+	}
+
+	@Override
+	public long getLinkChangeSequence() {
+		return LinkChangeLog.lastSequence(db());
+	}
+
+	/**
+	 * Compacts the change log in one transaction on the write connection, see {@link LinkChangeLog#compact(DSLContext, long)}.
+	 */
+	@Override
+	public int compactLinkChanges(long sequence) {
+		return inUnitOfWork(tx -> LinkChangeLog.compact(tx, sequence));
+	}
+
+	/**
+	 * Drops the triggers of the change log within the transaction of a replace, before the links are deleted: any trigger
+	 * on Link turns off SQLite's truncate optimization, and would be evaluated for every inserted link. Their SQL is kept
+	 * in a temporary table of the connection, {@link #afterLinksReplaced(Connection)} re-creates them and logs one reset
+	 * instead of a change per link. Rolling back the replace restores the triggers, as SQLite's DDL is transactional.
+	 * Without a journal, e.g. on a connection opened with {@link SqlitePragmaProfile#BULK_LOAD}, SQLite cannot roll back,
+	 * so the triggers are kept and log every deleted and inserted link before the reset.
+	 */
+	private static void suspendChangeLog(Connection conn) throws SQLException {
+		try (Statement stmt = conn.createStatement()) {
+			try (ResultSet rs = stmt.executeQuery("PRAGMA journal_mode")) {
+				if (rs.next() && SQLiteConfig.JournalMode.OFF.getValue().equalsIgnoreCase(rs.getString(1))) {
+					return;
+				}
+			}
+			stmt.executeUpdate("CREATE TEMP TABLE IF NOT EXISTS " + SUSPENDED_TRIGGERS + " (name TEXT, sql TEXT)");
+			stmt.executeUpdate("INSERT INTO " + SUSPENDED_TRIGGERS + " (name, sql) SELECT name, sql FROM sqlite_master "
+				+ "WHERE type = 'trigger' AND tbl_name = '" + LINK.getName() + "' AND name LIKE '" + LINK_CHANGE.getName() + "\\_%' ESCAPE '\\'");
+			List<String> names = new ArrayList<>();
+			try (ResultSet rs = stmt.executeQuery("SELECT name FROM " + SUSPENDED_TRIGGERS)) {
+				while (rs.next()) {
+					names.add(rs.getString(1));
+				}
+			}
+			for (String name : names) {
+				stmt.executeUpdate("DROP TRIGGER " + name);
+			}
+		}
+	}
+
+	/**
+	 * Re-creates the triggers dropped by {@link #suspendChangeLog(Connection)}, if any, logs the reset of a replace and rebuilds
+	 * the R*Tree, called by the replacing write methods within their transaction. A replace through a staging table swaps
+	 * the table with its triggers and without firing them, so it only logs the reset.
+	 */
+	private static void afterLinksReplaced(Connection conn) throws SQLException {
+		try (Statement stmt = conn.createStatement()) {
+			stmt.executeUpdate("CREATE TEMP TABLE IF NOT EXISTS " + SUSPENDED_TRIGGERS + " (name TEXT, sql TEXT)");
+			List<String> triggerSql = new ArrayList<>();
+			try (ResultSet rs = stmt.executeQuery("SELECT sql FROM " + SUSPENDED_TRIGGERS)) {
+				while (rs.next()) {
+					triggerSql.add(rs.getString(1));
+				}
+			}
+			for (String sql : triggerSql) {
+				stmt.executeUpdate(sql);
+			}
+			stmt.executeUpdate("DELETE FROM " + SUSPENDED_TRIGGERS);
+			stmt.executeUpdate("INSERT INTO " + LINK_CHANGE.getName() + " (kind) VALUES ('" + LinkChangeDAO.Kind.RESET.code + "')");
+		}
+		rebuildEnvelopeIndex(conn);
+	}
+
+	/**
+	 * Rebuilds the R*Tree of the bounding boxes from the Link table, called by the replacing write methods within their transaction.
+	 * Filling the R*Tree once is about twice as fast as maintaining it with triggers for every written row, and re-creating it
+	 * is much faster than deleting its entries. <code>syncLinks</code> updates the R*Tree only for the changed links instead.
+	 */
+	private static void rebuildEnvelopeIndex(Connection conn) throws SQLException {
+		try (Statement stmt = conn.createStatement()) {
+			String createSql;
+			try (ResultSet rs = stmt.executeQuery("SELECT sql FROM sqlite_master WHERE type = 'table' AND name = '" + LINK_BBOX.getName() + "'")) {
+				rs.next();
+				createSql = rs.getString(1);
+			}
+			stmt.executeUpdate("DROP TABLE " + LINK_BBOX.getName());
+			stmt.executeUpdate(createSql);
+			stmt.executeUpdate("INSERT INTO " + LINK_BBOX.getName() + " (id, minX, maxX, minY, maxY) SELECT id, minX, maxX, minY, maxY FROM Link WHERE minX IS NOT NULL");
+		}
+	}
+
+	/** Maps a row with the columns of {@link LinkRecord}, in their order. */
+	private static LinkDAO toLinkDAO(ResultSet rs) throws SQLException {
+		return new LinkDAO(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getBytes(4));
+	}
+
+	private static LinkDAO toLinkDAO(LinkRecord lr) {
+		return new LinkDAO(lr.getId(), lr.getLinkid(), lr.getGeometry(), lr.getGeometrywkb());
+	}
+
 }
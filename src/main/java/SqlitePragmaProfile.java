@@ -0,0 +1,147 @@
+import org.sqlite.SQLiteConfig;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Named sets of SQLite pragmas trading durability and concurrency for speed.
+ * A profile is applied to every connection created by the {@link SqliteDB} factory methods,
+ * and can be applied temporarily to a single connection for the duration of a bulk load.
+ */
+public enum SqlitePragmaProfile {
+
+	/** The driver's defaults: rollback journal, full durability. */
+	DEFAULT(null, null, null, null, null, null, null),
+
+	/**
+	 * For loading large amounts of data that can simply be reloaded: no journal and no fsync.
+	 * On connections opened with this profile, a crash or a failed transaction may leave the database in an undefined state.
+	 * Applied temporarily with {@link #applyTo(Connection)}, the journal is kept in memory instead, so a failed
+	 * transaction is still rolled back.
+	 */
+	BULK_LOAD(SQLiteConfig.JournalMode.OFF, SQLiteConfig.SynchronousMode.OFF, -262_144, 65_536, SQLiteConfig.TempStore.MEMORY, 0L, SQLiteConfig.LockingMode.NORMAL),
+
+	/**
+	 * Like {@link #BULK_LOAD}, but additionally keeps the database lock for the lifetime of the connection,
+	 * saving the lock handling per transaction. Only usable with a single connection to the database.
+	 */
+	EXCLUSIVE_BULK_LOAD(SQLiteConfig.JournalMode.OFF, SQLiteConfig.SynchronousMode.OFF, -262_144, 65_536, SQLiteConfig.TempStore.MEMORY, 0L, SQLiteConfig.LockingMode.EXCLUSIVE),
+
+	/**
+	 * For serving many readers while occasionally writing: WAL lets readers continue during a write transaction,
+	 * synchronous=NORMAL only syncs at checkpoints, and the database is memory-mapped for reading.
+	 */
+	CONCURRENT_READ(SQLiteConfig.JournalMode.WAL, SQLiteConfig.SynchronousMode.NORMAL, -65_536, 4_096, SQLiteConfig.TempStore.MEMORY, 268_435_456L, SQLiteConfig.LockingMode.NORMAL);
+
+	private final SQLiteConfig.JournalMode journalMode;
+	private final SQLiteConfig.SynchronousMode synchronous;
+	private final Integer cacheSize; // negative values are KiB, positive values are pages
+	private final Integer pageSize; // only has an effect on new databases
+	private final SQLiteConfig.TempStore tempStore;
+	private final Long mmapSize;
+	private final SQLiteConfig.LockingMode lockingMode;
+
+	SqlitePragmaProfile(SQLiteConfig.JournalMode journalMode, SQLiteConfig.SynchronousMode synchronous, Integer cacheSize, Integer pageSize,
+											SQLiteConfig.TempStore tempStore, Long mmapSize, SQLiteConfig.LockingMode lockingMode) {
+		this.journalMode = journalMode;
+		this.synchronous = synchronous;
+		this.cacheSize = cacheSize;
+		this.pageSize = pageSize;
+		this.tempStore = tempStore;
+		this.mmapSize = mmapSize;
+		this.lockingMode = lockingMode;
+	}
+
+	/**
+	 * @return a configuration to open new connections with this profile.
+	 */
+	public SQLiteConfig toConfig() {
+		SQLiteConfig config = new SQLiteConfig();
+		config.enforceForeignKeys(true);
+		if (this.journalMode != null) {
+			config.setJournalMode(this.journalMode);
+		}
+		if (this.synchronous != null) {
+			config.setSynchronous(this.synchronous);
+		}
+		if (this.cacheSize != null) {
+			config.setCacheSize(this.cacheSize);
+		}
+		if (this.pageSize != null) {
+			config.setPageSize(this.pageSize);
+		}
+		if (this.tempStore != null) {
+			config.setTempStore(this.tempStore);
+		}
+		if (this.mmapSize != null) {
+			config.setPragma(SQLiteConfig.Pragma.MMAP_SIZE, this.mmapSize.toString());
+		}
+		if (this.lockingMode != null) {
+			config.setLockingMode(this.lockingMode);
+		}
+		return config;
+	}
+
+	/**
+	 * Applies the pragmas of this profile that can safely be switched on an open connection
+	 * outside a transaction. <code>page_size</code> and <code>locking_mode</code> are left untouched,
+	 * as is the journal mode of a database in WAL mode, since leaving WAL requires exclusive access.
+	 * <code>journal_mode=OFF</code> is applied as <code>MEMORY</code>: without a journal, SQLite cannot roll back
+	 * the transaction the profile is applied for, e.g. the replace of {@link SqliteDB#replaceLinks(java.util.Iterator, int, SqlitePragmaProfile)}.
+	 *
+	 * @return the previous values of the changed pragmas, to be passed to {@link #restore(Connection, Map)}.
+	 */
+	public Map<String, String> applyTo(Connection connection) throws SQLException {
+		Map<String, String> previous = new LinkedHashMap<>();
+		try (Statement stmt = connection.createStatement()) {
+			if (this.journalMode != null) {
+				String current = queryPragma(stmt, "journal_mode");
+				if (!current.equalsIgnoreCase(SQLiteConfig.JournalMode.WAL.getValue())) {
+					previous.put("journal_mode", current);
+					SQLiteConfig.JournalMode journalMode = this.journalMode == SQLiteConfig.JournalMode.OFF ? SQLiteConfig.JournalMode.MEMORY : this.journalMode;
+					stmt.execute("PRAGMA journal_mode=" + journalMode.getValue());
+				}
+			}
+			if (this.synchronous != null) {
+				previous.put("synchronous", queryPragma(stmt, "synchronous"));
+				stmt.execute("PRAGMA synchronous=" + this.synchronous.getValue());
+			}
+			if (this.cacheSize != null) {
+				previous.put("cache_size", queryPragma(stmt, "cache_size"));
+				stmt.execute("PRAGMA cache_size=" + this.cacheSize);
+			}
+			if (this.tempStore != null) {
+				previous.put("temp_store", queryPragma(stmt, "temp_store"));
+				stmt.execute("PRAGMA temp_store=" + this.tempStore.getValue());
+			}
+			if (this.mmapSize != null) {
+				previous.put("mmap_size", queryPragma(stmt, "mmap_size"));
+				stmt.execute("PRAGMA mmap_size=" + this.mmapSize);
+			}
+		}
+		return previous;
+	}
+
+	/**
+	 * Restores pragma values returned by {@link #applyTo(Connection)}.
+	 */
+	public static void restore(Connection connection, Map<String, String> previous) throws SQLException {
+		try (Statement stmt = connection.createStatement()) {
+			for (Map.Entry<String, String> e : previous.entrySet()) {
+				stmt.execute("PRAGMA " + e.getKey() + "=" + e.getValue());
+			}
+		}
+	}
+
+	private static String queryPragma(Statement stmt, String pragma) throws SQLException {
+		try (ResultSet rs = stmt.executeQuery("PRAGMA " + pragma)) {
+			rs.next();
+			return rs.getString(1);
+		}
+	}
+
+}
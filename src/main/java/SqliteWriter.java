@@ -0,0 +1,67 @@
+import org.jooq.ConnectionProvider;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The single, long-lived write connection of a SQLite database. SQLite only allows one writer at a time,
+ * so instead of letting several connections compete for the database lock (and fail with SQLITE_BUSY),
+ * all write operations are queued for this connection in the order they arrive.
+ *
+ * As jOOQ {@link ConnectionProvider}, the connection is held exclusively from {@link #acquire()} until
+ * {@link #release(Connection)}, which jOOQ calls around every query and around every transaction.
+ */
+class SqliteWriter implements ConnectionProvider, AutoCloseable {
+
+	private final Connection connection;
+	private final ReentrantLock lock = new ReentrantLock(true);
+	private volatile MetricsRegistry metrics = MetricsRegistry.NONE;
+
+	SqliteWriter(Connection connection) {
+		this.connection = connection;
+	}
+
+	/**
+	 * Records how long every {@link #acquire()} waited for the connection.
+	 */
+	void setMetrics(MetricsRegistry metrics) {
+		this.metrics = metrics;
+	}
+
+	@Override
+	public Connection acquire() {
+		MetricsRegistry metrics = this.metrics;
+		if (metrics == MetricsRegistry.NONE) {
+			this.lock.lock();
+		} else {
+			long start = System.nanoTime();
+			this.lock.lock();
+			metrics.recordConnectionAcquire(System.nanoTime() - start);
+		}
+		return this.connection;
+	}
+
+	@Override
+	public void release(Connection connection) {
+		this.lock.unlock();
+	}
+
+	/**
+	 * @return the number of threads waiting for the write connection.
+	 */
+	int getQueueLength() {
+		return this.lock.getQueueLength();
+	}
+
+	@Override
+	public void close() throws SQLException {
+		this.lock.lock();
+		try {
+			this.connection.close();
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+}
@@ -0,0 +1,69 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps the prepared statements of one long-lived connection open between calls, keyed by their SQL.
+ *
+ * A statement is used by one caller at a time: {@link #execute(Connection, String, StatementFunction)} takes it out
+ * of the cache and puts it back afterwards. Concurrent callers with the same SQL get a new statement, which is closed
+ * afterwards if the cache already has one. Statements of other connections, e.g. borrowed from a pool, are not cached
+ * but closed right away, as the pool closes them anyway when the connection is returned. A statement that failed is closed as well.
+ */
+class StatementCache implements AutoCloseable {
+
+	private final Connection connection;
+	private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+	StatementCache(Connection connection) {
+		this.connection = connection;
+	}
+
+	interface StatementFunction<T> {
+		T apply(PreparedStatement stmt) throws SQLException;
+	}
+
+	/**
+	 * Runs <code>function</code> with a prepared statement for <code>sql</code> on <code>conn</code>, reusing the cached one if possible.
+	 */
+	<T> T execute(Connection conn, String sql, StatementFunction<T> function) throws SQLException {
+		boolean cacheable = conn == this.connection;
+		PreparedStatement stmt = null;
+		if (cacheable) {
+			synchronized (this.statements) {
+				stmt = this.statements.remove(sql);
+			}
+		}
+		if (stmt == null) {
+			stmt = conn.prepareStatement(sql);
+		}
+		boolean cached = false;
+		try {
+			T result = function.apply(stmt);
+			if (cacheable) {
+				stmt.clearParameters();
+				synchronized (this.statements) {
+					cached = this.statements.putIfAbsent(sql, stmt) == null;
+				}
+			}
+			return result;
+		} finally {
+			if (!cached) {
+				stmt.close();
+			}
+		}
+	}
+
+	@Override
+	public void close() throws SQLException {
+		synchronized (this.statements) {
+			for (PreparedStatement stmt : this.statements.values()) {
+				stmt.close();
+			}
+			this.statements.clear();
+		}
+	}
+
+}
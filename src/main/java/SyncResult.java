@@ -0,0 +1,22 @@
+/**
+ * Number of links changed by a <code>syncLinks</code> call.
+ */
+public class SyncResult {
+
+	public final int inserted;
+	public final int updated;
+	public final int deleted;
+	public final int unchanged;
+
+	public SyncResult(int inserted, int updated, int deleted, int unchanged) {
+		this.inserted = inserted;
+		this.updated = updated;
+		this.deleted = deleted;
+		this.unchanged = unchanged;
+	}
+
+	@Override
+	public String toString() {
+		return "inserted=" + this.inserted + ", updated=" + this.updated + ", deleted=" + this.deleted + ", unchanged=" + this.unchanged;
+	}
+}
@@ -0,0 +1,97 @@
+import org.jooq.Field;
+import org.jooq.Table;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Which columns of a table a {@link BulkLoader} writes, and how their values are taken from an object of type <code>T</code>.
+ *
+ * @param <T> the type of the loaded objects, e.g. {@link LinkDAO}
+ */
+public class TableMapping<T> {
+
+	public final Table<?> table;
+	/** The written columns, in the order of the values. */
+	public final List<Field<?>> fields;
+	private final Function<? super T, Object[]> values;
+	private final int[] nullTypes;
+
+	private TableMapping(Table<?> table, List<Field<?>> fields, Function<? super T, Object[]> values) {
+		this.table = table;
+		this.fields = List.copyOf(fields);
+		this.values = values;
+		this.nullTypes = this.fields.stream().mapToInt(field -> nullType(field.getType())).toArray();
+	}
+
+	/**
+	 * @param values returns the values of <code>fields</code> for one object, in their order; <code>null</code> for SQL <code>NULL</code>
+	 */
+	public static <T> TableMapping<T> of(Table<?> table, List<Field<?>> fields, Function<? super T, Object[]> values) {
+		return new TableMapping<>(table, fields, values);
+	}
+
+	public int size() {
+		return this.fields.size();
+	}
+
+	Object[] values(T row) {
+		return this.values.apply(row);
+	}
+
+	/** The unquoted column names, separated by commas, e.g. for a hand-written <code>INSERT</code> or <code>COPY</code>. */
+	String columns() {
+		return this.fields.stream().map(Field::getName).collect(Collectors.joining(", "));
+	}
+
+	/**
+	 * Binds the values of <code>row</code> starting at <code>index</code>, <code>NULL</code>s with a type matching the Java type of their column.
+	 */
+	void bind(PreparedStatement stmt, int index, T row) throws SQLException {
+		Object[] values = values(row);
+		for (int i = 0; i < values.length; i++) {
+			Object value = values[i];
+			if (value == null) {
+				stmt.setNull(index + i, this.nullTypes[i]);
+			} else if (value instanceof String) {
+				stmt.setString(index + i, (String) value);
+			} else if (value instanceof Double) {
+				stmt.setDouble(index + i, (Double) value);
+			} else if (value instanceof Long) {
+				stmt.setLong(index + i, (Long) value);
+			} else if (value instanceof byte[]) {
+				stmt.setBytes(index + i, (byte[]) value);
+			} else {
+				stmt.setObject(index + i, value);
+			}
+		}
+	}
+
+	/**
+	 * The type to bind <code>NULL</code> with. Not the SQL type of the jOOQ data type: the generated code declares
+	 * text as <code>CLOB</code> and bytes as <code>BLOB</code>, which pgjdbc binds as large object ids.
+	 */
+	private static int nullType(Class<?> type) {
+		if (type == String.class) {
+			return Types.VARCHAR;
+		}
+		if (type == byte[].class) {
+			return Types.BINARY;
+		}
+		if (type == Double.class) {
+			return Types.DOUBLE;
+		}
+		if (type == Long.class) {
+			return Types.BIGINT;
+		}
+		if (type == Integer.class) {
+			return Types.INTEGER;
+		}
+		return Types.OTHER;
+	}
+
+}
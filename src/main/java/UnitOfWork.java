@@ -0,0 +1,11 @@
+import org.jooq.DSLContext;
+
+/**
+ * Work run by {@link LinkDatabase#inUnitOfWork(UnitOfWork)}: all statements of <code>tx</code> run on one connection, in one transaction.
+ */
+@FunctionalInterface
+public interface UnitOfWork<T> {
+
+	T execute(DSLContext tx) throws Exception;
+
+}
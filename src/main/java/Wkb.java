@@ -0,0 +1,404 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Converts between WKT and little-endian 2D WKB.
+ *
+ * Supports POINT, LINESTRING, POLYGON, MULTIPOINT, MULTILINESTRING and MULTIPOLYGON, which covers the geometries
+ * of network links. A WKB LINESTRING takes 9 + 16 * n bytes, while its WKT text usually takes twice as much
+ * and has to be parsed to get the coordinates back.
+ */
+public class Wkb {
+
+	private static final byte LITTLE_ENDIAN = 1;
+
+	private static final int POINT = 1;
+	private static final int LINESTRING = 2;
+	private static final int POLYGON = 3;
+	private static final int MULTIPOINT = 4;
+	private static final int MULTILINESTRING = 5;
+	private static final int MULTIPOLYGON = 6;
+
+	private static final String[] TYPE_NAMES = { null, "POINT", "LINESTRING", "POLYGON", "MULTIPOINT", "MULTILINESTRING", "MULTIPOLYGON" };
+
+	private Wkb() {
+	}
+
+	public static byte[] fromWkt(CharSequence wkt) {
+		WktParser parser = new WktParser(wkt);
+		int type = parser.readType();
+		ByteBuffer buffer = ByteBuffer.allocate(parser.encodedSize(type)).order(ByteOrder.LITTLE_ENDIAN);
+		parser.writeGeometry(type, buffer);
+		parser.expectEnd();
+		return buffer.array();
+	}
+
+	public static String toWkt(byte[] wkb) {
+		ByteBuffer buffer = ByteBuffer.wrap(wkb);
+		StringBuilder wkt = new StringBuilder(wkb.length * 2);
+		appendGeometry(buffer, wkt, true);
+		if (buffer.hasRemaining()) {
+			throw new IllegalArgumentException("Unexpected bytes after WKB geometry at offset " + buffer.position());
+		}
+		return wkt.toString();
+	}
+
+	/**
+	 * The bounding box of the WKB geometry, or <code>null</code> if it is empty.
+	 */
+	public static Envelope envelope(byte[] wkb) {
+		double[] bounds = { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
+		expandEnvelope(ByteBuffer.wrap(wkb), bounds);
+		return bounds[0] <= bounds[2] ? new Envelope(bounds[0], bounds[1], bounds[2], bounds[3]) : null;
+	}
+
+	private static void expandEnvelope(ByteBuffer buffer, double[] bounds) {
+		buffer.order(buffer.get() == LITTLE_ENDIAN ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+		int type = buffer.getInt();
+		switch (type) {
+			case POINT -> expandEnvelope(bounds, buffer.getDouble(), buffer.getDouble());
+			case LINESTRING -> expandEnvelope(buffer, bounds, buffer.getInt());
+			case POLYGON -> {
+				int ringCount = buffer.getInt();
+				for (int i = 0; i < ringCount; i++) {
+					expandEnvelope(buffer, bounds, buffer.getInt());
+				}
+			}
+			case MULTIPOINT, MULTILINESTRING, MULTIPOLYGON -> {
+				int partCount = buffer.getInt();
+				for (int i = 0; i < partCount; i++) {
+					expandEnvelope(buffer, bounds);
+				}
+			}
+			default -> throw new IllegalArgumentException("Unsupported WKB geometry type " + type);
+		}
+	}
+
+	private static void expandEnvelope(ByteBuffer buffer, double[] bounds, int pointCount) {
+		for (int i = 0; i < pointCount; i++) {
+			expandEnvelope(bounds, buffer.getDouble(), buffer.getDouble());
+		}
+	}
+
+	private static void expandEnvelope(double[] bounds, double x, double y) {
+		if (Double.isNaN(x) || Double.isNaN(y)) {
+			return; // empty point
+		}
+		bounds[0] = Math.min(bounds[0], x);
+		bounds[1] = Math.min(bounds[1], y);
+		bounds[2] = Math.max(bounds[2], x);
+		bounds[3] = Math.max(bounds[3], y);
+	}
+
+	private static void appendGeometry(ByteBuffer buffer, StringBuilder wkt, boolean withTypeName) {
+		buffer.order(buffer.get() == LITTLE_ENDIAN ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+		int type = buffer.getInt();
+		if (type < POINT || type > MULTIPOLYGON) {
+			throw new IllegalArgumentException("Unsupported WKB geometry type " + type);
+		}
+		if (withTypeName) {
+			wkt.append(TYPE_NAMES[type]).append(' ');
+		}
+		switch (type) {
+			case POINT -> {
+				double x = buffer.getDouble();
+				double y = buffer.getDouble();
+				if (Double.isNaN(x) && Double.isNaN(y)) {
+					wkt.append("EMPTY");
+				} else {
+					wkt.append('(');
+					appendCoordinate(wkt, x, y);
+					wkt.append(')');
+				}
+			}
+			case LINESTRING -> appendCoordinates(buffer, wkt);
+			case POLYGON -> {
+				int ringCount = buffer.getInt();
+				if (ringCount == 0) {
+					wkt.append("EMPTY");
+					return;
+				}
+				wkt.append('(');
+				for (int i = 0; i < ringCount; i++) {
+					if (i > 0) {
+						wkt.append(", ");
+					}
+					appendCoordinates(buffer, wkt);
+				}
+				wkt.append(')');
+			}
+			default -> {
+				int partCount = buffer.getInt();
+				if (partCount == 0) {
+					wkt.append("EMPTY");
+					return;
+				}
+				wkt.append('(');
+				for (int i = 0; i < partCount; i++) {
+					if (i > 0) {
+						wkt.append(", ");
+					}
+					appendGeometry(buffer, wkt, false);
+				}
+				wkt.append(')');
+			}
+		}
+	}
+
+	private static void appendCoordinates(ByteBuffer buffer, StringBuilder wkt) {
+		int pointCount = buffer.getInt();
+		if (pointCount == 0) {
+			wkt.append("EMPTY");
+			return;
+		}
+		wkt.append('(');
+		for (int i = 0; i < pointCount; i++) {
+			if (i > 0) {
+				wkt.append(", ");
+			}
+			appendCoordinate(wkt, buffer.getDouble(), buffer.getDouble());
+		}
+		wkt.append(')');
+	}
+
+	private static void appendCoordinate(StringBuilder wkt, double x, double y) {
+		appendOrdinate(wkt, x);
+		wkt.append(' ');
+		appendOrdinate(wkt, y);
+	}
+
+	private static void appendOrdinate(StringBuilder wkt, double value) {
+		if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+			wkt.append((long) value);
+		} else {
+			wkt.append(value);
+		}
+	}
+
+	/**
+	 * Minimal WKT reader. The text is scanned twice: once to compute the size of the WKB,
+	 * once to write it, so no intermediate coordinate lists are needed.
+	 */
+	private static class WktParser {
+
+		private final CharSequence wkt;
+		private int pos = 0;
+
+		WktParser(CharSequence wkt) {
+			this.wkt = wkt;
+		}
+
+		int readType() {
+			skipWhitespace();
+			int start = this.pos;
+			while (this.pos < this.wkt.length() && Character.isLetter(this.wkt.charAt(this.pos))) {
+				this.pos++;
+			}
+			String name = this.wkt.subSequence(start, this.pos).toString().toUpperCase();
+			for (int type = POINT; type <= MULTIPOLYGON; type++) {
+				if (TYPE_NAMES[type].equals(name)) {
+					return type;
+				}
+			}
+			throw error("Unsupported WKT geometry type '" + name + "'");
+		}
+
+		int encodedSize(int type) {
+			int start = this.pos;
+			int size = measureGeometry(type);
+			this.pos = start;
+			return size;
+		}
+
+		void expectEnd() {
+			skipWhitespace();
+			if (this.pos != this.wkt.length()) {
+				throw error("Unexpected text after geometry");
+			}
+		}
+
+		private int measureGeometry(int type) {
+			if (readEmpty()) {
+				return type == POINT ? 21 : 9;
+			}
+			switch (type) {
+				case POINT:
+					expect('(');
+					skipCoordinate();
+					expect(')');
+					return 21;
+				case LINESTRING:
+					return 9 + 16 * skipCoordinates();
+				case POLYGON:
+				case MULTILINESTRING:
+				case MULTIPOINT:
+				case MULTIPOLYGON:
+					int size = 9;
+					expect('(');
+					do {
+						switch (type) {
+							case POLYGON -> size += 4 + 16 * skipCoordinates();
+							case MULTILINESTRING -> size += measureGeometry(LINESTRING);
+							case MULTIPOINT -> size += measurePoint();
+							default -> size += measureGeometry(POLYGON);
+						}
+					} while (readComma());
+					expect(')');
+					return size;
+				default:
+					throw new IllegalArgumentException("Unsupported geometry type " + type);
+			}
+		}
+
+		/** MULTIPOINT allows both <code>(1 2, 3 4)</code> and <code>((1 2), (3 4))</code>. */
+		private int measurePoint() {
+			skipWhitespace();
+			if (peek() == '(') {
+				return measureGeometry(POINT);
+			}
+			skipCoordinate();
+			return 21;
+		}
+
+		void writeGeometry(int type, ByteBuffer buffer) {
+			buffer.put(LITTLE_ENDIAN);
+			buffer.putInt(type);
+			if (readEmpty()) {
+				if (type == POINT) {
+					buffer.putDouble(Double.NaN).putDouble(Double.NaN);
+				} else {
+					buffer.putInt(0);
+				}
+				return;
+			}
+			switch (type) {
+				case POINT -> {
+					expect('(');
+					writeCoordinate(buffer);
+					expect(')');
+				}
+				case LINESTRING -> writeCoordinates(buffer);
+				default -> {
+					int countPosition = buffer.position();
+					buffer.putInt(0);
+					int count = 0;
+					expect('(');
+					do {
+						switch (type) {
+							case POLYGON -> writeCoordinates(buffer);
+							case MULTILINESTRING -> writeGeometry(LINESTRING, buffer);
+							case MULTIPOINT -> writePoint(buffer);
+							default -> writeGeometry(POLYGON, buffer);
+						}
+						count++;
+					} while (readComma());
+					expect(')');
+					buffer.putInt(countPosition, count);
+				}
+			}
+		}
+
+		private void writePoint(ByteBuffer buffer) {
+			skipWhitespace();
+			if (peek() == '(') {
+				writeGeometry(POINT, buffer);
+			} else {
+				buffer.put(LITTLE_ENDIAN);
+				buffer.putInt(POINT);
+				writeCoordinate(buffer);
+			}
+		}
+
+		private void writeCoordinates(ByteBuffer buffer) {
+			int countPosition = buffer.position();
+			buffer.putInt(0);
+			int count = 0;
+			expect('(');
+			do {
+				writeCoordinate(buffer);
+				count++;
+			} while (readComma());
+			expect(')');
+			buffer.putInt(countPosition, count);
+		}
+
+		private void writeCoordinate(ByteBuffer buffer) {
+			buffer.putDouble(readNumber());
+			buffer.putDouble(readNumber());
+		}
+
+		private int skipCoordinates() {
+			int count = 0;
+			expect('(');
+			do {
+				skipCoordinate();
+				count++;
+			} while (readComma());
+			expect(')');
+			return count;
+		}
+
+		private void skipCoordinate() {
+			readNumber();
+			readNumber();
+		}
+
+		private double readNumber() {
+			skipWhitespace();
+			int start = this.pos;
+			while (this.pos < this.wkt.length()) {
+				char c = this.wkt.charAt(this.pos);
+				if ((c >= '0' && c <= '9') || c == '.' || c == '-' || c == '+' || c == 'e' || c == 'E') {
+					this.pos++;
+				} else {
+					break;
+				}
+			}
+			if (start == this.pos) {
+				throw error("Expected a number");
+			}
+			return Envelope.parseNumber(this.wkt, start, this.pos);
+		}
+
+		private boolean readEmpty() {
+			skipWhitespace();
+			if (this.pos + 5 <= this.wkt.length() && "EMPTY".contentEquals(this.wkt.subSequence(this.pos, this.pos + 5).toString().toUpperCase())) {
+				this.pos += 5;
+				return true;
+			}
+			return false;
+		}
+
+		private boolean readComma() {
+			skipWhitespace();
+			if (peek() == ',') {
+				this.pos++;
+				return true;
+			}
+			return false;
+		}
+
+		private void expect(char c) {
+			skipWhitespace();
+			if (peek() != c) {
+				throw error("Expected '" + c + "'");
+			}
+			this.pos++;
+		}
+
+		private char peek() {
+			return this.pos < this.wkt.length() ? this.wkt.charAt(this.pos) : 0;
+		}
+
+		private void skipWhitespace() {
+			while (this.pos < this.wkt.length() && Character.isWhitespace(this.wkt.charAt(this.pos))) {
+				this.pos++;
+			}
+		}
+
+		private IllegalArgumentException error(String message) {
+			return new IllegalArgumentException(message + " at position " + this.pos + " in WKT: " + this.wkt);
+		}
+	}
+
+}
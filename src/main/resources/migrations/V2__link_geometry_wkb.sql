@@ -0,0 +1,19 @@
+-- Links can store their geometry either as WKT text in `geometry` or as WKB in `geometryWkb`,
+-- so `geometry` becomes nullable. SQLite cannot drop a NOT NULL constraint, so the table is rebuilt.
+CREATE TABLE Link_v2
+(
+	id          ${identityColumnType},
+	linkId      VARCHAR(1000) NOT NULL,
+	geometry    TEXT,
+	geometryWkb ${binaryColumnType}
+);
+
+INSERT INTO Link_v2 (id, linkId, geometry) SELECT id, linkId, geometry FROM Link;
+
+DROP TABLE Link;
+
+ALTER TABLE Link_v2 RENAME TO Link;
+
+CREATE INDEX Link_linkId ON Link (linkId);
+
+${afterLinkRebuild}
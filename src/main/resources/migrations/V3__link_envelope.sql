@@ -0,0 +1,8 @@
+-- Bounding box of the geometry, computed when links are written, with a spatial index for envelope queries.
+-- Links written before this migration have no bounding box until they are written again.
+ALTER TABLE Link ADD COLUMN minX DOUBLE PRECISION;
+ALTER TABLE Link ADD COLUMN minY DOUBLE PRECISION;
+ALTER TABLE Link ADD COLUMN maxX DOUBLE PRECISION;
+ALTER TABLE Link ADD COLUMN maxY DOUBLE PRECISION;
+
+${linkEnvelopeIndex}
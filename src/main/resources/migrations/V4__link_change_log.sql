@@ -0,0 +1,14 @@
+-- Every change of a link, numbered in commit order, so consumers can read the changes since the sequence they last read
+-- instead of all links. Replacing all links is logged as one reset (kind 'R') instead of a change per link,
+-- consumers that read a reset reload all links. See LinkChangeLog.
+CREATE TABLE Link_change
+(
+	seq    ${sequenceColumnType},
+	kind   CHAR(1)       NOT NULL,
+	id     BIGINT,
+	linkId VARCHAR(1000)
+);
+
+CREATE INDEX Link_change_id ON Link_change (id);
+
+${linkChangeTriggers}
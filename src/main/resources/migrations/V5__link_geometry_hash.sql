@@ -0,0 +1,3 @@
+-- Hash of the stored geometry, written with the geometry, so syncLinks compares links by reading only linkId and hash.
+-- Links written before this migration have no hash and are rewritten by their next sync.
+ALTER TABLE Link ADD COLUMN geometryHash BIGINT;
@@ -0,0 +1,3 @@
+-- Numbers the changes of a transaction when it commits instead of locking the change log while links are written,
+-- so writers of links do not wait for each other and the sequence still follows the commit order. See DBUtils.
+${linkChangeCommitOrder}
@@ -0,0 +1,71 @@
+import org.flywaydb.core.api.FlywayException;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DBUtilsTest {
+
+	@Test
+	void testMigrationManifest() {
+		assertEquals(DBUtils.scanMigrationChecksums("/migrations"), DBUtils.loadManifest("/migrations"),
+			"src/main/resources/" + DBUtils.MANIFEST_NAME + " must list the Flyway checksums of all migrations");
+	}
+
+	@Test
+	void testFastStart() throws IOException, SQLException {
+		File dbFile = new File("test-performance.db");
+		if (dbFile.exists()) {
+			dbFile.delete();
+		}
+		DBUtils.setStartupMode(DBUtils.StartupMode.FAST_START);
+		try {
+			// a new database is migrated by Flyway
+			try (SqliteDB db = SqliteDB.createSqliteWithHikari(dbFile)) {
+				SchemaCheck check = db.getSchemaCheck();
+				assertEquals(SchemaCheck.Outcome.MIGRATED, check.outcome);
+				assertEquals("6", check.version);
+				assertTrue(check.flywayNanos > 0);
+			}
+
+			// an up-to-date one is not
+			try (SqliteDB db = SqliteDB.createSqliteWithHikari(dbFile)) {
+				SchemaCheck check = db.getSchemaCheck();
+				assertEquals(SchemaCheck.Outcome.UP_TO_DATE, check.outcome);
+				assertEquals("6", check.version);
+				assertTrue(check.historyNanos > 0);
+				assertEquals(0, check.flywayNanos);
+			}
+			try (SqliteDB db = SqliteDB.createSqliteWithWriterAndReaders(dbFile, 2)) {
+				assertEquals(SchemaCheck.Outcome.UP_TO_DATE, db.getSchemaCheck().outcome);
+			}
+
+			// a schema history that differs from the manifest is left to Flyway, which rejects the changed checksum
+			try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dbFile.getAbsolutePath());
+					 Statement stmt = conn.createStatement()) {
+				stmt.executeUpdate("UPDATE flyway_schema_history SET checksum = 42 WHERE version = '3'");
+			}
+			assertThrows(FlywayException.class, () -> SqliteDB.createSqliteWithDataSource(dbFile).close());
+		} finally {
+			DBUtils.setStartupMode(DBUtils.StartupMode.MIGRATE);
+		}
+
+		dbFile.delete();
+		try (SqliteDB db = SqliteDB.createSqliteWithDataSource(dbFile)) {
+			assertEquals(SchemaCheck.Outcome.MIGRATED, db.getSchemaCheck().outcome);
+		}
+		try (SqliteDB db = SqliteDB.createSqliteWithDataSource(dbFile)) {
+			SchemaCheck check = db.getSchemaCheck();
+			assertEquals(SchemaCheck.Outcome.UNCHANGED, check.outcome);
+			assertEquals("6", check.version);
+			assertEquals(0, check.historyNanos);
+		}
+	}
+
+}
@@ -0,0 +1,58 @@
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LinkBatchTest {
+
+	@Test
+	void testAddAndGet() {
+		LinkBatch batch = new LinkBatch(2);
+		for (int i = 0; i < 10_000; i++) {
+			batch.add(i, "link-" + i, "LINESTRING (0 0, " + i + " 1)");
+		}
+		batch.add(10_000, "no geometry", null);
+		batch.add(10_001, "", "");
+
+		assertEquals(10_002, batch.size());
+		assertEquals(1234, batch.getId(1234));
+		assertEquals("link-1234", batch.getLinkId(1234));
+		assertEquals("LINESTRING (0 0, 1234 1)", batch.getGeometry(1234));
+		assertNull(batch.getGeometry(10_000));
+		assertNull(batch.geometry(10_000, new ByteSlice()));
+		assertEquals("", batch.getLinkId(10_001));
+		assertEquals("", batch.getGeometry(10_001));
+		assertThrows(IndexOutOfBoundsException.class, () -> batch.getLinkId(10_002));
+	}
+
+	@Test
+	void testUtf8() {
+		String linkId = "Zürich–Genève 🚆";
+		LinkBatch batch = new LinkBatch();
+		batch.add(1, linkId, "POINT (1 2)");
+		batch.addUtf8(2, linkId.getBytes(StandardCharsets.UTF_8), null);
+
+		assertEquals(linkId, batch.getLinkId(0));
+		assertEquals(linkId, batch.getLinkId(1));
+		assertArrayEquals(linkId.getBytes(StandardCharsets.UTF_8), batch.linkId(0, new ByteSlice()).toByteArray());
+		// an unpaired surrogate is replaced, like String.getBytes does
+		batch.add(3, "a\uD83Db", null);
+		assertEquals("a?b", batch.getLinkId(2));
+	}
+
+	@Test
+	void testGeometrySlice() {
+		LinkBatch batch = LinkBatch.of(List.of(
+				new LinkDAO(1, "1", "LINESTRING (0 0, 1 1)"),
+				new LinkDAO(2, "2", "LINESTRING (-5 2, 3 7)")));
+		ByteSlice slice = batch.geometry(1, new ByteSlice());
+		assertEquals("LINESTRING (-5 2, 3 7)", slice.toString());
+		Envelope envelope = Envelope.ofWkt(slice);
+		assertEquals(-5, envelope.minX);
+		assertEquals(7, envelope.maxY);
+		assertEquals("LINESTRING (-5 2, 3 7)", Wkb.toWkt(Wkb.fromWkt(slice)));
+	}
+
+}
@@ -0,0 +1,66 @@
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LinkMetricsTest {
+
+	@Test
+	void testHistogram() {
+		LinkMetrics.Histogram histogram = new LinkMetrics.Histogram();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getPercentile(99));
+
+		for (int i = 1; i <= 1000; i++) {
+			histogram.record(i);
+		}
+		histogram.record(-5); // counted as 0
+		assertEquals(1001, histogram.getCount());
+		assertEquals(500_500, histogram.getSum());
+		assertEquals(1000, histogram.getMax());
+		assertEquals(500.0, histogram.getMean(), 0.5);
+		// 500 falls into [256, 512), 990 into [512, 1024), which is capped by the max
+		assertEquals(511, histogram.getPercentile(50));
+		assertEquals(1000, histogram.getPercentile(99));
+		assertEquals(0, histogram.getPercentile(0));
+
+		histogram.record(Long.MAX_VALUE);
+		assertEquals(Long.MAX_VALUE, histogram.getPercentile(100));
+
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMax());
+	}
+
+	@Test
+	void testRegistry() {
+		LinkMetrics metrics = new LinkMetrics();
+		metrics.recordStatement("READ", 2_000_000, 0);
+		metrics.recordStatement("BATCH", 4_000_000, 100);
+		metrics.recordStatement("BATCH", 6_000_000, 50);
+		metrics.recordBatch(100);
+		metrics.recordBatch(50);
+		metrics.recordConnectionAcquire(1_000_000);
+		metrics.recordConnectionUsage(4);
+		metrics.registerGauge("pool.active", () -> 3);
+
+		assertEquals(1, metrics.getStatementCounts().get("READ"));
+		assertEquals(2, metrics.getStatementCounts().get("BATCH"));
+		assertEquals(5.0, metrics.getStatementMeanMillis().get("BATCH"), 1e-9);
+		assertEquals(6.0, metrics.getStatementMaxMillis().get("BATCH"), 1e-9);
+		assertEquals(150, metrics.getRows("BATCH"));
+		assertNull(metrics.getRowsAffected().get("READ"));
+		assertEquals(2, metrics.getBatchCount());
+		assertEquals(75.0, metrics.getMeanBatchSize(), 1e-9);
+		assertEquals(1, metrics.getConnectionAcquireCount());
+		assertEquals(1.0, metrics.getConnectionAcquireMeanMillis(), 1e-9);
+		assertEquals(1, metrics.getConnectionReturnCount());
+		assertEquals(4.0, metrics.getConnectionUsageMaxMillis(), 1e-9);
+		assertEquals(3, metrics.getGauges().get("pool.active"));
+
+		metrics.reset();
+		assertTrue(metrics.getStatementCounts().isEmpty());
+		assertEquals(0, metrics.getBatchCount());
+		assertEquals(3, metrics.getGauges().get("pool.active"));
+	}
+
+}
@@ -0,0 +1,74 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongObjectHashMapTest {
+
+	@Test
+	void testPutGetRemove() {
+		LongObjectHashMap<String> map = new LongObjectHashMap<>();
+		assertNull(map.put(1, "a"));
+		assertNull(map.put(-1, "b"));
+		assertNull(map.put(Long.MAX_VALUE, "c"));
+		assertEquals("a", map.put(1, "d"));
+		assertEquals(3, map.size());
+		assertEquals("d", map.get(1));
+		assertEquals("b", map.get(-1));
+		assertEquals("c", map.get(Long.MAX_VALUE));
+		assertNull(map.get(0));
+
+		assertEquals("b", map.remove(-1));
+		assertNull(map.remove(-1));
+		assertNull(map.get(-1));
+		assertEquals(2, map.size());
+
+		map.clear();
+		assertEquals(0, map.size());
+		assertNull(map.get(1));
+		assertThrows(IllegalArgumentException.class, () -> map.put(1, null));
+	}
+
+	@Test
+	void testResize() {
+		LongObjectHashMap<Long> map = new LongObjectHashMap<>();
+		for (long i = 0; i < 100_000; i++) {
+			map.put(i, i);
+		}
+		assertEquals(100_000, map.size());
+		assertTrue(map.capacity() >= 100_000 * 4 / 3);
+		for (long i = 0; i < 100_000; i++) {
+			assertEquals(i, map.get(i));
+		}
+	}
+
+	@Test
+	void testRandomOperations() {
+		// few distinct keys in a small map, so probe sequences overlap and removals have to shift entries back
+		Random random = new Random(4711);
+		LongObjectHashMap<Long> map = new LongObjectHashMap<>();
+		Map<Long, Long> expected = new HashMap<>();
+		for (int i = 0; i < 200_000; i++) {
+			long key = random.nextInt(64) * 1024L;
+			if (random.nextBoolean()) {
+				assertEquals(expected.put(key, (long) i), map.put(key, (long) i));
+			} else if (random.nextInt(4) == 0 && map.size() > 0) {
+				int slot = random.nextInt(map.capacity());
+				if (map.valueAt(slot) != null) {
+					expected.remove(map.keyAt(slot));
+					map.removeAt(slot);
+				}
+			} else {
+				assertEquals(expected.remove(key), map.remove(key));
+			}
+			assertEquals(expected.size(), map.size());
+		}
+		for (long key = 0; key < 64 * 1024L; key += 1024) {
+			assertEquals(expected.get(key), map.get(key));
+		}
+	}
+
+}
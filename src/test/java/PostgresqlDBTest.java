@@ -1,35 +1,72 @@
 import org.jooq.impl.DSL;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.testcontainers.containers.GenericContainer;
-import org.testcontainers.junit.jupiter.Container;
-import org.testcontainers.junit.jupiter.Testcontainers;
 import org.testcontainers.utility.DockerImageName;
 
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
-@Testcontainers
+/**
+ * Runs against a PostgreSQL container, which needs Docker. To use a running server instead, e.g. a locally started
+ * PostgreSQL binary, set <code>-Dpostgres.host</code>, <code>-Dpostgres.port</code> and, if the user differs,
+ * <code>-Dpostgres.user</code> and <code>-Dpostgres.password</code>. The user needs to be allowed to create databases.
+ */
 class PostgresqlDBTest {
 
 	private final static String PG_DBNAME = "test-db";
-	private final static String PG_USERNAME = "postgresTest";
-	private final static String PG_PASSWORD = "just_for_tests";
+	private final static String PG_HOST = System.getProperty("postgres.host");
+	private final static int PG_PORT = Integer.parseInt(System.getProperty("postgres.port", "5432"));
+	private final static String PG_USERNAME = System.getProperty("postgres.user", "postgresTest");
+	private final static String PG_PASSWORD = System.getProperty("postgres.password", "just_for_tests");
 
 	private static int COUNTER = 0;
 
-	@Container
-	public static GenericContainer postgres = new GenericContainer(DockerImageName.parse("postgres:14.5-alpine"))
-			.withExposedPorts(5432)
-			.withEnv("POSTGRES_USER", PG_USERNAME)
-			.withEnv("POSTGRES_PASSWORD", PG_PASSWORD);
+	private static GenericContainer<?> postgres;
+
+	@BeforeAll
+	static void startPostgres() {
+		if (PG_HOST == null) {
+			postgres = new GenericContainer<>(DockerImageName.parse("postgres:14.5-alpine"))
+					.withExposedPorts(5432)
+					.withEnv("POSTGRES_USER", PG_USERNAME)
+					.withEnv("POSTGRES_PASSWORD", PG_PASSWORD);
+			postgres.start();
+		}
+	}
+
+	@AfterAll
+	static void stopPostgres() {
+		if (postgres != null) {
+			postgres.stop();
+		}
+	}
+
+	private static String host() {
+		return postgres == null ? PG_HOST : postgres.getHost();
+	}
+
+	private static int port() {
+		return postgres == null ? PG_PORT : postgres.getFirstMappedPort();
+	}
 
 	private void runPerformanceTest(PostgresqlDB db) throws IOException {
 		int linkCount = 50_000;
@@ -67,10 +104,26 @@ class PostgresqlDBTest {
 		assertEquals(linkCount, db.getLinks().size());
 	}
 
+	private void runPerformanceTest_Streaming(PostgresqlDB db) throws IOException {
+		int linkCount = 50_000;
+
+		long start = System.currentTimeMillis();
+		db.replaceLinks(IntStream.range(0, linkCount).mapToObj(i -> new LinkDAO(i, Integer.toString(i), "\"LINESTRING (561770.1124776328 5801163.18893374, 561887.6550922041 5801106.550209084)\"")));
+		long end = System.currentTimeMillis();
+		long durationRetrieval = end - start;
+
+		int expectedDurationInMilliseconds = 10_000;
+		assertTrue(durationRetrieval < expectedDurationInMilliseconds, "The goal is to store " + linkCount + " links in less than " + expectedDurationInMilliseconds / 1000 + " seconds. Actual time was " + durationRetrieval + " milliseconds.");
+		assertEquals(linkCount, db.getLinks().size());
+		try (Stream<LinkDAO> links = db.streamLinks(1_000)) {
+			assertEquals(linkCount, links.count());
+		}
+	}
+
 	@Test
 	void testPostgresql_jooq_Hikari() throws IOException {
-		String host = postgres.getHost();
-		Integer port = postgres.getFirstMappedPort();
+		String host = host();
+		int port = port();
 		String dbName = PG_DBNAME + COUNTER++;
 
 		createPostgresqlDatabase(host, port, dbName, PG_USERNAME, PG_PASSWORD);
@@ -82,8 +135,8 @@ class PostgresqlDBTest {
 
 	@Test
 	void testPostgresql_jooq_Connection() throws IOException {
-		String host = postgres.getHost();
-		Integer port = postgres.getFirstMappedPort();
+		String host = host();
+		int port = port();
 		String dbName = PG_DBNAME + COUNTER++;
 
 		createPostgresqlDatabase(host, port, dbName, PG_USERNAME, PG_PASSWORD);
@@ -95,8 +148,8 @@ class PostgresqlDBTest {
 
 	@Test
 	void testPostgresql_Jdbc_Hikari() throws IOException, SQLException {
-		String host = postgres.getHost();
-		Integer port = postgres.getFirstMappedPort();
+		String host = host();
+		int port = port();
 		String dbName = PG_DBNAME + COUNTER++;
 
 		createPostgresqlDatabase(host, port, dbName, PG_USERNAME, PG_PASSWORD);
@@ -106,14 +159,494 @@ class PostgresqlDBTest {
 		}
 	}
 
+	@Test
+	void testPostgresql_Jdbc_ThenSyncLinks_Hikari() throws IOException, SQLException {
+		String host = host();
+		int port = port();
+		String dbName = PG_DBNAME + COUNTER++;
+
+		createPostgresqlDatabase(host, port, dbName, PG_USERNAME, PG_PASSWORD);
+
+		try (PostgresqlDB db = PostgresqlDB.createPostgreWithHikari(host, port, dbName, PG_USERNAME, PG_PASSWORD)) {
+			// explicit ids, the new links of the sync get ids after them
+			List<LinkDAO> links = IntStream.range(1, 1_001).mapToObj(i -> new LinkDAO(i, Integer.toString(i), "LINESTRING (0 0, " + i + " 1)")).toList();
+			db.replaceLinks_JDBC(links);
+			List<LinkDAO> synced = new ArrayList<>(links);
+			synced.add(new LinkDAO(0, "new", "LINESTRING (0 0, 1 2)"));
+			assertEquals(1, db.syncLinks(synced.iterator(), 100).inserted);
+			assertEquals(1_001, db.getLinks().get(1_000).id);
+		}
+	}
+
+	@Test
+	void testPostgresql_jooq_Streaming_Hikari() throws IOException {
+		String host = host();
+		int port = port();
+		String dbName = PG_DBNAME + COUNTER++;
+
+		createPostgresqlDatabase(host, port, dbName, PG_USERNAME, PG_PASSWORD);
+
+		try (PostgresqlDB db = PostgresqlDB.createPostgreWithHikari(host, port, dbName, PG_USERNAME, PG_PASSWORD)) {
+			runPerformanceTest_Streaming(db);
+		}
+	}
+
+	@Test
+	void testPostgresql_jooq_MultiRowValues_Hikari() throws IOException {
+		String host = host();
+		int port = port();
+		String dbName = PG_DBNAME + COUNTER++;
+
+		createPostgresqlDatabase(host, port, dbName, PG_USERNAME, PG_PASSWORD);
+
+		try (PostgresqlDB db = PostgresqlDB.createPostgreWithHikari(host, port, dbName, PG_USERNAME, PG_PASSWORD)) {
+			db.setInsertStrategy(InsertStrategy.MULTI_ROW_VALUES);
+			runPerformanceTest_Streaming(db);
+		}
+	}
+
+	@Test
+	void testPostgresql_Copy_Hikari() throws IOException {
+		String host = host();
+		int port = port();
+		String dbName = PG_DBNAME + COUNTER++;
+
+		createPostgresqlDatabase(host, port, dbName, PG_USERNAME, PG_PASSWORD);
+
+		try (PostgresqlDB db = PostgresqlDB.createPostgreWithHikari(host, port, dbName, PG_USERNAME, PG_PASSWORD)) {
+			db.setInsertStrategy(InsertStrategy.COPY);
+			runPerformanceTest_Streaming(db);
+
+			// values that need escaping in the text format, and WKB as bytea
+			db.setGeometryEncoding(GeometryEncoding.WKB);
+			db.replaceLinks(Stream.of(
+					new LinkDAO(0, "tab\tnewline\nbackslash\\ Zürich", "LINESTRING (0 0, 1 1)"),
+					new LinkDAO(1, "\\N", "POINT (-1.5 2e-3)")));
+			List<LinkDAO> links = db.getLinks();
+			assertEquals(2, links.size());
+			assertEquals("tab\tnewline\nbackslash\\ Zürich", links.get(0).linkId);
+			assertEquals("LINESTRING (0 0, 1 1)", links.get(0).getGeometryWkt());
+			assertEquals("\\N", links.get(1).linkId);
+			assertEquals(1, db.getLinksInEnvelope(-2, 0, -1, 1).size());
+
+			// the copy runs in the transaction of the truncate, a failing copy keeps the old links
+			assertThrows(RuntimeException.class, () -> db.replaceLinks(Stream.of(new LinkDAO(0, null, "POINT (0 0)"))));
+			assertEquals(2, db.getLinks().size());
+		}
+	}
+
+	@Test
+	void testPostgresql_jooq_ShadowTable_Hikari() throws IOException {
+		String host = host();
+		int port = port();
+		String dbName = PG_DBNAME + COUNTER++;
+
+		createPostgresqlDatabase(host, port, dbName, PG_USERNAME, PG_PASSWORD);
+
+		try (PostgresqlDB db = PostgresqlDB.createPostgreWithHikari(host, port, dbName, PG_USERNAME, PG_PASSWORD)) {
+			db.replaceLinks_ShadowTable(IntStream.range(0, 1_000).mapToObj(i -> new LinkDAO(i, "old" + i, "LINESTRING (0 0, 1 1)")).iterator(), 100);
+			int linkCount = 50_000;
+			db.replaceLinks_ShadowTable(IntStream.range(0, linkCount).mapToObj(i -> new LinkDAO(i, Integer.toString(i), "LINESTRING (561770.1124776328 5801163.18893374, 561887.6550922041 5801106.550209084)")).iterator(), PostgresqlDB.DEFAULT_BATCH_SIZE);
+			List<LinkDAO> links = db.getLinks();
+			assertEquals(linkCount, links.size());
+			assertEquals("0", links.get(0).linkId);
+		}
+	}
+
+	@Test
+	void testPostgresql_EnvelopeQuery_Hikari() throws IOException {
+		String host = host();
+		int port = port();
+		String dbName = PG_DBNAME + COUNTER++;
+
+		createPostgresqlDatabase(host, port, dbName, PG_USERNAME, PG_PASSWORD);
+
+		try (PostgresqlDB db = PostgresqlDB.createPostgreWithHikari(host, port, dbName, PG_USERNAME, PG_PASSWORD)) {
+			// a 100 x 100 grid of diagonal links, 10 units apart
+			List<LinkDAO> links = IntStream.range(0, 10_000)
+				.mapToObj(i -> new LinkDAO(i, Integer.toString(i), "LINESTRING (" + (i % 100) * 10 + " " + (i / 100) * 10 + ", " + ((i % 100) * 10 + 5) + " " + ((i / 100) * 10 + 5) + ")"))
+				.toList();
+			db.replaceLinks(links.stream());
+			List<String> expected = links.stream().filter(l -> l.getEnvelope().intersects(100, 100, 200, 150)).map(l -> l.linkId).sorted().toList();
+			List<String> actual = db.getLinksInEnvelope(100, 100, 200, 150).stream().map(l -> l.linkId).sorted().toList();
+			assertEquals(expected, actual);
+			assertEquals(4, db.getLinksInEnvelope(10, 10, 20, 20).size());
+		}
+	}
+
+	@Test
+	void testPostgresql_GetLinkById_Connection() throws IOException {
+		String host = host();
+		int port = port();
+		String dbName = PG_DBNAME + COUNTER++;
+
+		createPostgresqlDatabase(host, port, dbName, PG_USERNAME, PG_PASSWORD);
+
+		try (PostgresqlDB db = PostgresqlDB.createPostgreWithConnection(host, port, dbName, PG_USERNAME, PG_PASSWORD)) {
+			db.replaceLinks(IntStream.range(0, 1_000).mapToObj(i -> new LinkDAO(i, Integer.toString(i), "LINESTRING (0 0, " + i + " 1)")));
+			long firstId = db.getLinks().get(0).id;
+			for (int i = 0; i < 1_000; i++) {
+				assertEquals(Integer.toString(i), db.getLinkById(firstId + i).linkId);
+			}
+			assertEquals(null, db.getLinkById(firstId + 1_000));
+			assertEquals(db.getLinkById_jooq(firstId + 500).linkId, db.getLinkById(firstId + 500).linkId);
+		}
+	}
+
+	@Test
+	void testPostgresql_LinkCache_Hikari() throws IOException {
+		String host = host();
+		int port = port();
+		String dbName = PG_DBNAME + COUNTER++;
+
+		createPostgresqlDatabase(host, port, dbName, PG_USERNAME, PG_PASSWORD);
+
+		try (PostgresqlDB db = PostgresqlDB.createPostgreWithHikari(host, port, dbName, PG_USERNAME, PG_PASSWORD)) {
+			db.replaceLinks(IntStream.range(0, 1_000).mapToObj(i -> new LinkDAO(i, Integer.toString(i), "LINESTRING (0 0, " + i + " 1)")));
+			LinkCache cache = new LinkCache(db, 1_000_000);
+			long firstId = cache.getLinks().get(0).id;
+			assertEquals("LINESTRING (0 0, 10 1)", cache.getLinkById(firstId + 10).geometry);
+			assertEquals(1, cache.getHitCount());
+
+			db.replaceLinks(IntStream.range(0, 1_000).mapToObj(i -> new LinkDAO(i, Integer.toString(i), "LINESTRING (0 0, " + i + " 2)")));
+			assertEquals(0, cache.size());
+			firstId = cache.getLinks().get(0).id;
+			assertEquals("LINESTRING (0 0, 10 2)", cache.getLinkById(firstId + 10).geometry);
+		}
+	}
+
+	@Test
+	void testPostgresql_LinkBatch_Hikari() throws IOException {
+		String host = host();
+		int port = port();
+		String dbName = PG_DBNAME + COUNTER++;
+
+		createPostgresqlDatabase(host, port, dbName, PG_USERNAME, PG_PASSWORD);
+
+		try (PostgresqlDB db = PostgresqlDB.createPostgreWithHikari(host, port, dbName, PG_USERNAME, PG_PASSWORD)) {
+			int linkCount = 50_000;
+			LinkBatch batch = new LinkBatch(linkCount);
+			for (int i = 0; i < linkCount; i++) {
+				batch.add(i, "Zürich " + i, "LINESTRING (0 0, " + i + " 1)");
+			}
+			db.replaceLinks(batch);
+
+			List<LinkDAO> links = db.getLinks();
+			assertEquals(linkCount, links.size());
+			assertEquals("Zürich 10", links.get(10).linkId);
+
+			LinkBatch read = db.getLinkBatch();
+			assertEquals(linkCount, read.size());
+			assertEquals(links.get(10).id, read.getId(10));
+			assertEquals("Zürich 10", read.getLinkId(10));
+			assertEquals("LINESTRING (0 0, 10 1)", read.getGeometry(10));
+		}
+	}
+
+	@Test
+	void testPostgresql_Async_Hikari() throws IOException {
+		String host = host();
+		int port = port();
+		String dbName = PG_DBNAME + COUNTER++;
+
+		createPostgresqlDatabase(host, port, dbName, PG_USERNAME, PG_PASSWORD);
+
+		try (PostgresqlDB db = PostgresqlDB.createPostgreWithHikari(host, port, dbName, PG_USERNAME, PG_PASSWORD);
+				 AsyncLinkDatabase async = new AsyncLinkDatabase(db, 4, 10)) {
+			List<LinkDAO> links = IntStream.range(0, 1_000).mapToObj(i -> new LinkDAO(i, Integer.toString(i), "LINESTRING (0 0, " + i + " 1)")).toList();
+			async.replaceLinksAsync(links).join();
+			long firstId = async.getLinksAsync().join().get(0).id;
+			List<CompletableFuture<LinkDAO>> reads = IntStream.range(0, 1_000).mapToObj(i -> async.getLinkByIdAsync(firstId + i)).toList();
+			CompletableFuture<SyncResult> sync = async.syncLinksAsync(links.iterator(), 100);
+			for (int i = 0; i < reads.size(); i++) {
+				assertEquals(Integer.toString(i), reads.get(i).join().linkId);
+			}
+			assertEquals(1_000, sync.join().unchanged);
+		}
+	}
+
+	@Test
+	void testPostgresql_Metrics_Hikari() throws Exception {
+		String host = host();
+		int port = port();
+		String dbName = PG_DBNAME + COUNTER++;
+
+		createPostgresqlDatabase(host, port, dbName, PG_USERNAME, PG_PASSWORD);
+
+		try (PostgresqlDB db = PostgresqlDB.createPostgreWithHikari(host, port, dbName, PG_USERNAME, PG_PASSWORD)) {
+			LinkMetrics metrics = new LinkMetrics();
+			db.setMetrics(metrics);
+			List<LinkDAO> links = IntStream.range(0, 1_000).mapToObj(i -> new LinkDAO(i, Integer.toString(i), "LINESTRING (0 0, " + i + " 1)")).toList();
+
+			db.setInsertStrategy(InsertStrategy.COPY);
+			db.replaceLinks(links.iterator(), 100);
+			assertEquals(1, metrics.getStatementHistogram("COPY").getCount());
+			assertEquals(1_000, metrics.getRows("COPY"));
+
+			db.replaceLinks_JDBC(links.iterator(), 300);
+			assertEquals(4, metrics.getBatchCount());
+			assertEquals(300, metrics.getBatchSizeHistogram().getMax());
+			assertEquals(1_000, metrics.getRows("BATCH"));
+
+			long firstId = db.getLinks().get(0).id;
+			assertEquals("0", db.getLinkById(firstId).linkId);
+			assertTrue(metrics.getStatementCounts().get("READ") >= 2);
+			assertTrue(metrics.getConnectionAcquireCount() >= 4);
+			assertEquals(10, metrics.getGauges().get("pool.max"));
+		}
+	}
+
+	@Test
+	void testPostgresql_FastStart_Connection() throws IOException {
+		String host = host();
+		int port = port();
+		String dbName = PG_DBNAME + COUNTER++;
+
+		createPostgresqlDatabase(host, port, dbName, PG_USERNAME, PG_PASSWORD);
+
+		DBUtils.setStartupMode(DBUtils.StartupMode.FAST_START);
+		try {
+			// no schema history yet
+			try (PostgresqlDB db = PostgresqlDB.createPostgreWithHikari(host, port, dbName, PG_USERNAME, PG_PASSWORD)) {
+				assertEquals(SchemaCheck.Outcome.MIGRATED, db.getSchemaCheck().outcome);
+			}
+			try (PostgresqlDB db = PostgresqlDB.createPostgreWithConnection(host, port, dbName, PG_USERNAME, PG_PASSWORD)) {
+				SchemaCheck check = db.getSchemaCheck();
+				assertEquals(SchemaCheck.Outcome.UP_TO_DATE, check.outcome);
+				assertEquals("6", check.version);
+				assertEquals(0, check.flywayNanos);
+			}
+		} finally {
+			DBUtils.setStartupMode(DBUtils.StartupMode.MIGRATE);
+		}
+	}
+
+	@Test
+	void testPostgresql_UnitOfWork_Leak_Hikari() throws Exception {
+		String host = host();
+		int port = port();
+		String dbName = PG_DBNAME + COUNTER++;
+
+		createPostgresqlDatabase(host, port, dbName, PG_USERNAME, PG_PASSWORD);
+
+		// a small pool, so a leaked connection soon blocks all later replaces
+		try (PostgresqlDB db = PostgresqlDB.createPostgreWithHikari(host, port, dbName, PG_USERNAME, PG_PASSWORD, 2)) {
+			LinkMetrics metrics = new LinkMetrics();
+			db.setMetrics(metrics);
+			List<LinkDAO> links = IntStream.range(0, 20).mapToObj(i -> new LinkDAO(i, Integer.toString(i), "LINESTRING (0 0, " + i + " 1)")).toList();
+			List<LinkDAO> invalidLinks = new ArrayList<>(links);
+			invalidLinks.add(new LinkDAO(20, null, null)); // linkId is NOT NULL
+
+			for (int cycle = 0; cycle < 2_100; cycle++) {
+				long acquires = metrics.getConnectionAcquireCount();
+				switch (cycle % 7) {
+					case 0 -> db.replaceLinks(links);
+					case 1 -> db.replaceLinks(links.iterator(), 8);
+					case 2 -> db.replaceLinks(LinkBatch.of(links));
+					case 3 -> db.replaceLinks2(links);
+					case 4 -> db.replaceLinks_JDBC(links);
+					case 5 -> db.syncLinks(links.iterator(), 8);
+					default -> {
+						assertThrows(RuntimeException.class, () -> db.replaceLinks(invalidLinks));
+						assertThrows(RuntimeException.class, () -> db.replaceLinks(invalidLinks.iterator(), 8));
+						acquires++;
+					}
+				}
+				assertEquals(acquires + 1, metrics.getConnectionAcquireCount(), "connections used in cycle " + cycle);
+				assertEquals(metrics.getConnectionAcquireCount(), metrics.getConnectionReturnCount(), "connection leaked in cycle " + cycle);
+			}
+
+			// the failed replaces were rolled back
+			int count = db.inUnitOfWork(tx -> tx.fetchCount(jooq.Tables.LINK));
+			assertEquals(20, count);
+		}
+	}
+
+	@Test
+	void testPostgresql_BulkLoader_Hikari() throws Exception {
+		String host = host();
+		int port = port();
+		String dbName = PG_DBNAME + COUNTER++;
+
+		createPostgresqlDatabase(host, port, dbName, PG_USERNAME, PG_PASSWORD);
+
+		try (PostgresqlDB db = PostgresqlDB.createPostgreWithHikari(host, port, dbName, PG_USERNAME, PG_PASSWORD)) {
+			// any row type, here linkId and WKT only
+			BulkLoader<String[]> loader = db.bulkLoader(TableMapping.of(jooq.Tables.LINK, List.of(jooq.Tables.LINK.LINKID, jooq.Tables.LINK.GEOMETRY), row -> new Object[] {row[0], row[1]}));
+			for (InsertStrategy insertStrategy : InsertStrategy.values()) {
+				loader.setInsertStrategy(insertStrategy);
+				db.replaceRows(loader, IntStream.range(0, 1_000).mapToObj(i -> new String[] {insertStrategy + "-" + i, i % 10 == 0 ? null : "LINESTRING (0 0, " + i + " 1)"}).iterator(), 300);
+				List<LinkDAO> links = db.getLinks();
+				assertEquals(1_000, links.size(), insertStrategy.name());
+				assertEquals(insertStrategy + "-999", links.get(999).linkId);
+				assertEquals(null, links.get(10).geometry);
+
+				db.replaceRows_ShadowTable(loader, IntStream.range(0, 500).mapToObj(i -> new String[] {"shadow-" + i, "LINESTRING (0 0, 1 1)"}).iterator(), 300);
+				links = db.getLinks();
+				assertEquals(500, links.size());
+				assertEquals("shadow-0", links.get(0).linkId);
+			}
+
+			// the swapped table has the key and indexes of the original one, and still draws ids from its sequence
+			List<String> indexNames = db.inUnitOfWork(tx -> tx.fetchValues("SELECT indexname FROM pg_indexes WHERE tablename = 'link' ORDER BY indexname")
+				.stream().map(String.class::cast).toList());
+			assertTrue(indexNames.contains("link_pkey"), indexNames.toString());
+			assertTrue(indexNames.stream().noneMatch(name -> name.endsWith("_staging")), indexNames.toString());
+			db.replaceLinks(List.of(new LinkDAO(0, "new", null)));
+			assertTrue(db.getLinks().get(0).id > 500);
+		}
+	}
+
+	@Test
+	void testPostgresql_GetLinksParallel_Hikari() throws Exception {
+		String host = host();
+		int port = port();
+		String dbName = PG_DBNAME + COUNTER++;
+
+		createPostgresqlDatabase(host, port, dbName, PG_USERNAME, PG_PASSWORD);
+
+		try (PostgresqlDB db = PostgresqlDB.createPostgreWithHikari(host, port, dbName, PG_USERNAME, PG_PASSWORD)) {
+			assertEquals(0, db.forEachLinkParallel(4, i -> link -> {}));
+			db.replaceLinks(IntStream.range(0, 10_000).mapToObj(i -> new LinkDAO(i, Integer.toString(i), "LINESTRING (0 0, " + i + " 1)")).iterator(), 1_000);
+			List<LinkDAO> links = db.getLinks();
+			assertEquals(links.stream().map(link -> link.id).toList(), db.getLinksParallel(4).stream().map(link -> link.id).toList());
+
+			// every third link only, so the ranges are sampled
+			db.syncLinks(IntStream.range(0, 10_000).filter(i -> i % 3 == 0).mapToObj(i -> new LinkDAO(i, Integer.toString(i), "LINESTRING (0 0, " + i + " 1)")).iterator(), 1_000);
+			links = db.getLinks();
+			List<Integer> partitionSizes = new ArrayList<>(List.of(0, 0, 0, 0, 0, 0, 0, 0));
+			List<LinkDAO> parallelLinks = new ArrayList<>();
+			assertEquals(8, db.forEachLinkParallel(8, i -> link -> {
+				synchronized (partitionSizes) {
+					partitionSizes.set(i, partitionSizes.get(i) + 1);
+					parallelLinks.add(link);
+				}
+			}));
+			assertEquals(links.size(), parallelLinks.size());
+			for (int size : partitionSizes) {
+				assertTrue(Math.abs(size - links.size() / 8) <= 1, "unbalanced partitions " + partitionSizes);
+			}
+			assertEquals(links.stream().map(link -> link.id).toList(), db.getLinksParallel(8).stream().map(link -> link.id).toList());
+		}
+		try (PostgresqlDB db = PostgresqlDB.createPostgreWithConnection(host, port, dbName, PG_USERNAME, PG_PASSWORD)) {
+			assertEquals(3_334, db.getLinksParallel(4).size());
+		}
+	}
+
+	@Test
+	void testPostgresql_LinkChanges_Hikari() throws Exception {
+		String host = host();
+		int port = port();
+		String dbName = PG_DBNAME + COUNTER++;
+
+		createPostgresqlDatabase(host, port, dbName, PG_USERNAME, PG_PASSWORD);
+
+		try (PostgresqlDB db = PostgresqlDB.createPostgreWithHikari(host, port, dbName, PG_USERNAME, PG_PASSWORD)) {
+			assertEquals(0, db.getLinkChangeSequence());
+			List<LinkDAO> links = IntStream.range(0, 1_000).mapToObj(i -> new LinkDAO(i, Integer.toString(i), "LINESTRING (0 0, " + i + " 1)")).toList();
+
+			// a replace is logged as one reset
+			db.replaceLinks(links.iterator(), 100);
+			assertEquals(List.of("RESET null"), linkChanges(db, 0));
+			long sequence = db.getLinkChangeSequence();
+
+			List<LinkDAO> synced = new ArrayList<>(links);
+			synced.set(5, new LinkDAO(5, "5", "LINESTRING (5 5, 6 6)"));
+			synced.remove(7);
+			synced.add(new LinkDAO(0, "new", "LINESTRING (1 1, 2 2)"));
+			db.syncLinks(synced.iterator(), 100);
+			assertEquals(List.of("INSERT new", "UPDATE 5", "DELETE 7"), linkChanges(db, sequence));
+			try (Stream<LinkChangeDAO> changes = db.getLinkChangesSince(sequence)) {
+				List<LinkChangeDAO> list = changes.toList();
+				assertEquals("LINESTRING (1 1, 2 2)", list.get(0).link.geometry);
+				assertEquals("LINESTRING (5 5, 6 6)", list.get(1).link.geometry);
+				assertNull(list.get(2).link);
+			}
+			long synchedSequence = db.getLinkChangeSequence();
+
+			// the other replacing write methods, and a truncate outside of them
+			db.replaceLinks(db.getLinkBatch());
+			db.setInsertStrategy(InsertStrategy.COPY);
+			db.replaceLinks(links.iterator(), 100);
+			db.replaceLinks_ShadowTable(links.iterator(), 100);
+			db.inUnitOfWork(tx -> tx.truncate(jooq.Tables.LINK).execute());
+			assertEquals(List.of("RESET null", "RESET null", "RESET null", "RESET null"), linkChanges(db, synchedSequence));
+
+			// the triggers are re-created by the swap of the staging table, and not suspended after a replace
+			db.replaceLinks_ShadowTable(links.iterator(), 100);
+			long swappedSequence = db.getLinkChangeSequence();
+			db.syncLinks(synced.iterator(), 100);
+			db.syncLinks(links.iterator(), 100);
+			assertEquals(List.of("INSERT new", "UPDATE 5", "DELETE 7", "INSERT 7", "UPDATE 5", "DELETE new"), linkChanges(db, swappedSequence));
+
+			// compacting keeps the last change of every link, and nothing before the last reset. 7 is inserted with a new id.
+			assertEquals(10, db.compactLinkChanges(0));
+			assertEquals(List.of("RESET null", "DELETE 7", "INSERT 7", "UPDATE 5", "DELETE new"), linkChanges(db, 0));
+
+			// consumers behind the compacted sequence read a reset
+			long last = db.getLinkChangeSequence();
+			assertEquals(3, db.compactLinkChanges(last - 1));
+			assertEquals(List.of("RESET null", "DELETE new"), linkChanges(db, 0));
+			assertEquals(List.of("DELETE new"), linkChanges(db, last - 1));
+		}
+	}
+
+	@Test
+	void testPostgresql_LinkChanges_ConcurrentWriters() throws Exception {
+		String host = host();
+		int port = port();
+		String dbName = PG_DBNAME + COUNTER++;
+
+		createPostgresqlDatabase(host, port, dbName, PG_USERNAME, PG_PASSWORD);
+
+		try (PostgresqlDB db = PostgresqlDB.createPostgreWithHikari(host, port, dbName, PG_USERNAME, PG_PASSWORD)) {
+			db.replaceLinks(List.of(new LinkDAO(0, "a", "LINESTRING (0 0, 1 1)"), new LinkDAO(0, "b", "LINESTRING (0 0, 1 1)")).iterator(), 100);
+			long sequence = db.getLinkChangeSequence();
+
+			// a writer that has logged its change but not committed yet
+			CountDownLatch written = new CountDownLatch(1);
+			CountDownLatch commit = new CountDownLatch(1);
+			CompletableFuture<Void> first = CompletableFuture.runAsync(() -> db.inUnitOfWork(tx -> {
+				tx.execute("UPDATE link SET geometry = 'LINESTRING (1 1, 2 2)' WHERE linkId = 'a'");
+				written.countDown();
+				try {
+					commit.await();
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+				return null;
+			}));
+			try {
+				assertTrue(written.await(10, TimeUnit.SECONDS));
+
+				// does not wait for it
+				assertTimeoutPreemptively(Duration.ofSeconds(10), () -> db.inUnitOfWork(tx -> tx.execute("UPDATE link SET geometry = 'LINESTRING (2 2, 3 3)' WHERE linkId = 'b'")));
+				assertEquals(List.of("UPDATE b"), linkChanges(db, sequence));
+			} finally {
+				commit.countDown();
+			}
+			first.get(10, TimeUnit.SECONDS);
+
+			// numbered in commit order, after the changes consumers may have read already
+			assertEquals(List.of("UPDATE b", "UPDATE a"), linkChanges(db, sequence));
+		}
+	}
+
+	private static List<String> linkChanges(LinkDatabase db, long sequence) {
+		try (Stream<LinkChangeDAO> changes = db.getLinkChangesSince(sequence)) {
+			return changes.map(change -> change.kind + " " + change.linkId).toList();
+		}
+	}
 
 	public static void createPostgresqlDatabase(String host, int port, String databaseName, String username, String password) {
-		String url = "jdbc:postgresql://" + host + ":" + port + "/";
+		String url = "jdbc:postgresql://" + host + ":" + port + "/postgres";
 		Properties props = new Properties();
 		props.setProperty("user", username);
 		props.setProperty("password", password);
 		try {
 			Connection connection = DriverManager.getConnection(url, props);
+			// left over from an earlier run against the same server
+			DSL.using(connection).dropDatabaseIfExists(databaseName).execute();
 			DSL.using(connection).createDatabase(databaseName).execute();
 		} catch (SQLException e) {
 			throw new RuntimeException(e);
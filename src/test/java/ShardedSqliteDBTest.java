@@ -0,0 +1,134 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardedSqliteDBTest {
+
+	@TempDir
+	File dir;
+
+	private static List<LinkDAO> links(String prefix, int count) {
+		// ids with gaps, to check they are kept
+		return IntStream.range(0, count).mapToObj(i -> new LinkDAO(i * 3L + 1, prefix + i, "LINESTRING (" + i + " 0, " + i + " 1)")).toList();
+	}
+
+	@Test
+	void testHashById() throws IOException {
+		try (ShardedSqliteDB db = ShardedSqliteDB.createSharded(this.dir, "links", LinkPartitioning.hashById(4))) {
+			db.replaceLinks(links("a", 5_000).iterator(), 500);
+			List<LinkDAO> links = db.getLinks();
+			assertEquals(5_000, links.size());
+			for (int i = 0; i < links.size(); i++) {
+				assertEquals(i * 3L + 1, links.get(i).id);
+				assertEquals("a" + i, links.get(i).linkId);
+			}
+			for (SqliteDB shard : db.getShards()) {
+				int shardSize = shard.getLinks().size();
+				assertTrue(shardSize > 1_000 && shardSize < 1_500, "unbalanced shard of " + shardSize);
+			}
+			try (Stream<LinkDAO> stream = db.streamLinks()) {
+				assertEquals(links.stream().map(link -> link.id).toList(), stream.map(link -> link.id).toList());
+			}
+			assertEquals("a100", db.getLinkById(301).linkId);
+			assertNull(db.getLinkById(302));
+			assertEquals(List.of(31L, 34L, 37L), db.getLinksInEnvelope(9.5, 0, 12.5, 1).stream().map(link -> link.id).toList());
+		}
+		// reopened with the same partitioning
+		try (ShardedSqliteDB db = ShardedSqliteDB.createSharded(this.dir, "links", LinkPartitioning.hashById(4), SqliteDB::createSqliteWithConnection)) {
+			assertEquals(5_000, db.getLinks().size());
+			assertEquals("a4999", db.getLinkById(4999 * 3 + 1).linkId);
+		}
+	}
+
+	@Test
+	void testHashByLinkIdAndRange() throws IOException {
+		try (ShardedSqliteDB db = ShardedSqliteDB.createSharded(this.dir, "byLinkId", LinkPartitioning.hashByLinkId(3))) {
+			db.replaceLinks(links("b", 1_000));
+			assertEquals(1_000, db.getLinks().size());
+			assertEquals("b500", db.getLinkById(1501).linkId);
+		}
+		try (ShardedSqliteDB db = ShardedSqliteDB.createSharded(this.dir, "range", LinkPartitioning.rangeById(1_000, 2_000))) {
+			db.replaceLinks(links("c", 1_000));
+			List<LinkDAO> links = db.getLinks();
+			assertEquals(1_000, links.size());
+			assertEquals(2998, links.get(999).id);
+			assertEquals(List.of(333, 334, 333), db.getShards().stream().map(shard -> shard.getLinks().size()).toList());
+			try (Stream<LinkDAO> stream = db.streamLinks()) {
+				assertEquals(links.stream().map(link -> link.id).toList(), stream.map(link -> link.id).toList());
+			}
+		}
+		assertThrows(IllegalArgumentException.class, () -> LinkPartitioning.rangeById(5, 5));
+	}
+
+	@Test
+	void testFailedReplaceRollsBackAllShards() throws IOException {
+		try (ShardedSqliteDB db = ShardedSqliteDB.createSharded(this.dir, "rollback", LinkPartitioning.hashById(4))) {
+			db.replaceLinks(links("old", 2_000));
+
+			// fails in the calling thread, after some batches are loaded
+			Iterator<LinkDAO> failing = Stream.concat(links("new", 3_000).stream(), Stream.generate(() -> {
+				throw new IllegalStateException("source failed");
+			})).iterator();
+			IllegalStateException e = assertThrows(IllegalStateException.class, () -> db.replaceLinks(failing, 100));
+			assertEquals("source failed", e.getMessage());
+			assertOldLinks(db);
+
+			// an error of the source, too
+			Iterator<LinkDAO> erroneous = Stream.concat(links("new", 3_000).stream(), Stream.generate(() -> {
+				throw new StackOverflowError("source failed");
+			})).iterator();
+			assertTimeoutPreemptively(Duration.ofSeconds(60), () -> assertThrows(StackOverflowError.class, () -> db.replaceLinks(erroneous, 100)));
+			assertOldLinks(db);
+
+			// fails in one shard: the linkId must not be null
+			List<LinkDAO> invalid = new ArrayList<>(links("new", 3_000));
+			invalid.set(2_500, new LinkDAO(2_500 * 3L + 1, null, "LINESTRING (0 0, 1 1)"));
+			assertThrows(RuntimeException.class, () -> db.replaceLinks(invalid.iterator(), 100));
+			assertOldLinks(db);
+
+			db.replaceLinks(links("new", 3_000));
+			assertEquals(3_000, db.getLinks().size());
+		}
+	}
+
+	@Test
+	void testConcurrentReplaces() throws IOException {
+		// the SqliteWriter of a shard waits for its lock without timeout
+		try (ShardedSqliteDB db = ShardedSqliteDB.createSharded(this.dir, "concurrent", LinkPartitioning.hashById(2), file -> SqliteDB.createSqliteWithWriterAndReaders(file, 2))) {
+			assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+				List<CompletableFuture<Void>> replaces = new ArrayList<>();
+				for (int i = 0; i < 4; i++) {
+					String prefix = "r" + i + "-";
+					replaces.add(CompletableFuture.runAsync(() -> db.replaceLinks(links(prefix, 2_000).iterator(), 100)));
+				}
+				replaces.forEach(CompletableFuture::join);
+			});
+			List<LinkDAO> links = db.getLinks();
+			assertEquals(2_000, links.size());
+			String prefix = links.get(0).linkId.substring(0, 3);
+			assertTrue(links.stream().allMatch(link -> link.linkId.startsWith(prefix)), "links of different replaces");
+		}
+	}
+
+	private static void assertOldLinks(ShardedSqliteDB db) {
+		List<LinkDAO> links = db.getLinks();
+		assertEquals(2_000, links.size());
+		assertTrue(links.stream().allMatch(link -> link.linkId.startsWith("old")));
+	}
+
+}
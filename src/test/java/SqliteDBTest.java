@@ -1,12 +1,32 @@
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
+import javax.management.ObjectName;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class SqliteDBTest {
@@ -65,6 +85,22 @@ class SqliteDBTest {
 		assertEquals(linkCount, db.getLinks().size());
 	}
 
+	private void runPerformanceTest_Streaming(SqliteDB db) throws IOException {
+		int linkCount = 50_000;
+
+		long start = System.currentTimeMillis();
+		db.replaceLinks(IntStream.range(0, linkCount).mapToObj(i -> new LinkDAO(i, Integer.toString(i), "\"LINESTRING (561770.1124776328 5801163.18893374, 561887.6550922041 5801106.550209084)\"")));
+		long end = System.currentTimeMillis();
+		long durationRetrieval = end - start;
+
+		int expectedDurationInMilliseconds = 10_000;
+		assertTrue(durationRetrieval < expectedDurationInMilliseconds, "The goal is to store " + linkCount + " links in less than " + expectedDurationInMilliseconds / 1000 + " seconds. Actual time was " + durationRetrieval + " milliseconds.");
+		assertEquals(linkCount, db.getLinks().size());
+		try (Stream<LinkDAO> links = db.streamLinks(1_000)) {
+			assertEquals(linkCount, links.count());
+		}
+	}
+
 	@Test
 	void testSqlite_jooq_DataSource() throws IOException {
 		File dbFile = new File("test-performance.db");
@@ -131,4 +167,879 @@ class SqliteDBTest {
 		}
 	}
 
+	@Test
+	void testSqlite_jooq_Streaming_DataSource() throws IOException {
+		File dbFile = new File("test-performance.db");
+		if (dbFile.exists()) {
+			dbFile.delete();
+		}
+		try (SqliteDB db = SqliteDB.createSqliteWithDataSource(dbFile)) {
+			runPerformanceTest_Streaming(db);
+		}
+	}
+
+	@Test
+	void testSqlite_Jdbc_Streaming_Hikari() throws IOException, SQLException {
+		File dbFile = new File("test-performance.db");
+		if (dbFile.exists()) {
+			dbFile.delete();
+		}
+		try (SqliteDB db = SqliteDB.createSqliteWithHikari(dbFile)) {
+			int linkCount = 25_000;
+			db.replaceLinks_JDBC(IntStream.range(0, linkCount).mapToObj(i -> new LinkDAO(i, Integer.toString(i), "LINESTRING (0 0, 1 1)")).iterator(), 1_000);
+			assertEquals(linkCount, db.getLinks().size());
+		}
+	}
+
+	@Test
+	void testSqlite_jooq_BulkLoadProfile_Connection() throws IOException {
+		File dbFile = new File("test-performance.db");
+		if (dbFile.exists()) {
+			dbFile.delete();
+		}
+		try (SqliteDB db = SqliteDB.createSqliteWithConnection(dbFile, SqlitePragmaProfile.EXCLUSIVE_BULK_LOAD)) {
+			runPerformanceTest(db);
+		}
+	}
+
+	@Test
+	void testSqlite_jooq_ConcurrentReadProfile_Hikari() throws IOException {
+		File dbFile = new File("test-performance.db");
+		if (dbFile.exists()) {
+			dbFile.delete();
+		}
+		try (SqliteDB db = SqliteDB.createSqliteWithHikari(dbFile, SqlitePragmaProfile.CONCURRENT_READ)) {
+			int linkCount = 50_000;
+			List<LinkDAO> daos = new ArrayList<>();
+			for (int i = 0; i < linkCount; i++) {
+				daos.add(new LinkDAO(i, Integer.toString(i), "LINESTRING (561770.1124776328 5801163.18893374, 561887.6550922041 5801106.550209084)"));
+			}
+			db.replaceLinks(daos, SqlitePragmaProfile.BULK_LOAD);
+			assertEquals(linkCount, db.getLinks().size());
+			assertTrue(new File(dbFile.getPath() + "-wal").exists(), "database should still be in WAL mode after a bulk load");
+		}
+	}
+
+	@Test
+	void testSqlite_PragmaProfile_SetAndRestored_Hikari() throws IOException, SQLException {
+		File dbFile = new File("test-performance.db");
+		if (dbFile.exists()) {
+			dbFile.delete();
+		}
+		Map<String, String> concurrentRead = Map.of("synchronous", "1", "cache_size", "-65536", "mmap_size", "268435456", "temp_store", "2");
+		Map<String, String> bulkLoad = Map.of("synchronous", "0", "cache_size", "-262144", "mmap_size", "0", "temp_store", "2");
+		try (SqliteDB db = SqliteDB.createSqliteWithHikari(dbFile, SqlitePragmaProfile.CONCURRENT_READ, 2)) {
+			assertEquals(List.of(concurrentRead, concurrentRead), pragmasOfBothConnections(db));
+
+			// the profile is set on a connection outside a transaction, and the previous values restored
+			try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dbFile.getAbsolutePath(), SqlitePragmaProfile.CONCURRENT_READ.toConfig().toProperties())) {
+				Map<String, String> previous = SqlitePragmaProfile.BULK_LOAD.applyTo(conn);
+				assertEquals(bulkLoad, pragmas(conn));
+				SqlitePragmaProfile.restore(conn, previous);
+				assertEquals(concurrentRead, pragmas(conn));
+			}
+
+			// a bulk load leaves the other connection alone, and restores its own one
+			List<Map<String, String>> otherDuringLoad = new ArrayList<>();
+			db.replaceLinks(IntStream.range(0, 10_000).mapToObj(i -> new LinkDAO(i, Integer.toString(i), "LINESTRING (0 0, 1 1)")).peek(link -> {
+				if (link.id == 1) {
+					otherDuringLoad.add(db.inUnitOfWork(tx -> tx.connectionResult(SqliteDBTest::pragmas)));
+				}
+			}).iterator(), 1_000, SqlitePragmaProfile.BULK_LOAD);
+			assertEquals(List.of(concurrentRead), otherDuringLoad);
+			assertEquals(List.of(concurrentRead, concurrentRead), pragmasOfBothConnections(db));
+			assertEquals(10_000, db.getLinks().size());
+		}
+	}
+
+	@Test
+	void testSqlite_BulkLoadProfile_FailedReplaceRollsBack() throws IOException, SQLException {
+		File dbFile = new File("test-performance.db");
+		if (dbFile.exists()) {
+			dbFile.delete();
+		}
+		try (SqliteDB db = SqliteDB.createSqliteWithHikari(dbFile)) {
+			List<LinkDAO> links = IntStream.range(0, 1_000).mapToObj(i -> new LinkDAO(i, Integer.toString(i), "LINESTRING (0 0, " + i + " 1)")).toList();
+			db.replaceLinks(links);
+
+			List<LinkDAO> invalidLinks = new ArrayList<>(links);
+			invalidLinks.add(new LinkDAO(1_000, null, null)); // linkId is NOT NULL
+			assertThrows(RuntimeException.class, () -> db.replaceLinks(invalidLinks.iterator(), 100, SqlitePragmaProfile.BULK_LOAD));
+			assertEquals(links.stream().map(link -> link.linkId).toList(), db.getLinks().stream().map(link -> link.linkId).toList());
+			assertEquals(1, db.getLinksInEnvelope(998.5, 0, 1_000, 1).size());
+		}
+		// the journal is switched to memory, not off, and restored
+		try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dbFile.getAbsolutePath(), SqlitePragmaProfile.DEFAULT.toConfig().toProperties());
+				 Statement stmt = conn.createStatement()) {
+			Map<String, String> previous = SqlitePragmaProfile.BULK_LOAD.applyTo(conn);
+			assertEquals("memory", journalMode(stmt));
+			SqlitePragmaProfile.restore(conn, previous);
+			assertEquals("delete", journalMode(stmt));
+		}
+	}
+
+	private static String journalMode(Statement stmt) throws SQLException {
+		try (ResultSet rs = stmt.executeQuery("PRAGMA journal_mode")) {
+			rs.next();
+			return rs.getString(1);
+		}
+	}
+
+	/** Holds both connections of the pool at once, so each one is queried. */
+	private static List<Map<String, String>> pragmasOfBothConnections(SqliteDB db) {
+		return db.inUnitOfWork(tx1 -> db.inUnitOfWork(tx2 -> List.of(tx1.connectionResult(SqliteDBTest::pragmas), tx2.connectionResult(SqliteDBTest::pragmas))));
+	}
+
+	private static Map<String, String> pragmas(Connection conn) throws SQLException {
+		Map<String, String> pragmas = new HashMap<>();
+		try (Statement stmt = conn.createStatement()) {
+			for (String pragma : List.of("synchronous", "cache_size", "mmap_size", "temp_store")) {
+				try (ResultSet rs = stmt.executeQuery("PRAGMA " + pragma)) {
+					rs.next();
+					pragmas.put(pragma, rs.getString(1));
+				}
+			}
+		}
+		return pragmas;
+	}
+
+	@Test
+	void testSqlite_jooq_MultiRowValues_Hikari() throws IOException {
+		File dbFile = new File("test-performance.db");
+		if (dbFile.exists()) {
+			dbFile.delete();
+		}
+		try (SqliteDB db = SqliteDB.createSqliteWithHikari(dbFile)) {
+			db.setInsertStrategy(InsertStrategy.MULTI_ROW_VALUES);
+			runPerformanceTest_Streaming(db);
+			List<LinkDAO> links = db.getLinks();
+			assertEquals("0", links.get(0).linkId);
+			assertEquals("49999", links.get(links.size() - 1).linkId);
+		}
+	}
+
+	@Test
+	void testSqlite_jooq_ShadowTable_Hikari() throws IOException, SQLException {
+		File dbFile = new File("test-performance.db");
+		if (dbFile.exists()) {
+			dbFile.delete();
+		}
+		try (SqliteDB db = SqliteDB.createSqliteWithHikari(dbFile, SqlitePragmaProfile.CONCURRENT_READ)) {
+			db.replaceLinks_ShadowTable(IntStream.range(0, 1_000).mapToObj(i -> new LinkDAO(i, "old" + i, "LINESTRING (0 0, 1 1)")).iterator(), 100);
+			int linkCount = 50_000;
+			long start = System.currentTimeMillis();
+			db.replaceLinks_ShadowTable(IntStream.range(0, linkCount).mapToObj(i -> new LinkDAO(i, Integer.toString(i), "LINESTRING (561770.1124776328 5801163.18893374, 561887.6550922041 5801106.550209084)")).iterator(), SqliteDB.DEFAULT_BATCH_SIZE);
+			long durationRetrieval = System.currentTimeMillis() - start;
+
+			int expectedDurationInMilliseconds = 10_000;
+			assertTrue(durationRetrieval < expectedDurationInMilliseconds, "The goal is to store " + linkCount + " links in less than " + expectedDurationInMilliseconds / 1000 + " seconds. Actual time was " + durationRetrieval + " milliseconds.");
+			List<LinkDAO> links = db.getLinks();
+			assertEquals(linkCount, links.size());
+			assertEquals("0", links.get(0).linkId);
+		}
+		try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dbFile.getAbsolutePath());
+				 ResultSet rs = conn.createStatement().executeQuery("SELECT name FROM sqlite_master WHERE tbl_name = 'Link' AND type = 'index'")) {
+			assertTrue(rs.next());
+			assertEquals("Link_linkId", rs.getString(1));
+		}
+	}
+
+	@Test
+	void testSqlite_SyncLinks_Hikari() throws IOException {
+		File dbFile = new File("test-performance.db");
+		if (dbFile.exists()) {
+			dbFile.delete();
+		}
+		try (SqliteDB db = SqliteDB.createSqliteWithHikari(dbFile)) {
+			int linkCount = 50_000;
+			db.replaceLinks(IntStream.range(0, linkCount).mapToObj(i -> new LinkDAO(i, Integer.toString(i), "LINESTRING (0 0, " + i + " 1)")));
+
+			// change every 100th link, drop the last 500 and add 500 new ones
+			SyncResult result = db.syncLinks(IntStream.range(0, linkCount + 500)
+				.filter(i -> i < linkCount - 500 || i >= linkCount)
+				.mapToObj(i -> new LinkDAO(i, Integer.toString(i), "LINESTRING (0 0, " + i + (i % 100 == 0 ? " 2)" : " 1)")))
+				.iterator(), 1_000);
+
+			assertEquals(500, result.inserted);
+			assertEquals(495, result.updated);
+			assertEquals(500, result.deleted);
+			assertEquals(linkCount - 500 - 495, result.unchanged);
+			List<LinkDAO> links = db.getLinks();
+			assertEquals(linkCount, links.size());
+			assertEquals("LINESTRING (0 0, 100 2)", links.stream().filter(l -> l.linkId.equals("100")).findFirst().orElseThrow().geometry);
+		}
+	}
+
+	@Test
+	void testSqlite_SyncLinks_ComparesStoredHashOnly() throws IOException, SQLException {
+		File dbFile = new File("test-performance.db");
+		if (dbFile.exists()) {
+			dbFile.delete();
+		}
+		List<LinkDAO> links = IntStream.range(0, 1_200).mapToObj(i -> new LinkDAO(i, Integer.toString(i), "LINESTRING (0 0, " + i + " 1)")).toList();
+		try (SqliteDB db = SqliteDB.createSqliteWithHikari(dbFile)) {
+			db.replaceLinks(links);
+		}
+		// change the stored geometries behind the back of the hash: a sync that read them would rewrite every link
+		try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dbFile.getAbsolutePath());
+				 Statement stmt = conn.createStatement()) {
+			stmt.executeUpdate("UPDATE Link SET geometry = 'LINESTRING (9 9, 9 9)'");
+		}
+		try (SqliteDB db = SqliteDB.createSqliteWithHikari(dbFile)) {
+			SyncResult result = db.syncLinks(links.iterator(), 100);
+			assertEquals(1_200, result.unchanged);
+			assertEquals(0, result.inserted + result.updated + result.deleted);
+			assertEquals("LINESTRING (9 9, 9 9)", db.getLinks().get(0).geometry);
+
+			// links without a hash, e.g. written before it was stored, are rewritten
+			db.inUnitOfWork(tx -> tx.execute("UPDATE Link SET geometryHash = NULL WHERE linkId = '7'"));
+			result = db.syncLinks(links.iterator(), 100);
+			assertEquals(1, result.updated);
+			assertEquals(1_199, result.unchanged);
+			assertEquals("LINESTRING (0 0, 7 1)", db.getLinkById(db.getLinks().get(7).id).geometry);
+		}
+	}
+
+	@Test
+	void testSqlite_SyncLinks_DuplicateLinkIds() throws IOException {
+		File dbFile = new File("test-performance.db");
+		if (dbFile.exists()) {
+			dbFile.delete();
+		}
+		try (SqliteDB db = SqliteDB.createSqliteWithHikari(dbFile)) {
+			db.replaceLinks(List.of(
+				new LinkDAO(0, "a", "LINESTRING (0 0, 1 1)"),
+				new LinkDAO(1, "dup", "LINESTRING (0 0, 2 2)"),
+				new LinkDAO(2, "dup", "LINESTRING (0 0, 3 3)")));
+
+			// duplicates in the incoming links are rejected, and nothing is written
+			List<LinkDAO> duplicates = List.of(new LinkDAO(0, "b", "LINESTRING (0 0, 1 1)"), new LinkDAO(0, "b", "LINESTRING (0 0, 1 1)"));
+			assertThrows(IllegalArgumentException.class, () -> db.syncLinks(duplicates.iterator(), 100));
+			assertEquals(List.of("a", "dup", "dup"), db.getLinks().stream().map(link -> link.linkId).toList());
+			// also in different chunks
+			List<LinkDAO> distantDuplicates = IntStream.range(0, LinkSync.CHUNK_SIZE + 2).mapToObj(i -> new LinkDAO(0, i == LinkSync.CHUNK_SIZE + 1 ? "0" : Integer.toString(i), "LINESTRING (0 0, 1 1)")).toList();
+			assertThrows(IllegalArgumentException.class, () -> db.syncLinks(distantDuplicates.iterator(), 100));
+			assertEquals(List.of("a", "dup", "dup"), db.getLinks().stream().map(link -> link.linkId).toList());
+
+			// stored duplicates are replaced by the one incoming link
+			SyncResult result = db.syncLinks(List.of(
+				new LinkDAO(0, "a", "LINESTRING (0 0, 1 1)"),
+				new LinkDAO(0, "dup", "LINESTRING (0 0, 3 3)")).iterator(), 100);
+			assertEquals(1, result.inserted);
+			assertEquals(0, result.updated);
+			assertEquals(2, result.deleted);
+			assertEquals(1, result.unchanged);
+			List<LinkDAO> links = db.getLinks();
+			assertEquals(List.of("a", "dup"), links.stream().map(link -> link.linkId).toList());
+			assertEquals("LINESTRING (0 0, 3 3)", links.get(1).geometry);
+			assertEquals(List.of(links.get(1).id), db.getLinksInEnvelope(2.5, 2.5, 3, 3).stream().map(link -> link.id).toList());
+		}
+	}
+
+	@Test
+	void testSqlite_WkbEncoding_Hikari() throws IOException {
+		File dbFile = new File("test-performance.db");
+		if (dbFile.exists()) {
+			dbFile.delete();
+		}
+		try (SqliteDB db = SqliteDB.createSqliteWithHikari(dbFile)) {
+			int linkCount = 10_000;
+			db.setGeometryEncoding(GeometryEncoding.WKB);
+			db.setInsertStrategy(InsertStrategy.MULTI_ROW_VALUES);
+			db.replaceLinks(IntStream.range(0, linkCount).mapToObj(i -> new LinkDAO(i, Integer.toString(i), "LINESTRING (0 0, " + i + " 1.5)")));
+
+			List<LinkDAO> links = db.getLinks();
+			assertEquals(linkCount, links.size());
+			LinkDAO link = links.get(100);
+			assertEquals(null, link.geometry);
+			assertEquals(9 + 2 * 16, link.geometryWkb.length);
+			assertEquals("LINESTRING (0 0, 100 1.5)", link.getGeometryWkt());
+
+			// links stored as WKB count as changed when syncing as WKT, and are rewritten
+			db.setGeometryEncoding(GeometryEncoding.WKT);
+			SyncResult result = db.syncLinks(links.iterator(), 1_000);
+			assertEquals(linkCount, result.updated);
+			link = db.getLinks().get(100);
+			assertEquals("LINESTRING (0 0, 100 1.5)", link.geometry);
+			assertEquals(null, link.geometryWkb);
+		}
+	}
+
+	@Test
+	void testSqlite_EnvelopeQuery_Hikari() throws IOException {
+		File dbFile = new File("test-performance.db");
+		if (dbFile.exists()) {
+			dbFile.delete();
+		}
+		try (SqliteDB db = SqliteDB.createSqliteWithHikari(dbFile)) {
+			// a 100 x 100 grid of diagonal links, 10 units apart
+			List<LinkDAO> links = IntStream.range(0, 10_000)
+				.mapToObj(i -> new LinkDAO(i, Integer.toString(i), "LINESTRING (" + (i % 100) * 10 + " " + (i / 100) * 10 + ", " + ((i % 100) * 10 + 5) + " " + ((i / 100) * 10 + 5) + ")"))
+				.toList();
+			db.replaceLinks(links.stream());
+			assertEnvelopeQuery(db, links, 100, 100, 200, 150);
+			assertEquals(4, db.getLinksInEnvelope(10, 10, 20, 20).size()); // touching boxes intersect
+
+			// moved links
+			List<LinkDAO> moved = links.stream()
+				.map(l -> l.id % 7 == 0 ? new LinkDAO(l.id, l.linkId, "LINESTRING (150 120, 151 121)") : l)
+				.toList();
+			db.syncLinks(moved.iterator(), 1_000);
+			assertEnvelopeQuery(db, moved, 100, 100, 200, 150);
+
+			db.setGeometryEncoding(GeometryEncoding.WKB);
+			db.replaceLinks_ShadowTable(links.iterator(), 1_000);
+			assertEnvelopeQuery(db, links, 100, 100, 200, 150);
+			assertEquals(0, db.getLinksInEnvelope(2_000, 2_000, 3_000, 3_000).size());
+		}
+	}
+
+	private static void assertEnvelopeQuery(SqliteDB db, List<LinkDAO> links, double minX, double minY, double maxX, double maxY) {
+		List<String> expected = links.stream().filter(l -> l.getEnvelope().intersects(minX, minY, maxX, maxY)).map(l -> l.linkId).sorted().toList();
+		List<String> actual = db.getLinksInEnvelope(minX, minY, maxX, maxY).stream().map(l -> l.linkId).sorted().toList();
+		assertTrue(expected.size() > 0);
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	void testSqlite_GetLinkById() throws IOException {
+		File dbFile = new File("test-performance.db");
+		if (dbFile.exists()) {
+			dbFile.delete();
+		}
+		try (SqliteDB db = SqliteDB.createSqliteWithConnection(dbFile)) {
+			db.replaceLinks(IntStream.range(0, 1_000).mapToObj(i -> new LinkDAO(i, Integer.toString(i), "LINESTRING (0 0, " + i + " 1)")));
+			long firstId = db.getLinks().get(0).id;
+			// repeated calls reuse the prepared statement of the connection
+			for (int i = 0; i < 1_000; i++) {
+				LinkDAO link = db.getLinkById(firstId + i);
+				assertEquals(Integer.toString(i), link.linkId);
+				assertEquals("LINESTRING (0 0, " + i + " 1)", link.geometry);
+			}
+			assertEquals(null, db.getLinkById(firstId + 1_000));
+			assertEquals(db.getLinkById_jooq(firstId + 500).linkId, db.getLinkById(firstId + 500).linkId);
+		}
+		try (SqliteDB db = SqliteDB.createSqliteWithHikari(dbFile)) {
+			long firstId = db.getLinks().get(0).id;
+			assertEquals("999", db.getLinkById(firstId + 999).linkId);
+			assertEquals(null, db.getLinkById_jooq(firstId + 1_000));
+		}
+	}
+
+	@Test
+	void testSqlite_LinkCache_Hikari() throws IOException {
+		File dbFile = new File("test-performance.db");
+		if (dbFile.exists()) {
+			dbFile.delete();
+		}
+		try (SqliteDB db = SqliteDB.createSqliteWithHikari(dbFile)) {
+			db.replaceLinks(IntStream.range(0, 1_000).mapToObj(i -> new LinkDAO(i, Integer.toString(i), "LINESTRING (0 0, " + i + " 1)")));
+			LinkCache cache = new LinkCache(db, 1_000_000);
+
+			List<LinkDAO> links = cache.getLinks();
+			assertEquals(1_000, links.size());
+			assertTrue(links == cache.getLinks());
+			long firstId = links.get(0).id;
+			assertTrue(links.get(10) == cache.getLinkById(firstId + 10));
+			assertEquals(2, cache.getHitCount());
+			assertEquals(1, cache.getMissCount());
+
+			// a replace invalidates the cache
+			db.replaceLinks(IntStream.range(0, 1_000).mapToObj(i -> new LinkDAO(i, Integer.toString(i), "LINESTRING (0 0, " + i + " 2)")));
+			assertEquals(0, cache.size());
+			firstId = db.getLinks().get(0).id;
+			assertEquals("LINESTRING (0 0, 10 2)", cache.getLinkById(firstId + 10).geometry);
+			assertEquals(null, cache.getLinkById(firstId + 1_000));
+			assertEquals(1, cache.size());
+
+			// so does a sync
+			db.syncLinks(IntStream.range(0, 1_000).mapToObj(i -> new LinkDAO(i, Integer.toString(i), "LINESTRING (0 0, " + i + " 3)")).iterator(), 100);
+			assertEquals(0, cache.size());
+			assertEquals("LINESTRING (0 0, 10 3)", cache.getLinkById(firstId + 10).geometry);
+		}
+		try (SqliteDB db = SqliteDB.createSqliteWithHikari(dbFile)) {
+			long firstId = db.getLinks().get(0).id;
+			long maxBytes = 100 * (LinkCache.estimateSize(db.getLinkById(firstId)) + 100);
+			LinkCache cache = new LinkCache(db, maxBytes);
+
+			// the list does not fit, the links are cached one by one and evicted once the cache is full
+			assertEquals(1_000, cache.getLinks().size());
+			assertEquals(0, cache.size());
+			for (int i = 0; i < 1_000; i++) {
+				assertEquals(Integer.toString(i), cache.getLinkById(firstId + i).linkId);
+				assertTrue(cache.getUsedBytes() <= maxBytes);
+			}
+			assertEquals(1_000, cache.size() + cache.getEvictionCount());
+			assertTrue(cache.size() >= 100 && cache.size() < 200);
+			assertEquals(Integer.toString(999), cache.getLinkById(firstId + 999).linkId);
+			assertEquals(1, cache.getHitCount());
+		}
+	}
+
+	@Test
+	void testSqlite_LinkBatch_Hikari() throws IOException {
+		File dbFile = new File("test-performance.db");
+		if (dbFile.exists()) {
+			dbFile.delete();
+		}
+		try (SqliteDB db = SqliteDB.createSqliteWithHikari(dbFile)) {
+			int linkCount = 50_000;
+			LinkBatch batch = new LinkBatch(linkCount);
+			for (int i = 0; i < linkCount; i++) {
+				batch.add(i, "Zürich " + i, "LINESTRING (0 0, " + i + " 1)");
+			}
+			db.replaceLinks(batch);
+
+			List<LinkDAO> links = db.getLinks();
+			assertEquals(linkCount, links.size());
+			assertEquals("Zürich 10", links.get(10).linkId);
+			assertEquals("LINESTRING (0 0, 10 1)", links.get(10).geometry);
+			// the bounding boxes were written as well, the link i spans from x = 0 to x = i
+			assertEquals(linkCount - 10, db.getLinksInEnvelope(9.5, 0, 10.5, 1).size());
+
+			LinkBatch read = db.getLinkBatch();
+			assertEquals(linkCount, read.size());
+			assertEquals(links.get(10).id, read.getId(10));
+			assertEquals("Zürich 10", read.getLinkId(10));
+			assertEquals("LINESTRING (0 0, 10 1)", read.getGeometry(10));
+
+			// stored as WKB, read back as WKT
+			db.setGeometryEncoding(GeometryEncoding.WKB);
+			db.replaceLinks(read);
+			links = db.getLinks();
+			assertEquals(linkCount, links.size());
+			assertEquals(null, links.get(10).geometry);
+			assertEquals("LINESTRING (0 0, 10 1)", links.get(10).getGeometryWkt());
+			assertEquals("LINESTRING (0 0, 10 1)", db.getLinkBatch().getGeometry(10));
+		}
+	}
+
+	@Test
+	void testSqlite_Async_WriterAndReaders() throws Exception {
+		File dbFile = new File("test-performance.db");
+		if (dbFile.exists()) {
+			dbFile.delete();
+		}
+		try (SqliteDB db = SqliteDB.createSqliteWithWriterAndReaders(dbFile, 4);
+				 AsyncLinkDatabase async = new AsyncLinkDatabase(db, 4, 2)) {
+			List<LinkDAO> links = IntStream.range(0, 1_000).mapToObj(i -> new LinkDAO(i, Integer.toString(i), "LINESTRING (0 0, " + i + " 1)")).toList();
+			async.replaceLinksAsync(links).join();
+			long firstId = async.getLinksAsync().join().get(0).id;
+
+			// many more concurrent reads than readers, while a write is running
+			List<CompletableFuture<LinkDAO>> reads = IntStream.range(0, 2_000).mapToObj(i -> async.getLinkByIdAsync(firstId + i % 1_000)).toList();
+			CompletableFuture<SyncResult> sync = async.syncLinksAsync(links.iterator(), 100);
+			for (int i = 0; i < reads.size(); i++) {
+				assertEquals(Integer.toString(i % 1_000), reads.get(i).join().linkId);
+			}
+			assertEquals(1_000, sync.join().unchanged);
+			assertEquals(1_000, async.getLinkBatchAsync().join().size());
+
+			// while the writer is busy, two writes are queued and the next one is rejected
+			CountDownLatch release = new CountDownLatch(1);
+			CompletableFuture<Object> blocking = async.write(d -> {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+				return null;
+			});
+			while (async.getQueuedWriteCount() > 0) {
+				Thread.sleep(1);
+			}
+			CompletableFuture<Void> queued1 = async.replaceLinksAsync(links.subList(0, 10));
+			CompletableFuture<Void> queued2 = async.replaceLinksAsync(links.subList(0, 20));
+			CompletableFuture<Void> rejected = async.replaceLinksAsync(links.subList(0, 30));
+			assertEquals(2, async.getQueuedWriteCount());
+			CompletionException e = assertThrows(CompletionException.class, rejected::join);
+			assertTrue(e.getCause() instanceof RejectedExecutionException);
+
+			release.countDown();
+			blocking.join();
+			queued1.join();
+			queued2.join();
+			assertEquals(20, async.getLinksAsync().join().size());
+		}
+	}
+
+	@Test
+	void testSqlite_Metrics_Hikari() throws Exception {
+		File dbFile = new File("test-performance.db");
+		if (dbFile.exists()) {
+			dbFile.delete();
+		}
+		try (SqliteDB db = SqliteDB.createSqliteWithHikari(dbFile)) {
+			LinkMetrics metrics = new LinkMetrics();
+			db.setMetrics(metrics);
+			List<LinkDAO> links = IntStream.range(0, 1_000).mapToObj(i -> new LinkDAO(i, Integer.toString(i), "LINESTRING (0 0, " + i + " 1)")).toList();
+
+			// jOOQ batch
+			db.replaceLinks(links);
+			assertEquals(1, metrics.getBatchCount());
+			assertEquals(1_000, metrics.getBatchSizeHistogram().getMax());
+			assertEquals(1_000, metrics.getRows("BATCH"));
+
+			// plain JDBC batch
+			db.replaceLinks_JDBC(links);
+			assertEquals(2, metrics.getBatchCount());
+			assertEquals(2_000, metrics.getRows("BATCH"));
+			assertEquals(2, metrics.getStatementHistogram("BATCH").getCount());
+
+			long reads = metrics.getStatementCounts().getOrDefault("READ", 0L);
+			long firstId = db.getLinks().get(0).id;
+			assertEquals("0", db.getLinkById(firstId).linkId);
+			assertEquals(reads + 2, metrics.getStatementCounts().get("READ"));
+			assertTrue(metrics.getConnectionAcquireCount() >= 4);
+
+			Map<String, Long> gauges = metrics.getGauges();
+			assertEquals(10, gauges.get("pool.max"));
+			assertTrue(gauges.get("pool.total") <= gauges.get("pool.max"));
+
+			ObjectName name = metrics.registerMBean("sqlite-jooq-test:type=LinkMetrics,name=sqlite");
+			try {
+				assertEquals(2L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "BatchCount"));
+			} finally {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+			}
+
+			// no recording any more
+			db.setMetrics(MetricsRegistry.NONE);
+			db.replaceLinks(links);
+			assertEquals(2, metrics.getBatchCount());
+		}
+	}
+
+	@Test
+	void testSqlite_UnitOfWork_Leak_Hikari() throws Exception {
+		File dbFile = new File("test-performance.db");
+		if (dbFile.exists()) {
+			dbFile.delete();
+		}
+		// a small pool, so a leaked connection soon blocks all later replaces
+		try (SqliteDB db = SqliteDB.createSqliteWithHikari(dbFile, SqlitePragmaProfile.DEFAULT, 2)) {
+			LinkMetrics metrics = new LinkMetrics();
+			db.setMetrics(metrics);
+			List<LinkDAO> links = IntStream.range(0, 20).mapToObj(i -> new LinkDAO(i, Integer.toString(i), "LINESTRING (0 0, " + i + " 1)")).toList();
+			List<LinkDAO> invalidLinks = new ArrayList<>(links);
+			invalidLinks.add(new LinkDAO(20, null, null)); // linkId is NOT NULL
+
+			for (int cycle = 0; cycle < 2_100; cycle++) {
+				long acquires = metrics.getConnectionAcquireCount();
+				switch (cycle % 7) {
+					case 0 -> db.replaceLinks(links);
+					case 1 -> db.replaceLinks(links.iterator(), 8);
+					case 2 -> db.replaceLinks(LinkBatch.of(links));
+					case 3 -> db.replaceLinks_ConnectionFromDataSource(links);
+					case 4 -> db.replaceLinks_JDBC(links);
+					case 5 -> db.syncLinks(links.iterator(), 8);
+					default -> {
+						assertThrows(RuntimeException.class, () -> db.replaceLinks(invalidLinks));
+						assertThrows(RuntimeException.class, () -> db.replaceLinks(invalidLinks.iterator(), 8));
+						acquires++;
+					}
+				}
+				assertEquals(acquires + 1, metrics.getConnectionAcquireCount(), "connections used in cycle " + cycle);
+				assertEquals(metrics.getConnectionAcquireCount(), metrics.getConnectionReturnCount(), "connection leaked in cycle " + cycle);
+			}
+
+			// the failed replaces were rolled back
+			int count = db.inUnitOfWork(tx -> tx.fetchCount(jooq.Tables.LINK));
+			assertEquals(20, count);
+			assertEquals(links.get(19).getGeometryWkt(), db.getLinks().get(19).getGeometryWkt());
+		}
+	}
+
+	@Test
+	void testSqlite_BulkLoader_Hikari() throws IOException, SQLException {
+		File dbFile = new File("test-performance.db");
+		if (dbFile.exists()) {
+			dbFile.delete();
+		}
+		try (SqliteDB db = SqliteDB.createSqliteWithHikari(dbFile)) {
+			// any row type, here linkId and WKT only
+			BulkLoader<String[]> loader = db.bulkLoader(TableMapping.of(jooq.Tables.LINK, List.of(jooq.Tables.LINK.LINKID, jooq.Tables.LINK.GEOMETRY), row -> new Object[] {row[0], row[1]}));
+			assertThrows(IllegalArgumentException.class, () -> loader.setInsertStrategy(InsertStrategy.COPY));
+
+			for (InsertStrategy insertStrategy : List.of(InsertStrategy.BATCH, InsertStrategy.MULTI_ROW_VALUES)) {
+				loader.setInsertStrategy(insertStrategy);
+				db.replaceRows(loader, IntStream.range(0, 1_000).mapToObj(i -> new String[] {insertStrategy + "-" + i, i % 10 == 0 ? null : "LINESTRING (0 0, " + i + " 1)"}).iterator(), 300);
+				List<LinkDAO> links = db.getLinks();
+				assertEquals(1_000, links.size(), insertStrategy.name());
+				assertEquals(insertStrategy + "-999", links.get(999).linkId);
+				assertEquals(null, links.get(10).geometry);
+
+				db.replaceRows_ShadowTable(loader, IntStream.range(0, 500).mapToObj(i -> new String[] {"shadow-" + i, "LINESTRING (0 0, 1 1)"}).iterator(), 300);
+				links = db.getLinks();
+				assertEquals(500, links.size());
+				assertEquals("shadow-0", links.get(0).linkId);
+			}
+		}
+		try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dbFile.getAbsolutePath());
+				 ResultSet rs = conn.createStatement().executeQuery("SELECT name FROM sqlite_master WHERE name IN ('Link_linkId', 'Link_staging') ORDER BY name")) {
+			assertTrue(rs.next());
+			assertEquals("Link_linkId", rs.getString(1));
+			assertTrue(!rs.next());
+		}
+	}
+
+	@Test
+	void testSqlite_InMemory_Snapshot() throws IOException {
+		File dbFile = new File("test-performance.db");
+		File snapshotFile = new File("test-performance-snapshot.db");
+		dbFile.delete();
+		snapshotFile.delete();
+		try (SqliteDB db = SqliteDB.createSqliteWithConnection(dbFile)) {
+			db.replaceLinks(IntStream.range(0, 1_000).mapToObj(i -> new LinkDAO(i, "disk" + i, "LINESTRING (" + i + " 0, " + i + " 1)")));
+		}
+		try {
+			try (SqliteDB db = SqliteDB.createSqliteInMemory(dbFile)) {
+				assertEquals(1_000, db.getLinks().size());
+				db.replaceLinks(IntStream.range(0, 2_000).mapToObj(i -> new LinkDAO(i, "memory" + i, "LINESTRING (" + i + " 0, " + i + " 1)")));
+				db.snapshotTo(snapshotFile, SqliteDB.SnapshotMethod.VACUUM_INTO);
+			}
+			try (SqliteDB db = SqliteDB.createSqliteWithConnection(dbFile)) {
+				assertEquals("disk0", db.getLinks().get(0).linkId); // the in-memory writes did not touch the file
+			}
+
+			try (SqliteDB db = SqliteDB.createSqliteInMemoryWithHikari(snapshotFile, 4)) {
+				List<LinkDAO> links = db.getLinks();
+				assertEquals(2_000, links.size());
+				assertEquals("memory1999", links.get(1_999).linkId);
+				db.replaceLinks(IntStream.range(0, 3_000).mapToObj(i -> new LinkDAO(i, "pool" + i, "LINESTRING (" + i + " 0, " + i + " 1)")));
+				List<Integer> counts = IntStream.range(0, 8).parallel().mapToObj(i -> db.getLinks().size()).toList();
+				assertEquals(List.of(3_000, 3_000, 3_000, 3_000, 3_000, 3_000, 3_000, 3_000), counts);
+				db.setSnapshotOnClose(dbFile, SqliteDB.SnapshotMethod.BACKUP);
+			}
+			try (SqliteDB db = SqliteDB.createSqliteWithConnection(dbFile)) {
+				List<LinkDAO> links = db.getLinks();
+				assertEquals(3_000, links.size());
+				assertEquals("pool0", links.get(0).linkId);
+				assertEquals(10, db.getLinksInEnvelope(10.5, 0, 20.5, 1).size());
+			}
+			assertTrue(!new File(dbFile.getPath() + ".tmp").exists());
+
+			// a failed snapshot still closes the connections
+			SqliteDB failing = SqliteDB.createSqliteInMemoryWithHikari(snapshotFile, 2);
+			failing.setSnapshotOnClose(new File("does-not-exist", dbFile.getName()), SqliteDB.SnapshotMethod.BACKUP);
+			assertThrows(IOException.class, failing::close);
+			assertThrows(RuntimeException.class, failing::getLinks);
+			assertThrows(IllegalArgumentException.class, () -> SqliteDB.createSqliteInMemory(new File("does-not-exist.db")));
+		} finally {
+			snapshotFile.delete();
+		}
+	}
+
+	@Test
+	void testSqlite_GetLinksParallel() throws IOException {
+		File dbFile = new File("test-performance.db");
+		if (dbFile.exists()) {
+			dbFile.delete();
+		}
+		try (SqliteDB db = SqliteDB.createSqliteWithWriterAndReaders(dbFile, 4)) {
+			assertEquals(0, db.forEachLinkParallel(4, i -> link -> {}));
+			db.replaceLinks(IntStream.range(0, 10_000).mapToObj(i -> new LinkDAO(i, Integer.toString(i), "LINESTRING (0 0, " + i + " 1)")).iterator(), 1_000);
+			assertParallelReads(db, db.getLinks());
+
+			// every third link only, so the ranges are sampled
+			db.syncLinks(IntStream.range(0, 10_000).filter(i -> i % 3 == 0).mapToObj(i -> new LinkDAO(i, Integer.toString(i), "LINESTRING (0 0, " + i + " 1)")).iterator(), 1_000);
+			assertParallelReads(db, db.getLinks());
+		}
+		// one connection: the ranges are read one after the other
+		try (SqliteDB db = SqliteDB.createSqliteWithConnection(dbFile)) {
+			assertParallelReads(db, db.getLinks());
+		}
+	}
+
+	private static void assertParallelReads(SqliteDB db, List<LinkDAO> links) {
+		assertEquals(links.stream().map(link -> link.id).toList(), db.getLinksParallel(4).stream().map(link -> link.id).toList());
+		List<Integer> partitionSizes = new ArrayList<>(List.of(0, 0, 0, 0));
+		assertEquals(4, db.forEachLinkParallel(4, i -> link -> {
+			synchronized (partitionSizes) {
+				partitionSizes.set(i, partitionSizes.get(i) + 1);
+			}
+		}));
+		for (int size : partitionSizes) {
+			assertTrue(Math.abs(size - links.size() / 4) <= 1, "unbalanced partitions " + partitionSizes);
+		}
+	}
+
+	@Test
+	void testSqlite_LinkChanges() throws IOException {
+		File dbFile = new File("test-performance.db");
+		if (dbFile.exists()) {
+			dbFile.delete();
+		}
+		try (SqliteDB db = SqliteDB.createSqliteWithWriterAndReaders(dbFile, 2)) {
+			assertEquals(0, db.getLinkChangeSequence());
+			List<LinkDAO> links = IntStream.range(0, 1_000).mapToObj(i -> new LinkDAO(i, Integer.toString(i), "LINESTRING (0 0, " + i + " 1)")).toList();
+
+			// a replace is logged as one reset
+			db.replaceLinks(links.iterator(), 100);
+			assertEquals(List.of("RESET null"), linkChanges(db, 0));
+			long sequence = db.getLinkChangeSequence();
+
+			List<LinkDAO> synced = new ArrayList<>(links);
+			synced.set(5, new LinkDAO(5, "5", "LINESTRING (5 5, 6 6)"));
+			synced.remove(7);
+			synced.add(new LinkDAO(0, "new", "LINESTRING (1 1, 2 2)"));
+			db.syncLinks(synced.iterator(), 100);
+			assertEquals(List.of("INSERT new", "UPDATE 5", "DELETE 7"), linkChanges(db, sequence));
+			try (Stream<LinkChangeDAO> changes = db.getLinkChangesSince(sequence)) {
+				List<LinkChangeDAO> list = changes.toList();
+				assertEquals("LINESTRING (1 1, 2 2)", list.get(0).link.geometry);
+				assertEquals("LINESTRING (5 5, 6 6)", list.get(1).link.geometry);
+				assertEquals("5", db.getLinkById(list.get(1).id).linkId);
+				assertNull(list.get(2).link);
+			}
+			long synchedSequence = db.getLinkChangeSequence();
+
+			// the other replacing write methods
+			db.replaceLinks(db.getLinkBatch());
+			db.replaceLinks_ShadowTable(links.iterator(), 100);
+			db.replaceLinks(links, SqlitePragmaProfile.BULK_LOAD);
+			assertEquals(List.of("RESET null", "RESET null", "RESET null"), linkChanges(db, synchedSequence));
+			// a failed replace rolls back together with the dropped triggers
+			List<LinkDAO> invalidLinks = new ArrayList<>(links);
+			invalidLinks.add(new LinkDAO(1_000, null, null)); // linkId is NOT NULL
+			assertThrows(RuntimeException.class, () -> db.replaceLinks(invalidLinks.iterator(), 100));
+			assertEquals(List.of("RESET null", "RESET null", "RESET null"), linkChanges(db, synchedSequence));
+			// the triggers are not suspended after a replace
+			db.syncLinks(synced.iterator(), 100);
+			db.syncLinks(links.iterator(), 100);
+			assertEquals(List.of("INSERT new", "UPDATE 5", "DELETE 7", "INSERT 7", "UPDATE 5", "DELETE new"), linkChanges(db, db.getLinkChangeSequence() - 6));
+
+			// compacting keeps the last change of every link, and nothing before the last reset. 7 is inserted with a new id.
+			assertEquals(8, db.compactLinkChanges(0));
+			assertEquals(List.of("RESET null", "DELETE 7", "INSERT 7", "UPDATE 5", "DELETE new"), linkChanges(db, 0));
+
+			// consumers behind the compacted sequence read a reset
+			long last = db.getLinkChangeSequence();
+			assertEquals(3, db.compactLinkChanges(last - 1));
+			assertEquals(List.of("RESET null", "DELETE new"), linkChanges(db, 0));
+			assertEquals(List.of("DELETE new"), linkChanges(db, last - 1));
+			assertEquals(last, db.getLinkChangeSequence());
+		}
+	}
+
+	@Test
+	void testSqlite_LinkChanges_FailedBulkLoad() throws IOException {
+		File dbFile = new File("test-performance.db");
+		if (dbFile.exists()) {
+			dbFile.delete();
+		}
+		List<LinkDAO> links = IntStream.range(0, 100).mapToObj(i -> new LinkDAO(i, Integer.toString(i), "LINESTRING (0 0, " + i + " 1)")).toList();
+		List<LinkDAO> invalidLinks = new ArrayList<>(links);
+		invalidLinks.add(new LinkDAO(100, null, null)); // linkId is NOT NULL
+		List<LinkDAO> synced = new ArrayList<>(links);
+		synced.set(5, new LinkDAO(5, "5", "LINESTRING (5 5, 6 6)"));
+
+		// the profile applied to the replace keeps a journal, the dropped triggers are rolled back
+		try (SqliteDB db = SqliteDB.createSqliteWithHikari(dbFile)) {
+			db.replaceLinks(links);
+			assertThrows(RuntimeException.class, () -> db.replaceLinks(invalidLinks.iterator(), 10, SqlitePragmaProfile.BULK_LOAD));
+			assertEquals(3, linkChangeTriggerCount(db));
+			long sequence = db.getLinkChangeSequence();
+			db.syncLinks(synced.iterator(), 10);
+			assertEquals(List.of("UPDATE 5"), linkChanges(db, sequence));
+		}
+
+		// a connection without journal keeps the triggers during a replace
+		try (SqliteDB db = SqliteDB.createSqliteWithConnection(dbFile, SqlitePragmaProfile.EXCLUSIVE_BULK_LOAD)) {
+			long sequence = db.getLinkChangeSequence();
+			db.replaceLinks(links);
+			List<String> changes = linkChanges(db, sequence);
+			assertEquals(201, changes.size());
+			assertEquals("RESET null", changes.get(200));
+			assertThrows(RuntimeException.class, () -> db.replaceLinks(invalidLinks.iterator(), 10));
+			assertEquals(3, linkChangeTriggerCount(db));
+			sequence = db.getLinkChangeSequence();
+			db.syncLinks(synced.iterator(), 10);
+			assertEquals(List.of("UPDATE 5"), linkChanges(db, sequence));
+		}
+	}
+
+	private static int linkChangeTriggerCount(SqliteDB db) {
+		return db.inUnitOfWork(tx -> tx.fetchOne("SELECT COUNT(*) FROM sqlite_master WHERE type = 'trigger' AND name LIKE 'Link_change_%'").get(0, Integer.class));
+	}
+
+	private static List<String> linkChanges(LinkDatabase db, long sequence) {
+		try (Stream<LinkChangeDAO> changes = db.getLinkChangesSince(sequence)) {
+			return changes.map(change -> change.kind + " " + change.linkId).toList();
+		}
+	}
+
+	@Test
+	void testSqlite_jooq_WriterAndReaders() throws IOException {
+		File dbFile = new File("test-performance.db");
+		if (dbFile.exists()) {
+			dbFile.delete();
+		}
+		try (SqliteDB db = SqliteDB.createSqliteWithWriterAndReaders(dbFile, 4)) {
+			runPerformanceTest(db);
+		}
+	}
+
+	@Test
+	void testSqlite_WriterAndReaders_ConcurrentReads() throws Exception {
+		File dbFile = new File("test-performance.db");
+		if (dbFile.exists()) {
+			dbFile.delete();
+		}
+		try (SqliteDB db = SqliteDB.createSqliteWithWriterAndReaders(dbFile, 4)) {
+			db.replaceLinks(IntStream.range(0, 10_000).mapToObj(i -> new LinkDAO(i, Integer.toString(i), "LINESTRING (0 0, 1 1)")));
+
+			AtomicBoolean writing = new AtomicBoolean(true);
+			ExecutorService readers = Executors.newFixedThreadPool(2);
+			List<Future<Integer>> readCounts = new ArrayList<>();
+			for (int r = 0; r < 2; r++) {
+				readCounts.add(readers.submit(() -> {
+					int reads = 0;
+					do {
+						int size = db.getLinks().size();
+						assertTrue(size == 10_000 || size == 50_000, "readers must see either the old or the new links, but saw " + size);
+						reads++;
+					} while (writing.get());
+					return reads;
+				}));
+			}
+			db.replaceLinks(IntStream.range(0, 50_000).mapToObj(i -> new LinkDAO(i, Integer.toString(i), "LINESTRING (0 0, 1 1)")));
+			db.syncLinks(IntStream.range(0, 50_000).mapToObj(i -> new LinkDAO(i, Integer.toString(i), "LINESTRING (0 0, 2 2)")).iterator(), 1_000);
+			writing.set(false);
+			for (Future<Integer> reads : readCounts) {
+				assertTrue(reads.get() > 0);
+			}
+			readers.shutdown();
+			assertEquals(50_000, db.getLinks().size());
+		}
+	}
+
+	@Test
+	void testSqlite_IngestionPipeline_WriterAndReaders() throws Exception {
+		File dbFile = new File("test-performance.db");
+		if (dbFile.exists()) {
+			dbFile.delete();
+		}
+		try (SqliteDB db = SqliteDB.createSqliteWithWriterAndReaders(dbFile, 2)) {
+			int linkCount = 50_000;
+			LinkIngestionPipeline<Integer> pipeline = new LinkIngestionPipeline<>(4, 16, 1_000,
+				i -> new LinkDAO(i, Integer.toString(i), "LINESTRING (" + i + " 0, " + i + " 1)"), db::encodeLink);
+
+			LinkIngestionPipeline.Stats stats = pipeline.run(IntStream.range(0, linkCount).boxed().iterator(), rows -> db.replaceEncodedLinks(rows, 5_000));
+			assertEquals(linkCount, stats.linkCount);
+			assertEquals(linkCount, db.getLinks().size());
+			assertEquals(1, db.getLinksInEnvelope(10.5, 0, 11.5, 1).size());
+
+			// a failing producer must roll back the whole replace
+			LinkIngestionPipeline<Integer> failingPipeline = new LinkIngestionPipeline<>(4, 16, 1_000, i -> {
+				if (i == 30_000) {
+					throw new IllegalArgumentException("invalid link " + i);
+				}
+				return new LinkDAO(i, Integer.toString(i), "LINESTRING (0 0, 1 1)");
+			}, db::encodeLink);
+			assertThrows(RuntimeException.class, () -> failingPipeline.run(IntStream.range(0, 40_000).boxed().iterator(), rows -> db.replaceEncodedLinks(rows, 5_000)));
+			assertEquals(linkCount, db.getLinks().size());
+		}
+	}
+
 }
@@ -0,0 +1,72 @@
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WkbTest {
+
+	@Test
+	void testLineString() {
+		byte[] wkb = Wkb.fromWkt("LINESTRING (561770.1124776328 5801163.18893374, 561887.6550922041 5801106.550209084)");
+		assertEquals(9 + 2 * 16, wkb.length);
+
+		ByteBuffer buffer = ByteBuffer.wrap(wkb).order(ByteOrder.LITTLE_ENDIAN);
+		assertEquals(1, buffer.get());
+		assertEquals(2, buffer.getInt());
+		assertEquals(2, buffer.getInt());
+		assertEquals(561770.1124776328, buffer.getDouble());
+		assertEquals(5801163.18893374, buffer.getDouble());
+
+		assertEquals("LINESTRING (561770.1124776328 5801163.18893374, 561887.6550922041 5801106.550209084)", Wkb.toWkt(wkb));
+	}
+
+	@Test
+	void testRoundTrip() {
+		String[] geometries = {
+			"POINT (1 2)",
+			"POINT EMPTY",
+			"LINESTRING (0 0, 1.5 -2.25, 3 4)",
+			"LINESTRING EMPTY",
+			"POLYGON ((0 0, 10 0, 10 10, 0 0), (1 1, 2 1, 2 2, 1 1))",
+			"MULTIPOINT ((1 2), (3 4))",
+			"MULTILINESTRING ((0 0, 1 1), (2 2, 3 3, 4 4))",
+			"MULTIPOLYGON (((0 0, 1 0, 1 1, 0 0)), ((5 5, 6 5, 6 6, 5 5)))",
+		};
+		for (String wkt : geometries) {
+			assertEquals(wkt, Wkb.toWkt(Wkb.fromWkt(wkt)));
+		}
+	}
+
+	@Test
+	void testLenientInput() {
+		assertEquals("LINESTRING (0 0, 1 1)", Wkb.toWkt(Wkb.fromWkt("  linestring(0 0,1 1) ")));
+		assertEquals("MULTIPOINT ((1 2), (3 4))", Wkb.toWkt(Wkb.fromWkt("MULTIPOINT (1 2, 3 4)")));
+	}
+
+	@Test
+	void testInvalidInput() {
+		assertThrows(IllegalArgumentException.class, () -> Wkb.fromWkt("CIRCLE (0 0, 1)"));
+		assertThrows(IllegalArgumentException.class, () -> Wkb.fromWkt("LINESTRING (0 0, 1)"));
+		assertThrows(IllegalArgumentException.class, () -> Wkb.fromWkt("LINESTRING (0 0, 1 1) x"));
+		assertThrows(IllegalArgumentException.class, () -> Wkb.toWkt(new byte[] { 1, 9, 0, 0, 0 }));
+	}
+
+	@Test
+	void testParseNumber() {
+		Random random = new Random(4711);
+		for (int i = 0; i < 100_000; i++) {
+			String number = Double.toString((random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(20) - 5));
+			assertEquals(Double.parseDouble(number), Envelope.parseNumber(number, 0, number.length()), number);
+		}
+		for (String number : new String[] { "0", "-0", "+12", "1.", ".5", "561770.1124776328", "9007199254740993", "1e3", "0.00000000000000000000001" }) {
+			assertEquals(Double.parseDouble(number), Envelope.parseNumber(number, 0, number.length()), number);
+		}
+		assertEquals(-2.5, Envelope.parseNumber("(-2.5 ", 1, 5));
+		assertThrows(NumberFormatException.class, () -> Envelope.parseNumber("1.2.3", 0, 5));
+		assertThrows(NumberFormatException.class, () -> Envelope.parseNumber("-", 0, 1));
+	}
+
+}